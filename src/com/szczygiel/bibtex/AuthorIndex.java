@@ -0,0 +1,287 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of {@link Entry entries} by their authors' last names.
+ * <p>
+ * Every normalized last name maps to a sorted list of ordinals of entries written or edited by the person.
+ * Entries written by all of the given people are found by intersecting their lists, starting from the shortest,
+ * so the query takes time proportional to the shortest list rather than to the number of entries.
+ */
+class AuthorIndex {
+    /**
+     * Indexed entries, ordinals are indexes in this list.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * Sorted ordinals of entries by normalized last names of their authors.
+     */
+    private final Map<String, int[]> postings = new HashMap<>();
+
+    /**
+     * Constructor for {@link AuthorIndex}.
+     * <p>
+     * Index doesn't follow later changes of the list.
+     *
+     * @param entries {@link #entries}
+     */
+    AuthorIndex(List<Entry> entries) {
+        this.entries = entries;
+
+        Map<String, Postings> lists = new HashMap<>();
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            for (Entry.Author author : entries.get(ordinal).getAuthors()) {
+                lists.computeIfAbsent(normalize(author.lastName), name -> new Postings()).add(ordinal);
+            }
+        }
+
+        for (Map.Entry<String, Postings> list : lists.entrySet()) {
+            postings.put(list.getKey(), list.getValue().toArray());
+        }
+    }
+
+    /**
+     * Replace an indexed entry, keeping ordinals of the other entries.
+     * <p>
+     * Only lists of people added or removed by the change are updated.
+     * Names aren't parsed again when fields they are parsed from didn't change.
+     *
+     * @param ordinal ordinal of the replaced entry
+     * @param removed entry indexed before
+     * @param added   entry replacing it
+     */
+    void replace(int ordinal, Entry removed, Entry added) {
+        if (nameValues(removed).equals(nameValues(added))) {
+            return;
+        }
+
+        Set<String> removedNames = lastNames(removed);
+        Set<String> addedNames = lastNames(added);
+        for (String name : removedNames) {
+            if (!addedNames.contains(name)) {
+                int[] list = postings.get(name);
+                int index = Arrays.binarySearch(list, ordinal);
+                if (list.length == 1) {
+                    postings.remove(name);
+                } else {
+                    int[] shorter = Arrays.copyOf(list, list.length - 1);
+                    System.arraycopy(list, index + 1, shorter, index, list.length - index - 1);
+                    postings.put(name, shorter);
+                }
+            }
+        }
+
+        for (String name : addedNames) {
+            if (!removedNames.contains(name)) {
+                int[] list = postings.getOrDefault(name, new int[0]);
+                int index = -Arrays.binarySearch(list, ordinal) - 1;
+                int[] longer = new int[list.length + 1];
+                System.arraycopy(list, 0, longer, 0, index);
+                longer[index] = ordinal;
+                System.arraycopy(list, index, longer, index + 1, list.length - index);
+                postings.put(name, longer);
+            }
+        }
+    }
+
+    /**
+     * Get keys and values of author and editor fields of an entry, which its authors are parsed from.
+     *
+     * @param entry indexed entry
+     * @return keys followed by values of the fields
+     */
+    private static List<Object> nameValues(Entry entry) {
+        List<Object> values = new ArrayList<>();
+        for (Field field : entry.getFields()) {
+            int keyId = field.getKeyId();
+            if (keyId == FieldKeys.AUTHOR || keyId == FieldKeys.EDITOR) {
+                values.add(keyId);
+                values.add(field.getValue());
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Get normalized last names of authors of an entry.
+     *
+     * @param entry indexed entry
+     * @return last names
+     */
+    private static Set<String> lastNames(Entry entry) {
+        Set<String> lastNames = new HashSet<>();
+        for (Entry.Author author : entry.getAuthors()) {
+            lastNames.add(normalize(author.lastName));
+        }
+
+        return lastNames;
+    }
+
+    /**
+     * Normalize last name, so names differing only in letter case or brackets are equal.
+     *
+     * @param lastName last name
+     * @return normalized last name
+     */
+    static String normalize(String lastName) {
+        StringBuilder str = new StringBuilder(lastName.length());
+        for (int i = 0; i < lastName.length(); i++) {
+            char c = lastName.charAt(i);
+            if (c != '{' && c != '}') {
+                str.append(c);
+            }
+        }
+
+        return str.toString().strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find entries written or edited by all of the given people.
+     *
+     * @param lastNames last names of the people
+     * @return sorted ordinals of the entries
+     */
+    int[] find(Set<String> lastNames) {
+        if (lastNames.isEmpty()) {
+            int[] all = new int[entries.size()];
+            Arrays.setAll(all, ordinal -> ordinal);
+            return all;
+        }
+
+        List<int[]> lists = new ArrayList<>(lastNames.size());
+        for (String lastName : lastNames) {
+            int[] list = postings.get(normalize(lastName));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get entries written or edited by all of the given people.
+     *
+     * @param lastNames last names of the people
+     * @return entries in the order of the indexed list
+     */
+    List<Entry> get(Set<String> lastNames) {
+        int[] ordinals = find(lastNames);
+        List<Entry> found = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            found.add(entries.get(ordinal));
+        }
+
+        return found;
+    }
+
+    /**
+     * Get number of entries of a person.
+     *
+     * @param lastName last name of the person
+     * @return number of entries
+     */
+    int count(String lastName) {
+        int[] list = postings.get(normalize(lastName));
+        return list == null ? 0 : list.length;
+    }
+
+    /**
+     * Intersect sorted lists of ordinals.
+     * <p>
+     * Ordinals of the shorter list are searched in the longer one with exponential search,
+     * which skips long runs of the longer list.
+     *
+     * @param shorter shorter list
+     * @param longer  longer list
+     * @return ordinals present in both lists
+     */
+    private static int[] intersect(int[] shorter, int[] longer) {
+        int[] result = new int[shorter.length];
+        int count = 0;
+        int low = 0;
+        for (int ordinal : shorter) {
+            // Find a range of the longer list containing the ordinal
+            int step = 1;
+            int high = low;
+            while (high < longer.length && longer[high] < ordinal) {
+                low = high + 1;
+                high += step;
+                step *= 2;
+            }
+
+            int index = Arrays.binarySearch(longer, low, Math.min(high + 1, longer.length), ordinal);
+            if (index >= 0) {
+                result[count++] = ordinal;
+                low = index + 1;
+            } else {
+                low = -index - 1;
+            }
+
+            if (low >= longer.length) {
+                break;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Growing list of ordinals of a person, used while the index is built.
+     */
+    private static class Postings {
+        /**
+         * Ordinals in increasing order.
+         */
+        private int[] ordinals = new int[4];
+
+        /**
+         * Number of ordinals.
+         */
+        private int size;
+
+        /**
+         * Add ordinal greater or equal to the already added ones.
+         *
+         * @param ordinal ordinal of an entry
+         */
+        void add(int ordinal) {
+            // Person is both author and editor or is listed twice
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        /**
+         * Get added ordinals.
+         *
+         * @return array of the ordinals
+         */
+        int[] toArray() {
+            return Arrays.copyOf(ordinals, size);
+        }
+    }
+}
@@ -0,0 +1,918 @@
+package com.szczygiel.bibtex;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compressed set of non-negative ints, e.g. ordinals of {@link Entry entries}.
+ * <p>
+ * Values are split into chunks of 65536 by their upper 16 bits, in the style of Roaring bitmaps.
+ * Every chunk keeps its lower 16 bits in the smallest of three containers:
+ * a sorted array for sparse chunks, a bit set for dense ones, or a list of runs for consecutive values.
+ * Set operations work on pairs of containers, so they skip chunks present in only one of the bitmaps
+ * and take time proportional to the size of the containers rather than to the number of values.
+ * Bitmaps are immutable after they are built.
+ */
+final class Bitmap {
+    /**
+     * Bitmap without values.
+     */
+    static final Bitmap EMPTY = new Bitmap(new char[0], new Container[0], 0);
+
+    /**
+     * Upper 16 bits of values of every chunk, in increasing order.
+     */
+    private char[] keys;
+
+    /**
+     * Containers of lower 16 bits of values of every chunk.
+     */
+    private Container[] containers;
+
+    /**
+     * Number of chunks.
+     */
+    private int size;
+
+    /**
+     * Constructor for {@link Bitmap}.
+     *
+     * @param keys       {@link #keys}
+     * @param containers {@link #containers}
+     * @param size       {@link #size}
+     */
+    private Bitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Create bitmap of given values.
+     *
+     * @param values values in increasing order
+     * @return bitmap of the values
+     */
+    static Bitmap of(int... values) {
+        Builder builder = new Builder();
+        for (int value : values) {
+            builder.add(value);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Create bitmap of a range of values.
+     *
+     * @param start first value
+     * @param end   value right after the last one
+     * @return bitmap of the values
+     */
+    static Bitmap range(int start, int end) {
+        Bitmap bitmap = new Bitmap(new char[4], new Container[4], 0);
+        long chunkStart = start;
+        while (chunkStart < end) {
+            long chunkEnd = Math.min(end, (chunkStart | 0xFFFF) + 1);
+            char[] runs = {(char) chunkStart, (char) (chunkEnd - chunkStart - 1)};
+            bitmap.append((char) (chunkStart >>> 16), new RunContainer(runs, 1));
+            chunkStart = chunkEnd;
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Check if bitmap contains a value.
+     *
+     * @param value value
+     * @return true if the value belongs to the bitmap
+     */
+    boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Get number of values.
+     *
+     * @return number of values
+     */
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+
+        return cardinality;
+    }
+
+    /**
+     * Check if bitmap has no values.
+     *
+     * @return true if bitmap is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get values present in both bitmaps.
+     *
+     * @param other other bitmap
+     * @return intersection of the bitmaps
+     */
+    Bitmap and(Bitmap other) {
+        Bitmap result = new Bitmap(new char[Math.min(size, other.size)], new Container[Math.min(size, other.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get values present in any of the bitmaps.
+     *
+     * @param other other bitmap
+     * @return union of the bitmaps
+     */
+    Bitmap or(Bitmap other) {
+        Bitmap result = new Bitmap(new char[size + other.size], new Container[size + other.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i]);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j]);
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get values present in any of many bitmaps.
+     * <p>
+     * Chunks of all bitmaps are combined at once, so every chunk of the result is compressed only once.
+     *
+     * @param bitmaps bitmaps
+     * @return union of the bitmaps
+     */
+    static Bitmap or(Collection<Bitmap> bitmaps) {
+        SortedMap<Character, long[]> chunks = new TreeMap<>();
+        for (Bitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.size; i++) {
+                bitmap.containers[i].orInto(chunks.computeIfAbsent(bitmap.keys[i], key -> new long[1024]));
+            }
+        }
+
+        Bitmap result = new Bitmap(new char[chunks.size()], new Container[chunks.size()], 0);
+        for (Map.Entry<Character, long[]> chunk : chunks.entrySet()) {
+            result.append(chunk.getKey(), Container.pack(chunk.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get values of this bitmap, which aren't present in the other one.
+     *
+     * @param other other bitmap
+     * @return difference of the bitmaps
+     */
+    Bitmap andNot(Bitmap other) {
+        Bitmap result = new Bitmap(new char[size], new Container[size], 0);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get values from 0 to a limit, which aren't present in this bitmap.
+     *
+     * @param limit value right after the last one
+     * @return complement of the bitmap
+     */
+    Bitmap not(int limit) {
+        return range(0, limit).andNot(this);
+    }
+
+    /**
+     * Get all values.
+     *
+     * @return values in increasing order
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality()];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count = containers[i].copyTo(values, count, keys[i] << 16);
+        }
+
+        return values;
+    }
+
+    /**
+     * Get number of bytes used by the containers.
+     *
+     * @return approximate size of the bitmap in bytes
+     */
+    long sizeInBytes() {
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            bytes += 2 + containers[i].sizeInBytes();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Append a chunk after the last one, skipping empty containers.
+     *
+     * @param key       upper 16 bits of the chunk
+     * @param container container of the chunk
+     */
+    private void append(char key, Container container) {
+        if (container.cardinality() == 0) {
+            return;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+            containers = Arrays.copyOf(containers, Math.max(4, size * 2));
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    /**
+     * Compare objects.
+     *
+     * @param o other object
+     * @return true if bitmaps contain the same values, otherwise false
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return Arrays.equals(toArray(), ((Bitmap) o).toArray());
+    }
+
+    /**
+     * Compute hash code of the bitmap.
+     *
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    /**
+     * Convert bitmap into readable list of values.
+     *
+     * @return readable values
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Builds a {@link Bitmap} from values added in increasing order.
+     */
+    static final class Builder {
+        /**
+         * Already built chunks.
+         */
+        private final Bitmap bitmap = new Bitmap(new char[4], new Container[4], 0);
+
+        /**
+         * Lower 16 bits of values of the current chunk.
+         */
+        private char[] values = new char[16];
+
+        /**
+         * Number of values of the current chunk.
+         */
+        private int count;
+
+        /**
+         * Upper 16 bits of values of the current chunk.
+         */
+        private int key = -1;
+
+        /**
+         * Last added value.
+         */
+        private int last = -1;
+
+        /**
+         * Add value greater than the previously added ones.
+         *
+         * @param value non-negative value
+         * @throws IllegalArgumentException when the value isn't greater than the previous one
+         */
+        void add(int value) {
+            if (value <= last) {
+                throw new IllegalArgumentException("Values must be added in increasing order: " + value);
+            }
+            last = value;
+
+            if (value >>> 16 != key) {
+                flush();
+                key = value >>> 16;
+            }
+
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = (char) value;
+        }
+
+        /**
+         * Build bitmap of the added values.
+         *
+         * @return bitmap
+         */
+        Bitmap build() {
+            flush();
+            return bitmap;
+        }
+
+        /**
+         * Add the current chunk to the bitmap.
+         */
+        private void flush() {
+            if (count > 0) {
+                long[] words = new long[1024];
+                for (int i = 0; i < count; i++) {
+                    words[values[i] >>> 6] |= 1L << values[i];
+                }
+                bitmap.append((char) key, Container.pack(words));
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Lower 16 bits of values of a single chunk.
+     */
+    private abstract static class Container {
+        /**
+         * Maximum number of values kept in an {@link ArrayContainer}.
+         */
+        static final int MAX_ARRAY_SIZE = 4096;
+
+        /**
+         * Check if container contains a value.
+         *
+         * @param value lower 16 bits of the value
+         * @return true if the value belongs to the container
+         */
+        abstract boolean contains(char value);
+
+        /**
+         * Get number of values.
+         *
+         * @return number of values
+         */
+        abstract int cardinality();
+
+        /**
+         * Set bits of values in a bit set.
+         *
+         * @param words 1024 words of the bit set
+         */
+        abstract void orInto(long[] words);
+
+        /**
+         * Get values as a bit set.
+         *
+         * @return 1024 words of the bit set
+         */
+        long[] toWords() {
+            long[] words = new long[1024];
+            orInto(words);
+            return words;
+        }
+
+        /**
+         * Copy values into an array.
+         *
+         * @param array  destination
+         * @param index  index of the first copied value
+         * @param offset upper bits added to every value
+         * @return index right after the last copied value
+         */
+        abstract int copyTo(int[] array, int index, int offset);
+
+        /**
+         * Get number of bytes used by the container.
+         *
+         * @return size in bytes
+         */
+        abstract int sizeInBytes();
+
+        /**
+         * Get values present in both containers.
+         *
+         * @param other other container
+         * @return intersection of the containers
+         */
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).filter(this, true);
+            }
+
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= otherWords[i];
+            }
+
+            return pack(words);
+        }
+
+        /**
+         * Get values present in any of the containers.
+         *
+         * @param other other container
+         * @return union of the containers
+         */
+        Container or(Container other) {
+            long[] words = toWords();
+            other.orInto(words);
+            return pack(words);
+        }
+
+        /**
+         * Get values of this container, which aren't present in the other one.
+         *
+         * @param other other container
+         * @return difference of the containers
+         */
+        Container andNot(Container other) {
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= ~otherWords[i];
+            }
+
+            return pack(words);
+        }
+
+        /**
+         * Create the smallest container of values of a bit set.
+         *
+         * @param words 1024 words of the bit set
+         * @return array, bitmap or run container
+         */
+        static Container pack(long[] words) {
+            int cardinality = 0;
+            int runs = 0;
+            long previousWord = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+                // Runs begin at set bits preceded by unset ones
+                runs += Long.bitCount(word & ~(word << 1 | previousWord >>> 63));
+                previousWord = word;
+            }
+
+            int runBytes = 4 * runs;
+            if (runBytes < Math.min(2 * cardinality, 8192)) {
+                return RunContainer.of(words, runs);
+            } else if (cardinality <= MAX_ARRAY_SIZE) {
+                return ArrayContainer.of(words, cardinality);
+            }
+
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    /**
+     * Sorted array of values of a sparse chunk.
+     */
+    private static final class ArrayContainer extends Container {
+        /**
+         * Values in increasing order.
+         */
+        private final char[] values;
+
+        /**
+         * Constructor for {@link ArrayContainer}.
+         *
+         * @param values {@link #values}
+         */
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        /**
+         * Create container of values of a bit set.
+         *
+         * @param words       1024 words of the bit set
+         * @param cardinality number of set bits
+         * @return array container
+         */
+        static ArrayContainer of(long[] words, int cardinality) {
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            return new ArrayContainer(values);
+        }
+
+        /**
+         * Keep values which are or aren't present in other container.
+         *
+         * @param other   other container
+         * @param present true to keep values present in the other container, false to keep the missing ones
+         * @return filtered container
+         */
+        ArrayContainer filter(Container other, boolean present) {
+            char[] filtered = new char[values.length];
+            int count = 0;
+            for (char value : values) {
+                if (other.contains(value) == present) {
+                    filtered[count++] = value;
+                }
+            }
+
+            return new ArrayContainer(Arrays.copyOf(filtered, count));
+        }
+
+        /**
+         * Check if container contains a value.
+         *
+         * @param value lower 16 bits of the value
+         * @return true if the value belongs to the container
+         */
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        /**
+         * Get number of values.
+         *
+         * @return number of values
+         */
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        /**
+         * Set bits of values in a bit set.
+         *
+         * @param words 1024 words of the bit set
+         */
+        @Override
+        void orInto(long[] words) {
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+
+        /**
+         * Copy values into an array.
+         *
+         * @param array  destination
+         * @param index  index of the first copied value
+         * @param offset upper bits added to every value
+         * @return index right after the last copied value
+         */
+        @Override
+        int copyTo(int[] array, int index, int offset) {
+            for (char value : values) {
+                array[index++] = offset | value;
+            }
+
+            return index;
+        }
+
+        /**
+         * Get number of bytes used by the container.
+         *
+         * @return size in bytes
+         */
+        @Override
+        int sizeInBytes() {
+            return 2 * values.length;
+        }
+
+        /**
+         * Get values present in both containers, checking every value of this container.
+         *
+         * @param other other container
+         * @return intersection of the containers
+         */
+        @Override
+        Container and(Container other) {
+            return filter(other, true);
+        }
+
+        /**
+         * Get values of this container, which aren't present in the other one, checking every value of this container.
+         *
+         * @param other other container
+         * @return difference of the containers
+         */
+        @Override
+        Container andNot(Container other) {
+            return filter(other, false);
+        }
+    }
+
+    /**
+     * Bit set of values of a dense chunk.
+     */
+    private static final class BitmapContainer extends Container {
+        /**
+         * 1024 words of the bit set.
+         */
+        private final long[] words;
+
+        /**
+         * Number of set bits.
+         */
+        private final int cardinality;
+
+        /**
+         * Constructor for {@link BitmapContainer}.
+         *
+         * @param words       {@link #words}
+         * @param cardinality {@link #cardinality}
+         */
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Check if container contains a value.
+         *
+         * @param value lower 16 bits of the value
+         * @return true if the value belongs to the container
+         */
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        /**
+         * Get number of values.
+         *
+         * @return number of values
+         */
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        /**
+         * Get values as a bit set.
+         *
+         * @return 1024 words of the bit set
+         */
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        /**
+         * Set bits of values in a bit set.
+         *
+         * @param words 1024 words of the bit set
+         */
+        @Override
+        void orInto(long[] bits) {
+            for (int i = 0; i < words.length; i++) {
+                bits[i] |= words[i];
+            }
+        }
+
+        /**
+         * Copy values into an array.
+         *
+         * @param array  destination
+         * @param index  index of the first copied value
+         * @param offset upper bits added to every value
+         * @return index right after the last copied value
+         */
+        @Override
+        int copyTo(int[] array, int index, int offset) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array[index++] = offset | i << 6 | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+
+            return index;
+        }
+
+        /**
+         * Get number of bytes used by the container.
+         *
+         * @return size in bytes
+         */
+        @Override
+        int sizeInBytes() {
+            return 8 * words.length;
+        }
+    }
+
+    /**
+     * Runs of consecutive values of a chunk.
+     */
+    private static final class RunContainer extends Container {
+        /**
+         * Pairs of the first value of every run and the number of its values decreased by one.
+         */
+        private final char[] runs;
+
+        /**
+         * Number of runs.
+         */
+        private final int count;
+
+        /**
+         * Constructor for {@link RunContainer}.
+         *
+         * @param runs  {@link #runs}
+         * @param count {@link #count}
+         */
+        RunContainer(char[] runs, int count) {
+            this.runs = runs;
+            this.count = count;
+        }
+
+        /**
+         * Create container of values of a bit set.
+         *
+         * @param words 1024 words of the bit set
+         * @param count number of runs
+         * @return run container
+         */
+        static RunContainer of(long[] words, int count) {
+            char[] runs = new char[2 * count];
+            int index = 0;
+            long word = words[0];
+            for (int run = 0; run < count; run++) {
+                while (word == 0) {
+                    word = words[++index];
+                }
+                int start = index << 6 | Long.numberOfTrailingZeros(word);
+
+                // Fill bits below the run, then find the first unset bit after it
+                word |= word - 1;
+                while (word == -1L && index < words.length - 1) {
+                    word = words[++index];
+                }
+                int end = word == -1L ? 65536 : index << 6 | Long.numberOfTrailingZeros(~word);
+                word &= word + 1;
+
+                runs[2 * run] = (char) start;
+                runs[2 * run + 1] = (char) (end - start - 1);
+            }
+
+            return new RunContainer(runs, count);
+        }
+
+        /**
+         * Check if container contains a value.
+         *
+         * @param value lower 16 bits of the value
+         * @return true if the value belongs to the container
+         */
+        @Override
+        boolean contains(char value) {
+            // Find the last run starting at or before the value
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (runs[2 * middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            return high >= 0 && value - runs[2 * high] <= runs[2 * high + 1];
+        }
+
+        /**
+         * Get number of values.
+         *
+         * @return number of values
+         */
+        @Override
+        int cardinality() {
+            int cardinality = 0;
+            for (int run = 0; run < count; run++) {
+                cardinality += runs[2 * run + 1] + 1;
+            }
+
+            return cardinality;
+        }
+
+        /**
+         * Set bits of values in a bit set.
+         *
+         * @param words 1024 words of the bit set
+         */
+        @Override
+        void orInto(long[] words) {
+            for (int run = 0; run < count; run++) {
+                int start = runs[2 * run];
+                int end = start + runs[2 * run + 1] + 1;
+                int first = start >>> 6;
+                int last = (end - 1) >>> 6;
+                long firstMask = -1L << start;
+                long lastMask = -1L >>> -end;
+                if (first == last) {
+                    words[first] |= firstMask & lastMask;
+                } else {
+                    words[first] |= firstMask;
+                    Arrays.fill(words, first + 1, last, -1L);
+                    words[last] |= lastMask;
+                }
+            }
+        }
+
+        /**
+         * Copy values into an array.
+         *
+         * @param array  destination
+         * @param index  index of the first copied value
+         * @param offset upper bits added to every value
+         * @return index right after the last copied value
+         */
+        @Override
+        int copyTo(int[] array, int index, int offset) {
+            for (int run = 0; run < count; run++) {
+                int start = runs[2 * run];
+                int end = start + runs[2 * run + 1];
+                for (int value = start; value <= end; value++) {
+                    array[index++] = offset | value;
+                }
+            }
+
+            return index;
+        }
+
+        /**
+         * Get number of bytes used by the container.
+         *
+         * @return size in bytes
+         */
+        @Override
+        int sizeInBytes() {
+            return 4 * count;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * {@link Bitmap} indexes of {@link Entry entries} by fields with few distinct values.
+ * <p>
+ * Every entry type, year, journal and publisher maps to a bitmap of ordinals of entries having it.
+ * Filters are answered by combining bitmaps with AND, OR and NOT, without checking every entry.
+ * Journals are indexed by journal or booktitle fields, journals and publishers are compared lowercase.
+ */
+class BitmapIndex {
+    /**
+     * Indexed entries, ordinals are indexes in this list.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * Ordinals of entries by their types.
+     */
+    private final Map<String, Bitmap> types = new HashMap<>();
+
+    /**
+     * Ordinals of entries by their numeric years.
+     */
+    private final NavigableMap<Long, Bitmap> years = new TreeMap<>();
+
+    /**
+     * Ordinals of entries by their lowercase journals or booktitles.
+     */
+    private final Map<String, Bitmap> journals = new HashMap<>();
+
+    /**
+     * Ordinals of entries by their lowercase publishers.
+     */
+    private final Map<String, Bitmap> publishers = new HashMap<>();
+
+    /**
+     * Constructor for {@link BitmapIndex}.
+     * <p>
+     * Index doesn't follow later changes of the list.
+     *
+     * @param entries {@link #entries}
+     */
+    BitmapIndex(List<Entry> entries) {
+        this.entries = entries;
+
+        Map<String, Bitmap.Builder> typeBuilders = new HashMap<>();
+        Map<Long, Bitmap.Builder> yearBuilders = new HashMap<>();
+        Map<String, Bitmap.Builder> journalBuilders = new HashMap<>();
+        Map<String, Bitmap.Builder> publisherBuilders = new HashMap<>();
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            Entry entry = entries.get(ordinal);
+            typeBuilders.computeIfAbsent(entry.getEntryType(), type -> new Bitmap.Builder()).add(ordinal);
+
+            Long year = year(entry);
+            if (year != null) {
+                yearBuilders.computeIfAbsent(year, value -> new Bitmap.Builder()).add(ordinal);
+            }
+
+            String journal = journal(entry);
+            if (journal != null) {
+                journalBuilders.computeIfAbsent(journal, value -> new Bitmap.Builder()).add(ordinal);
+            }
+
+            String publisher = publisher(entry);
+            if (publisher != null) {
+                publisherBuilders.computeIfAbsent(publisher, value -> new Bitmap.Builder()).add(ordinal);
+            }
+        }
+
+        typeBuilders.forEach((type, builder) -> types.put(type, builder.build()));
+        yearBuilders.forEach((year, builder) -> years.put(year, builder.build()));
+        journalBuilders.forEach((journal, builder) -> journals.put(journal, builder.build()));
+        publisherBuilders.forEach((publisher, builder) -> publishers.put(publisher, builder.build()));
+    }
+
+    /**
+     * Replace an indexed entry, keeping ordinals of the other entries.
+     * <p>
+     * Only bitmaps of values changed by the replacement are updated.
+     *
+     * @param ordinal ordinal of the replaced entry
+     * @param removed entry indexed before
+     * @param added   entry replacing it
+     */
+    void replace(int ordinal, Entry removed, Entry added) {
+        move(types, ordinal, removed.getEntryType(), added.getEntryType());
+        move(years, ordinal, year(removed), year(added));
+        move(journals, ordinal, journal(removed), journal(added));
+        move(publishers, ordinal, publisher(removed), publisher(added));
+    }
+
+    /**
+     * Move an ordinal between bitmaps of two values.
+     *
+     * @param bitmaps bitmaps by values
+     * @param ordinal ordinal of an entry
+     * @param removed value before, null when the entry had no value
+     * @param added   value after, null when the entry has no value
+     * @param <K>     type of the values
+     */
+    private static <K> void move(Map<K, Bitmap> bitmaps, int ordinal, K removed, K added) {
+        if (Objects.equals(removed, added)) {
+            return;
+        }
+
+        Bitmap single = Bitmap.of(ordinal);
+        if (removed != null) {
+            Bitmap bitmap = bitmaps.get(removed).andNot(single);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(removed);
+            } else {
+                bitmaps.put(removed, bitmap);
+            }
+        }
+        if (added != null) {
+            bitmaps.merge(added, single, Bitmap::or);
+        }
+    }
+
+    /**
+     * Get numeric year of an entry.
+     *
+     * @param entry indexed entry
+     * @return year or null when the entry has no numeric year
+     */
+    private static Long year(Entry entry) {
+        Field year = entry.getField(FieldKeys.YEAR);
+        return year != null && year.isNumeric() ? year.getLong() : null;
+    }
+
+    /**
+     * Get lowercase journal or booktitle of an entry.
+     *
+     * @param entry indexed entry
+     * @return journal or null when the entry has no journal
+     */
+    private static String journal(Entry entry) {
+        Field journal = entry.getField(FieldKeys.JOURNAL);
+        if (journal == null) {
+            journal = entry.getField(FieldKeys.BOOKTITLE);
+        }
+
+        return journal != null && journal.getType() == Field.Type.STRING ? normalize(journal) : null;
+    }
+
+    /**
+     * Get lowercase publisher of an entry.
+     *
+     * @param entry indexed entry
+     * @return publisher or null when the entry has no publisher
+     */
+    private static String publisher(Entry entry) {
+        Field publisher = entry.getField(FieldKeys.PUBLISHER);
+        return publisher != null && publisher.getType() == Field.Type.STRING ? normalize(publisher) : null;
+    }
+
+    /**
+     * Get lowercase value of a field.
+     *
+     * @param field field of {@link Field.Type#STRING} type
+     * @return lowercase value
+     */
+    private static String normalize(Field field) {
+        return ((String) field.getValue()).strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get bitmap of all entries.
+     *
+     * @return ordinals of all entries
+     */
+    Bitmap all() {
+        return Bitmap.range(0, entries.size());
+    }
+
+    /**
+     * Get entries of any of the given types.
+     *
+     * @param entryTypes entry types
+     * @return ordinals of the entries
+     */
+    Bitmap types(Set<String> entryTypes) {
+        return union(types, entryTypes);
+    }
+
+    /**
+     * Get entries of years in a range.
+     *
+     * @param from first year
+     * @param to   last year
+     * @return ordinals of the entries
+     */
+    Bitmap years(long from, long to) {
+        if (from > to) {
+            return Bitmap.EMPTY;
+        }
+
+        return Bitmap.or(years.subMap(from, true, to, true).values());
+    }
+
+    /**
+     * Get entries published in any of the given journals or books.
+     *
+     * @param names names of the journals or books
+     * @return ordinals of the entries
+     */
+    Bitmap journals(Set<String> names) {
+        return union(journals, lowercase(names));
+    }
+
+    /**
+     * Get entries published by any of the given publishers.
+     *
+     * @param names names of the publishers
+     * @return ordinals of the entries
+     */
+    Bitmap publishers(Set<String> names) {
+        return union(publishers, lowercase(names));
+    }
+
+    /**
+     * Get entries of types matching a condition.
+     *
+     * @param condition condition of an entry type
+     * @return ordinals of the entries
+     */
+    Bitmap typesMatching(Predicate<String> condition) {
+        return union(types, condition);
+    }
+
+    /**
+     * Get entries published in journals or books with names matching a condition.
+     *
+     * @param condition condition of a lowercase name
+     * @return ordinals of the entries
+     */
+    Bitmap journalsMatching(Predicate<String> condition) {
+        return union(journals, condition);
+    }
+
+    /**
+     * Get entries published by publishers with names matching a condition.
+     *
+     * @param condition condition of a lowercase name
+     * @return ordinals of the entries
+     */
+    Bitmap publishersMatching(Predicate<String> condition) {
+        return union(publishers, condition);
+    }
+
+    /**
+     * Get entries of a bitmap.
+     *
+     * @param bitmap ordinals of entries
+     * @return entries in the order of the indexed list
+     */
+    List<Entry> get(Bitmap bitmap) {
+        int[] ordinals = bitmap.toArray();
+        List<Entry> found = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            found.add(entries.get(ordinal));
+        }
+
+        return found;
+    }
+
+    /**
+     * Get number of indexed entries.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Combine bitmaps of given values.
+     *
+     * @param bitmaps bitmaps by values
+     * @param values  wanted values
+     * @return ordinals of entries with any of the values
+     */
+    private static Bitmap union(Map<String, Bitmap> bitmaps, Set<String> values) {
+        List<Bitmap> valueBitmaps = new ArrayList<>();
+        for (String value : values) {
+            Bitmap valueBitmap = bitmaps.get(value);
+            if (valueBitmap != null) {
+                valueBitmaps.add(valueBitmap);
+            }
+        }
+
+        return Bitmap.or(valueBitmaps);
+    }
+
+    /**
+     * Combine bitmaps of values matching a condition.
+     *
+     * @param bitmaps   bitmaps by values
+     * @param condition condition of a value
+     * @return ordinals of entries with any of the matching values
+     */
+    private static Bitmap union(Map<String, Bitmap> bitmaps, Predicate<String> condition) {
+        List<Bitmap> valueBitmaps = new ArrayList<>();
+        for (Map.Entry<String, Bitmap> value : bitmaps.entrySet()) {
+            if (condition.test(value.getKey())) {
+                valueBitmaps.add(value.getValue());
+            }
+        }
+
+        return Bitmap.or(valueBitmaps);
+    }
+
+    /**
+     * Convert values to lowercase.
+     *
+     * @param values values
+     * @return lowercase values
+     */
+    private static Set<String> lowercase(Set<String> values) {
+        Set<String> lowercase = new HashSet<>();
+        for (String value : values) {
+            lowercase.add(value.strip().toLowerCase(Locale.ROOT));
+        }
+
+        return lowercase;
+    }
+}
@@ -0,0 +1,222 @@
+package com.szczygiel.bibtex;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable {@link CharSequence} split into chunks, so it can be edited without copying all of it.
+ * <p>
+ * An {@link #edit} builds again only the chunks it overlaps and shares the others with the edited sequence,
+ * including chunks viewing the original text, so the edited sequence is built in time proportional to the edit
+ * and to the number of chunks.
+ * Characters are found by a binary search over beginnings of the chunks, skipped for consecutive characters.
+ */
+final class ChunkedCharSequence implements CharSequence {
+    /**
+     * Maximal number of characters of a chunk.
+     */
+    static final int MAX_CHUNK_LENGTH = 8192;
+
+    /**
+     * Sequences holding the chunks, either the original text or strings built by edits.
+     */
+    private final CharSequence[] sources;
+
+    /**
+     * Indexes in the {@link #sources} at which the chunks begin.
+     */
+    private final int[] sourceStarts;
+
+    /**
+     * Offsets at which the chunks begin, followed by the length of the sequence.
+     */
+    private final int[] starts;
+
+    /**
+     * Chunk of the last accessed character.
+     */
+    private int lastChunk;
+
+    /**
+     * Constructor for {@link ChunkedCharSequence}.
+     *
+     * @param sources      {@link #sources}
+     * @param sourceStarts {@link #sourceStarts}
+     * @param starts       {@link #starts}
+     */
+    private ChunkedCharSequence(CharSequence[] sources, int[] sourceStarts, int[] starts) {
+        this.sources = sources;
+        this.sourceStarts = sourceStarts;
+        this.starts = starts;
+    }
+
+    /**
+     * Split a text into chunks viewing it, without copying it.
+     *
+     * @param text text, it must not change later
+     * @return chunked text or the text itself when it is already chunked
+     */
+    static ChunkedCharSequence of(CharSequence text) {
+        if (text instanceof ChunkedCharSequence) {
+            return (ChunkedCharSequence) text;
+        }
+
+        int length = text.length();
+        int count = (length + MAX_CHUNK_LENGTH - 1) / MAX_CHUNK_LENGTH;
+        CharSequence[] sources = new CharSequence[count];
+        int[] sourceStarts = new int[count];
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            sources[i] = text;
+            sourceStarts[i] = i * MAX_CHUNK_LENGTH;
+            starts[i] = i * MAX_CHUNK_LENGTH;
+        }
+        starts[count] = length;
+
+        return new ChunkedCharSequence(sources, sourceStarts, starts);
+    }
+
+    /**
+     * Get number of characters.
+     *
+     * @return length
+     */
+    @Override
+    public int length() {
+        return starts[sources.length];
+    }
+
+    /**
+     * Get character at the given index.
+     *
+     * @param index index of the character
+     * @return character
+     */
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+        }
+
+        int chunk = lastChunk;
+        if (index < starts[chunk] || index >= starts[chunk + 1]) {
+            chunk = chunkOf(index);
+            lastChunk = chunk;
+        }
+
+        return sources[chunk].charAt(sourceStarts[chunk] + index - starts[chunk]);
+    }
+
+    /**
+     * Copy a part of this sequence.
+     *
+     * @param start beginning index, inclusive
+     * @param end   ending index, exclusive
+     * @return copied part
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length());
+        }
+
+        StringBuilder str = new StringBuilder(end - start);
+        append(str, start, end);
+        return str.toString();
+    }
+
+    /**
+     * Copy the whole sequence.
+     *
+     * @return copied sequence
+     */
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+    /**
+     * Replace a part of this sequence.
+     * <p>
+     * Chunks overlapping the edit are joined with the edit and split again into chunks of similar lengths.
+     * A chunk shorter than half of {@link #MAX_CHUNK_LENGTH} is joined also with the following one,
+     * so edits removing text don't leave many short chunks.
+     *
+     * @param offset        offset at which the edit begins
+     * @param removedLength number of removed characters
+     * @param insertedText  inserted text
+     * @return edited sequence, this sequence is not changed
+     */
+    ChunkedCharSequence edit(int offset, int removedLength, String insertedText) {
+        Objects.checkFromIndexSize(offset, removedLength, length());
+        int count = sources.length;
+        int end = offset + removedLength;
+
+        // Chunks containing the characters right before and right after the edit
+        int first = offset == 0 ? 0 : chunkOf(offset - 1);
+        int last = end == length() ? count : chunkOf(end) + 1;
+        int editedLength = starts[last] - starts[first] - removedLength + insertedText.length();
+        while (last < count && editedLength < MAX_CHUNK_LENGTH / 2) {
+            editedLength += starts[last + 1] - starts[last];
+            last++;
+        }
+
+        StringBuilder str = new StringBuilder(editedLength);
+        append(str, starts[first], offset);
+        str.append(insertedText);
+        append(str, end, starts[last]);
+        String edited = str.toString();
+
+        int pieces = (editedLength + MAX_CHUNK_LENGTH - 1) / MAX_CHUNK_LENGTH;
+        int editedCount = first + pieces + count - last;
+        CharSequence[] editedSources = Arrays.copyOf(sources, editedCount);
+        int[] editedSourceStarts = Arrays.copyOf(sourceStarts, editedCount);
+        int[] editedStarts = Arrays.copyOf(starts, editedCount + 1);
+        for (int i = 0; i < pieces; i++) {
+            int pieceStart = (int) ((long) i * editedLength / pieces);
+            editedSources[first + i] = edited;
+            editedSourceStarts[first + i] = pieceStart;
+            editedStarts[first + i] = starts[first] + pieceStart;
+        }
+
+        // Chunks after the edit are shared, only moved
+        int delta = insertedText.length() - removedLength;
+        System.arraycopy(sources, last, editedSources, first + pieces, count - last);
+        System.arraycopy(sourceStarts, last, editedSourceStarts, first + pieces, count - last);
+        for (int i = last; i <= count; i++) {
+            editedStarts[i - last + first + pieces] = starts[i] + delta;
+        }
+
+        return new ChunkedCharSequence(editedSources, editedSourceStarts, editedStarts);
+    }
+
+    /**
+     * Append a part of this sequence.
+     *
+     * @param str   builder to append to
+     * @param start beginning index, inclusive
+     * @param end   ending index, exclusive
+     */
+    private void append(StringBuilder str, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+
+        for (int chunk = chunkOf(start); chunk < sources.length && starts[chunk] < end; chunk++) {
+            int from = Math.max(start, starts[chunk]) - starts[chunk] + sourceStarts[chunk];
+            int to = Math.min(end, starts[chunk + 1]) - starts[chunk] + sourceStarts[chunk];
+            str.append(sources[chunk], from, to);
+        }
+    }
+
+    /**
+     * Find chunk containing a character.
+     *
+     * @param index index of the character
+     * @return index of the chunk
+     */
+    private int chunkOf(int index) {
+        int chunk = Arrays.binarySearch(starts, 0, sources.length, index);
+        return chunk >= 0 ? chunk : -chunk - 2;
+    }
+}
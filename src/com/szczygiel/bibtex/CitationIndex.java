@@ -0,0 +1,138 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Index of parsed {@link Entry entries} of a {@link Document} by their citation keys.
+ * <p>
+ * Finds crossreferenced entries and duplicates without scanning the whole document.
+ * Entries with the same citation key are kept in the order of their offsets, entries without citation key are
+ * not indexed.
+ */
+class CitationIndex {
+    /**
+     * First entry with given citation key.
+     */
+    private final Map<String, Entry> firstEntries = new HashMap<>();
+
+    /**
+     * All entries with given citation key, ordered by their offsets, only for keys of more than one entry.
+     */
+    private final Map<String, List<Entry>> duplicatedEntries = new HashMap<>();
+
+    /**
+     * Add entry.
+     * <p>
+     * Entries added in the order of the document are appended in constant time.
+     *
+     * @param entry parsed entry
+     */
+    void add(Entry entry) {
+        String citationKey = entry.getCitationKey();
+        if (citationKey.isEmpty()) {
+            return;
+        }
+
+        Entry first = firstEntries.putIfAbsent(citationKey, entry);
+        if (first == null) {
+            return;
+        }
+
+        List<Entry> entries = duplicatedEntries.computeIfAbsent(citationKey, key -> {
+            List<Entry> list = new ArrayList<>();
+            list.add(first);
+            return list;
+        });
+
+        int index = entries.size();
+        while (index > 0 && entries.get(index - 1).getOffset() > entry.getOffset()) {
+            index--;
+        }
+        entries.add(index, entry);
+        firstEntries.put(citationKey, entries.get(0));
+    }
+
+    /**
+     * Remove previously added entry.
+     *
+     * @param entry parsed entry
+     */
+    void remove(Entry entry) {
+        String citationKey = entry.getCitationKey();
+        List<Entry> entries = duplicatedEntries.get(citationKey);
+        if (entries == null) {
+            firstEntries.remove(citationKey, entry);
+            return;
+        }
+
+        // Entries are compared by identity
+        entries.remove(entry);
+        if (entries.size() == 1) {
+            duplicatedEntries.remove(citationKey);
+        }
+        firstEntries.put(citationKey, entries.get(0));
+    }
+
+    /**
+     * Get number of entries with given citation key.
+     *
+     * @param citationKey citation key
+     * @return number of entries
+     */
+    int count(String citationKey) {
+        List<Entry> entries = duplicatedEntries.get(citationKey);
+        if (entries != null) {
+            return entries.size();
+        }
+
+        return firstEntries.containsKey(citationKey) ? 1 : 0;
+    }
+
+    /**
+     * Get entries with given citation key.
+     *
+     * @param citationKey citation key
+     * @return entries ordered by their offsets
+     */
+    List<Entry> get(String citationKey) {
+        List<Entry> entries = duplicatedEntries.get(citationKey);
+        if (entries != null) {
+            return Collections.unmodifiableList(entries);
+        }
+
+        Entry entry = firstEntries.get(citationKey);
+        return entry == null ? Collections.emptyList() : Collections.singletonList(entry);
+    }
+
+    /**
+     * Get the first entry with given citation key.
+     *
+     * @param citationKey citation key
+     * @return entry or null when there is no entry with the key
+     */
+    Entry getFirst(String citationKey) {
+        return firstEntries.get(citationKey);
+    }
+
+    /**
+     * Get the first entry with given citation key, which matches a condition.
+     *
+     * @param citationKey citation key
+     * @param condition   condition of the entry
+     * @return entry or null when there is no such entry
+     */
+    Entry getFirst(String citationKey, Predicate<Entry> condition) {
+        for (Entry entry : get(citationKey)) {
+            if (condition.test(entry)) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,752 @@
+package com.szczygiel.bibtex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores {@link Entry entries} column-wise, without an object per entry, field or author.
+ * <p>
+ * Every entry is a row: its type, fields and authors are kept in primitive arrays
+ * and its citation key and field values are kept as UTF-8 text in large pages.
+ * Entry types, field keys and author names are replaced by IDs of {@link Dictionary dictionaries},
+ * so filters compare integers while scanning consecutive arrays.
+ * <p>
+ * Rows are read through a flyweight {@link View}, which can be moved between rows without allocating.
+ * Entries are meant to be added after {@link Document validation}, so they can be dropped afterwards.
+ */
+class ColumnarDocument {
+    /**
+     * Number of bits of an offset within a text page.
+     */
+    private static final int PAGE_BITS = 20;
+
+    /**
+     * Number of bytes of a text page.
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * Field types in order of their ordinals.
+     */
+    private static final Field.Type[] FIELD_TYPES = Field.Type.values();
+
+    /**
+     * Entry types of rows.
+     */
+    private final Dictionary types = new Dictionary(Short.MAX_VALUE + 1);
+
+    /**
+     * Field keys of rows, the first {@link FieldKeys#count()} IDs are the same as {@link FieldKeys} IDs.
+     */
+    private final Dictionary keys = new Dictionary(Short.MAX_VALUE + 1);
+
+    /**
+     * Authors' first names, last names and other parts of names of rows.
+     */
+    private final Dictionary names = new Dictionary(Integer.MAX_VALUE);
+
+    /**
+     * Authors' last names of rows, {@link AuthorIndex#normalize normalized} for filtering.
+     */
+    private final Dictionary lastNameKeys = new Dictionary(Integer.MAX_VALUE);
+
+    /**
+     * Pages of text of all rows.
+     */
+    private final List<byte[]> pages = new ArrayList<>();
+
+    /**
+     * Number of bytes of text of all rows.
+     */
+    private long textLength;
+
+    /**
+     * Number of rows.
+     */
+    private int size;
+
+    /**
+     * Entry type ID of every row.
+     */
+    private short[] typeIds = new short[16];
+
+    /**
+     * Line number of every row.
+     */
+    private int[] lineNumbers = new int[16];
+
+    /**
+     * Position of text of every row, followed by the end of text of the last row.
+     * <p>
+     * Text of a row is its citation key followed by values of its fields.
+     */
+    private long[] textStarts = new long[17];
+
+    /**
+     * Length of citation key of every row in bytes.
+     */
+    private int[] citationKeyLengths = new int[16];
+
+    /**
+     * Bit set of {@link FieldKeys IDs} of well-known fields of every row.
+     */
+    private long[] fieldIdMasks = new long[16];
+
+    /**
+     * Index of the first field of every row, followed by the number of all fields.
+     */
+    private int[] fieldStarts = new int[17];
+
+    /**
+     * Key ID of every field.
+     */
+    private short[] fieldKeys = new short[64];
+
+    /**
+     * Ordinal of {@link Field.Type} of every field.
+     */
+    private byte[] fieldTypes = new byte[64];
+
+    /**
+     * End of value of every field, relative to the text of its row.
+     */
+    private int[] fieldValueEnds = new int[64];
+
+    /**
+     * Index of the first author of every row, followed by the number of all authors.
+     */
+    private int[] authorStarts = new int[17];
+
+    /**
+     * First name ID of every author.
+     */
+    private int[] authorFirstNames = new int[32];
+
+    /**
+     * Last name ID of every author.
+     */
+    private int[] authorLastNames = new int[32];
+
+    /**
+     * ID of words preceding last name of every author, e.g. "van".
+     */
+    private int[] authorVons = new int[32];
+
+    /**
+     * ID of suffix of name of every author, e.g. "Jr.".
+     */
+    private int[] authorJrs = new int[32];
+
+    /**
+     * Normalized last name ID of every author.
+     */
+    private int[] authorLastNameKeys = new int[32];
+
+    /**
+     * Ordinal of {@link Entry.AuthorType} of every author.
+     */
+    private byte[] authorTypes = new byte[32];
+
+    /**
+     * Constructor for {@link ColumnarDocument}.
+     * <p>
+     * Creates empty document.
+     */
+    ColumnarDocument() {
+        for (int id = 0; id < FieldKeys.count(); id++) {
+            keys.id(FieldKeys.name(id));
+        }
+    }
+
+    /**
+     * Constructor for {@link ColumnarDocument}.
+     *
+     * @param entries {@link Entry entries} added as rows
+     */
+    ColumnarDocument(List<Entry> entries) {
+        this();
+        for (Entry entry : entries) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Add {@link Entry} as the last row.
+     *
+     * @param entry added entry
+     * @return index of the row
+     */
+    int add(Entry entry) {
+        int row = size;
+        List<Field> fields = entry.getFields();
+        int fieldStart = fieldStarts[row];
+        int authorStart = authorStarts[row];
+
+        ensureRows(row + 1);
+        ensureFields(fieldStart + fields.size());
+        ensureAuthors(authorStart + entry.getAuthors().size());
+
+        long textStart = textStarts[row];
+        typeIds[row] = (short) types.id(entry.getEntryType());
+        lineNumbers[row] = entry.getLineNumber();
+        citationKeyLengths[row] = appendText(entry.getCitationKey());
+
+        long mask = 0;
+        int field = fieldStart;
+        for (Field entryField : fields) {
+            int keyId = keys.id(entryField.getKey());
+            if (keyId < FieldKeys.count()) {
+                mask |= 1L << keyId;
+            }
+
+            if (entryField.getType() == Field.Type.NUMBER) {
+                appendText(Integer.toString(entryField.getInt()));
+            } else {
+                Object value = entryField.getValue();
+                appendText(value == null ? "" : value.toString());
+            }
+            fieldKeys[field] = (short) keyId;
+            fieldTypes[field] = (byte) entryField.getType().ordinal();
+            fieldValueEnds[field] = (int) (textLength - textStart);
+            field++;
+        }
+
+        int author = authorStart;
+        for (Entry.Author entryAuthor : entry.getAuthors()) {
+            authorFirstNames[author] = names.id(entryAuthor.firstName);
+            authorLastNames[author] = names.id(entryAuthor.lastName);
+            authorVons[author] = names.id(entryAuthor.von);
+            authorJrs[author] = names.id(entryAuthor.jr);
+            authorLastNameKeys[author] = lastNameKeys.id(AuthorIndex.normalize(entryAuthor.lastName));
+            authorTypes[author] = (byte) entryAuthor.authorType.ordinal();
+            author++;
+        }
+
+        fieldIdMasks[row] = mask;
+        fieldStarts[row + 1] = field;
+        authorStarts[row + 1] = author;
+        textStarts[row + 1] = textLength;
+        size++;
+        return row;
+    }
+
+    /**
+     * Get number of rows.
+     *
+     * @return number of rows
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get indexes of all rows.
+     *
+     * @return ascending row indexes
+     */
+    int[] rows() {
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[row] = row;
+        }
+
+        return rows;
+    }
+
+    /**
+     * Get a {@link View} of a row.
+     *
+     * @param row index of the row
+     * @return new view, which can be moved to other rows
+     */
+    View view(int row) {
+        return new View().moveTo(row);
+    }
+
+    /**
+     * Filter rows by their entry types.
+     * <p>
+     * Works like {@link Filter#filterTypes}, comparing type IDs instead of strings.
+     *
+     * @param rows       ascending indexes of rows to filter
+     * @param entryTypes wanted entry types
+     * @return indexes of rows of any of the given types
+     */
+    int[] filterTypes(int[] rows, Set<String> entryTypes) {
+        boolean[] wanted = new boolean[types.size()];
+        for (String entryType : entryTypes) {
+            int id = types.find(entryType);
+            if (id != -1) {
+                wanted[id] = true;
+            }
+        }
+
+        int[] filtered = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (wanted[typeIds[row]]) {
+                filtered[count++] = row;
+            }
+        }
+
+        return Arrays.copyOf(filtered, count);
+    }
+
+    /**
+     * Filter rows by authors' last names.
+     * <p>
+     * Works like {@link Filter#filterAuthors}, comparing IDs of normalized names instead of strings.
+     *
+     * @param rows    ascending indexes of rows to filter
+     * @param authors wanted authors' last names
+     * @return indexes of rows written by all of the given authors
+     */
+    int[] filterAuthors(int[] rows, Set<String> authors) {
+        Set<Integer> wantedIds = new LinkedHashSet<>();
+        for (String author : authors) {
+            int id = lastNameKeys.find(AuthorIndex.normalize(author));
+            if (id == -1) {
+                return new int[0];
+            }
+            wantedIds.add(id);
+        }
+
+        int[] wanted = new int[wantedIds.size()];
+        int index = 0;
+        for (int id : wantedIds) {
+            wanted[index++] = id;
+        }
+
+        int[] filtered = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (hasAuthors(row, wanted)) {
+                filtered[count++] = row;
+            }
+        }
+
+        return Arrays.copyOf(filtered, count);
+    }
+
+    /**
+     * Check if a row has authors with all of the given last names.
+     *
+     * @param row       index of the row
+     * @param lastNames IDs of normalized last names
+     * @return true if every last name belongs to some author of the row
+     */
+    private boolean hasAuthors(int row, int[] lastNames) {
+        for (int lastName : lastNames) {
+            boolean found = false;
+            for (int author = authorStarts[row]; author < authorStarts[row + 1]; author++) {
+                if (authorLastNameKeys[author] == lastName) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get approximate number of bytes used by the columns.
+     *
+     * @return used bytes
+     */
+    long usedBytes() {
+        long bytes = (long) pages.size() * PAGE_SIZE;
+        bytes += typeIds.length * 2L + lineNumbers.length * 4L + textStarts.length * 8L;
+        bytes += citationKeyLengths.length * 4L + fieldIdMasks.length * 8L + fieldStarts.length * 4L;
+        bytes += fieldKeys.length * 2L + fieldTypes.length + fieldValueEnds.length * 4L;
+        bytes += authorStarts.length * 4L + authorFirstNames.length * 4L + authorLastNames.length * 4L;
+        bytes += authorVons.length * 4L + authorJrs.length * 4L + authorLastNameKeys.length * 4L;
+        bytes += authorTypes.length;
+        return bytes;
+    }
+
+    /**
+     * Append text of a row to {@link #pages}.
+     *
+     * @param str appended text
+     * @return number of appended bytes
+     */
+    private int appendText(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        int copied = 0;
+        while (copied < bytes.length) {
+            int pageOffset = (int) (textLength & (PAGE_SIZE - 1));
+            if (pageOffset == 0) {
+                pages.add(new byte[PAGE_SIZE]);
+            }
+
+            // Text can continue on the next page
+            int count = Math.min(bytes.length - copied, PAGE_SIZE - pageOffset);
+            System.arraycopy(bytes, copied, pages.get(pages.size() - 1), pageOffset, count);
+            copied += count;
+            textLength += count;
+        }
+
+        return bytes.length;
+    }
+
+    /**
+     * Read text of a row from {@link #pages}.
+     *
+     * @param start  position of the text
+     * @param length number of bytes of the text
+     * @return decoded text
+     */
+    private String readText(long start, int length) {
+        if (length == 0) {
+            return "";
+        }
+
+        byte[] page = pages.get((int) (start >>> PAGE_BITS));
+        int pageOffset = (int) (start & (PAGE_SIZE - 1));
+        if (pageOffset + length <= PAGE_SIZE) {
+            return new String(page, pageOffset, length, StandardCharsets.UTF_8);
+        }
+
+        // Text continues on the next pages
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            page = pages.get((int) ((start + copied) >>> PAGE_BITS));
+            pageOffset = (int) ((start + copied) & (PAGE_SIZE - 1));
+            int count = Math.min(length - copied, PAGE_SIZE - pageOffset);
+            System.arraycopy(page, pageOffset, bytes, copied, count);
+            copied += count;
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Make room for given number of rows.
+     *
+     * @param rows number of rows
+     */
+    private void ensureRows(int rows) {
+        if (rows <= typeIds.length) {
+            return;
+        }
+
+        int capacity = Math.max(rows, typeIds.length * 2);
+        typeIds = Arrays.copyOf(typeIds, capacity);
+        lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        textStarts = Arrays.copyOf(textStarts, capacity + 1);
+        citationKeyLengths = Arrays.copyOf(citationKeyLengths, capacity);
+        fieldIdMasks = Arrays.copyOf(fieldIdMasks, capacity);
+        fieldStarts = Arrays.copyOf(fieldStarts, capacity + 1);
+        authorStarts = Arrays.copyOf(authorStarts, capacity + 1);
+    }
+
+    /**
+     * Make room for given number of fields.
+     *
+     * @param fields number of fields
+     */
+    private void ensureFields(int fields) {
+        if (fields <= fieldKeys.length) {
+            return;
+        }
+
+        int capacity = Math.max(fields, fieldKeys.length * 2);
+        fieldKeys = Arrays.copyOf(fieldKeys, capacity);
+        fieldTypes = Arrays.copyOf(fieldTypes, capacity);
+        fieldValueEnds = Arrays.copyOf(fieldValueEnds, capacity);
+    }
+
+    /**
+     * Make room for given number of authors.
+     *
+     * @param authors number of authors
+     */
+    private void ensureAuthors(int authors) {
+        if (authors <= authorLastNames.length) {
+            return;
+        }
+
+        int capacity = Math.max(authors, authorLastNames.length * 2);
+        authorFirstNames = Arrays.copyOf(authorFirstNames, capacity);
+        authorLastNames = Arrays.copyOf(authorLastNames, capacity);
+        authorVons = Arrays.copyOf(authorVons, capacity);
+        authorJrs = Arrays.copyOf(authorJrs, capacity);
+        authorLastNameKeys = Arrays.copyOf(authorLastNameKeys, capacity);
+        authorTypes = Arrays.copyOf(authorTypes, capacity);
+    }
+
+    /**
+     * Flyweight view of a single row of the {@link ColumnarDocument}.
+     * <p>
+     * Reads the columns on demand, so the same view can be moved across many rows.
+     */
+    class View {
+        /**
+         * Index of the viewed row.
+         */
+        private int row;
+
+        /**
+         * Move this view to another row.
+         *
+         * @param row index of the row
+         * @return this view
+         */
+        View moveTo(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("row " + row + " out of " + size);
+            }
+
+            this.row = row;
+            return this;
+        }
+
+        /**
+         * Get {@link #row}.
+         *
+         * @return row index
+         */
+        int getRow() {
+            return row;
+        }
+
+        /**
+         * Get entry type of the row.
+         *
+         * @return entry type
+         */
+        String getEntryType() {
+            return types.get(typeIds[row]);
+        }
+
+        /**
+         * Get citation key of the row.
+         *
+         * @return citation key
+         */
+        String getCitationKey() {
+            return readText(textStarts[row], citationKeyLengths[row]);
+        }
+
+        /**
+         * Get line number of the row.
+         *
+         * @return line number
+         */
+        int getLineNumber() {
+            return lineNumbers[row];
+        }
+
+        /**
+         * Get number of fields of the row.
+         *
+         * @return number of fields
+         */
+        int getFieldCount() {
+            return fieldStarts[row + 1] - fieldStarts[row];
+        }
+
+        /**
+         * Get key of a field of the row.
+         *
+         * @param index index of the field within the row
+         * @return field key
+         */
+        String getFieldKey(int index) {
+            return keys.get(fieldKeys[fieldStarts[row] + index]);
+        }
+
+        /**
+         * Get type of a field of the row.
+         *
+         * @param index index of the field within the row
+         * @return field type
+         */
+        Field.Type getFieldType(int index) {
+            return FIELD_TYPES[fieldTypes[fieldStarts[row] + index]];
+        }
+
+        /**
+         * Get value of a field of the row.
+         *
+         * @param index index of the field within the row
+         * @return {@link Integer} for {@link Field.Type#NUMBER} fields, {@link String} otherwise
+         */
+        Object getFieldValue(int index) {
+            int field = fieldStarts[row] + index;
+            int start = index == 0 ? citationKeyLengths[row] : fieldValueEnds[field - 1];
+            String value = readText(textStarts[row] + start, fieldValueEnds[field] - start);
+            if (fieldTypes[field] == Field.Type.NUMBER.ordinal()) {
+                return Integer.valueOf(value);
+            }
+
+            return value;
+        }
+
+        /**
+         * Check if the row has a well-known field.
+         *
+         * @param id {@link FieldKeys} ID of the field
+         * @return true if the row has the field
+         */
+        boolean hasField(int id) {
+            return (fieldIdMasks[row] & (1L << id)) != 0;
+        }
+
+        /**
+         * Get value of the first field of the row with given key.
+         *
+         * @param key field key
+         * @return value of the field or null when the row doesn't have it
+         */
+        Object getField(String key) {
+            int keyId = keys.find(key);
+            if (keyId == -1 || (keyId < FieldKeys.count() && !hasField(keyId))) {
+                return null;
+            }
+
+            for (int index = 0; index < getFieldCount(); index++) {
+                if (fieldKeys[fieldStarts[row] + index] == keyId) {
+                    return getFieldValue(index);
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Get authors' last names of the row.
+         *
+         * @return authors' last names
+         */
+        Set<String> getAuthorsLastNames() {
+            Set<String> lastNames = new LinkedHashSet<>();
+            for (int author = authorStarts[row]; author < authorStarts[row + 1]; author++) {
+                lastNames.add(names.get(authorLastNames[author]));
+            }
+
+            return lastNames;
+        }
+
+        /**
+         * Create an {@link Entry} with contents of the row, e.g. to {@link PrettyFormat format} it.
+         *
+         * @return new entry
+         */
+        Entry toEntry() {
+            Entry entry = new Entry();
+            entry.setEntryType(getEntryType());
+            entry.setCitationKey(getCitationKey());
+            entry.setLineNumber(getLineNumber());
+
+            for (int index = 0; index < getFieldCount(); index++) {
+                Field field = new Field();
+                field.setKey(getFieldKey(index));
+                field.setType(getFieldType(index));
+                field.setValue(getFieldValue(index));
+                entry.addField(field);
+            }
+
+            Entry.AuthorType[] authorTypeValues = Entry.AuthorType.values();
+            for (int author = authorStarts[row]; author < authorStarts[row + 1]; author++) {
+                entry.addAuthor(names.get(authorFirstNames[author]), names.get(authorVons[author]),
+                        names.get(authorLastNames[author]), names.get(authorJrs[author]),
+                        authorTypeValues[authorTypes[author]]);
+            }
+
+            return entry;
+        }
+    }
+
+    /**
+     * Assigns consecutive IDs to distinct strings.
+     */
+    private static class Dictionary {
+        /**
+         * IDs of strings.
+         */
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        /**
+         * Strings at indexes of their IDs.
+         */
+        private final List<String> strings = new ArrayList<>();
+
+        /**
+         * Maximal number of IDs.
+         */
+        private final int maxSize;
+
+        /**
+         * Constructor for {@link Dictionary}.
+         *
+         * @param maxSize {@link #maxSize}
+         */
+        Dictionary(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Get ID of a string, assigning the next one when the string is new.
+         *
+         * @param str string
+         * @return ID of the string
+         * @throws IllegalStateException when the string is new and there are {@link #maxSize} IDs already
+         */
+        int id(String str) {
+            Integer id = ids.get(str);
+            if (id == null) {
+                if (strings.size() == maxSize) {
+                    throw new IllegalStateException("more than " + maxSize + " distinct strings: " + str);
+                }
+
+                id = strings.size();
+                ids.put(str, id);
+                strings.add(str);
+            }
+
+            return id;
+        }
+
+        /**
+         * Find ID of a string without assigning it.
+         *
+         * @param str string
+         * @return ID of the string or -1 when it has none
+         */
+        int find(String str) {
+            return ids.getOrDefault(str, -1);
+        }
+
+        /**
+         * Get string of an ID.
+         *
+         * @param id ID
+         * @return string
+         */
+        String get(int id) {
+            return strings.get(id);
+        }
+
+        /**
+         * Get number of IDs.
+         *
+         * @return number of strings
+         */
+        int size() {
+            return strings.size();
+        }
+    }
+}
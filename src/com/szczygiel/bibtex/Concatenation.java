@@ -0,0 +1,116 @@
+package com.szczygiel.bibtex;
+
+import java.util.Arrays;
+
+/**
+ * Compiled value of a {@link Field.Type#CONCATENATION} or {@link Field.Type#REFERENCE} field.
+ * <p>
+ * Value is split once into parts, each of them either a literal text or a name of a string.
+ * Adjacent literals are joined, so evaluating the value only appends parts, in time linear in its length.
+ */
+final class Concatenation {
+    /**
+     * Literal texts and names of strings.
+     */
+    private final String[] parts;
+
+    /**
+     * Whether the part at the same index is a name of a string.
+     */
+    private final boolean[] references;
+
+    /**
+     * Constructor for {@link Concatenation}.
+     *
+     * @param parts      {@link #parts}
+     * @param references {@link #references}
+     */
+    private Concatenation(String[] parts, boolean[] references) {
+        this.parts = parts;
+        this.references = references;
+    }
+
+    /**
+     * Compile values separated by '#' character, e.g. "10 " # jan.
+     *
+     * @param input input containing the value
+     * @param start index at which the value begins
+     * @param end   index right after the value
+     * @return compiled value or null when the value is malformed
+     */
+    static Concatenation compile(CharSequence input, int start, int end) {
+        String[] parts = new String[4];
+        boolean[] references = new boolean[4];
+        int count = 0;
+        boolean literal = false;
+
+        Lexer lexer = new Lexer(input, start, end);
+        do {
+            Lexer.Token token = lexer.next();
+            if (token == Lexer.Token.LEFT_BRACE) {
+                token = lexer.braced();
+            }
+
+            String part;
+            boolean reference = false;
+            if (token == Lexer.Token.QUOTED || token == Lexer.Token.BRACED || token == Lexer.Token.NUMBER) {
+                part = lexer.contents();
+            } else if (token == Lexer.Token.IDENTIFIER) {
+                part = lexer.text();
+                reference = true;
+            } else {
+                return null;
+            }
+
+            // Join adjacent literals
+            if (literal && !reference) {
+                parts[count - 1] = parts[count - 1].concat(part);
+                continue;
+            }
+
+            if (count == parts.length) {
+                parts = Arrays.copyOf(parts, count * 2);
+                references = Arrays.copyOf(references, count * 2);
+            }
+            parts[count] = part;
+            references[count] = reference;
+            count++;
+            literal = !reference;
+        } while (lexer.next() == Lexer.Token.HASH);
+
+        if (lexer.token() != Lexer.Token.EOF) {
+            return null;
+        }
+
+        return new Concatenation(Arrays.copyOf(parts, count), Arrays.copyOf(references, count));
+    }
+
+    /**
+     * Get number of parts.
+     *
+     * @return number of parts
+     */
+    int size() {
+        return parts.length;
+    }
+
+    /**
+     * Get part at an index.
+     *
+     * @param index index of the part
+     * @return literal text or name of a string
+     */
+    String getPart(int index) {
+        return parts[index];
+    }
+
+    /**
+     * Check if part at an index is a name of a string.
+     *
+     * @param index index of the part
+     * @return true for names of strings, false for literal texts
+     */
+    boolean isReference(int index) {
+        return references[index];
+    }
+}
@@ -0,0 +1,182 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills {@link Entry entries} with fields of entries they crossreference, following chains of crossreferences.
+ * <p>
+ * Crossreferences form a graph, in which every entry points at most at one parent.
+ * Entry is resolved only after its parent, so it inherits also fields which the parent inherited,
+ * no matter in which order the entries are defined. Every entry is resolved once and its fields are reused by
+ * all of its children, so resolving takes time linear in the number of entries and inherited fields.
+ * Chains are followed without recursion, entries forming a cycle are reported and skipped.
+ */
+class CrossrefResolver {
+    /**
+     * Entries by their citation keys, used to find parents.
+     */
+    private final CitationIndex citationIndex;
+
+    /**
+     * {@link Diagnostics} to report invalid crossreferences to.
+     */
+    private final Diagnostics diagnostics;
+
+    /**
+     * States of entries to resolve, entries outside of it are already resolved.
+     */
+    private final Map<Entry, State> states = new IdentityHashMap<>();
+
+    /**
+     * Constructor for {@link CrossrefResolver}.
+     *
+     * @param citationIndex {@link #citationIndex}
+     * @param entries       entries to resolve, other entries are treated as already resolved
+     * @param diagnostics   {@link #diagnostics}
+     */
+    CrossrefResolver(CitationIndex citationIndex, Collection<Entry> entries, Diagnostics diagnostics) {
+        this.citationIndex = citationIndex;
+        this.diagnostics = diagnostics;
+        for (Entry entry : entries) {
+            if (entry != null) {
+                states.put(entry, State.UNRESOLVED);
+            }
+        }
+    }
+
+    /**
+     * Fill entry with fields of entries it crossreferences, directly or through other entries.
+     * <p>
+     * Fields defined by an entry take precedence over the inherited ones.
+     * Entry is filled even when its parent has an invalid crossreference, with fields the parent has.
+     *
+     * @param entry entry to resolve
+     * @return false if the crossreference of the entry is invalid or forms a cycle
+     */
+    boolean resolve(Entry entry) {
+        List<Entry> chain = new ArrayList<>();
+        List<Entry> parents = new ArrayList<>();
+
+        // Follow crossreferences up to an entry which is resolved or has no valid crossreference
+        Entry current = entry;
+        while (true) {
+            State state = states.get(current);
+            if (state == State.VISITING) {
+                reportCycle(chain, parents, current);
+                break;
+            } else if (state != State.UNRESOLVED) {
+                break;
+            }
+
+            String crossref = current.getCrossref();
+            Entry parent = crossref == null ? null : findParent(current, crossref);
+            if (crossref == null || parent == null) {
+                states.put(current, crossref == null ? State.RESOLVED : State.FAILED);
+                break;
+            }
+
+            states.put(current, State.VISITING);
+            chain.add(current);
+            parents.add(parent);
+            current = parent;
+        }
+
+        // Resolve the chain from its top, so every entry inherits fields its parent inherited
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            inherit(chain.get(i), parents.get(i));
+            states.put(chain.get(i), State.RESOLVED);
+        }
+
+        State state = states.get(entry);
+        return state == null || state == State.RESOLVED;
+    }
+
+    /**
+     * Find entry crossreferenced by an entry.
+     *
+     * @param entry    crossreferencing entry
+     * @param crossref crossreferenced citation key
+     * @return first entry with the citation key or null when the crossreference is invalid
+     */
+    private Entry findParent(Entry entry, String crossref) {
+        // Entry crossreferencing itself
+        if (crossref.equals(entry.getCitationKey())) {
+            diagnostics.report(Diagnostic.Code.SELF_CROSSREFERENCE, entry, "Entry self crossreference in line "
+                    + entry.getLineNumber() + ": " + entry.getCitationKey());
+            return null;
+        }
+
+        // First entry with the citation key, following ones are duplicates
+        Entry parent = citationIndex.getFirst(crossref);
+        if (parent == null) {
+            diagnostics.report(Diagnostic.Code.UNKNOWN_CROSSREFERENCE, entry, "Unknown crossreference in line "
+                    + entry.getLineNumber() + ": " + crossref);
+        }
+
+        return parent;
+    }
+
+    /**
+     * Report entries forming a cycle and remove them from the chain.
+     * <p>
+     * Entries crossreferencing the cycle stay in the chain and inherit fields the entries of the cycle define.
+     *
+     * @param chain   followed entries
+     * @param parents parents of the followed entries
+     * @param entry   entry of the chain which was reached again
+     */
+    private void reportCycle(List<Entry> chain, List<Entry> parents, Entry entry) {
+        int cycleStart = chain.lastIndexOf(entry);
+        for (Entry cycleEntry : chain.subList(cycleStart, chain.size())) {
+            diagnostics.report(Diagnostic.Code.CROSSREFERENCE_CYCLE, cycleEntry, "Crossreference cycle in line "
+                    + cycleEntry.getLineNumber() + ": " + cycleEntry.getCitationKey());
+            states.put(cycleEntry, State.FAILED);
+        }
+
+        chain.subList(cycleStart, chain.size()).clear();
+        parents.subList(cycleStart, parents.size()).clear();
+    }
+
+    /**
+     * Add fields of a parent, which the child doesn't define.
+     *
+     * @param child  crossreferencing entry
+     * @param parent crossreferenced entry
+     */
+    private static void inherit(Entry child, Entry parent) {
+        for (Field field : parent.getFields()) {
+            if (child.getField(field.getKey()) == null) {
+                child.inheritField(field);
+            }
+        }
+    }
+
+    /**
+     * State of resolving an entry.
+     */
+    private enum State {
+        /**
+         * Entry wasn't visited yet.
+         */
+        UNRESOLVED,
+
+        /**
+         * Entry is on the currently followed chain.
+         */
+        VISITING,
+
+        /**
+         * Entry inherited fields of its parents.
+         */
+        RESOLVED,
+
+        /**
+         * Crossreference of the entry is invalid or forms a cycle.
+         */
+        FAILED
+    }
+}
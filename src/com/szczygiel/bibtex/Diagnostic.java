@@ -0,0 +1,233 @@
+package com.szczygiel.bibtex;
+
+/**
+ * Single problem found while parsing or validating a BibTeX document.
+ * <p>
+ * Points at the place in the document where the problem was found.
+ */
+class Diagnostic {
+    /**
+     * Kind of the problem.
+     */
+    private final Code code;
+
+    /**
+     * Line at which the problem was found, counting from 1.
+     */
+    private final int lineNumber;
+
+    /**
+     * Column at which the problem was found, counting from 1.
+     */
+    private final int columnNumber;
+
+    /**
+     * Citation key of the entry with the problem or null when it is not known.
+     */
+    private final String citationKey;
+
+    /**
+     * Human readable description of the problem.
+     */
+    private final String message;
+
+    /**
+     * Constructor for {@link Diagnostic}.
+     *
+     * @param code         {@link #code}
+     * @param lineNumber   {@link #lineNumber}
+     * @param columnNumber {@link #columnNumber}
+     * @param citationKey  {@link #citationKey}
+     * @param message      {@link #message}
+     */
+    Diagnostic(Code code, int lineNumber, int columnNumber, String citationKey, String message) {
+        this.code = code;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.citationKey = citationKey;
+        this.message = message;
+    }
+
+    /**
+     * Get {@link Severity} of the {@link #code}.
+     *
+     * @return severity
+     */
+    Severity getSeverity() {
+        return code.severity;
+    }
+
+    /**
+     * Get {@link #code}.
+     *
+     * @return code
+     */
+    Code getCode() {
+        return code;
+    }
+
+    /**
+     * Get {@link #lineNumber}.
+     *
+     * @return line number
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get {@link #columnNumber}.
+     *
+     * @return column number
+     */
+    int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Get {@link #citationKey}.
+     *
+     * @return citation key or null
+     */
+    String getCitationKey() {
+        return citationKey;
+    }
+
+    /**
+     * Get {@link #message}.
+     *
+     * @return message
+     */
+    String getMessage() {
+        return message;
+    }
+
+    /**
+     * Convert diagnostic into a single line, e.g. "12:1: error: unknown crossreference: book".
+     *
+     * @return readable diagnostic
+     */
+    @Override
+    public String toString() {
+        return lineNumber + ":" + columnNumber + ": " + code.severity.name().toLowerCase() + ": " + message;
+    }
+
+    /**
+     * How serious a problem is.
+     */
+    enum Severity {
+        /**
+         * Part of an entry was dropped or guessed, the entry is kept.
+         */
+        WARNING,
+
+        /**
+         * Entry was skipped.
+         */
+        ERROR
+    }
+
+    /**
+     * Kinds of problems.
+     */
+    enum Code {
+        /**
+         * Entry without closing bracket, ended where the next entry begins.
+         */
+        UNCLOSED_ENTRY(Severity.WARNING),
+
+        /**
+         * Entry longer than {@link Parser#getMaxEntryLength()}.
+         */
+        ENTRY_TOO_LONG(Severity.ERROR),
+
+        /**
+         * Entry taking longer to parse than {@link Parser#getMaxEntryNanos()}.
+         */
+        ENTRY_TOO_SLOW(Severity.ERROR),
+
+        /**
+         * Entry type not followed by a bracket.
+         */
+        MALFORMED_ENTRY(Severity.ERROR),
+
+        /**
+         * Entry other than @STRING without citation key.
+         */
+        MISSING_CITATION_KEY(Severity.ERROR),
+
+        /**
+         * Field which cannot be parsed.
+         */
+        MALFORMED_FIELD(Severity.WARNING),
+
+        /**
+         * Reference to a string which isn't defined.
+         */
+        UNDEFINED_STRING(Severity.WARNING),
+
+        /**
+         * Concatenation which cannot be computed.
+         */
+        MALFORMED_CONCATENATION(Severity.WARNING),
+
+        /**
+         * String defined again.
+         */
+        STRING_REDEFINITION(Severity.WARNING),
+
+        /**
+         * Value of a string which isn't a string.
+         */
+        MALFORMED_STRING(Severity.WARNING),
+
+        /**
+         * String referencing itself through other strings.
+         */
+        STRING_CYCLE(Severity.WARNING),
+
+        /**
+         * Entry with citation key of a previous entry.
+         */
+        DUPLICATE_ENTRY(Severity.ERROR),
+
+        /**
+         * Entry crossreferencing itself.
+         */
+        SELF_CROSSREFERENCE(Severity.ERROR),
+
+        /**
+         * Entry crossreferencing entry which doesn't exist.
+         */
+        UNKNOWN_CROSSREFERENCE(Severity.ERROR),
+
+        /**
+         * Entry crossreferencing itself through other entries.
+         */
+        CROSSREFERENCE_CYCLE(Severity.ERROR),
+
+        /**
+         * Entry of a type unknown to {@link SingletonSpecificEntries}.
+         */
+        UNKNOWN_ENTRY_TYPE(Severity.ERROR),
+
+        /**
+         * Entry missing a required field.
+         */
+        MISSING_FIELD(Severity.ERROR);
+
+        /**
+         * Severity of problems of this kind.
+         */
+        private final Severity severity;
+
+        /**
+         * Constructor for {@link Code}.
+         *
+         * @param severity {@link #severity}
+         */
+        Code(Severity severity) {
+            this.severity = severity;
+        }
+    }
+}
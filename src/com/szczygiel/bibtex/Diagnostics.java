@@ -0,0 +1,96 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects {@link Diagnostic diagnostics} found while parsing and validating a document.
+ * <p>
+ * Problems are reported instead of thrown, so a single bad entry is skipped without stopping the whole parse.
+ * Diagnostics can be reported concurrently by threads parsing entries in parallel.
+ */
+class Diagnostics {
+    /**
+     * Reported diagnostics, in the order of reporting.
+     */
+    private final Queue<Diagnostic> diagnostics = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Report a problem.
+     *
+     * @param code         kind of the problem
+     * @param lineNumber   line at which the problem was found
+     * @param columnNumber column at which the problem was found
+     * @param citationKey  citation key of the entry with the problem or null
+     * @param message      description of the problem
+     */
+    void report(Diagnostic.Code code, int lineNumber, int columnNumber, String citationKey, String message) {
+        diagnostics.add(new Diagnostic(code, lineNumber, columnNumber, citationKey, message));
+    }
+
+    /**
+     * Report a problem of an entry, found at the beginning of the entry.
+     *
+     * @param code    kind of the problem
+     * @param entry   entry with the problem
+     * @param message description of the problem
+     */
+    void report(Diagnostic.Code code, Entry entry, String message) {
+        String citationKey = entry.getCitationKey().isEmpty() ? null : entry.getCitationKey();
+        report(code, entry.getLineNumber(), entry.getColumnNumber(), citationKey, message);
+    }
+
+    /**
+     * Report a problem of a field.
+     *
+     * @param code        kind of the problem
+     * @param field       field with the problem
+     * @param citationKey citation key of the entry containing the field or null
+     * @param message     description of the problem
+     */
+    void report(Diagnostic.Code code, Field field, String citationKey, String message) {
+        report(code, field.getLineNumber(), field.getColumnNumber(), citationKey, message);
+    }
+
+    /**
+     * Get reported diagnostics ordered by their position in the document.
+     * <p>
+     * Order doesn't depend on the order in which parallel workers reported them.
+     *
+     * @return list of {@link Diagnostic diagnostics}
+     */
+    List<Diagnostic> getDiagnostics() {
+        List<Diagnostic> list = new ArrayList<>(diagnostics);
+        list.sort(Comparator.comparingInt(Diagnostic::getLineNumber).thenComparingInt(Diagnostic::getColumnNumber));
+        return list;
+    }
+
+    /**
+     * Count reported diagnostics of given severity.
+     *
+     * @param severity severity of counted diagnostics
+     * @return number of diagnostics
+     */
+    int count(Diagnostic.Severity severity) {
+        int count = 0;
+        for (Diagnostic diagnostic : diagnostics) {
+            if (diagnostic.getSeverity() == severity) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Check if any {@link Diagnostic.Severity#ERROR error} was reported.
+     *
+     * @return true if some entry was skipped
+     */
+    boolean hasErrors() {
+        return count(Diagnostic.Severity.ERROR) > 0;
+    }
+}
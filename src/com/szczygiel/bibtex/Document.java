@@ -2,10 +2,21 @@ package com.szczygiel.bibtex;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Stores whole BibTeX document as list of {@link Entry entries}.
@@ -13,15 +24,104 @@ import java.util.ListIterator;
  * Provides {@link Filter filtering} and {@link PrettyFormat printing ASCII tables}.
  */
 public class Document {
+    /**
+     * Number of parsed entries of {@link EntryBlock blocks} created at once, blocks twice as big are split.
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    /**
+     * Edits affecting more than this fraction of entries scan all entries instead of looking them up one by one.
+     */
+    private static final int MAX_PARTIAL_FRACTION = 16;
+
     /**
      * List of {@link Entry entries} contained in a document.
      */
     private List<Entry> entries;
 
     /**
-     * Contents of a BibTeX file as a {@link String}.
+     * Parsed {@link Entry entries} with computed strings, before validation.
+     * <p>
+     * Kept in the order of the input, including @STRING entries, so that edits can be mapped onto them.
+     */
+    private List<Entry> parsedEntries;
+
+    /**
+     * Validated entries at indexes of {@link #parsedEntries} they were created from, null for skipped entries.
+     */
+    private List<Entry> validatedEntries;
+
+    /**
+     * Strings defined by @STRING entries of the document.
+     */
+    private Strings strings;
+
+    /**
+     * Strings and entries which {@link #parsedEntries} depend on.
+     */
+    private EntryDependencies dependencies;
+
+    /**
+     * {@link #parsedEntries} by their citation keys.
+     */
+    private CitationIndex citationIndex;
+
+    /**
+     * Problems found by the last {@link #parse()} or {@link #applyEdit edit}.
+     */
+    private Diagnostics diagnostics = new Diagnostics();
+
+    /**
+     * {@link SourceMap} of {@link #fileContents}, created by the first {@link #applyEdit edit}.
+     */
+    private SourceMap sourceMap;
+
+    /**
+     * Blocks of consecutive {@link #parsedEntries}, which positions of the entries are relative to.
+     * <p>
+     * Created by the first {@link #applyEdit edit}, so edits move only blocks after them.
+     */
+    private List<EntryBlock> blocks;
+
+    /**
+     * Contents of a BibTeX file.
+     * <p>
+     * It is either a {@link String}, a {@link MappedCharSequence} view of a memory-mapped file
+     * or a {@link ChunkedCharSequence} of an edited document.
+     */
+    private CharSequence fileContents;
+
+    /**
+     * {@link File} the {@link #fileContents} were loaded from, null for documents loaded from a string.
+     */
+    private File file;
+
+    /**
+     * {@link Parser} used for parsing {@link #fileContents}.
+     * <p>
+     * Parser holds no state of a parse, so it can be shared between documents parsed concurrently.
+     */
+    private Parser parser = new Parser();
+
+    /**
+     * Index of {@link #entries} by their authors, null until it is needed.
+     */
+    private AuthorIndex authorIndex;
+
+    /**
+     * Bitmap indexes of {@link #entries} by their types, years, journals and publishers, null until they are needed.
+     */
+    private BitmapIndex bitmapIndex;
+
+    /**
+     * Full-text index of {@link #entries}, null until it is needed, then updated by edits.
+     */
+    private TextIndex textIndex;
+
+    /**
+     * Parser of authors of {@link #entries}, caching values repeated across the document.
      */
-    private String fileContents;
+    private final NameParser nameParser = new NameParser();
 
     /**
      * Get {@link #entries}.
@@ -32,6 +132,105 @@ public class Document {
         return entries;
     }
 
+    /**
+     * Get {@link #authorIndex}, building it on the first call.
+     * <p>
+     * {@link #applyEdit Edits} update it in place, edits adding or removing entries drop it to be built again.
+     *
+     * @return index of entries by their authors
+     */
+    AuthorIndex getAuthorIndex() {
+        if (authorIndex == null) {
+            authorIndex = new AuthorIndex(entries);
+        }
+
+        return authorIndex;
+    }
+
+    /**
+     * Get {@link #bitmapIndex}, building it on the first call.
+     * <p>
+     * {@link #applyEdit Edits} update it in place, edits adding or removing entries drop it to be built again.
+     *
+     * @return bitmap indexes of entries
+     */
+    BitmapIndex getBitmapIndex() {
+        if (bitmapIndex == null) {
+            bitmapIndex = new BitmapIndex(entries);
+        }
+
+        return bitmapIndex;
+    }
+
+    /**
+     * Get {@link #textIndex}, building it on the first call.
+     *
+     * @return full-text index of entries
+     */
+    TextIndex getTextIndex() {
+        if (textIndex == null) {
+            textIndex = new TextIndex(entries);
+        }
+
+        return textIndex;
+    }
+
+    /**
+     * Find entries best matching the words of a text, ranked by BM25.
+     *
+     * @param text  searched text
+     * @param count maximal number of found entries
+     * @return found entries from the best matching one
+     * @see TextIndex#search(String, int)
+     */
+    List<TextIndex.Hit> search(String text, int count) {
+        return getTextIndex().search(text, count);
+    }
+
+    /**
+     * Get validated entry by its citation key.
+     * <p>
+     * Looks the entry up in the {@link #citationIndex} instead of scanning the document.
+     *
+     * @param citationKey citation key, compared case-insensitively
+     * @return validated entry or null when the document has no valid entry with the key
+     */
+    Entry getEntry(String citationKey) {
+        if (citationIndex == null) {
+            return null;
+        }
+
+        // Duplicates are skipped, so at most one of the entries is valid
+        for (Entry entry : citationIndex.get(citationKey.toLowerCase())) {
+            Entry validated = validatedEntries.get(indexOf(entry));
+            if (validated != null) {
+                return validated;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get {@link #diagnostics}.
+     * <p>
+     * After an edit, only problems of the parsed again entries are reported.
+     *
+     * @return diagnostics
+     */
+    Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Set {@link #parser}.
+     *
+     * @param parser parser
+     */
+    void setParser(Parser parser) {
+        this.parser = parser;
+    }
+
     /**
      * Load BibTeX document from {@link File}.
      *
@@ -41,6 +240,41 @@ public class Document {
     boolean loadFile(File file) {
         try {
             fileContents = new String(Files.readAllBytes(file.toPath()));
+            parsedEntries = null;
+            sourceMap = null;
+            this.file = file;
+        } catch (IOException e) {
+            System.err.println("unable to open file: " + file.getAbsolutePath());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Load BibTeX document by memory-mapping UTF-8 encoded {@link File}.
+     * <p>
+     * File is parsed directly from the mapping, only parsed values are copied onto the heap.
+     * Offsets and columns of {@link Entry entries} and {@link Field fields} are then counted in bytes.
+     * Files bigger than 2 GB cannot be mapped.
+     *
+     * @param file BibTeX {@link File}.
+     * @return success
+     */
+    boolean mapFile(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                System.err.println("file too big to map: " + file.getAbsolutePath());
+                return false;
+            }
+
+            // Mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            fileContents = new MappedCharSequence(buffer);
+            parsedEntries = null;
+            sourceMap = null;
+            this.file = file;
         } catch (IOException e) {
             System.err.println("unable to open file: " + file.getAbsolutePath());
             return false;
@@ -56,231 +290,842 @@ public class Document {
      */
     void loadString(String fileContents) {
         this.fileContents = fileContents;
+        this.parsedEntries = null;
+        this.sourceMap = null;
+        this.file = null;
+    }
+
+    /**
+     * Load the {@link File} again, parsing again only the changed part of the document.
+     * <p>
+     * The changed part is found by comparing common prefix and suffix of the old and the new contents,
+     * then it is {@link #applyEdit applied as a single edit}.
+     * Memory-mapped document sees changes of the file through its mapping, so it cannot be compared
+     * with the new contents - it is loaded onto the heap and parsed again as a whole.
+     *
+     * @return true if the contents have changed
+     * @throws IOException when the file cannot be read
+     */
+    boolean reload() throws IOException {
+        if (file == null) {
+            throw new IllegalStateException("document wasn't loaded from a file");
+        }
+
+        if (fileContents instanceof MappedCharSequence) {
+            if (!loadFile(file)) {
+                throw new IOException("unable to open file: " + file.getAbsolutePath());
+            }
+
+            parse();
+            return true;
+        }
+
+        String contents = new String(Files.readAllBytes(file.toPath()));
+        int oldLength = fileContents.length();
+        int newLength = contents.length();
+
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLength, newLength);
+        while (prefix < maxPrefix && fileContents.charAt(prefix) == contents.charAt(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix
+                && fileContents.charAt(oldLength - suffix - 1) == contents.charAt(newLength - suffix - 1)) {
+            suffix++;
+        }
+
+        if (prefix == oldLength && prefix == newLength) {
+            return false;
+        }
+
+        applyEdit(prefix, oldLength - prefix - suffix, contents.substring(prefix, newLength - suffix));
+        return true;
     }
 
     /**
      * Parse BibTeX document.
+     * <p>
+     * Invalid entries are reported to {@link #getDiagnostics()} and skipped, the rest of the document is kept.
      */
     void parse() {
-        if (fileContents.equals("")) {
+        diagnostics = new Diagnostics();
+        flatten();
+        parsedEntries = parser.parseDocument(fileContents, diagnostics);
+        process();
+    }
+
+    /**
+     * Parse BibTeX document, parsing its entries in parallel on the common {@link ForkJoinPool}.
+     */
+    void parseParallel() {
+        diagnostics = new Diagnostics();
+        flatten();
+        parsedEntries = parser.parseDocument(fileContents, ForkJoinPool.commonPool(), diagnostics);
+        process();
+    }
+
+    /**
+     * Copy edited {@link #fileContents} into a single string, so the whole document is parsed without looking up
+     * chunks of the text.
+     */
+    private void flatten() {
+        if (fileContents instanceof ChunkedCharSequence) {
+            fileContents = fileContents.toString();
+        }
+    }
+
+    /**
+     * Apply an edit of the document text, parsing again only the affected entries.
+     * <p>
+     * Entries overlapping the edit are parsed again from the edited text, together with the entry before them.
+     * Entries depending on changed @STRING entries or on crossreferenced entries with changed citation keys
+     * are parsed again from their own text, other entries are only moved.
+     * Entries after the edit are moved by moving their {@link EntryBlock blocks}.
+     * {@link #getEntries() List of entries} is updated in place, indexes by ordinals are updated only for
+     * replaced entries, unless the number of entries changes.
+     * Problems of the parsed again entries are reported to {@link #getDiagnostics()}, invalid entries are skipped.
+     * Document which wasn't parsed yet is only edited.
+     *
+     * @param offset        offset at which the edit begins
+     * @param removedLength number of removed characters
+     * @param insertedText  inserted text
+     */
+    void applyEdit(int offset, int removedLength, String insertedText) {
+        int length = fileContents.length();
+        if (offset < 0 || removedLength < 0 || offset + removedLength > length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", removed: " + removedLength
+                    + ", length: " + length);
+        }
+
+        // Memory-mapped contents are copied, so the edited document doesn't follow changes of the file
+        ChunkedCharSequence contents = ChunkedCharSequence.of(
+                fileContents instanceof MappedCharSequence ? fileContents.toString() : fileContents);
+        ChunkedCharSequence edited = contents.edit(offset, removedLength, insertedText);
+
+        if (parsedEntries == null) {
+            fileContents = edited;
             return;
         }
 
-        entries = SingletonParser.getInstance().parseDocument(fileContents);
+        if (sourceMap == null) {
+            sourceMap = new SourceMap(contents);
+        }
+        if (blocks == null) {
+            createBlocks();
+        }
+        SourceMap editedMap = new SourceMap(sourceMap, edited, offset, removedLength, insertedText.length());
+        int offsetDelta = insertedText.length() - removedLength;
+        int lineDelta = editedMap.getLineCount() - sourceMap.getLineCount();
 
-        Strings strings = new Strings();
-        strings.extractFrom(entries);
+        // Parse again entries overlapping the edit and the one before them, in case it lacks closing bracket
+        int overlapping = firstEntryEndingAfter(offset);
+        int first = Math.max(0, overlapping - 1);
+        int last = firstEntryStartingAfter(offset + removedLength);
+        int start = overlapping == 0 ? 0 : parsedEntries.get(first).getOffset();
+        int end = last < parsedEntries.size() ? parsedEntries.get(last).getOffset() : length;
+        List<Entry> replaced = new ArrayList<>(parsedEntries.subList(first, last));
+        Diagnostics editDiagnostics = new Diagnostics();
+        // Parsed text is copied, so fields backed by it don't keep the whole document
+        String part = edited.subSequence(start, end + offsetDelta).toString();
+        List<Entry> reparsed = parser.parseDocument(part, start, editedMap, editDiagnostics);
 
-        for (Entry entry : entries) {
-            entry.computeStrings(strings);
-            entry.computeConcatenation(strings);
+        // Find citation keys and strings changed by the edit
+        Set<String> changedKeys = new HashSet<>();
+        Set<String> stringNames = new HashSet<>();
+        for (List<Entry> changed : List.of(replaced, reparsed)) {
+            for (Entry entry : changed) {
+                changedKeys.add(entry.getCitationKey());
+                if (entry.getEntryType().equals("string")) {
+                    for (Field field : entry.getFields()) {
+                        stringNames.add(field.getKey());
+                    }
+                }
+            }
         }
 
-        // Cleanup UNKNOWN fields
-        for (Entry entry : entries) {
-            ListIterator<Field> fieldsIterator = entry.fieldsIterator();
-            while (fieldsIterator.hasNext()) {
-                if (fieldsIterator.next().getType() == Field.Type.UNKNOWN) {
-                    fieldsIterator.remove();
+        Strings editedStrings = strings;
+        Set<String> changedStrings = new HashSet<>();
+        if (!stringNames.isEmpty()) {
+            // Problems of strings outside of the edit were already reported
+            Diagnostics ignored = new Diagnostics();
+            editedStrings = new Strings();
+            editedStrings.extractFrom(parsedEntries.subList(0, first), ignored);
+            editedStrings.extractFrom(reparsed, editDiagnostics);
+            editedStrings.extractFrom(parsedEntries.subList(last, parsedEntries.size()), ignored);
+            editedStrings.resolveAll();
+
+            // Strings outside of the edit can change too, when they reference the edited ones
+            Set<String> names = strings.getNames();
+            names.addAll(editedStrings.getNames());
+            for (String name : names) {
+                if (!Objects.equals(strings.getString(name), editedStrings.getString(name))) {
+                    changedStrings.add(name);
                 }
             }
         }
 
-        checkDuplicates();
-        fillCrossreferences();
-        validate();
-        fillAuthors();
-    }
+        // Parse again entries outside of the edit depending on changed entries or strings, from their own text
+        Set<Entry> dependentEntries = dependencies.findDependents(changedKeys, changedStrings);
 
-    /**
-     * Check for duplicates - entries having same citation key.
-     */
-    private void checkDuplicates() {
-        for (Entry entry : entries) {
-            SingletonSpecificEntries specificEntries = SingletonSpecificEntries.getInstance();
-            SingletonSpecificEntries.SpecificEntry specificEntry = specificEntries.get(entry.getEntryType());
-            if (specificEntry == null) {
+        // Entries sharing citation key with changed entries can become or stop being duplicates
+        for (String citationKey : findDuplicatedKeys(replaced, reparsed)) {
+            dependentEntries.addAll(citationIndex.get(citationKey));
+        }
+
+        int[] dependents = indexesOf(dependentEntries, first, last);
+        List<Entry> replacedDependents = new ArrayList<>(dependents.length);
+        Entry[] reparsedDependents = new Entry[dependents.length];
+        for (int i = 0; i < dependents.length; i++) {
+            Entry entry = parsedEntries.get(dependents[i]);
+            int entryStart = entry.getOffset() + (dependents[i] >= last ? offsetDelta : 0);
+            String text = edited.subSequence(entryStart, entryStart + entry.getLength()).toString();
+            replacedDependents.add(entry);
+            reparsedDependents[i] = parser.parseEntry(new Lexer(text), entryStart, editedMap, editDiagnostics);
+        }
+
+        // Validated entries replaced by the edit, with their ordinals found before entries are moved
+        int reparsedEnd = first + reparsed.size();
+        int regionChange = 0;
+        while (regionChange < dependents.length && dependents[regionChange] < first) {
+            regionChange++;
+        }
+        int[] changed = new int[dependents.length + 1];
+        System.arraycopy(dependents, 0, changed, 0, regionChange);
+        changed[regionChange] = first;
+        System.arraycopy(dependents, regionChange, changed, regionChange + 1, dependents.length - regionChange);
+        int[] ordinals = ordinalsOf(changed);
+        List<EntriesChange> changes = new ArrayList<>(changed.length);
+        for (int i = 0; i < changed.length; i++) {
+            if (i == regionChange) {
+                changes.add(new EntriesChange(ordinals[i], validatedEntries.subList(first, last), first, reparsedEnd));
+            } else {
+                int index = changed[i] < first ? changed[i] : changed[i] - last + reparsedEnd;
+                changes.add(new EntriesChange(ordinals[i], validatedEntries.subList(changed[i], changed[i] + 1),
+                        index, index + 1));
+            }
+        }
+
+        // Move entries after the edit, so all entries are ordered by offsets in the citation index
+        EntryBlock insertBlock = shiftBlocks(first, last, dependents, offsetDelta, lineDelta);
+
+        // Replace affected entries in place, entries after the edit keep their indexes unless their number changes
+        replaceRange(parsedEntries, first, last, reparsed);
+        replaceRange(validatedEntries, first, last, Collections.nCopies(reparsed.size(), null));
+        insertBlock.setSize(insertBlock.getSize() + reparsed.size());
+        for (Entry entry : reparsed) {
+            entry.setBlock(insertBlock);
+        }
+
+        int[] affected = new int[reparsed.size() + dependents.length];
+        int affectedCount = 0;
+        for (int i = first; i < reparsedEnd; i++) {
+            affected[affectedCount++] = i;
+        }
+        for (int i = 0; i < dependents.length; i++) {
+            int index = dependents[i] < first ? dependents[i] : dependents[i] - last + reparsedEnd;
+            EntryBlock block = replacedDependents.get(i).getBlock();
+            parsedEntries.set(index, reparsedDependents[i]);
+            validatedEntries.set(index, null);
+            if (reparsedDependents[i] != null) {
+                reparsedDependents[i].setBlock(block);
+            } else {
+                block.setSize(block.getSize() - 1);
+            }
+            affected[affectedCount++] = index;
+        }
+        Arrays.sort(affected);
+
+        for (int index : affected) {
+            Entry entry = parsedEntries.get(index);
+            if (entry != null) {
+                resolve(entry, editedStrings, editDiagnostics);
+            }
+        }
+
+        List<Entry> removedEntries = new ArrayList<>(replaced);
+        removedEntries.addAll(replacedDependents);
+        List<Entry> addedEntries = new ArrayList<>(reparsed);
+        addedEntries.addAll(Arrays.asList(reparsedDependents));
+        replaceDependencies(removedEntries, addedEntries);
+        Map<String, Entry> firstSpecificEntries = new HashMap<>();
+        CrossrefResolver resolver = new CrossrefResolver(citationIndex, addedEntries, editDiagnostics);
+        for (int index : affected) {
+            Entry entry = parsedEntries.get(index);
+            if (entry == null) {
                 continue;
             }
 
-            String citationKey = entry.getCitationKey();
-            for (Entry otherEntry : entries) {
-                // Don't compare entry to itself
-                if (entry == otherEntry) {
-                    continue;
+            if (isDuplicate(entry, firstSpecificEntries)) {
+                reportDuplicate(entry, editDiagnostics);
+                continue;
+            }
+            if (resolver.resolve(entry)) {
+                Entry validated = validate(entry, editDiagnostics);
+                if (validated != null) {
+                    validated.fillAuthors(nameParser);
                 }
+                validatedEntries.set(index, validated);
+            }
+        }
+
+        boolean ordinalsKept = true;
+        for (EntriesChange entriesChange : changes) {
+            entriesChange.collectAdded(validatedEntries);
+            ordinalsKept &= entriesChange.removed.size() == entriesChange.added.size();
+        }
 
-                String otherCitationKey = otherEntry.getCitationKey();
-                if (citationKey.equals(otherCitationKey)) {
-                    throw new IllegalArgumentException("Entry redefinition in line " +
-                            otherEntry.getLineNumber() + ": " + citationKey);
+        if (changes.size() <= entries.size() / MAX_PARTIAL_FRACTION + 1) {
+            // Entries are replaced from the end, so ordinals of the preceding changes stay valid
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                EntriesChange entriesChange = changes.get(i);
+                replaceRange(entries, entriesChange.ordinal, entriesChange.ordinal + entriesChange.removed.size(),
+                        entriesChange.added);
+            }
+        } else {
+            entries.clear();
+            for (Entry validated : validatedEntries) {
+                if (validated != null) {
+                    entries.add(validated);
                 }
             }
         }
-    }
 
-    /**
-     * Fill fields from crossreferenced entries.
-     */
-    private void fillCrossreferences() {
-        for (Entry entry : entries) {
-            boolean crossreferences = false;
-            Entry crossrefEntry = null;
-
-            for (Field field : entry.getFields()) {
-                if (field.getKey().equals("crossref") && field.getType() == Field.Type.STRING) {
-                    crossreferences = true;
-                    String crossref = (String) field.getValue();
-                    crossref = crossref.toLowerCase();
-
-                    // Entry crossreferencing itself
-                    if (crossref.equals(entry.getCitationKey())) {
-                        throw new IllegalArgumentException("Entry self crossreference in line " +
-                                entry.getLineNumber() + ": " + entry.getCitationKey());
+        // Indexes by ordinals are updated only when ordinals of other entries are kept, otherwise built again
+        if (!ordinalsKept) {
+            authorIndex = null;
+            bitmapIndex = null;
+        }
+        for (EntriesChange entriesChange : changes) {
+            if (ordinalsKept) {
+                for (int i = 0; i < entriesChange.added.size(); i++) {
+                    int ordinal = entriesChange.ordinal + i;
+                    if (authorIndex != null) {
+                        authorIndex.replace(ordinal, entriesChange.removed.get(i), entriesChange.added.get(i));
                     }
-
-                    for (Entry crossrefEntrySearch : entries) {
-                        if (crossrefEntrySearch.getCitationKey().equals(crossref)) {
-                            crossrefEntry = crossrefEntrySearch;
-                        }
+                    if (bitmapIndex != null) {
+                        bitmapIndex.replace(ordinal, entriesChange.removed.get(i), entriesChange.added.get(i));
                     }
+                }
+            }
 
-                    if (crossrefEntry == null) {
-                        throw new IllegalArgumentException("Unknown crossreference in line " +
-                                entry.getLineNumber() + ": " + crossref);
-                    }
+            // Only entries validated again are indexed again, the index keeps the others
+            if (textIndex != null) {
+                entriesChange.removed.forEach(textIndex::remove);
+                entriesChange.added.forEach(textIndex::add);
+            }
+        }
+
+        // Entries which cannot be parsed any more, e.g. exceeding time budget, are removed
+        if (addedEntries.contains(null)) {
+            for (int i = parsedEntries.size() - 1; i >= 0; i--) {
+                if (parsedEntries.get(i) == null) {
+                    parsedEntries.remove(i);
+                    validatedEntries.remove(i);
                 }
             }
+        }
+        balanceBlocks();
 
-            if (crossreferences) {
-                for (Field crossrefField : crossrefEntry.getFields()) {
-                    boolean found = false;
+        fileContents = edited;
+        diagnostics = editDiagnostics;
+        sourceMap = editedMap;
+        strings = editedStrings;
+    }
 
-                    // Find if crossreferencing entry already implements the field
-                    for (Field field : entry.getFields()) {
-                        if (field.getKey().equals(crossrefField.getKey())) {
-                            found = true;
-                        }
-                    }
+    /**
+     * Find citation keys of replaced or parsed again entries, which are duplicated before or after an edit.
+     * <p>
+     * Must be called before the entries are replaced in the {@link #citationIndex}.
+     *
+     * @param replaced entries replaced by the edit
+     * @param reparsed entries parsed again
+     * @return duplicated citation keys
+     */
+    private Set<String> findDuplicatedKeys(List<Entry> replaced, List<Entry> reparsed) {
+        Map<String, Integer> countDeltas = new HashMap<>();
+        for (Entry entry : replaced) {
+            countDeltas.merge(entry.getCitationKey(), -1, Integer::sum);
+        }
+        for (Entry entry : reparsed) {
+            countDeltas.merge(entry.getCitationKey(), 1, Integer::sum);
+        }
 
-                    // Add missing field
-                    if (!found) {
-                        entry.addField(crossrefField);
-                    }
-                }
+        Set<String> duplicatedKeys = new HashSet<>();
+        for (Map.Entry<String, Integer> countDelta : countDeltas.entrySet()) {
+            String citationKey = countDelta.getKey();
+            int count = citationIndex.count(citationKey);
+            if (!citationKey.isEmpty() && (count > 1 || count + countDelta.getValue() > 1)) {
+                duplicatedKeys.add(citationKey);
+            }
+        }
+
+        return duplicatedKeys;
+    }
+
+    /**
+     * Replace entries tracked by {@link #dependencies} and the {@link #citationIndex}.
+     *
+     * @param removed entries to remove
+     * @param added   entries to add, null for entries which couldn't be parsed
+     */
+    private void replaceDependencies(List<Entry> removed, List<Entry> added) {
+        for (Entry entry : removed) {
+            if (entry != null) {
+                dependencies.remove(entry);
+                citationIndex.remove(entry);
+            }
+        }
+
+        for (Entry entry : added) {
+            if (entry != null) {
+                dependencies.add(entry);
+                citationIndex.add(entry);
             }
         }
     }
 
     /**
-     * Check if all {@link #entries} are valid according to {@link SingletonSpecificEntries}.
+     * Find sorted indexes of parsed entries outside of a range of indexes.
      * <p>
-     * Remove ignored fields.
-     * Throw exception on missing required fields.
+     * Entries are found by binary searches, or by a single scan when they are a big part of the document.
+     *
+     * @param found entries from {@link #parsedEntries}
+     * @param from  index of the first excluded entry
+     * @param to    index right after the last excluded entry
+     * @return indexes in {@link #parsedEntries}
      */
-    private void validate() {
-        List<Entry> correctEntries = new ArrayList<>();
+    private int[] indexesOf(Set<Entry> found, int from, int to) {
+        IntStream indexes;
+        if (found.size() > parsedEntries.size() / MAX_PARTIAL_FRACTION) {
+            indexes = IntStream.range(0, parsedEntries.size()).filter(i -> found.contains(parsedEntries.get(i)));
+        } else {
+            indexes = found.stream().mapToInt(this::indexOf).sorted();
+        }
 
-        for (Entry entry : entries) {
-            SingletonSpecificEntries specificEntries = SingletonSpecificEntries.getInstance();
-            SingletonSpecificEntries.SpecificEntry specificEntry = specificEntries.get(entry.getEntryType());
-            if (specificEntry == null) {
-                if (entry.getEntryType().equals("string") || entry.getEntryType().equals("crossref")) {
-                    continue;
-                }
+        return indexes.filter(index -> index < from || index >= to).toArray();
+    }
 
-                throw new IllegalArgumentException("invalid entry type in line " +
-                        entry.getLineNumber() + ": " + entry.getEntryType());
+    /**
+     * Find ordinals in {@link #entries} of parsed entries.
+     * <p>
+     * Ordinals are found by binary searches, or by a single scan when they are a big part of the document.
+     *
+     * @param indexes sorted indexes in {@link #parsedEntries}, or their number
+     * @return numbers of validated entries before the parsed entries
+     */
+    private int[] ordinalsOf(int[] indexes) {
+        int[] ordinals = new int[indexes.length];
+        if (indexes.length <= parsedEntries.size() / MAX_PARTIAL_FRACTION) {
+            for (int i = 0; i < indexes.length; i++) {
+                ordinals[i] = ordinalOf(indexes[i]);
             }
 
+            return ordinals;
+        }
 
-            Entry correctEntry = new Entry();
-            correctEntry.setEntryType(entry.getEntryType());
-            correctEntry.setCitationKey(entry.getCitationKey());
+        int ordinal = 0;
+        int next = 0;
+        for (int index = 0; next < indexes.length; index++) {
+            while (next < indexes.length && indexes[next] == index) {
+                ordinals[next++] = ordinal;
+            }
+            if (index < validatedEntries.size() && validatedEntries.get(index) != null) {
+                ordinal++;
+            }
+        }
 
-            List<Field> fields = entry.getFields();
+        return ordinals;
+    }
 
-            for (Field field : fields) {
-                if (field.getKey().equals("crossref")) {
-                    correctEntry.addField(field);
-                }
+    /**
+     * Find ordinal in {@link #entries} of a parsed entry or of the validated entries after it.
+     *
+     * @param index index in {@link #parsedEntries} or their number
+     * @return number of validated entries before the parsed entry
+     */
+    private int ordinalOf(int index) {
+        if (index == parsedEntries.size()) {
+            return entries.size();
+        }
+
+        int offset = parsedEntries.get(index).getOffset();
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).getOffset() < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
+        }
 
-            // Check for required fields
-            for (String requiredField : specificEntry.requiredFields) {
-                if (requiredField.equals("")) {
-                    continue;
-                }
+        return low;
+    }
 
-                String key = "";
+    /**
+     * Replace a range of a list, moving the rest of the list only when the number of elements changes.
+     *
+     * @param list     list to change
+     * @param from     index of the first replaced element
+     * @param to       index right after the last replaced element
+     * @param elements new elements
+     * @param <T>      type of the elements
+     */
+    private static <T> void replaceRange(List<T> list, int from, int to, List<? extends T> elements) {
+        int common = Math.min(to - from, elements.size());
+        for (int i = 0; i < common; i++) {
+            list.set(from + i, elements.get(i));
+        }
 
-                boolean found = false;
+        if (from + common < to) {
+            list.subList(from + common, to).clear();
+        } else {
+            list.addAll(from + common, elements.subList(common, elements.size()));
+        }
+    }
 
-                boolean twoValues = false;
-                String firstValue = "", secondValue = "";
+    /**
+     * Split {@link #parsedEntries} into {@link #blocks}.
+     */
+    private void createBlocks() {
+        blocks = new ArrayList<>();
+        for (int from = 0; from < parsedEntries.size(); from += BLOCK_SIZE) {
+            int to = Math.min(parsedEntries.size(), from + BLOCK_SIZE);
+            blocks.add(createBlock(from, to));
+        }
+    }
 
-                // If the required field can be one of two values
-                if (requiredField.contains("|")) {
-                    twoValues = true;
-                    String[] parts = requiredField.split("\\|");
-                    firstValue = parts[0];
-                    secondValue = parts[1];
-                }
+    /**
+     * Create {@link EntryBlock} of a range of {@link #parsedEntries}, moving them and their validated entries to it.
+     *
+     * @param from index of the first entry
+     * @param to   index right after the last entry
+     * @return created block
+     */
+    private EntryBlock createBlock(int from, int to) {
+        Entry first = parsedEntries.get(from);
+        EntryBlock block = new EntryBlock(first.getOffset(), first.getLineNumber());
+        block.setSize(to - from);
+        for (int i = from; i < to; i++) {
+            parsedEntries.get(i).setBlock(block);
+            Entry validated = validatedEntries.get(i);
+            if (validated != null) {
+                validated.copyPosition(parsedEntries.get(i));
+            }
+        }
 
-                // If there are two possible values
-                if (twoValues) {
-                    for (Field field : fields) {
-                        key = field.getKey();
+        return block;
+    }
 
-                        // Check if current field is either one of them
-                        if (key.equals(firstValue) || key.equals(secondValue)) {
-                            found = true;
-                            break;
-                        }
-                    }
-                } else {
-                    for (Field field : fields) {
-                        key = field.getKey();
-
-                        // Else if there is only one possible value try to match it
-                        if (key.equals(requiredField)) {
-                            found = true;
-                            break;
-                        }
+    /**
+     * Move entries after an edit and remove entries replaced by it from their {@link #blocks}.
+     * <p>
+     * Blocks after the edit are moved, entries after the edit in the block containing it are moved one by one.
+     *
+     * @param first       index of the first replaced entry
+     * @param last        index right after the last replaced entry
+     * @param dependents  sorted indexes of entries parsed again outside of the edit, which aren't moved
+     * @param offsetDelta number of inserted characters, negative when removed
+     * @param lineDelta   number of inserted lines, negative when removed
+     * @return block which entries parsed again from the edited text belong to
+     */
+    private EntryBlock shiftBlocks(int first, int last, int[] dependents, int offsetDelta, int lineDelta) {
+        EntryBlock insertBlock = null;
+        int blockEnd = 0;
+        for (EntryBlock block : blocks) {
+            int blockStart = blockEnd;
+            blockEnd += block.getSize();
+            if (insertBlock == null && (first < blockEnd || blockEnd == parsedEntries.size())) {
+                insertBlock = block;
+            }
+
+            if (blockStart >= last) {
+                block.shift(offsetDelta, lineDelta);
+                continue;
+            }
+
+            for (int i = Math.max(blockStart, last); i < blockEnd; i++) {
+                if (Arrays.binarySearch(dependents, i) < 0) {
+                    parsedEntries.get(i).shift(offsetDelta, lineDelta);
+                    Entry validated = validatedEntries.get(i);
+                    if (validated != null) {
+                        validated.copyPosition(parsedEntries.get(i));
                     }
                 }
+            }
 
-                if (found) {
-                    correctEntry.addField(entry.getField(key));
-                } else {  // If current entry didn't contain one of required entries - throw an exception
-                    throw new IllegalArgumentException("Entry " + entry.getCitationKey() + " in line " +
-                            entry.getLineNumber() + ", doesn't contain required field: " + requiredField);
-                }
+            int removed = Math.min(blockEnd, last) - Math.max(blockStart, first);
+            if (removed > 0) {
+                block.setSize(block.getSize() - removed);
             }
+        }
 
-            // Add existing optional fields
-            for (String optionalField : specificEntry.optionalFields) {
-                for (Field field : fields) {
-                    String key = field.getKey();
+        if (insertBlock == null) {
+            insertBlock = new EntryBlock(0, 1);
+            blocks.add(insertBlock);
+        }
 
-                    if (key.equals(optionalField)) {
-                        correctEntry.addField(entry.getField(key));
-                    }
+        return insertBlock;
+    }
+
+    /**
+     * Remove empty {@link #blocks} and split blocks grown by edits.
+     */
+    private void balanceBlocks() {
+        int blockEnd = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            EntryBlock block = blocks.get(i);
+            if (block.getSize() == 0) {
+                blocks.remove(i--);
+                continue;
+            }
+
+            int blockStart = blockEnd;
+            blockEnd += block.getSize();
+            if (block.getSize() > 2 * BLOCK_SIZE) {
+                blocks.add(i + 1, createBlock(blockStart + BLOCK_SIZE, blockEnd));
+                block.setSize(BLOCK_SIZE);
+                blockEnd = blockStart + BLOCK_SIZE;
+            }
+        }
+    }
+
+    /**
+     * Find index of a parsed entry.
+     *
+     * @param entry entry from {@link #parsedEntries}
+     * @return index of the entry
+     */
+    private int indexOf(Entry entry) {
+        return firstEntryStartingAfter(entry.getOffset() - 1);
+    }
+
+    /**
+     * Find index of the first parsed entry ending at or after the offset.
+     *
+     * @param offset offset in the document
+     * @return index in {@link #parsedEntries} or their number when there is no such entry
+     */
+    private int firstEntryEndingAfter(int offset) {
+        int low = 0;
+        int high = parsedEntries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Entry entry = parsedEntries.get(middle);
+            if (entry.getOffset() + entry.getLength() < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Find index of the first parsed entry beginning after the offset.
+     *
+     * @param offset offset in the document
+     * @return index in {@link #parsedEntries} or their number when there is no such entry
+     */
+    private int firstEntryStartingAfter(int offset) {
+        int low = 0;
+        int high = parsedEntries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (parsedEntries.get(middle).getOffset() <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Process {@link #parsedEntries}.
+     * <p>
+     * Computes strings and concatenations, checks and fills entries.
+     * Invalid entries are reported to {@link #diagnostics} and skipped.
+     */
+    private void process() {
+        strings = new Strings();
+        strings.extractFrom(parsedEntries, diagnostics);
+        strings.resolveAll();
+
+        dependencies = new EntryDependencies();
+        citationIndex = new CitationIndex();
+        blocks = null;
+        for (Entry entry : parsedEntries) {
+            resolve(entry, strings, diagnostics);
+            dependencies.add(entry);
+            citationIndex.add(entry);
+        }
+
+        Map<String, Entry> firstSpecificEntries = new HashMap<>();
+        CrossrefResolver resolver = new CrossrefResolver(citationIndex, parsedEntries, diagnostics);
+        validatedEntries = new ArrayList<>(parsedEntries.size());
+        entries = new ArrayList<>(parsedEntries.size());
+        authorIndex = null;
+        bitmapIndex = null;
+        textIndex = null;
+        for (Entry entry : parsedEntries) {
+            Entry validated = null;
+            if (isDuplicate(entry, firstSpecificEntries)) {
+                reportDuplicate(entry, diagnostics);
+            } else if (resolver.resolve(entry)) {
+                validated = validate(entry, diagnostics);
+            }
+
+            validatedEntries.add(validated);
+            if (validated != null) {
+                entries.add(validated);
+            }
+        }
+
+        fillAuthors();
+    }
+
+    /**
+     * Compute strings and concatenations of an entry, removing fields which cannot be computed.
+     * <p>
+     * Fields of @STRING entries are kept, so edits defining the strings they reference define them again.
+     *
+     * @param entry       parsed entry
+     * @param strings     strings defined in the document
+     * @param diagnostics {@link Diagnostics} to report problems to
+     */
+    private static void resolve(Entry entry, Strings strings, Diagnostics diagnostics) {
+        entry.computeStrings(strings, diagnostics);
+        entry.computeConcatenation(strings, diagnostics);
+        if (!entry.getEntryType().equals("string")) {
+            entry.removeUnknownFields();
+        }
+    }
+
+    /**
+     * Check if entry has a type known to {@link SingletonSpecificEntries}.
+     * <p>
+     * Only such entries are checked for duplicates.
+     *
+     * @param entry parsed entry
+     * @return true if the type is known
+     */
+    private static boolean hasSpecificType(Entry entry) {
+        return SingletonSpecificEntries.getInstance().get(entry.getEntryType()) != null;
+    }
+
+    /**
+     * Check for duplicates - entries having same citation key.
+     * <p>
+     * First entry of a {@link #hasSpecificType specific type} with a citation key is kept, following ones are
+     * duplicates. Looks entries up in the {@link #citationIndex}, so only entries with the same key are visited.
+     *
+     * @param entry                checked entry
+     * @param firstSpecificEntries first entries of specific types by citation keys, filled on demand
+     * @return true if the entry is a duplicate
+     */
+    private boolean isDuplicate(Entry entry, Map<String, Entry> firstSpecificEntries) {
+        String citationKey = entry.getCitationKey();
+        if (!hasSpecificType(entry) || citationIndex.count(citationKey) < 2) {
+            return false;
+        }
+
+        Entry first = firstSpecificEntries.computeIfAbsent(citationKey,
+                key -> citationIndex.getFirst(key, Document::hasSpecificType));
+        return first != entry;
+    }
+
+    /**
+     * Report entry redefining citation key of a previous entry.
+     *
+     * @param entry       duplicate entry
+     * @param diagnostics {@link Diagnostics} to report duplicate to
+     */
+    private static void reportDuplicate(Entry entry, Diagnostics diagnostics) {
+        diagnostics.report(Diagnostic.Code.DUPLICATE_ENTRY, entry,
+                "Entry redefinition in line " + entry.getLineNumber() + ": " + entry.getCitationKey());
+    }
+
+    /**
+     * Check if entry is valid according to {@link SingletonSpecificEntries}.
+     * <p>
+     * Remove ignored fields.
+     * Report entries of unknown types and entries missing required fields.
+     *
+     * @param entry       parsed entry
+     * @param diagnostics {@link Diagnostics} to report invalid entry to
+     * @return validated entry or null when the entry is a @STRING or @CROSSREF or it is invalid
+     */
+    private static Entry validate(Entry entry, Diagnostics diagnostics) {
+        SingletonSpecificEntries specificEntries = SingletonSpecificEntries.getInstance();
+        SingletonSpecificEntries.SpecificEntry specificEntry = specificEntries.get(entry.getEntryType());
+        if (specificEntry == null) {
+            if (entry.getEntryType().equals("string") || entry.getEntryType().equals("crossref")) {
+                return null;
+            }
+
+            diagnostics.report(Diagnostic.Code.UNKNOWN_ENTRY_TYPE, entry, "invalid entry type in line " +
+                    entry.getLineNumber() + ": " + entry.getEntryType());
+            return null;
+        }
+
+
+        long fieldIds = entry.getKnownFieldIds();
+        String missingField = specificEntry.findMissingField(fieldIds);
+        if (missingField != null) {  // If current entry didn't contain one of required entries - skip it
+            diagnostics.report(Diagnostic.Code.MISSING_FIELD, entry, "Entry " + entry.getCitationKey() +
+                    " in line " + entry.getLineNumber() + ", doesn't contain required field: " + missingField);
+            return null;
+        }
+
+        Entry correctEntry = new Entry();
+        correctEntry.setEntryType(entry.getEntryType());
+        correctEntry.setCitationKey(entry.getCitationKey());
+        correctEntry.copyPosition(entry);
+
+        Field crossref = entry.getField(FieldKeys.CROSSREF);
+        if (crossref != null) {
+            correctEntry.addField(crossref);
+        }
+
+        // Add required fields, when both alternatives exist the first one in the entry
+        for (long requiredMask : specificEntry.requiredMasks) {
+            long present = fieldIds & requiredMask;
+            Field field = entry.getField(Long.numberOfTrailingZeros(present));
+            present &= present - 1;
+            if (present != 0) {
+                Field other = entry.getField(Long.numberOfTrailingZeros(present));
+                List<Field> fields = entry.getFields();
+                if (fields.indexOf(other) < fields.indexOf(field)) {
+                    field = other;
                 }
             }
 
-            correctEntries.add(correctEntry);
+            correctEntry.addField(field);
+        }
+
+        // Add existing optional fields
+        for (int optionalId : specificEntry.optionalIds) {
+            if ((fieldIds & 1L << optionalId) != 0) {
+                correctEntry.addField(entry.getField(optionalId));
+            }
         }
 
-        entries = correctEntries;
+        return correctEntry;
     }
 
     /**
-     * Fill {@link #entries} with its authors.
+     * Fill {@link #entries} with its authors, parsed when they are accessed.
      */
     private void fillAuthors() {
         for (Entry entry : entries) {
-            entry.fillAuthors();
+            entry.fillAuthors(nameParser);
         }
     }
 
@@ -299,4 +1144,66 @@ public class Document {
 
         return str.toString();
     }
+
+    /**
+     * Validated entries replaced by an edit at consecutive ordinals of {@link #entries}.
+     */
+    private static class EntriesChange {
+        /**
+         * Ordinal of the first replaced entry.
+         */
+        final int ordinal;
+
+        /**
+         * Validated entries removed by the edit.
+         */
+        final List<Entry> removed = new ArrayList<>();
+
+        /**
+         * Validated entries added by the edit, collected after the edit.
+         */
+        final List<Entry> added = new ArrayList<>();
+
+        /**
+         * Index in {@link #parsedEntries} of the first entry after the edit.
+         */
+        private final int from;
+
+        /**
+         * Index in {@link #parsedEntries} right after the last entry after the edit.
+         */
+        private final int to;
+
+        /**
+         * Constructor for {@link EntriesChange}.
+         *
+         * @param ordinal   {@link #ordinal}
+         * @param validated validated entries before the edit, null for skipped entries
+         * @param from      {@link #from}
+         * @param to        {@link #to}
+         */
+        EntriesChange(int ordinal, List<Entry> validated, int from, int to) {
+            this.ordinal = ordinal;
+            this.from = from;
+            this.to = to;
+            for (Entry entry : validated) {
+                if (entry != null) {
+                    removed.add(entry);
+                }
+            }
+        }
+
+        /**
+         * Collect {@link #added} entries.
+         *
+         * @param validatedEntries validated entries after the edit, null for skipped entries
+         */
+        void collectAdded(List<Entry> validatedEntries) {
+            for (Entry entry : validatedEntries.subList(from, to)) {
+                if (entry != null) {
+                    added.add(entry);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package com.szczygiel.bibtex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the {@link File} of a {@link Document} and {@link Document#reload() reloads} it when it changes.
+ * <p>
+ * Uses {@link WatchService} on the directory of the file, so changes are detected without polling.
+ * Editors often write a file in a few steps, so events are collected until the file is quiet for a moment.
+ */
+class DocumentWatcher implements Closeable {
+    /**
+     * Time in milliseconds without further events, after which the change is considered complete.
+     */
+    private static final long QUIET_PERIOD = 50;
+
+    /**
+     * Watched {@link Document}.
+     */
+    private final Document document;
+
+    /**
+     * Name of the watched file within its directory.
+     */
+    private final Path fileName;
+
+    /**
+     * {@link WatchService} notifying about changes in the directory of the file.
+     */
+    private final WatchService watchService;
+
+    /**
+     * Whether the directory of the file is still watched.
+     */
+    private boolean valid = true;
+
+    /**
+     * Constructor for {@link DocumentWatcher}.
+     *
+     * @param document {@link Document} loaded from the file
+     * @param file     watched {@link File}
+     * @throws IOException when the directory of the file cannot be watched
+     */
+    DocumentWatcher(Document document, File file) throws IOException {
+        this.document = document;
+
+        Path path = file.toPath().toAbsolutePath();
+        this.fileName = path.getFileName();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Wait until the file changes and reload the document.
+     * <p>
+     * Writes which don't change contents of the file are ignored.
+     *
+     * @return false when the directory of the file cannot be watched any more
+     * @throws IOException          when the file cannot be read
+     * @throws InterruptedException when interrupted while waiting
+     */
+    boolean awaitChange() throws IOException, InterruptedException {
+        while (valid) {
+            boolean changed = pollEvents(watchService.take());
+
+            // Collect the rest of events of the same change
+            WatchKey key;
+            while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+                changed |= pollEvents(key);
+            }
+
+            if (changed && document.reload()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Stop watching the file.
+     *
+     * @throws IOException when the {@link WatchService} cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Take events of a {@link WatchKey} and reset it.
+     *
+     * @param key signalled key
+     * @return true if any event concerns the watched file
+     */
+    private boolean pollEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+
+        if (!key.reset()) {
+            valid = false;
+        }
+
+        return changed;
+    }
+}
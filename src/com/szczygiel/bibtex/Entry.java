@@ -1,7 +1,6 @@
 package com.szczygiel.bibtex;
 
 import java.util.*;
-import java.util.regex.Matcher;
 
 /**
  * Stores information about an entry, provides strings and concatenation computing.
@@ -9,9 +8,16 @@ import java.util.regex.Matcher;
 public class Entry {
     /**
      * Set of authors' names used later in filtering.
+     * <p>
+     * It is null until authors filled from fields are accessed.
      */
     private Set<Author> authors;
 
+    /**
+     * Parser of author and editor fields, shared by entries of a document.
+     */
+    private NameParser nameParser;
+
     /**
      * Citation key of an entry.
      * <p>
@@ -31,11 +37,63 @@ public class Entry {
      */
     private List<Field> fields;
 
+    /**
+     * Bit set of {@link FieldKeys IDs} of well-known fields in {@link #knownFields}.
+     */
+    private long knownFieldIds;
+
+    /**
+     * Well-known fields ordered by their {@link FieldKeys IDs}, only the first field of every ID.
+     * <p>
+     * Field with given ID is at the index equal to the number of smaller IDs in {@link #knownFieldIds},
+     * so it is found in constant time.
+     */
+    private Field[] knownFields;
+
+    /**
+     * Fields which aren't well-known by their keys, only the first field of every key, null when there are none.
+     */
+    private Map<String, Field> otherFields;
+
+    /**
+     * Number of fields at the end of {@link #fields} inherited from crossreferenced entries.
+     * <p>
+     * Inherited fields are shared with the entries defining them, which move them.
+     */
+    private int inheritedFieldsCount;
+
+    /**
+     * {@link EntryBlock} which {@link #offset} and {@link #lineNumber} are relative to, null when they are absolute.
+     */
+    private EntryBlock block;
+
     /**
      * Line number in file at which this entry exists.
      */
     private int lineNumber;
 
+    /**
+     * Column number in file at which this entry begins.
+     */
+    private int columnNumber;
+
+    /**
+     * Offset of the '@' character beginning this entry in file.
+     */
+    private int offset;
+
+    /**
+     * Number of characters of this entry in file.
+     */
+    private int length;
+
+    /**
+     * Names of strings referenced by this entry, null when it doesn't reference any.
+     * <p>
+     * Lets a {@link Document} find entries affected by changed @STRING entries.
+     */
+    private Set<String> stringReferences;
+
     /**
      * Constructor for {@link Entry}.
      * <p>
@@ -52,53 +110,44 @@ public class Entry {
      * Fill {@link #authors} based on author or editor fields.
      */
     void fillAuthors() {
-        for (Field field : fields) {
-            String fieldKey = field.getKey();
-            if (field.getType() == Field.Type.STRING &&
-                    (fieldKey.equals("author") || fieldKey.equals("editor"))) {
-                String value = (String) field.getValue();
-                String[] authors = value.split("and");
-                for (String author : authors) {
-                    author = author.strip();
-
-                    String firstName, lastName;
-
-                    AuthorType authorType;
-                    if (fieldKey.equals("author")) {
-                        authorType = AuthorType.AUTHOR;
-                    } else {
-                        authorType = AuthorType.EDITOR;
-                    }
-
-                    int nameDelimiterIndex = author.indexOf("|");
-
-                    if (nameDelimiterIndex == -1) {
-                        // If there is no '|' symbol - last word is last name
-
-                        int lastSpace = author.lastIndexOf(" ");
-                        if (lastSpace == -1) {
-                            // There is no space in the name - everything is last name
-
-                            firstName = "";
-                            lastName = author;
-                        } else {
-                            // There is a space in the name - last word is last name, the rest is first name
-
-                            firstName = author.substring(0, lastSpace);
-                            lastName = author.substring(lastSpace + 1);
-                        }
-
-                    } else {
-                        // Else everything to the left is last name and the rest is first name
+        fillAuthors(new NameParser());
+    }
 
-                        firstName = author.substring(nameDelimiterIndex + 1);
-                        lastName = author.substring(0, nameDelimiterIndex);
-                    }
+    /**
+     * Fill {@link #authors} based on author or editor fields, when they are accessed for the first time.
+     *
+     * @param nameParser {@link #nameParser}
+     */
+    void fillAuthors(NameParser nameParser) {
+        this.nameParser = nameParser;
+        authors = null;
+    }
 
-                    addAuthor(firstName.strip(), lastName.strip(), authorType);
+    /**
+     * Parse {@link #authors} from author or editor fields.
+     *
+     * @return parsed authors
+     */
+    private Set<Author> parseAuthors() {
+        Set<Author> authors = new LinkedHashSet<>();
+        for (Field field : fields) {
+            int fieldKey = field.getKeyId();
+            if (field.getType() == Field.Type.STRING &&
+                    (fieldKey == FieldKeys.AUTHOR || fieldKey == FieldKeys.EDITOR)) {
+                AuthorType authorType = fieldKey == FieldKeys.AUTHOR ? AuthorType.AUTHOR : AuthorType.EDITOR;
+                for (NameParser.Name name : nameParser.parse((String) field.getValue())) {
+                    Author author = new Author();
+                    author.firstName = name.getFirst();
+                    author.von = name.getVon();
+                    author.lastName = name.getLast();
+                    author.jr = name.getJr();
+                    author.authorType = authorType;
+                    authors.add(author);
                 }
             }
         }
+
+        return authors;
     }
 
     /**
@@ -109,11 +158,26 @@ public class Entry {
      * @param authorType author's type (author or editor)
      */
     void addAuthor(String firstName, String lastName, AuthorType authorType) {
+        addAuthor(firstName, "", lastName, "", authorType);
+    }
+
+    /**
+     * Add author with all parts of the name to {@link #authors}.
+     *
+     * @param firstName  first name
+     * @param von        lowercase words preceding last name, e.g. "van"
+     * @param lastName   last name
+     * @param jr         suffix of the name, e.g. "Jr."
+     * @param authorType author's type (author or editor)
+     */
+    void addAuthor(String firstName, String von, String lastName, String jr, AuthorType authorType) {
         Author author = new Author();
         author.firstName = firstName;
+        author.von = von;
         author.lastName = lastName;
+        author.jr = jr;
         author.authorType = authorType;
-        authors.add(author);
+        getAuthors().add(author);
     }
 
     /**
@@ -152,15 +216,6 @@ public class Entry {
         this.citationKey = citationKey;
     }
 
-    /**
-     * Get list iterator over Field list.
-     *
-     * @return Fields iterator
-     */
-    ListIterator<Field> fieldsIterator() {
-        return fields.listIterator();
-    }
-
     /**
      * Get list of fields.
      *
@@ -177,13 +232,64 @@ public class Entry {
      * @return {@link Field} object or null when {@link Field} is not found
      */
     Field getField(String key) {
-        for (Field field : fields) {
-            if (field.getKey().equals(key)) {
-                return field;
-            }
+        int id = FieldKeys.id(key);
+        if (id != FieldKeys.UNKNOWN) {
+            return getField(id);
+        }
+
+        return otherFields == null ? null : otherFields.get(key);
+    }
+
+    /**
+     * Get well-known {@link Field} by its {@link FieldKeys ID}.
+     *
+     * @param id field ID
+     * @return {@link Field} object or null when {@link Field} is not found
+     */
+    Field getField(int id) {
+        long bit = 1L << id;
+        if ((knownFieldIds & bit) == 0) {
+            return null;
         }
 
-        return null;
+        return knownFields[Long.bitCount(knownFieldIds & (bit - 1))];
+    }
+
+    /**
+     * Get {@link #knownFieldIds}.
+     *
+     * @return bit set of IDs of well-known fields
+     */
+    long getKnownFieldIds() {
+        return knownFieldIds;
+    }
+
+    /**
+     * Get citation key crossreferenced by this entry.
+     *
+     * @return lowercase citation key or null when this entry doesn't crossreference any entry
+     */
+    String getCrossref() {
+        Field crossref = getField(FieldKeys.CROSSREF);
+        if (crossref == null || crossref.getType() != Field.Type.STRING) {
+            return null;
+        }
+
+        return ((String) crossref.getValue()).toLowerCase();
+    }
+
+    /**
+     * Remove {@link Field fields} of {@link Field.Type#UNKNOWN} type, e.g. unresolved references.
+     */
+    void removeUnknownFields() {
+        if (fields.removeIf(field -> field.getType() == Field.Type.UNKNOWN)) {
+            knownFieldIds = 0;
+            knownFields = null;
+            otherFields = null;
+            for (Field field : fields) {
+                indexField(field);
+            }
+        }
     }
 
     /**
@@ -193,14 +299,62 @@ public class Entry {
      */
     void addField(Field field) {
         fields.add(field);
+        indexField(field);
     }
 
     /**
-     * Get {@link #authors}.
+     * Add {@link Field} of a crossreferenced entry.
+     *
+     * @param field {@link Field} owned by the crossreferenced entry
+     */
+    void inheritField(Field field) {
+        addField(field);
+        inheritedFieldsCount++;
+    }
+
+    /**
+     * Make field found by {@link #getField}, unless there already is a field with the same key.
+     *
+     * @param field added {@link Field}
+     */
+    private void indexField(Field field) {
+        int id = field.getKeyId();
+        if (id == FieldKeys.UNKNOWN) {
+            if (otherFields == null) {
+                otherFields = new HashMap<>();
+            }
+            otherFields.putIfAbsent(field.getKey(), field);
+            return;
+        }
+
+        long bit = 1L << id;
+        if ((knownFieldIds & bit) != 0) {
+            return;
+        }
+
+        // Insert the field keeping the array ordered by IDs
+        int count = Long.bitCount(knownFieldIds);
+        int index = Long.bitCount(knownFieldIds & (bit - 1));
+        if (knownFields == null) {
+            knownFields = new Field[4];
+        } else if (count == knownFields.length) {
+            knownFields = Arrays.copyOf(knownFields, count * 2);
+        }
+        System.arraycopy(knownFields, index, knownFields, index + 1, count - index);
+        knownFields[index] = field;
+        knownFieldIds |= bit;
+    }
+
+    /**
+     * Get {@link #authors}, parsing them on the first access.
      *
      * @return authors
      */
     Set<Author> getAuthors() {
+        if (authors == null) {
+            authors = parseAuthors();
+        }
+
         return authors;
     }
 
@@ -211,7 +365,7 @@ public class Entry {
      */
     Set<String> getAuthorsLastNames() {
         Set<String> lastNames = new LinkedHashSet<>();
-        for (Author author : authors) {
+        for (Author author : getAuthors()) {
             lastNames.add(author.lastName);
         }
 
@@ -225,7 +379,7 @@ public class Entry {
      * @return line number
      */
     int getLineNumber() {
-        return lineNumber;
+        return block == null ? lineNumber : block.getLineNumber() + lineNumber;
     }
 
     /**
@@ -234,21 +388,159 @@ public class Entry {
      * @param lineNumber line number
      */
     void setLineNumber(int lineNumber) {
-        this.lineNumber = lineNumber;
+        this.lineNumber = block == null ? lineNumber : lineNumber - block.getLineNumber();
+    }
+
+    /**
+     * Get {@link #columnNumber}.
+     *
+     * @return column number
+     */
+    int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Set {@link #columnNumber}.
+     *
+     * @param columnNumber column number
+     */
+    void setColumnNumber(int columnNumber) {
+        this.columnNumber = columnNumber;
+    }
+
+    /**
+     * Get {@link #offset}.
+     *
+     * @return offset
+     */
+    int getOffset() {
+        return block == null ? offset : block.getOffset() + offset;
+    }
+
+    /**
+     * Set {@link #offset}.
+     *
+     * @param offset offset
+     */
+    void setOffset(int offset) {
+        this.offset = block == null ? offset : offset - block.getOffset();
+    }
+
+    /**
+     * Get {@link #block}.
+     *
+     * @return block or null when position of this entry is absolute
+     */
+    EntryBlock getBlock() {
+        return block;
+    }
+
+    /**
+     * Set {@link #block}, keeping position of this entry and its own {@link Field fields}.
+     * <p>
+     * Fields inherited from crossreferenced entries are kept in blocks of the entries defining them.
+     *
+     * @param block block or null to make position of this entry absolute
+     */
+    void setBlock(EntryBlock block) {
+        for (Field field : fields.subList(0, fields.size() - inheritedFieldsCount)) {
+            field.setBlock(block);
+        }
+
+        int offset = getOffset();
+        int lineNumber = getLineNumber();
+        this.block = block;
+        setOffset(offset);
+        setLineNumber(lineNumber);
+    }
+
+    /**
+     * Copy position of another entry, without moving fields shared with it.
+     *
+     * @param entry entry to copy position of
+     */
+    void copyPosition(Entry entry) {
+        block = entry.block;
+        offset = entry.offset;
+        lineNumber = entry.lineNumber;
+        columnNumber = entry.columnNumber;
+    }
+
+    /**
+     * Get {@link #length}.
+     *
+     * @return length
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Set {@link #length}.
+     *
+     * @param length length
+     */
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Get {@link #stringReferences}.
+     *
+     * @return names of referenced strings
+     */
+    Set<String> getStringReferences() {
+        return stringReferences == null ? Collections.emptySet() : stringReferences;
+    }
+
+    /**
+     * Remember name of a referenced string.
+     *
+     * @param name name of the string
+     */
+    private void addStringReference(String name) {
+        if (stringReferences == null) {
+            stringReferences = new HashSet<>();
+        }
+
+        stringReferences.add(name);
+    }
+
+    /**
+     * Move this entry and its own {@link Field fields} after an edit of the text before it.
+     * <p>
+     * Fields inherited from crossreferenced entries are moved by the entries defining them.
+     *
+     * @param offsetDelta number of characters inserted before this entry, negative when removed
+     * @param lineDelta   number of lines inserted before this entry, negative when removed
+     */
+    void shift(int offsetDelta, int lineDelta) {
+        for (Field field : fields.subList(0, fields.size() - inheritedFieldsCount)) {
+            field.setOffset(field.getOffset() + offsetDelta);
+            field.setLineNumber(field.getLineNumber() + lineDelta);
+        }
+
+        offset += offsetDelta;
+        lineNumber += lineDelta;
     }
 
     /**
      * Convert reference fields into string which they reference.
      *
-     * @param strings {@link Strings} containing strings which {@link Field fields} can reference to
+     * @param strings     {@link Strings} containing strings which {@link Field fields} can reference to
+     * @param diagnostics {@link Diagnostics} to report undefined strings to
      */
-    void computeStrings(Strings strings) {
+    void computeStrings(Strings strings, Diagnostics diagnostics) {
         for (Field field : fields) {
             if (field.getType() == Field.Type.REFERENCE) {
                 String reference = (String) field.getValue();
+                addStringReference(reference);
                 String value = strings.getString(reference);
+                releaseConcatenation(field);
                 if (value == null) {
-                    System.err.println("unable to access string reference in " + this.citationKey + ": " + reference);
+                    diagnostics.report(Diagnostic.Code.UNDEFINED_STRING, field, citationKey,
+                            "unable to access string reference in " + citationKey + ": " + reference);
                     field.setType(Field.Type.UNKNOWN);
                     continue;
                 }
@@ -262,71 +554,84 @@ public class Entry {
     /**
      * Convert concatenation {@link Field fields} into concatenated strings.
      * <p>
-     * Allows for concatenating multiple strings and references.
+     * Allows for concatenating multiple strings, numbers and references.
      *
-     * @param strings {@link Strings}
+     * @param strings     {@link Strings}
+     * @param diagnostics {@link Diagnostics} to report invalid concatenations to
      */
-    void computeConcatenation(Strings strings) {
+    void computeConcatenation(Strings strings, Diagnostics diagnostics) {
         for (Field field : fields) {
             if (field.getType() == Field.Type.CONCATENATION) {
-                StringBuilder finalValue = new StringBuilder();
-                String concatenation = (String) field.getValue();
-
-                Matcher concatMatcher = SingletonPatterns.getInstance().matchConcatenationField(concatenation);
-
-                boolean error = false;
-                while (concatMatcher.find()) {
-                    if (concatMatcher.groupCount() < 2) {
-                        break;
-                    }
-
-                    String value = concatMatcher.group(1);
-                    String hash = concatMatcher.group(2);
-                    String rest = concatMatcher.group(3);
-
-                    concatMatcher.reset(rest);
-
-
-                    if (value.startsWith("\"")) {
-                        if (!value.endsWith("\"")) {
-                            break;
-                        }
-
-                        value = value.substring(1, value.length() - 1);
-                    } else {
-                        String valueNullable = strings.getString(value);
-                        if (valueNullable == null) {
-                            System.err.println("unable to access string reference in "
-                                    + this.citationKey + ": " + value);
-                            error = true;
-                            break;
-                        }
-                        value = valueNullable;
-                    }
-
-                    finalValue.append(value);
-
-                    if (hash == null) {
-                        if (!rest.equals("")) {
-                            System.err.println("error while concatenating: " + concatenation);
-                            error = true;
-                        }
-
-                        break;
-                    }
-                }
-
-                if (error) {
+                String value = concatenate(field, strings, diagnostics);
+                releaseConcatenation(field);
+                if (value == null) {
                     field.setType(Field.Type.UNKNOWN);
                     continue;
                 }
 
                 field.setType(Field.Type.STRING);
-                field.setValue(finalValue.toString());
+                field.setValue(value);
             }
         }
     }
 
+    /**
+     * Release compiled value of a computed field.
+     * <p>
+     * Fields of @STRING entries keep it, compiled before the value is replaced, so {@link Strings} can evaluate
+     * them again after an edit of strings they reference.
+     *
+     * @param field computed field
+     */
+    private void releaseConcatenation(Field field) {
+        if (entryType.equals("string")) {
+            field.getConcatenation();
+        } else {
+            field.setConcatenation(null);
+        }
+    }
+
+    /**
+     * Concatenate values separated by '#' character.
+     * <p>
+     * Appends parts of the {@link Concatenation} compiled once from the value, so it takes linear time
+     * no matter how many values are concatenated.
+     *
+     * @param field       field with values separated by '#' character
+     * @param strings     {@link Strings} used for resolving references
+     * @param diagnostics {@link Diagnostics} to report invalid concatenation to
+     * @return concatenated value or null when the concatenation is invalid
+     */
+    private String concatenate(Field field, Strings strings, Diagnostics diagnostics) {
+        Concatenation concatenation = field.getConcatenation();
+        if (concatenation == null) {
+            diagnostics.report(Diagnostic.Code.MALFORMED_CONCATENATION, field, citationKey,
+                    "error while concatenating: " + field.getValue());
+            return null;
+        }
+
+        StringBuilder finalValue = new StringBuilder();
+        for (int i = 0; i < concatenation.size(); i++) {
+            String part = concatenation.getPart(i);
+            if (!concatenation.isReference(i)) {
+                finalValue.append(part);
+                continue;
+            }
+
+            addStringReference(part);
+            String value = strings.getString(part);
+            if (value == null) {
+                diagnostics.report(Diagnostic.Code.UNDEFINED_STRING, field, citationKey,
+                        "unable to access string reference in " + citationKey + ": " + part);
+                return null;
+            }
+
+            finalValue.append(value);
+        }
+
+        return finalValue.toString();
+    }
+
     /**
      * Convert entry into readable structure.
      *
@@ -375,11 +680,43 @@ public class Entry {
          */
         String lastName;
 
+        /**
+         * Lowercase words preceding author's last name, e.g. "van".
+         */
+        String von = "";
+
+        /**
+         * Suffix of author's name, e.g. "Jr.".
+         */
+        String jr = "";
+
         /**
          * Author's type.
          * <p>
          * Can be author or editor.
          */
         AuthorType authorType;
+
+        /**
+         * Get author's name in the "First von Last, Jr" form.
+         *
+         * @return full name
+         */
+        String getFullName() {
+            StringBuilder str = new StringBuilder(firstName);
+            for (String part : new String[]{von, lastName}) {
+                if (!part.isEmpty()) {
+                    if (str.length() > 0) {
+                        str.append(' ');
+                    }
+                    str.append(part);
+                }
+            }
+            if (!jr.isEmpty()) {
+                str.append(", ").append(jr);
+            }
+
+            return str.toString();
+        }
     }
 }
@@ -0,0 +1,82 @@
+package com.szczygiel.bibtex;
+
+/**
+ * Position of a block of consecutive entries of an edited {@link Document}.
+ * <p>
+ * Positions of the entries and their fields are relative to the block, so an edit moves blocks after it
+ * instead of every entry and field after it.
+ */
+class EntryBlock {
+    /**
+     * Offset which offsets of the entries are relative to.
+     */
+    private int offset;
+
+    /**
+     * Line number which line numbers of the entries are relative to.
+     */
+    private int lineNumber;
+
+    /**
+     * Number of parsed entries in this block.
+     */
+    private int size;
+
+    /**
+     * Constructor for {@link EntryBlock}.
+     *
+     * @param offset     {@link #offset}
+     * @param lineNumber {@link #lineNumber}
+     */
+    EntryBlock(int offset, int lineNumber) {
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Get {@link #offset}.
+     *
+     * @return offset
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get {@link #lineNumber}.
+     *
+     * @return line number
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get {@link #size}.
+     *
+     * @return number of entries
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Set {@link #size}.
+     *
+     * @param size number of entries
+     */
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Move all entries of this block.
+     *
+     * @param offsetDelta number of characters inserted before this block, negative when removed
+     * @param lineDelta   number of lines inserted before this block, negative when removed
+     */
+    void shift(int offsetDelta, int lineDelta) {
+        offset += offsetDelta;
+        lineNumber += lineDelta;
+    }
+}
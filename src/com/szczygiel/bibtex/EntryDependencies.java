@@ -0,0 +1,104 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks strings and crossreferenced entries which parsed {@link Entry entries} of a {@link Document} depend on.
+ * <p>
+ * Lets {@link Document#applyEdit} find entries affected by an edit without visiting every entry of the document.
+ * Entries are compared by identity.
+ */
+class EntryDependencies {
+    /**
+     * Entries referencing given string.
+     */
+    private final Map<String, Set<Entry>> stringUsers = new HashMap<>();
+
+    /**
+     * Entries crossreferencing entry with given citation key.
+     */
+    private final Map<String, Set<Entry>> crossrefUsers = new HashMap<>();
+
+    /**
+     * Add entry with computed strings.
+     *
+     * @param entry parsed entry
+     */
+    void add(Entry entry) {
+        for (String name : entry.getStringReferences()) {
+            stringUsers.computeIfAbsent(name, k -> new HashSet<>()).add(entry);
+        }
+
+        String crossref = entry.getCrossref();
+        if (crossref != null) {
+            crossrefUsers.computeIfAbsent(crossref, k -> new HashSet<>()).add(entry);
+        }
+    }
+
+    /**
+     * Remove previously added entry.
+     *
+     * @param entry parsed entry
+     */
+    void remove(Entry entry) {
+        for (String name : entry.getStringReferences()) {
+            removeUser(stringUsers, name, entry);
+        }
+
+        String crossref = entry.getCrossref();
+        if (crossref != null) {
+            removeUser(crossrefUsers, crossref, entry);
+        }
+    }
+
+    /**
+     * Find entries depending on changed entries or strings, directly or through other entries.
+     *
+     * @param changedKeys    citation keys of changed entries
+     * @param changedStrings names of changed strings
+     * @return dependent entries
+     */
+    Set<Entry> findDependents(Set<String> changedKeys, Set<String> changedStrings) {
+        Set<Entry> dependents = new HashSet<>();
+        Deque<Entry> queue = new ArrayDeque<>();
+
+        for (String name : changedStrings) {
+            queue.addAll(stringUsers.getOrDefault(name, Collections.emptySet()));
+        }
+        for (String key : changedKeys) {
+            queue.addAll(crossrefUsers.getOrDefault(key, Collections.emptySet()));
+        }
+
+        while (!queue.isEmpty()) {
+            Entry entry = queue.poll();
+            if (dependents.add(entry)) {
+                queue.addAll(crossrefUsers.getOrDefault(entry.getCitationKey(), Collections.emptySet()));
+            }
+        }
+
+        return dependents;
+    }
+
+    /**
+     * Remove entry from users of a string or an entry.
+     *
+     * @param users map of users
+     * @param key   name of the string or citation key of the entry
+     * @param entry entry to remove
+     */
+    private static void removeUser(Map<String, Set<Entry>> users, String key, Entry entry) {
+        Set<Entry> entries = users.get(key);
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                users.remove(key);
+            }
+        }
+    }
+}
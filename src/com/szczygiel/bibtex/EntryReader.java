@@ -0,0 +1,390 @@
+package com.szczygiel.bibtex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads {@link Entry entries} one at a time from a {@link Reader}.
+ * <p>
+ * Only a fixed size buffer and the entry being read are kept in memory,
+ * so bibliographies of any size can be filtered in constant memory.
+ * Strings defined with @STRING are carried forward and resolved in following entries,
+ * @STRING entries themselves are not returned.
+ * Crossreferences are not filled and entries are not validated, because it requires the whole document.
+ * Line numbers are exact for inputs of any size.
+ * Offsets are exact for entries ending within the first 2^31 characters, offsets of later entries and their fields
+ * are relative to the beginning of the entry.
+ * Entry without closing bracket ends where the next entry begins, like in {@link Parser#parseDocument}.
+ * Entries longer than {@link Parser#getMaxEntryLength()} are skipped without being buffered.
+ * Problems of skipped and malformed entries are collected in {@link #getDiagnostics()}.
+ */
+class EntryReader implements Iterator<Entry>, Closeable {
+    /**
+     * Default size of the {@link #buffer}.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * {@link Reader} entries are read from.
+     */
+    private final Reader reader;
+
+    /**
+     * {@link Parser} used for parsing single entries.
+     */
+    private final Parser parser;
+
+    /**
+     * Strings defined by already read @STRING entries.
+     */
+    private final Strings strings = new Strings();
+
+    /**
+     * Parser of authors of read entries, caching values repeated across the input.
+     */
+    private final NameParser nameParser = new NameParser();
+
+    /**
+     * {@link Diagnostics} of read entries.
+     */
+    private final Diagnostics diagnostics = new Diagnostics();
+
+    /**
+     * Buffer for characters read from the {@link #reader}.
+     */
+    private final char[] buffer;
+
+    /**
+     * Number of valid characters in the {@link #buffer}.
+     */
+    private int bufferLength = 0;
+
+    /**
+     * Index of the next character to process in the {@link #buffer}.
+     */
+    private int bufferPosition = 0;
+
+    /**
+     * Offset of the next character to process in the whole input.
+     */
+    private long offset = 0;
+
+    /**
+     * Line of the next character to process in the whole input.
+     */
+    private int line = 1;
+
+    /**
+     * Previously processed character, used for finding line beginnings.
+     */
+    private int previous = '\n';
+
+    /**
+     * Characters of the entry being read.
+     */
+    private final StringBuilder entryStr = new StringBuilder();
+
+    /**
+     * Entry which will be returned by {@link #next()}.
+     */
+    private Entry nextEntry;
+
+    /**
+     * Constructor for {@link EntryReader}.
+     *
+     * @param reader {@link Reader} to read entries from
+     */
+    EntryReader(Reader reader) {
+        this(reader, new Parser(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor for {@link EntryReader}.
+     *
+     * @param reader     {@link Reader} to read entries from
+     * @param parser     {@link Parser} used for parsing single entries
+     * @param bufferSize size of the buffer for read characters
+     */
+    EntryReader(Reader reader, Parser parser, int bufferSize) {
+        this.reader = reader;
+        this.parser = parser;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Create {@link EntryReader} reading UTF-8 encoded {@link InputStream}.
+     *
+     * @param inputStream stream to read entries from
+     * @return {@link EntryReader}
+     */
+    static EntryReader of(InputStream inputStream) {
+        return new EntryReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Create {@link EntryReader} reading UTF-8 encoded {@link File}.
+     *
+     * @param file BibTeX {@link File}
+     * @return {@link EntryReader}
+     * @throws IOException when the file cannot be opened
+     */
+    static EntryReader of(File file) throws IOException {
+        return of(new FileInputStream(file));
+    }
+
+    /**
+     * Get {@link #diagnostics}.
+     *
+     * @return diagnostics of entries read so far
+     */
+    Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Check if there are more entries.
+     *
+     * @return true if there are more entries
+     */
+    @Override
+    public boolean hasNext() {
+        while (nextEntry == null) {
+            try {
+                if (!readEntry()) {
+                    return false;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get next entry.
+     *
+     * @return next {@link Entry}
+     */
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Entry entry = nextEntry;
+        nextEntry = null;
+        return entry;
+    }
+
+    /**
+     * Get remaining entries as sequential ordered {@link Stream}.
+     * <p>
+     * Closing the stream closes this reader.
+     *
+     * @return stream of {@link Entry entries}
+     */
+    Stream<Entry> stream() {
+        Spliterator<Entry> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Close the underlying {@link Reader}.
+     *
+     * @throws IOException when the reader cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Read and parse the next entry, setting {@link #nextEntry} when it should be returned.
+     *
+     * @return false when the end of input was reached without finding an entry
+     * @throws IOException when reading fails
+     */
+    private boolean readEntry() throws IOException {
+        long entryOffset = findEntryBeginning();
+        if (entryOffset == -1) {
+            return false;
+        }
+        int entryLine = line;
+
+        // Read the entry until the last bracket, allowing for nested brackets,
+        // entry with missing bracket ends where the next entry begins
+        entryStr.setLength(0);
+        int maxEntryLength = parser.getMaxEntryLength();
+        int bracketLevel = 0;
+        boolean closed = false;
+        while (!closed && (maxEntryLength == 0 || entryStr.length() < maxEntryLength)
+                && (entryStr.length() == 0 || !isEntryBeginning())) {
+            int c = read();
+            if (c == -1) {
+                break;
+            }
+
+            entryStr.append((char) c);
+            if (c == '{') {
+                bracketLevel++;
+            } else if (c == '}') {
+                bracketLevel--;
+                closed = bracketLevel == 0;
+            }
+        }
+
+        if (!closed) {
+            // Skip the entry, next one is searched from the place where reading stopped
+            if (maxEntryLength != 0 && entryStr.length() == maxEntryLength && peek(0) != -1
+                    && !isEntryBeginning()) {
+                // Entries begin at the beginning of a line
+                diagnostics.report(Diagnostic.Code.ENTRY_TOO_LONG, entryLine, 1, null, "entry exceeds size budget of "
+                        + maxEntryLength + " characters, skipping: line " + entryLine);
+                return true;
+            }
+
+            diagnostics.report(Diagnostic.Code.UNCLOSED_ENTRY, entryLine, 1, null,
+                    "entry without closing bracket: line " + entryLine);
+        }
+
+        // Offsets are ints, so past their range the entry is mapped from its own beginning
+        String str = entryStr.toString();
+        int base = entryOffset + str.length() <= Integer.MAX_VALUE ? (int) entryOffset : 0;
+        Entry entry = parser.parseEntry(new Lexer(str), base, new SourceMap(str, base, entryLine), diagnostics);
+        if (entry == null) {
+            return true;
+        }
+
+        if (entry.getEntryType().equals("string")) {
+            strings.extractFrom(List.of(entry), diagnostics);
+            return true;
+        }
+
+        entry.computeStrings(strings, diagnostics);
+        entry.computeConcatenation(strings, diagnostics);
+        entry.removeUnknownFields();
+        entry.fillAuthors(nameParser);
+        nextEntry = entry;
+        return true;
+    }
+
+    /**
+     * Skip characters until '@' at the beginning of a line followed by an entry type.
+     * <p>
+     * Leaves the '@' character as the next character to read.
+     *
+     * @return offset of the entry beginning or -1 when the end of input was reached
+     * @throws IOException when reading fails
+     */
+    private long findEntryBeginning() throws IOException {
+        while (true) {
+            int c = peek(0);
+            if (c == -1) {
+                return -1;
+            }
+
+            if (isEntryBeginning()) {
+                return offset;
+            }
+
+            read();
+        }
+    }
+
+    /**
+     * Check if the next character to read is '@' at the beginning of a line followed by an entry type.
+     *
+     * @return true if an entry begins at the next character
+     * @throws IOException when reading fails
+     */
+    private boolean isEntryBeginning() throws IOException {
+        if (peek(0) != '@' || (previous != '\n' && previous != '\r')) {
+            return false;
+        }
+
+        int next = peek(1);
+        return next != -1 && Lexer.isIdentifierStart((char) next);
+    }
+
+    /**
+     * Get character without consuming it.
+     *
+     * @param ahead how many characters to look ahead, 0 or 1
+     * @return character or -1 at the end of input
+     * @throws IOException when reading fails
+     */
+    private int peek(int ahead) throws IOException {
+        while (bufferPosition + ahead >= bufferLength) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+
+        return buffer[bufferPosition + ahead];
+    }
+
+    /**
+     * Consume next character, updating {@link #offset} and {@link #line}.
+     *
+     * @return character or -1 at the end of input
+     * @throws IOException when reading fails
+     */
+    private int read() throws IOException {
+        int c = peek(0);
+        if (c == -1) {
+            return -1;
+        }
+
+        bufferPosition++;
+        offset++;
+        if (c == '\r' || (c == '\n' && previous != '\r')) {
+            line++;
+        }
+
+        previous = c;
+        return c;
+    }
+
+    /**
+     * Read more characters into the {@link #buffer}, keeping the unprocessed ones.
+     *
+     * @return false when no more characters could be read
+     * @throws IOException when reading fails
+     */
+    private boolean fill() throws IOException {
+        int remaining = bufferLength - bufferPosition;
+        System.arraycopy(buffer, bufferPosition, buffer, 0, remaining);
+        bufferPosition = 0;
+        bufferLength = remaining;
+
+        int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+        if (read <= 0) {
+            return false;
+        }
+
+        bufferLength += read;
+        return true;
+    }
+}
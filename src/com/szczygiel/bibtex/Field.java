@@ -11,13 +11,46 @@ class Field {
      */
     private String key;
 
+    /**
+     * {@link FieldKeys ID} of the {@link #key} or {@link FieldKeys#UNKNOWN} when it isn't well-known.
+     */
+    private int keyId = FieldKeys.UNKNOWN;
+
     /**
      * Raw value of a field.
      * <p>
      * It is field's value before parsing.
+     * Not stored when the field is backed by its {@link #source}.
      */
     private String raw;
 
+    /**
+     * Input this field was parsed from.
+     * <p>
+     * Raw value and not yet decoded value are read from it on demand.
+     */
+    private CharSequence source;
+
+    /**
+     * Index in the {@link #source} at which this field begins.
+     */
+    private int rawStart;
+
+    /**
+     * Index in the {@link #source} right after the last character of this field.
+     */
+    private int rawEnd;
+
+    /**
+     * Index in the {@link #source} at which the value begins, including its quote or bracket.
+     */
+    private int valueStart;
+
+    /**
+     * Index in the {@link #source} right after the last character of the value, including its quote or bracket.
+     */
+    private int valueEnd;
+
     /**
      * {@link Type Field's type}.
      */
@@ -29,9 +62,42 @@ class Field {
      * It can have following types:
      * - {@link String}
      * - {@link Integer}
+     * <p>
+     * It is null until the value is decoded from the {@link #source}.
+     * Values of {@link Type#NUMBER} fields parsed from a source are kept only in the {@link #number}.
      */
     private Object value;
 
+    /**
+     * Value of a {@link Type#NUMBER} field, without boxing.
+     */
+    private int number;
+
+    /**
+     * Compiled value of a {@link Type#REFERENCE} or {@link Type#CONCATENATION} field, null until it is needed.
+     */
+    private Concatenation concatenation;
+
+    /**
+     * {@link EntryBlock} which {@link #offset} and {@link #lineNumber} are relative to, null when they are absolute.
+     */
+    private EntryBlock block;
+
+    /**
+     * Offset of the first character of this field in file.
+     */
+    private int offset;
+
+    /**
+     * Line number in file at which this field begins.
+     */
+    private int lineNumber;
+
+    /**
+     * Column number in file at which this field begins.
+     */
+    private int columnNumber;
+
     /**
      * Get {@link #key}.
      *
@@ -48,6 +114,16 @@ class Field {
      */
     void setKey(String key) {
         this.key = key;
+        this.keyId = FieldKeys.id(key);
+    }
+
+    /**
+     * Get {@link #keyId}.
+     *
+     * @return key ID or {@link FieldKeys#UNKNOWN}
+     */
+    int getKeyId() {
+        return keyId;
     }
 
     /**
@@ -56,6 +132,10 @@ class Field {
      * @return raw value
      */
     String getRaw() {
+        if (raw == null && source != null) {
+            return source.subSequence(rawStart, rawEnd).toString();
+        }
+
         return raw;
     }
 
@@ -68,6 +148,23 @@ class Field {
         this.raw = raw;
     }
 
+    /**
+     * Back this field by its {@link #source}, so raw value and value can be decoded when they are accessed.
+     *
+     * @param source     input this field was parsed from
+     * @param rawStart   {@link #rawStart}
+     * @param rawEnd     {@link #rawEnd}
+     * @param valueStart {@link #valueStart}
+     * @param valueEnd   {@link #valueEnd}
+     */
+    void setSource(CharSequence source, int rawStart, int rawEnd, int valueStart, int valueEnd) {
+        this.source = source;
+        this.rawStart = rawStart;
+        this.rawEnd = rawEnd;
+        this.valueStart = valueStart;
+        this.valueEnd = valueEnd;
+    }
+
     /**
      * Get {@link #type}.
      *
@@ -88,10 +185,20 @@ class Field {
 
     /**
      * Get {@link #value}.
+     * <p>
+     * Decodes the value from the {@link #source} on first access.
      *
      * @return value
      */
     Object getValue() {
+        if (value == null && type == Type.NUMBER) {
+            return number;
+        }
+
+        if (value == null && source != null) {
+            value = decodeValue();
+        }
+
         return value;
     }
 
@@ -102,6 +209,225 @@ class Field {
      */
     void setValue(Object value) {
         this.value = value;
+        if (value instanceof Integer) {
+            this.number = (Integer) value;
+        }
+    }
+
+    /**
+     * Set {@link #number}.
+     *
+     * @param number value of a {@link Type#NUMBER} field
+     */
+    void setNumber(int number) {
+        this.number = number;
+    }
+
+    /**
+     * Check if the value is an integer, either a {@link Type#NUMBER} or a string like "1984" or {1984}.
+     *
+     * @return true if {@link #getLong()} can be called
+     */
+    boolean isNumeric() {
+        if (type == Type.NUMBER) {
+            return true;
+        } else if (type != Type.STRING) {
+            return false;
+        }
+
+        String value = (String) getValue();
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end && value.charAt(start) == '-') {
+            start++;
+        }
+
+        // Up to 18 digits always fit into a long
+        if (start == end || end - start > 18) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get value as an int.
+     *
+     * @return integer value
+     * @throws NumberFormatException when the value isn't an integer or doesn't fit into an int
+     */
+    int getInt() {
+        if (type == Type.NUMBER) {
+            return number;
+        }
+
+        return Integer.parseInt(getNumericString());
+    }
+
+    /**
+     * Get value as a long.
+     *
+     * @return integer value
+     * @throws NumberFormatException when the value isn't an integer or doesn't fit into a long
+     */
+    long getLong() {
+        if (type == Type.NUMBER) {
+            return number;
+        }
+
+        return Long.parseLong(getNumericString());
+    }
+
+    /**
+     * Get value as a range of pages, e.g. "12--24".
+     *
+     * @return page range or null when the value isn't a range of pages
+     */
+    PageRange getPageRange() {
+        if (type == Type.NUMBER) {
+            return new PageRange(number, number);
+        } else if (type != Type.STRING) {
+            return null;
+        }
+
+        return PageRange.parse((String) getValue());
+    }
+
+    /**
+     * Get string value of a field which is supposed to be an integer.
+     *
+     * @return stripped string value
+     * @throws NumberFormatException when the field isn't a {@link Type#STRING string} field
+     */
+    private String getNumericString() {
+        if (type != Type.STRING) {
+            throw new NumberFormatException("field " + key + " of type " + type + " is not a number");
+        }
+
+        return ((String) getValue()).strip();
+    }
+
+    /**
+     * Get {@link #offset}.
+     *
+     * @return offset
+     */
+    int getOffset() {
+        return block == null ? offset : block.getOffset() + offset;
+    }
+
+    /**
+     * Set {@link #offset}.
+     *
+     * @param offset offset
+     */
+    void setOffset(int offset) {
+        this.offset = block == null ? offset : offset - block.getOffset();
+    }
+
+    /**
+     * Get {@link #lineNumber}.
+     *
+     * @return line number
+     */
+    int getLineNumber() {
+        return block == null ? lineNumber : block.getLineNumber() + lineNumber;
+    }
+
+    /**
+     * Set {@link #lineNumber}.
+     *
+     * @param lineNumber line number
+     */
+    void setLineNumber(int lineNumber) {
+        this.lineNumber = block == null ? lineNumber : lineNumber - block.getLineNumber();
+    }
+
+    /**
+     * Set {@link #block}, keeping position of this field.
+     *
+     * @param block block or null to make position of this field absolute
+     */
+    void setBlock(EntryBlock block) {
+        int offset = getOffset();
+        int lineNumber = getLineNumber();
+        this.block = block;
+        setOffset(offset);
+        setLineNumber(lineNumber);
+    }
+
+    /**
+     * Get {@link #columnNumber}.
+     *
+     * @return column number
+     */
+    int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Set {@link #columnNumber}.
+     *
+     * @param columnNumber column number
+     */
+    void setColumnNumber(int columnNumber) {
+        this.columnNumber = columnNumber;
+    }
+
+    /**
+     * Get {@link #concatenation}, compiling it from the value when it wasn't compiled yet.
+     *
+     * @return compiled value or null when the field isn't a valid reference or concatenation
+     */
+    Concatenation getConcatenation() {
+        if (concatenation == null && (type == Type.REFERENCE || type == Type.CONCATENATION)) {
+            if (value == null && source != null) {
+                concatenation = Concatenation.compile(source, valueStart, valueEnd);
+            } else if (value instanceof String) {
+                String str = (String) value;
+                concatenation = Concatenation.compile(str, 0, str.length());
+            }
+        }
+
+        return concatenation;
+    }
+
+    /**
+     * Set {@link #concatenation}.
+     *
+     * @param concatenation compiled value, null to release it
+     */
+    void setConcatenation(Concatenation concatenation) {
+        this.concatenation = concatenation;
+    }
+
+    /**
+     * Decode value from the {@link #source} according to the {@link #type}.
+     *
+     * @return decoded value or null when the field is of {@link Type#UNKNOWN} type
+     */
+    private Object decodeValue() {
+        switch (type) {
+            case STRING:
+                // Strip quotes or brackets
+                return source.subSequence(valueStart + 1, valueEnd - 1).toString();
+            case REFERENCE:
+            case CONCATENATION:
+                return source.subSequence(valueStart, valueEnd).toString();
+            default:
+                return null;
+        }
     }
 
     /**
@@ -119,7 +445,7 @@ class Field {
 
         if (!key.equals(field.key)) return false;
         if (type != field.type) return false;
-        return value.equals(field.value);
+        return getValue().equals(field.getValue());
     }
 
     /**
@@ -132,19 +458,19 @@ class Field {
         String str = "";
         switch (type) {
             case STRING:
-                str = key + "(string): " + value;
+                str = key + "(string): " + getValue();
                 break;
             case NUMBER:
-                str = key + "(number): " + value;
+                str = key + "(number): " + getValue();
                 break;
             case REFERENCE:
-                str = key + "(reference): " + value;
+                str = key + "(reference): " + getValue();
                 break;
             case CONCATENATION:
-                str = key + "(concatenation): " + value;
+                str = key + "(concatenation): " + getValue();
                 break;
             case UNKNOWN:
-                str = key + "(unknown): " + raw;
+                str = key + "(unknown): " + getRaw();
                 break;
         }
 
@@ -0,0 +1,230 @@
+package com.szczygiel.bibtex;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps well-known BibTeX field names into small integer IDs.
+ * <p>
+ * IDs are assigned once, when a {@link Field#setKey field's key is set} by the parser,
+ * so {@link Entry#getField(int) looking up a field} doesn't compare strings.
+ * There are at most 64 IDs, so a set of fields fits into a single long.
+ */
+final class FieldKeys {
+    /**
+     * ID of a field name which isn't well-known.
+     */
+    static final int UNKNOWN = -1;
+
+    /**
+     * ID of the 'abstract' field.
+     */
+    static final int ABSTRACT = 0;
+
+    /**
+     * ID of the 'address' field.
+     */
+    static final int ADDRESS = 1;
+
+    /**
+     * ID of the 'annote' field.
+     */
+    static final int ANNOTE = 2;
+
+    /**
+     * ID of the 'author' field.
+     */
+    static final int AUTHOR = 3;
+
+    /**
+     * ID of the 'booktitle' field.
+     */
+    static final int BOOKTITLE = 4;
+
+    /**
+     * ID of the 'chapter' field.
+     */
+    static final int CHAPTER = 5;
+
+    /**
+     * ID of the 'crossref' field.
+     */
+    static final int CROSSREF = 6;
+
+    /**
+     * ID of the 'doi' field.
+     */
+    static final int DOI = 7;
+
+    /**
+     * ID of the 'edition' field.
+     */
+    static final int EDITION = 8;
+
+    /**
+     * ID of the 'editor' field.
+     */
+    static final int EDITOR = 9;
+
+    /**
+     * ID of the 'eprint' field.
+     */
+    static final int EPRINT = 10;
+
+    /**
+     * ID of the 'howpublished' field.
+     */
+    static final int HOWPUBLISHED = 11;
+
+    /**
+     * ID of the 'institution' field.
+     */
+    static final int INSTITUTION = 12;
+
+    /**
+     * ID of the 'isbn' field.
+     */
+    static final int ISBN = 13;
+
+    /**
+     * ID of the 'issn' field.
+     */
+    static final int ISSN = 14;
+
+    /**
+     * ID of the 'journal' field.
+     */
+    static final int JOURNAL = 15;
+
+    /**
+     * ID of the 'key' field.
+     */
+    static final int KEY = 16;
+
+    /**
+     * ID of the 'keywords' field.
+     */
+    static final int KEYWORDS = 17;
+
+    /**
+     * ID of the 'month' field.
+     */
+    static final int MONTH = 18;
+
+    /**
+     * ID of the 'note' field.
+     */
+    static final int NOTE = 19;
+
+    /**
+     * ID of the 'number' field.
+     */
+    static final int NUMBER = 20;
+
+    /**
+     * ID of the 'organization' field.
+     */
+    static final int ORGANIZATION = 21;
+
+    /**
+     * ID of the 'pages' field.
+     */
+    static final int PAGES = 22;
+
+    /**
+     * ID of the 'publisher' field.
+     */
+    static final int PUBLISHER = 23;
+
+    /**
+     * ID of the 'school' field.
+     */
+    static final int SCHOOL = 24;
+
+    /**
+     * ID of the 'series' field.
+     */
+    static final int SERIES = 25;
+
+    /**
+     * ID of the 'title' field.
+     */
+    static final int TITLE = 26;
+
+    /**
+     * ID of the 'type' field.
+     */
+    static final int TYPE = 27;
+
+    /**
+     * ID of the 'url' field.
+     */
+    static final int URL = 28;
+
+    /**
+     * ID of the 'volume' field.
+     */
+    static final int VOLUME = 29;
+
+    /**
+     * ID of the 'year' field.
+     */
+    static final int YEAR = 30;
+
+    /**
+     * Names of fields at indexes of their IDs.
+     */
+    private static final String[] NAMES = {
+            "abstract", "address", "annote", "author", "booktitle", "chapter", "crossref", "doi", "edition", "editor",
+            "eprint", "howpublished", "institution", "isbn", "issn", "journal", "key", "keywords", "month", "note",
+            "number", "organization", "pages", "publisher", "school", "series", "title", "type", "url", "volume",
+            "year"
+    };
+
+    /**
+     * IDs of field names.
+     */
+    private static final Map<String, Integer> IDS = new HashMap<>();
+
+    static {
+        for (int id = 0; id < NAMES.length; id++) {
+            IDS.put(NAMES[id], id);
+        }
+    }
+
+    /**
+     * Prevents creating new instance of this class.
+     */
+    private FieldKeys() {
+
+    }
+
+    /**
+     * Get ID of a field name.
+     *
+     * @param name lowercase field name
+     * @return ID or {@link #UNKNOWN} when the name isn't well-known
+     */
+    static int id(String name) {
+        return IDS.getOrDefault(name, UNKNOWN);
+    }
+
+    /**
+     * Get name of a field ID.
+     *
+     * @param id field ID
+     * @return lowercase field name
+     */
+    static String name(int id) {
+        return NAMES[id];
+    }
+
+    /**
+     * Get number of well-known field names.
+     *
+     * @return number of IDs
+     */
+    static int count() {
+        return NAMES.length;
+    }
+}
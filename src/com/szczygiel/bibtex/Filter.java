@@ -1,6 +1,8 @@
 package com.szczygiel.bibtex;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -36,19 +38,106 @@ class Filter {
      * <p>
      * This filter uses logic AND to filter.
      * This means that it will return {@link Entry entries} written by all of given authors.
+     * Names are compared {@link AuthorIndex#normalize normalized}.
      *
      * @param entries list of {@link Entry entries} to filter
      * @param authors wanted authors' names
      * @return filtered list of {@link Entry entries}
      */
     static List<Entry> filterAuthors(List<Entry> entries, Set<String> authors) {
+        Set<String> normalized = new HashSet<>();
+        for (String author : authors) {
+            normalized.add(AuthorIndex.normalize(author));
+        }
+
         List<Entry> filteredEntries = new ArrayList<>();
+        Set<String> found = new HashSet<>();
         for (Entry entry : entries) {
-            if (entry.getAuthorsLastNames().containsAll(authors)) {
+            found.clear();
+            for (Entry.Author author : entry.getAuthors()) {
+                String lastName = AuthorIndex.normalize(author.lastName);
+                if (normalized.contains(lastName)) {
+                    found.add(lastName);
+                }
+            }
+
+            if (found.size() == normalized.size()) {
                 filteredEntries.add(entry);
             }
         }
 
         return filteredEntries;
     }
+
+    /**
+     * Filter {@link Entry entries} of an {@link AuthorIndex} by authors' names.
+     * <p>
+     * This filter uses logic AND to filter, just like {@link #filterAuthors(List, Set)},
+     * but intersects lists of the index instead of checking every entry.
+     *
+     * @param index   index of {@link Entry entries} to filter
+     * @param authors wanted authors' names
+     * @return filtered list of {@link Entry entries}, in the order of the indexed list
+     */
+    static List<Entry> filterAuthors(AuthorIndex index, Set<String> authors) {
+        return index.get(authors);
+    }
+
+    /**
+     * Filter {@link Entry entries} by their years.
+     * <p>
+     * Years are compared as primitives, {@link Entry entries} without numeric year are skipped.
+     *
+     * @param entries list of {@link Entry entries} to filter
+     * @param from    first wanted year
+     * @param to      last wanted year
+     * @return filtered list of {@link Entry entries}
+     */
+    static List<Entry> filterYears(List<Entry> entries, long from, long to) {
+        List<Entry> filteredEntries = new ArrayList<>();
+        for (Entry entry : entries) {
+            Field year = entry.getField(FieldKeys.YEAR);
+            if (year != null && year.isNumeric()) {
+                long value = year.getLong();
+                if (value >= from && value <= to) {
+                    filteredEntries.add(entry);
+                }
+            }
+        }
+
+        return filteredEntries;
+    }
+
+    /**
+     * Sort {@link Entry entries} by their years.
+     * <p>
+     * Sorts primitive keys, packing every year with the index of its entry, so the sort is stable.
+     * {@link Entry Entries} without numeric year or with year which doesn't fit into an int are placed last.
+     *
+     * @param entries list of {@link Entry entries} to sort
+     * @return sorted list of {@link Entry entries}
+     */
+    static List<Entry> sortYears(List<Entry> entries) {
+        long[] keys = new long[entries.size()];
+        List<Entry> undated = new ArrayList<>();
+        int count = 0;
+        for (int index = 0; index < entries.size(); index++) {
+            Field year = entries.get(index).getField(FieldKeys.YEAR);
+            if (year != null && year.isNumeric() && (int) year.getLong() == year.getLong()) {
+                keys[count++] = (long) year.getInt() << 32 | index;
+            } else {
+                undated.add(entries.get(index));
+            }
+        }
+
+        Arrays.sort(keys, 0, count);
+
+        List<Entry> sortedEntries = new ArrayList<>(entries.size());
+        for (int i = 0; i < count; i++) {
+            sortedEntries.add(entries.get((int) keys[i]));
+        }
+        sortedEntries.addAll(undated);
+
+        return sortedEntries;
+    }
 }
@@ -0,0 +1,470 @@
+package com.szczygiel.bibtex;
+
+/**
+ * Splits BibTeX input into {@link Token tokens}.
+ * <p>
+ * Walks the input character by character, so every entry is scanned exactly once
+ * without any backtracking.
+ * The lexer doesn't allocate tokens - it only remembers type and bounds of the current one.
+ */
+class Lexer {
+    /**
+     * Input being tokenized.
+     */
+    private final CharSequence input;
+
+    /**
+     * Index right after the last character available to this lexer.
+     */
+    private int end;
+
+    /**
+     * Index of the next character to read.
+     */
+    private int position;
+
+    /**
+     * Type of the current token.
+     */
+    private Token token = Token.EOF;
+
+    /**
+     * Index at which the current token begins.
+     */
+    private int tokenStart;
+
+    /**
+     * Index right after the last character of the current token.
+     */
+    private int tokenEnd;
+
+    /**
+     * Constructor for {@link Lexer} tokenizing whole input.
+     *
+     * @param input input to tokenize
+     */
+    Lexer(CharSequence input) {
+        this(input, 0, input.length());
+    }
+
+    /**
+     * Constructor for {@link Lexer} tokenizing only part of the input.
+     *
+     * @param input input to tokenize
+     * @param start index of the first character to tokenize
+     * @param end   index right after the last character to tokenize
+     */
+    Lexer(CharSequence input, int start, int end) {
+        this.input = input;
+        this.position = start;
+        this.end = end;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+    }
+
+    /**
+     * Limit this lexer to another part of the same input.
+     * <p>
+     * Lets single lexer be reused for many entries of a document.
+     *
+     * @param start index of the first character to tokenize
+     * @param end   index right after the last character to tokenize
+     */
+    void reset(int start, int end) {
+        this.position = start;
+        this.end = end;
+        this.token = Token.EOF;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+    }
+
+    /**
+     * Check if character can begin an identifier.
+     *
+     * @param c character
+     * @return true if character can begin an identifier
+     */
+    static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    /**
+     * Check if character can be a part of an identifier.
+     *
+     * @param c character
+     * @return true if character can be a part of an identifier
+     */
+    static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c) || c == '-';
+    }
+
+    /**
+     * Check if character is a decimal digit.
+     *
+     * @param c character
+     * @return true if character is a digit
+     */
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Check if character can be a part of a citation key.
+     * <p>
+     * Citation keys are more liberal than identifiers, e.g. 'knuth:1984' or '2018-report'.
+     *
+     * @param c character
+     * @return true if character can be a part of a citation key
+     */
+    private static boolean isKeyPart(char c) {
+        switch (c) {
+            case ',':
+            case '=':
+            case '{':
+            case '}':
+            case '(':
+            case ')':
+            case '"':
+            case '#':
+            case '%':
+                return false;
+            default:
+                return !Character.isWhitespace(c);
+        }
+    }
+
+    /**
+     * Read next token.
+     *
+     * @return type of the read token
+     */
+    Token next() {
+        skipWhitespace();
+        tokenStart = position;
+
+        if (position >= end) {
+            return finish(Token.EOF, position);
+        }
+
+        char c = input.charAt(position);
+        switch (c) {
+            case '@':
+                return finish(Token.AT, position + 1);
+            case '{':
+                return finish(Token.LEFT_BRACE, position + 1);
+            case '}':
+                return finish(Token.RIGHT_BRACE, position + 1);
+            case ',':
+                return finish(Token.COMMA, position + 1);
+            case '=':
+                return finish(Token.EQUALS, position + 1);
+            case '#':
+                return finish(Token.HASH, position + 1);
+            case '"':
+                return quoted();
+        }
+
+        if (isDigit(c)) {
+            int i = position + 1;
+            while (i < end && isDigit(input.charAt(i))) {
+                i++;
+            }
+
+            return finish(Token.NUMBER, i);
+        }
+
+        if (isIdentifierStart(c)) {
+            int i = position + 1;
+            while (i < end && isIdentifierPart(input.charAt(i))) {
+                i++;
+            }
+
+            return finish(Token.IDENTIFIER, i);
+        }
+
+        return finish(Token.UNKNOWN, position + 1);
+    }
+
+    /**
+     * Read a braced value.
+     * <p>
+     * Must be called right after {@link Token#LEFT_BRACE} was read.
+     * Allows for nested brackets.
+     *
+     * @return {@link Token#BRACED} or {@link Token#UNTERMINATED} when closing bracket is missing
+     */
+    Token braced() {
+        int start = tokenStart;
+        int level = 1;
+        for (int i = position; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == '{') {
+                level++;
+            } else if (c == '}') {
+                level--;
+
+                if (level == 0) {
+                    finish(Token.BRACED, i + 1);
+                    tokenStart = start;
+                    return token;
+                }
+            }
+        }
+
+        finish(Token.UNTERMINATED, end);
+        tokenStart = start;
+        return token;
+    }
+
+    /**
+     * Read a citation key.
+     *
+     * @return {@link Token#KEY} or {@link Token#UNKNOWN} when there is no key at current position
+     */
+    Token key() {
+        skipWhitespace();
+        tokenStart = position;
+
+        int i = position;
+        while (i < end && isKeyPart(input.charAt(i))) {
+            i++;
+        }
+
+        if (i == position) {
+            return finish(Token.UNKNOWN, position);
+        }
+
+        return finish(Token.KEY, i);
+    }
+
+    /**
+     * Get type of the current token.
+     *
+     * @return current token
+     */
+    Token token() {
+        return token;
+    }
+
+    /**
+     * Get index at which the current token begins.
+     *
+     * @return token's beginning index
+     */
+    int start() {
+        return tokenStart;
+    }
+
+    /**
+     * Get index right after the last character of the current token.
+     *
+     * @return token's ending index
+     */
+    int end() {
+        return tokenEnd;
+    }
+
+    /**
+     * Get text of the current token.
+     *
+     * @return token's text
+     */
+    String text() {
+        return text(tokenStart, tokenEnd);
+    }
+
+    /**
+     * Get contents of the current token without its delimiters.
+     * <p>
+     * Strips quotes of {@link Token#QUOTED} and brackets of {@link Token#BRACED} tokens.
+     *
+     * @return token's contents
+     */
+    String contents() {
+        if (token == Token.QUOTED || token == Token.BRACED) {
+            return text(tokenStart + 1, tokenEnd - 1);
+        }
+
+        return text();
+    }
+
+    /**
+     * Get value of the current {@link Token#NUMBER} token.
+     *
+     * @return token's value
+     * @throws NumberFormatException when the number is too big
+     */
+    int intValue() {
+        return Integer.parseInt(input, tokenStart, tokenEnd, 10);
+    }
+
+    /**
+     * Get index right after the last character available to this lexer.
+     *
+     * @return limit
+     */
+    int limit() {
+        return end;
+    }
+
+    /**
+     * Get the tokenized input.
+     *
+     * @return input
+     */
+    CharSequence input() {
+        return input;
+    }
+
+    /**
+     * Get part of the input.
+     *
+     * @param start beginning index, inclusive
+     * @param end   ending index, exclusive
+     * @return part of the input as {@link String}
+     */
+    String text(int start, int end) {
+        return input.subSequence(start, end).toString();
+    }
+
+    /**
+     * Get index of the next character to read.
+     *
+     * @return position
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Move to the given position.
+     * <p>
+     * Used for going back to previously remembered {@link #position()}.
+     *
+     * @param position new position
+     */
+    void seek(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Read a quoted value.
+     * <p>
+     * Quotes inside brackets don't end the value, e.g. "{\"o}".
+     *
+     * @return {@link Token#QUOTED} or {@link Token#UNTERMINATED} when closing quote is missing
+     */
+    private Token quoted() {
+        int level = 0;
+        for (int i = position + 1; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == '{') {
+                level++;
+            } else if (c == '}') {
+                level--;
+            } else if (c == '"' && level <= 0) {
+                return finish(Token.QUOTED, i + 1);
+            }
+        }
+
+        return finish(Token.UNTERMINATED, end);
+    }
+
+    /**
+     * Skip whitespace characters.
+     */
+    private void skipWhitespace() {
+        while (position < end && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Set current token which ends at the given index.
+     *
+     * @param token    token type
+     * @param tokenEnd index right after the last character of the token
+     * @return token type
+     */
+    private Token finish(Token token, int tokenEnd) {
+        this.token = token;
+        this.tokenEnd = tokenEnd;
+        this.position = tokenEnd;
+        return token;
+    }
+
+    /**
+     * Available types of tokens.
+     */
+    enum Token {
+        /**
+         * '@' character beginning an entry.
+         */
+        AT,
+
+        /**
+         * Entry type, field name or string reference, e.g. article, author, jan.
+         */
+        IDENTIFIER,
+
+        /**
+         * Citation key, read only by {@link #key()}.
+         */
+        KEY,
+
+        /**
+         * Sequence of digits.
+         */
+        NUMBER,
+
+        /**
+         * Value enclosed in quotes.
+         */
+        QUOTED,
+
+        /**
+         * Value enclosed in brackets, read only by {@link #braced()}.
+         */
+        BRACED,
+
+        /**
+         * Quoted or braced value missing its closing character.
+         */
+        UNTERMINATED,
+
+        /**
+         * '{' character.
+         */
+        LEFT_BRACE,
+
+        /**
+         * '}' character.
+         */
+        RIGHT_BRACE,
+
+        /**
+         * ',' character.
+         */
+        COMMA,
+
+        /**
+         * '=' character.
+         */
+        EQUALS,
+
+        /**
+         * '#' character.
+         */
+        HASH,
+
+        /**
+         * Any other character.
+         */
+        UNKNOWN,
+
+        /**
+         * End of input.
+         */
+        EOF
+    }
+}
@@ -5,8 +5,13 @@ import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -18,6 +23,17 @@ import java.util.stream.Collectors;
  * <li>-f, --file=FILE<br>path to BibTeX file</li>
  * <li>-a, --author=AUTHOR[,AUTHOR...]<br>author(s) to search for</li>
  * <li>-t, --type=TYPE[,TYPE...]<br>entry type(s) to search for</li>
+ * <li>-y, --year=YEAR[-YEAR]<br>year or range of years to search for</li>
+ * <li>-q, --query=QUERY<br>{@link Query query} entries have to match, e.g. "type=article AND year=1970..1979"</li>
+ * <li>--explain<br>print plan of the query before entries</li>
+ * <li>--search=TEXT<br>display entries best matching words of titles, abstracts, notes and keywords</li>
+ * <li>--top=COUNT<br>maximal number of entries found by --search</li>
+ * <li>-s, --sort<br>sort entries by year</li>
+ * <li>-p, --parallel<br>parse entries in parallel on all cores</li>
+ * <li>-m, --mmap<br>memory-map the file instead of reading it onto the heap</li>
+ * <li>--max-entry-size=CHARS<br>skip entries longer than given number of characters, 0 for no limit</li>
+ * <li>--max-entry-time=MILLIS<br>skip entries taking longer to parse, 0 for no limit</li>
+ * <li>-w, --watch<br>keep running and display entries again whenever the file changes</li>
  * <li>-h, --help<br>show help message and exit</li>
  * <li>-v, --version<br>print version information and exit</li>
  * </ul>
@@ -60,6 +76,94 @@ public class Main implements Runnable {
     @Option(names = {"-t", "--type"}, split = ",", paramLabel = "TYPE", description = "entry type(s) to search for")
     private Set<String> entryTypes = new LinkedHashSet<>();
 
+    /**
+     * Year or range of years used for filtering.
+     */
+    @Option(names = {"-y", "--year"}, paramLabel = "YEAR[-YEAR]", description = "year or range of years to " +
+            "search for")
+    private String years;
+
+    /**
+     * First year used for filtering.
+     */
+    private long fromYear = Long.MIN_VALUE;
+
+    /**
+     * Last year used for filtering.
+     */
+    private long toYear = Long.MAX_VALUE;
+
+    /**
+     * Query entries have to match.
+     */
+    @Option(names = {"-q", "--query"}, paramLabel = "QUERY", description = "query entries have to match, e.g. " +
+            "\"type=article AND (author=Knuth OR year>=1990)\"")
+    private String queryText;
+
+    /**
+     * Print plan of the query.
+     */
+    @Option(names = {"--explain"}, description = "print plan of the query before entries")
+    private boolean explain;
+
+    /**
+     * Text to search for.
+     */
+    @Option(names = {"--search"}, paramLabel = "TEXT", description = "display entries best matching words of " +
+            "titles, abstracts, notes and keywords")
+    private String search;
+
+    /**
+     * Maximal number of entries found by the {@link #search}.
+     */
+    @Option(names = {"--top"}, paramLabel = "COUNT", description = "maximal number of entries found by --search " +
+            "(default: ${DEFAULT-VALUE})")
+    private int top = 10;
+
+    /**
+     * {@link Query} combining the {@link #queryText} with other filters.
+     */
+    private Query query;
+
+    /**
+     * Sort entries by year.
+     */
+    @Option(names = {"-s", "--sort"}, description = "sort entries by year")
+    private boolean sort;
+
+    /**
+     * Parse entries in parallel.
+     */
+    @Option(names = {"-p", "--parallel"}, description = "parse entries in parallel on all cores")
+    private boolean parallel;
+
+    /**
+     * Memory-map the file.
+     */
+    @Option(names = {"-m", "--mmap"}, description = "memory-map the file instead of reading it onto the heap")
+    private boolean mmap;
+
+    /**
+     * Maximal number of characters of a single entry.
+     */
+    @Option(names = {"--max-entry-size"}, paramLabel = "CHARS", description = "skip entries longer than given " +
+            "number of characters, 0 for no limit (default: ${DEFAULT-VALUE})")
+    private int maxEntrySize = Parser.DEFAULT_MAX_ENTRY_LENGTH;
+
+    /**
+     * Maximal time of parsing a single entry in milliseconds.
+     */
+    @Option(names = {"--max-entry-time"}, paramLabel = "MILLIS", description = "skip entries taking longer to " +
+            "parse, 0 for no limit (default: ${DEFAULT-VALUE})")
+    private long maxEntryTime = 0;
+
+    /**
+     * Watch the file for changes.
+     */
+    @Option(names = {"-w", "--watch"}, description = "keep running and display entries again whenever the file " +
+            "changes")
+    private boolean watch;
+
     /**
      * Entry point of the program.
      *
@@ -79,33 +183,187 @@ public class Main implements Runnable {
         // Convert entry types from arguments to lowercase, so they match those from entry objects
         entryTypes = entryTypes.stream().map(String::toLowerCase).collect(Collectors.toSet());
 
+        if (maxEntrySize < 0 || maxEntryTime < 0) {
+            System.err.println("entry budgets cannot be negative");
+            return;
+        }
+
+        if (top <= 0) {
+            System.err.println("number of found entries must be positive");
+            return;
+        }
+
+        if (years != null && !parseYears()) {
+            System.err.println("invalid year or range of years: " + years);
+            return;
+        }
+
+        try {
+            query = buildQuery();
+        } catch (IllegalArgumentException e) {
+            System.err.println("invalid query: " + e.getMessage());
+            return;
+        }
+
         Document document = new Document();
-        if (document.loadFile(file)) {
+        document.setParser(new Parser(false, maxEntrySize, maxEntryTime * 1_000_000));
+        boolean loaded = mmap ? document.mapFile(file) : document.loadFile(file);
+        if (!loaded) {
+            return;
+        }
+
+        if (parallel) {
+            document.parseParallel();
+        } else {
             document.parse();
+        }
+        report(document.getDiagnostics());
+        display(document);
 
-            // Filter entries
-            List<Entry> filteredEntries = document.getEntries();
-            if (!entryTypes.isEmpty()) {
-                filteredEntries = Filter.filterTypes(filteredEntries, entryTypes);
-            }
-            if (!authors.isEmpty()) {
-                filteredEntries = Filter.filterAuthors(filteredEntries, authors);
+        if (watch) {
+            watch(document);
+        }
+    }
+
+    /**
+     * Wait for changes of the {@link #file}, displaying entries again after each one.
+     * <p>
+     * Only the changed part of the file is parsed again, the document stays in memory between changes.
+     * Problems of the changed entries are reported, invalid entries are skipped.
+     *
+     * @param document {@link Document} loaded from the {@link #file}
+     */
+    private void watch(Document document) {
+        try (DocumentWatcher watcher = new DocumentWatcher(document, file)) {
+            while (true) {
+                try {
+                    if (!watcher.awaitChange()) {
+                        System.err.println("unable to watch file any more: " + file.getAbsolutePath());
+                        return;
+                    }
+                } catch (IOException e) {
+                    System.err.println("unable to reload file: " + e.getMessage());
+                    continue;
+                }
+
+                System.out.println("\n\nFile changed, displaying entries again.\n");
+                report(document.getDiagnostics());
+                display(document);
             }
+        } catch (IOException e) {
+            System.err.println("unable to watch file: " + file.getAbsolutePath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parse {@link #years} into {@link #fromYear} and {@link #toYear}.
+     *
+     * @return false when the years are invalid
+     */
+    private boolean parseYears() {
+        String[] range = years.split("-", -1);
+        if (range.length > 2) {
+            return false;
+        }
 
-            // Display filtered entries count
-            int entriesCount = filteredEntries.size();
-            if (entriesCount == 0) {
-                System.out.println("No entries matched specified filters.\n");
-            } else if (entriesCount == 1) {
-                System.out.println("Showing 1 entry:");
-            } else {
-                System.out.println("Showing " + entriesCount + " entries:");
+        try {
+            fromYear = Long.parseLong(range[0].strip());
+            toYear = range.length == 2 ? Long.parseLong(range[1].strip()) : fromYear;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        return fromYear <= toYear;
+    }
+
+    /**
+     * Combine the {@link #queryText} with types, authors and years into a single {@link Query}.
+     * <p>
+     * Entry must be of any of the types, written by all of the authors and match the query.
+     *
+     * @return query matching all entries when there are no filters
+     * @throws IllegalArgumentException when the query is invalid
+     */
+    private Query buildQuery() {
+        List<Query> queries = new ArrayList<>();
+        if (!entryTypes.isEmpty()) {
+            List<Query> types = new ArrayList<>();
+            for (String entryType : entryTypes) {
+                types.add(Query.term("type", Query.Operator.EQUALS, entryType));
             }
+            queries.add(Query.or(types));
+        }
+        for (String author : authors) {
+            queries.add(Query.term("author", Query.Operator.EQUALS, author));
+        }
+        if (years != null) {
+            queries.add(Query.term("year", Query.Operator.EQUALS, fromYear + ".." + toYear));
+        }
+        if (queryText != null) {
+            queries.add(Query.parse(queryText));
+        }
 
-            // Display filtered entries
-            for (Entry entry : filteredEntries) {
-                System.out.println("\n\n" + PrettyFormat.table(entry));
+        return Query.and(queries);
+    }
+
+    /**
+     * Print problems found in the document.
+     *
+     * @param diagnostics {@link Diagnostics} of the document
+     */
+    private static void report(Diagnostics diagnostics) {
+        for (Diagnostic diagnostic : diagnostics.getDiagnostics()) {
+            System.err.println(diagnostic);
+        }
+    }
+
+    /**
+     * Display {@link Filter filtered} {@link Entry entries} of a document.
+     *
+     * @param document parsed {@link Document}
+     */
+    private void display(Document document) {
+        // Filter entries by combining bitmaps of their ordinals, scanning only where no index helps
+        QueryPlanner planner = new QueryPlanner(document);
+        QueryPlan plan = planner.plan(query);
+        if (explain) {
+            System.out.println("Query plan:\n" + plan.explain());
+        }
+        List<Entry> filteredEntries = planner.execute(plan);
+
+        // Rank filtered entries by the searched text, keeping only the best ones
+        Map<Entry, Double> scores = new IdentityHashMap<>();
+        if (search != null) {
+            Set<Entry> filtered = Collections.newSetFromMap(new IdentityHashMap<>());
+            filtered.addAll(filteredEntries);
+            filteredEntries = new ArrayList<>();
+            for (TextIndex.Hit hit : document.getTextIndex().search(search, top, filtered::contains)) {
+                filteredEntries.add(hit.getEntry());
+                scores.put(hit.getEntry(), hit.getScore());
             }
         }
+
+        if (sort) {
+            filteredEntries = Filter.sortYears(filteredEntries);
+        }
+
+        // Display filtered entries count
+        int entriesCount = filteredEntries.size();
+        if (entriesCount == 0) {
+            System.out.println("No entries matched specified filters.\n");
+        } else if (entriesCount == 1) {
+            System.out.println("Showing 1 entry:");
+        } else {
+            System.out.println("Showing " + entriesCount + " entries:");
+        }
+
+        // Display filtered entries
+        for (Entry entry : filteredEntries) {
+            Double score = scores.get(entry);
+            System.out.println("\n\n" + (score == null ? "" : String.format("Score: %.3f%n", score)) +
+                    PrettyFormat.table(entry));
+        }
     }
 }
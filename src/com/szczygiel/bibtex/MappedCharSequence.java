@@ -0,0 +1,103 @@
+package com.szczygiel.bibtex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link CharSequence} view of UTF-8 encoded bytes, e.g. of a memory-mapped file.
+ * <p>
+ * Every byte is seen as a single character, so nothing is decoded or copied while parsing.
+ * It is safe for BibTeX, because all its special characters are ASCII
+ * and bytes of multi-byte UTF-8 sequences are never ASCII.
+ * Bytes are decoded only when a part of the view is converted {@link #toString() to a string}.
+ * Offsets in such view are byte offsets.
+ */
+class MappedCharSequence implements CharSequence {
+    /**
+     * Viewed bytes.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Index of the first viewed byte in the {@link #buffer}.
+     */
+    private final int start;
+
+    /**
+     * Number of viewed bytes.
+     */
+    private final int length;
+
+    /**
+     * Constructor for {@link MappedCharSequence} viewing whole buffer.
+     *
+     * @param buffer bytes to view
+     */
+    MappedCharSequence(ByteBuffer buffer) {
+        this(buffer, 0, buffer.limit());
+    }
+
+    /**
+     * Constructor for {@link MappedCharSequence} viewing part of the buffer.
+     *
+     * @param buffer bytes to view
+     * @param start  index of the first viewed byte
+     * @param length number of viewed bytes
+     */
+    private MappedCharSequence(ByteBuffer buffer, int start, int length) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     * Get number of viewed bytes.
+     *
+     * @return length
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Get byte at the given index as a character.
+     *
+     * @param index index of the byte
+     * @return byte as a character from 0 to 255
+     */
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(start + index) & 0xff);
+    }
+
+    /**
+     * Get view of a part of this sequence, without copying.
+     *
+     * @param start beginning index, inclusive
+     * @param end   ending index, exclusive
+     * @return view of the part
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+
+        return new MappedCharSequence(buffer, this.start + start, end - start);
+    }
+
+    /**
+     * Decode viewed bytes.
+     *
+     * @return decoded string
+     */
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,293 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Splits values of author and editor {@link Field fields} into names of people.
+ * <p>
+ * Names are separated by the word "and" outside of brackets, e.g. "{Barnes and Noble}" is a single name.
+ * Every name is read in one of the BibTeX forms: "First von Last", "von Last, First" or "von Last, Jr, First",
+ * where the von part consists of words beginning with a lowercase letter.
+ * Name written as "Last|First" is split at the '|' character.
+ * <p>
+ * Parsed values are cached, so value repeated in many entries is parsed once.
+ * Parser can be used by many threads.
+ */
+class NameParser {
+    /**
+     * Parsed names by values they were parsed from.
+     */
+    private final ConcurrentMap<String, List<Name>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Get names from a value of author or editor field.
+     *
+     * @param value value of the field
+     * @return unmodifiable list of names, in the order of the value
+     */
+    List<Name> parse(String value) {
+        List<Name> names = cache.get(value);
+        if (names == null) {
+            names = Collections.unmodifiableList(split(value));
+            List<Name> cached = cache.putIfAbsent(value, names);
+            if (cached != null) {
+                names = cached;
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Get number of cached values.
+     *
+     * @return number of values
+     */
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * Split value into names separated by the word "and".
+     *
+     * @param value value of the field
+     * @return parsed names
+     */
+    private static List<Name> split(String value) {
+        List<Name> names = new ArrayList<>();
+        int level = 0;
+        int nameStart = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '{') {
+                level++;
+            } else if (c == '}') {
+                level = Math.max(0, level - 1);
+            } else if (level == 0 && isSeparator(value, i)) {
+                addName(names, value.substring(nameStart, i));
+                nameStart = i + 3;
+                i += 2;
+            }
+        }
+        addName(names, value.substring(nameStart));
+
+        return names;
+    }
+
+    /**
+     * Check if the word "and" surrounded by whitespace begins at an index.
+     *
+     * @param value value of the field
+     * @param index index of the word
+     * @return true if the word is a separator of names
+     */
+    private static boolean isSeparator(String value, int index) {
+        return index > 0 && index + 3 < value.length()
+                && Character.isWhitespace(value.charAt(index - 1))
+                && Character.isWhitespace(value.charAt(index + 3))
+                && value.regionMatches(true, index, "and", 0, 3);
+    }
+
+    /**
+     * Parse a single name and add it to the list, skipping empty names.
+     *
+     * @param names list of parsed names
+     * @param name  name to parse
+     */
+    private static void addName(List<Name> names, String name) {
+        name = name.strip();
+        if (name.isEmpty()) {
+            return;
+        }
+
+        int delimiter = name.indexOf('|');
+        if (delimiter != -1) {
+            // Everything to the left is last name and the rest is first name
+            names.add(new Name(name.substring(delimiter + 1).strip(), "",
+                    name.substring(0, delimiter).strip(), ""));
+            return;
+        }
+
+        // Words and commas outside of brackets
+        List<String> words = new ArrayList<>();
+        List<Integer> commas = new ArrayList<>();
+        int level = 0;
+        int wordStart = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            char c = i < name.length() ? name.charAt(i) : ' ';
+            boolean separator = level == 0 && (Character.isWhitespace(c) || c == '~' || c == ',');
+            if (separator) {
+                if (wordStart != -1) {
+                    words.add(name.substring(wordStart, i));
+                    wordStart = -1;
+                }
+                if (c == ',') {
+                    commas.add(words.size());
+                }
+                continue;
+            }
+
+            if (c == '{') {
+                level++;
+            } else if (c == '}') {
+                level = Math.max(0, level - 1);
+            }
+            if (wordStart == -1) {
+                wordStart = i;
+            }
+        }
+
+        if (commas.isEmpty()) {
+            // First von Last, the last word always belongs to the last name
+            int vonStart = words.size() - 1;
+            for (int i = 0; i < words.size() - 1; i++) {
+                if (isLowercase(words.get(i))) {
+                    vonStart = i;
+                    break;
+                }
+            }
+            int lastStart = lastStart(words, vonStart, words.size());
+            names.add(new Name(join(words, 0, vonStart), join(words, vonStart, lastStart),
+                    join(words, lastStart, words.size()), ""));
+            return;
+        }
+
+        // von Last, First or von Last, Jr, First
+        int lastEnd = commas.get(0);
+        int jrEnd = commas.size() > 1 ? commas.get(1) : lastEnd;
+        int lastStart = lastStart(words, 0, lastEnd);
+        names.add(new Name(join(words, jrEnd, words.size()), join(words, 0, lastStart),
+                join(words, lastStart, lastEnd), join(words, lastEnd, jrEnd)));
+    }
+
+    /**
+     * Find the beginning of the last name, right after the last lowercase word of the von part.
+     *
+     * @param words    words of the name
+     * @param vonStart index of the first word of the von part
+     * @param end      index right after the last word of the last name
+     * @return index of the first word of the last name
+     */
+    private static int lastStart(List<String> words, int vonStart, int end) {
+        int lastStart = vonStart;
+        for (int i = vonStart; i < end - 1; i++) {
+            if (isLowercase(words.get(i))) {
+                lastStart = i + 1;
+            }
+        }
+
+        return lastStart;
+    }
+
+    /**
+     * Check if a word begins with a lowercase letter outside of brackets.
+     *
+     * @param word word of a name
+     * @return true if the word belongs to the von part
+     */
+    private static boolean isLowercase(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '{') {
+                return false;
+            }
+            if (Character.isLetter(c)) {
+                return Character.isLowerCase(c);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Join words with spaces.
+     *
+     * @param words words of a name
+     * @param start index of the first word
+     * @param end   index right after the last word
+     * @return joined words, empty when there are none
+     */
+    private static String join(List<String> words, int start, int end) {
+        return start >= end ? "" : String.join(" ", words.subList(start, end));
+    }
+
+    /**
+     * Name of a person, split into its parts.
+     */
+    static final class Name {
+        /**
+         * First names, e.g. "Donald E.".
+         */
+        private final String first;
+
+        /**
+         * Lowercase words preceding the last name, e.g. "van der".
+         */
+        private final String von;
+
+        /**
+         * Last name, e.g. "Knuth".
+         */
+        private final String last;
+
+        /**
+         * Suffix of the name, e.g. "Jr.".
+         */
+        private final String jr;
+
+        /**
+         * Constructor for {@link Name}.
+         *
+         * @param first {@link #first}
+         * @param von   {@link #von}
+         * @param last  {@link #last}
+         * @param jr    {@link #jr}
+         */
+        Name(String first, String von, String last, String jr) {
+            this.first = first;
+            this.von = von;
+            this.last = last;
+            this.jr = jr;
+        }
+
+        /**
+         * Get {@link #first}.
+         *
+         * @return first names
+         */
+        String getFirst() {
+            return first;
+        }
+
+        /**
+         * Get {@link #von}.
+         *
+         * @return von part
+         */
+        String getVon() {
+            return von;
+        }
+
+        /**
+         * Get {@link #last}.
+         *
+         * @return last name
+         */
+        String getLast() {
+            return last;
+        }
+
+        /**
+         * Get {@link #jr}.
+         *
+         * @return suffix
+         */
+        String getJr() {
+            return jr;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.szczygiel.bibtex;
+
+/**
+ * Range of pages of a pages {@link Field}, e.g. "12--24" or a single page "7".
+ */
+final class PageRange {
+    /**
+     * First page of the range.
+     */
+    private final int first;
+
+    /**
+     * Last page of the range, equal to the {@link #first} for a single page.
+     */
+    private final int last;
+
+    /**
+     * Constructor for {@link PageRange}.
+     *
+     * @param first {@link #first}
+     * @param last  {@link #last}
+     */
+    PageRange(int first, int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parse a range of pages.
+     * <p>
+     * Pages can be separated by any number of hyphens, e.g. "12-24" or "12--24", and surrounded by whitespace.
+     *
+     * @param str range of pages
+     * @return parsed range or null when the string isn't a range of pages
+     */
+    static PageRange parse(String str) {
+        int i = skipWhitespace(str, 0);
+        int firstStart = i;
+        i = skipDigits(str, i);
+        if (i == firstStart || i - firstStart > 9) {
+            return null;
+        }
+        int first = Integer.parseInt(str, firstStart, i, 10);
+
+        i = skipWhitespace(str, i);
+        if (i == str.length()) {
+            return new PageRange(first, first);
+        }
+
+        int separatorStart = i;
+        while (i < str.length() && str.charAt(i) == '-') {
+            i++;
+        }
+        if (i == separatorStart) {
+            return null;
+        }
+
+        i = skipWhitespace(str, i);
+        int lastStart = i;
+        i = skipDigits(str, i);
+        if (i == lastStart || i - lastStart > 9 || skipWhitespace(str, i) != str.length()) {
+            return null;
+        }
+
+        return new PageRange(first, Integer.parseInt(str, lastStart, i, 10));
+    }
+
+    /**
+     * Get index of the first character which isn't whitespace.
+     *
+     * @param str   string
+     * @param index index to start at
+     * @return index of the character or length of the string
+     */
+    private static int skipWhitespace(String str, int index) {
+        while (index < str.length() && Character.isWhitespace(str.charAt(index))) {
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Get index of the first character which isn't a digit.
+     *
+     * @param str   string
+     * @param index index to start at
+     * @return index of the character or length of the string
+     */
+    private static int skipDigits(String str, int index) {
+        while (index < str.length() && str.charAt(index) >= '0' && str.charAt(index) <= '9') {
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Get {@link #first}.
+     *
+     * @return first page
+     */
+    int getFirst() {
+        return first;
+    }
+
+    /**
+     * Get {@link #last}.
+     *
+     * @return last page
+     */
+    int getLast() {
+        return last;
+    }
+
+    /**
+     * Get number of pages of the range.
+     *
+     * @return number of pages, 0 when the last page is before the first one
+     */
+    int getPageCount() {
+        return Math.max(0, last - first + 1);
+    }
+
+    /**
+     * Check if a page belongs to the range.
+     *
+     * @param page page number
+     * @return true if the page is between the first and the last page
+     */
+    boolean contains(int page) {
+        return page >= first && page <= last;
+    }
+
+    /**
+     * Compare objects.
+     *
+     * @param o other object
+     * @return true if they are equal, otherwise false
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PageRange pageRange = (PageRange) o;
+        return first == pageRange.first && last == pageRange.last;
+    }
+
+    /**
+     * Compute hash code of the range.
+     *
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        return 31 * first + last;
+    }
+
+    /**
+     * Convert range into readable string, e.g. "12--24".
+     *
+     * @return readable range
+     */
+    @Override
+    public String toString() {
+        return first == last ? String.valueOf(first) : first + "--" + last;
+    }
+}
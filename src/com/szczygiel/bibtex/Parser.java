@@ -0,0 +1,498 @@
+package com.szczygiel.bibtex;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parses BibTeX input.
+ * <p>
+ * Parser doesn't hold any state of a parse - every {@link #parseDocument} call works on its own {@link ParserSession}.
+ * Because of that, single instance can be shared by many threads parsing different documents at the same time.
+ * Only its {@link SymbolTable} is shared by all parses, so documents parsed by one parser share repeated strings.
+ * <p>
+ * Every entry is scanned in time linear to its length.
+ * Entries exceeding size or time budget are skipped, without failing the rest of the input.
+ */
+class Parser {
+    /**
+     * Default {@link #maxEntryLength}.
+     */
+    static final int DEFAULT_MAX_ENTRY_LENGTH = 1 << 20;
+
+    /**
+     * Fields whose values usually repeat across entries, so they are interned in the {@link #symbols}.
+     * <p>
+     * Only values decoded while parsing are interned, not {@link #lazyValues lazily decoded} ones.
+     */
+    private static final Set<String> INTERNED_FIELDS = Set.of("journal", "publisher", "booktitle", "series",
+            "address", "organization", "institution", "school", "month", "edition", "howpublished", "type");
+
+    /**
+     * Decode values of {@link Field fields} only when they are accessed.
+     * <p>
+     * Fields then hold only offsets into the parsed input until their values are needed.
+     */
+    private final boolean lazyValues;
+
+    /**
+     * Maximal number of characters of a single entry, 0 for no limit.
+     */
+    private final int maxEntryLength;
+
+    /**
+     * Maximal time of parsing a single entry in nanoseconds, 0 for no limit.
+     */
+    private final long maxEntryNanos;
+
+    /**
+     * {@link SymbolTable} for entry types, field names and repeated values, null for no interning.
+     */
+    private final SymbolTable symbols;
+
+    /**
+     * Constructor for {@link Parser} decoding values while parsing.
+     */
+    Parser() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link Parser} with default budgets.
+     *
+     * @param lazyValues {@link #lazyValues}
+     */
+    Parser(boolean lazyValues) {
+        this(lazyValues, DEFAULT_MAX_ENTRY_LENGTH, 0);
+    }
+
+    /**
+     * Constructor for {@link Parser}.
+     *
+     * @param lazyValues     {@link #lazyValues}
+     * @param maxEntryLength {@link #maxEntryLength}
+     * @param maxEntryNanos  {@link #maxEntryNanos}
+     */
+    Parser(boolean lazyValues, int maxEntryLength, long maxEntryNanos) {
+        this(lazyValues, maxEntryLength, maxEntryNanos, new SymbolTable());
+    }
+
+    /**
+     * Constructor for {@link Parser} using given {@link SymbolTable}, e.g. {@link SymbolTable#global()}.
+     *
+     * @param lazyValues     {@link #lazyValues}
+     * @param maxEntryLength {@link #maxEntryLength}
+     * @param maxEntryNanos  {@link #maxEntryNanos}
+     * @param symbols        {@link #symbols}
+     */
+    Parser(boolean lazyValues, int maxEntryLength, long maxEntryNanos, SymbolTable symbols) {
+        if (maxEntryLength < 0 || maxEntryNanos < 0) {
+            throw new IllegalArgumentException("budgets cannot be negative");
+        }
+
+        this.lazyValues = lazyValues;
+        this.maxEntryLength = maxEntryLength;
+        this.maxEntryNanos = maxEntryNanos;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Get {@link #maxEntryLength}.
+     *
+     * @return maximal number of characters of an entry, 0 for no limit
+     */
+    int getMaxEntryLength() {
+        return maxEntryLength;
+    }
+
+    /**
+     * Get {@link #maxEntryNanos}.
+     *
+     * @return maximal time of parsing an entry in nanoseconds, 0 for no limit
+     */
+    long getMaxEntryNanos() {
+        return maxEntryNanos;
+    }
+
+    /**
+     * Get {@link #symbols}.
+     *
+     * @return symbol table or null when strings aren't interned
+     */
+    SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Parses BibTeX input into list of {@link Entry entries}, discarding found problems.
+     *
+     * @param input BibTeX input
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parseDocument(CharSequence input) {
+        return parseDocument(input, new Diagnostics());
+    }
+
+    /**
+     * Parses BibTeX input into list of {@link Entry entries}.
+     * <p>
+     * Malformed entries are reported and skipped, parsing continues with the next entry.
+     *
+     * @param input       BibTeX input
+     * @param diagnostics {@link Diagnostics} to report problems to
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parseDocument(CharSequence input, Diagnostics diagnostics) {
+        return new ParserSession(this, input, diagnostics).parse();
+    }
+
+    /**
+     * Parses BibTeX input into list of {@link Entry entries} using threads of the given pool,
+     * discarding found problems.
+     *
+     * @param input BibTeX input
+     * @param pool  {@link ForkJoinPool} to parse entries on
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parseDocument(CharSequence input, ForkJoinPool pool) {
+        return parseDocument(input, pool, new Diagnostics());
+    }
+
+    /**
+     * Parses BibTeX input into list of {@link Entry entries} using threads of the given pool.
+     * <p>
+     * Boundaries of entries are found sequentially, then chunks of entries are parsed in parallel.
+     * Entries are returned in the same order as in the input.
+     *
+     * @param input       BibTeX input
+     * @param pool        {@link ForkJoinPool} to parse entries on
+     * @param diagnostics {@link Diagnostics} to report problems to
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parseDocument(CharSequence input, ForkJoinPool pool, Diagnostics diagnostics) {
+        return new ParserSession(this, input, diagnostics).parse(pool);
+    }
+
+    /**
+     * Parses part of BibTeX document into list of {@link Entry entries}.
+     * <p>
+     * Used for parsing again only the part of a document affected by an edit.
+     * Positions of entries are computed relative to the whole document.
+     *
+     * @param input       part of the document, beginning at the beginning of a line
+     * @param offset      offset in the document at which the part begins
+     * @param sourceMap   {@link SourceMap} of the whole document
+     * @param diagnostics {@link Diagnostics} to report problems to
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parseDocument(CharSequence input, int offset, SourceMap sourceMap, Diagnostics diagnostics) {
+        return new ParserSession(this, input, offset, sourceMap, diagnostics).parse();
+    }
+
+    /**
+     * Find index at which an entry ends.
+     * <p>
+     * Allows for nested brackets.
+     *
+     * @param input BibTeX input
+     * @param start index at which the entry begins
+     * @return index right after the last bracket of the entry or length of the input when the bracket is missing
+     */
+    int findEntryEnd(CharSequence input, int start) {
+        int bracketLevel = 0;
+        int length = input.length();
+        for (int i = start; i < length; i++) {
+            char c = input.charAt(i);
+            if (c == '{') {
+                bracketLevel++;
+            } else if (c == '}') {
+                bracketLevel--;
+
+                if (bracketLevel == 0) {
+                    return i + 1;
+                }
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Parses BibTeX entry into an {@link Entry} object.
+     * <p>
+     * Ignores @PREAMBLE and @COMMENT entries.
+     * Found problems are discarded.
+     *
+     * @param entryStr entry to parse
+     * @return parsed {@link Entry}
+     */
+    Entry parseEntry(String entryStr) {
+        return parseEntry(new Lexer(entryStr), 0, new SourceMap(entryStr), new Diagnostics());
+    }
+
+    /**
+     * Parses BibTeX entry into an {@link Entry} object.
+     * <p>
+     * Lexer has to be limited to the entry, e.g. to the range found by {@link #findEntryEnd}.
+     * Returns null when parsing takes longer than {@link #maxEntryNanos}.
+     * Positions of the entry and its fields are computed relative to the whole document,
+     * which can be bigger than the input of the lexer, e.g. when entries are read from a stream.
+     *
+     * @param lexer       lexer positioned before the entry
+     * @param offset      offset in the document at which the input of the lexer begins
+     * @param sourceMap   {@link SourceMap} of the document
+     * @param diagnostics {@link Diagnostics} to report problems to
+     * @return parsed {@link Entry} or null when the entry is skipped
+     */
+    Entry parseEntry(Lexer lexer, int offset, SourceMap sourceMap, Diagnostics diagnostics) {
+        if (lexer.next() != Lexer.Token.AT) {
+            return null;
+        }
+        int entryStart = lexer.start();
+
+        if (lexer.next() != Lexer.Token.IDENTIFIER) {
+            return null;
+        }
+
+        Entry entry = new Entry();
+        int entryOffset = offset + entryStart;
+        int entryLine = sourceMap.line(entryOffset);
+        entry.setOffset(entryOffset);
+        entry.setLineNumber(entryLine);
+        entry.setColumnNumber(entryOffset - sourceMap.lineStart(entryLine) + 1);
+        entry.setLength(lexer.limit() - entryStart);
+
+        String entryType = lexer.text();
+        entryType = intern(entryType.toLowerCase());
+        entry.setEntryType(entryType);
+
+        if (entryType.equals("preamble") || entryType.equals("comment")) {
+            return null;
+        }
+
+        if (lexer.next() != Lexer.Token.LEFT_BRACE) {
+            diagnostics.report(Diagnostic.Code.MALFORMED_ENTRY, entry,
+                    "entry without key value structure: " + lexer.text(entryStart, lexer.limit()).strip());
+            return null;
+        }
+
+        // Citation key is followed by a comma or ends the entry, otherwise it is a field name of @String
+        int keyPosition = lexer.position();
+        if (lexer.key() == Lexer.Token.KEY) {
+            String citationKey = lexer.text();
+            Lexer.Token next = lexer.next();
+            if (next == Lexer.Token.COMMA || next == Lexer.Token.RIGHT_BRACE) {
+                citationKey = citationKey.toLowerCase();
+                entry.setCitationKey(citationKey);
+            }
+        }
+
+        if (entry.getCitationKey().equals("")) {
+            if (!entryType.equals("string")) { // Everything but @String need citation key
+                diagnostics.report(Diagnostic.Code.MISSING_CITATION_KEY, entry,
+                        "entry without citation key: " + lexer.text(entryStart, lexer.limit()).strip());
+                return null;
+            }
+
+            lexer.seek(keyPosition);
+        } else if (lexer.token() == Lexer.Token.RIGHT_BRACE) {
+            return entry;
+        }
+
+        long deadline = maxEntryNanos == 0 ? 0 : System.nanoTime() + maxEntryNanos;
+
+        // Find key value combinations until the closing bracket
+        while (true) {
+            Lexer.Token token = lexer.next();
+            if (token == Lexer.Token.RIGHT_BRACE || token == Lexer.Token.EOF) {
+                break;
+            }
+
+            if (token == Lexer.Token.COMMA) {
+                continue;
+            }
+
+            Field field = parseField(lexer);
+            int fieldOffset = offset + field.getOffset();
+            int fieldLine = sourceMap.line(fieldOffset);
+            field.setOffset(fieldOffset);
+            field.setLineNumber(fieldLine);
+            field.setColumnNumber(fieldOffset - sourceMap.lineStart(fieldLine) + 1);
+
+            if (field.getType() == Field.Type.UNKNOWN) {
+                String raw = field.getRaw();
+                raw = raw.replaceAll("\\r\\n|\\r|\\n", "\n\t");
+                diagnostics.report(Diagnostic.Code.MALFORMED_FIELD, field, entry.getCitationKey(),
+                        "cannot parse field in entry " + entry.getCitationKey() + ":\n\t" + raw);
+            } else {
+                entry.addField(field);
+            }
+
+            if (lexer.token() != Lexer.Token.COMMA) {
+                break;
+            }
+
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                diagnostics.report(Diagnostic.Code.ENTRY_TOO_SLOW, entry,
+                        "entry exceeds time budget of " + maxEntryNanos + " ns, skipping: " + entry.getCitationKey());
+                return null;
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Parses BibTeX field into a {@link Field} object.
+     *
+     * @param input BibTeX field
+     * @return parsed {@link Field}
+     */
+    Field parseField(String input) {
+        input = input.strip();
+        if (input.equals("")) {
+            return null;
+        }
+
+        Lexer lexer = new Lexer(input);
+        lexer.next();
+        Field field = parseField(lexer);
+
+        // Whole input has to be a single field
+        if (lexer.token() != Lexer.Token.EOF) {
+            field = new Field();
+        }
+
+        field.setRaw(input);
+        return field;
+    }
+
+    /**
+     * Parses BibTeX field starting at the current token of the {@link Lexer}.
+     * <p>
+     * Value can be a quoted or braced string, a number, a reference or a concatenation of strings and references.
+     * Leaves the lexer at the token which ends the field: comma, closing bracket or end of input.
+     * When the field is invalid, skips everything until the end of the field
+     * and returns {@link Field} of {@link Field.Type#UNKNOWN} type with only raw value.
+     * Offset of the returned field is relative to the input of the lexer.
+     *
+     * @param lexer lexer positioned at the first token of the field
+     * @return parsed {@link Field}
+     */
+    private Field parseField(Lexer lexer) {
+        Field field = new Field();
+        int fieldStart = lexer.start();
+        int fieldEnd = lexer.end();
+        field.setOffset(fieldStart);
+
+        if (lexer.token() != Lexer.Token.IDENTIFIER) {
+            return skipField(lexer, field, fieldStart, fieldEnd);
+        }
+        String key = lexer.text();
+
+        if (lexer.next() != Lexer.Token.EQUALS) {
+            return skipField(lexer, field, fieldStart, fieldEnd);
+        }
+
+        int valueStart = -1;
+        int valueEnd = -1;
+        int parts = 0;
+        int number = 0;
+
+        Field.Type type = Field.Type.UNKNOWN;
+
+        // Read values separated by '#' character
+        do {
+            Lexer.Token token = lexer.next();
+            if (token == Lexer.Token.LEFT_BRACE) {
+                token = lexer.braced();
+            }
+
+            if (valueStart == -1) {
+                valueStart = lexer.start();
+            }
+
+            if (token == Lexer.Token.QUOTED || token == Lexer.Token.BRACED) {
+                type = Field.Type.STRING;
+            } else if (token == Lexer.Token.NUMBER) {
+                try {
+                    number = lexer.intValue();
+                    type = Field.Type.NUMBER;
+                } catch (NumberFormatException e) {
+                    return skipField(lexer, field, fieldStart, lexer.start());
+                }
+            } else if (token == Lexer.Token.IDENTIFIER) {
+                type = Field.Type.REFERENCE;
+            } else {
+                return skipField(lexer, field, fieldStart, lexer.start());
+            }
+
+            valueEnd = lexer.end();
+            parts++;
+        } while (lexer.next() == Lexer.Token.HASH);
+
+        Lexer.Token token = lexer.token();
+        if (token != Lexer.Token.COMMA && token != Lexer.Token.RIGHT_BRACE && token != Lexer.Token.EOF) {
+            return skipField(lexer, field, fieldStart, valueEnd);
+        }
+
+        if (parts > 1) {
+            type = Field.Type.CONCATENATION;
+        }
+
+        key = intern(key.toLowerCase());
+        field.setKey(key);
+        field.setType(type);
+        field.setSource(lexer.input(), fieldStart, valueEnd, valueStart, valueEnd);
+        if (type == Field.Type.NUMBER) {
+            field.setNumber(number);
+        }
+
+        if (!lazyValues) {
+            if (type == Field.Type.CONCATENATION) {
+                field.setConcatenation(Concatenation.compile(lexer.input(), valueStart, valueEnd));
+            }
+
+            Object value = field.getValue();
+            if (type == Field.Type.STRING && INTERNED_FIELDS.contains(key)) {
+                field.setValue(intern((String) value));
+            }
+        }
+
+        return field;
+    }
+
+    /**
+     * Get the shared instance of a string from the {@link #symbols}.
+     *
+     * @param str string to intern
+     * @return interned string or the given one when strings aren't interned
+     */
+    private String intern(String str) {
+        return symbols == null ? str : symbols.intern(str);
+    }
+
+    /**
+     * Skip invalid field until the comma or bracket which ends it.
+     *
+     * @param lexer      lexer positioned inside invalid field
+     * @param field      field to fill with raw value
+     * @param fieldStart index at which the field begins
+     * @param fieldEnd   index right after the last already read character of the field
+     * @return field of {@link Field.Type#UNKNOWN} type
+     */
+    private Field skipField(Lexer lexer, Field field, int fieldStart, int fieldEnd) {
+        Lexer.Token token = lexer.token();
+        while (token != Lexer.Token.COMMA && token != Lexer.Token.RIGHT_BRACE && token != Lexer.Token.EOF) {
+            if (token == Lexer.Token.LEFT_BRACE) {
+                lexer.braced();
+            }
+
+            fieldEnd = lexer.end();
+            token = lexer.next();
+        }
+
+        field.setSource(lexer.input(), fieldStart, fieldEnd, fieldStart, fieldStart);
+        return field;
+    }
+}
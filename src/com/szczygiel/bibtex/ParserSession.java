@@ -0,0 +1,321 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Holds state of a single {@link Parser#parseDocument} call.
+ * <p>
+ * Every parse gets its own session, so parses of different documents don't share any mutable state.
+ * Parsing is done in two steps: fast scan for boundaries of entries, then parsing of every entry.
+ * Entries are independent of each other, so the second step can be run on a {@link ForkJoinPool}.
+ */
+class ParserSession {
+    /**
+     * Minimal number of entries parsed by a single fork/join task.
+     */
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    /**
+     * {@link Parser} used for parsing single entries.
+     */
+    private final Parser parser;
+
+    /**
+     * BibTeX input being parsed.
+     */
+    private final CharSequence input;
+
+    /**
+     * {@link SourceMap} of the {@link #input}.
+     */
+    private final SourceMap sourceMap;
+
+    /**
+     * Offset in the document at which the {@link #input} begins.
+     */
+    private final int offset;
+
+    /**
+     * {@link Diagnostics} to report problems to.
+     */
+    private final Diagnostics diagnostics;
+
+    /**
+     * Indexes at which consecutive entries begin.
+     */
+    private int[] entryStarts = new int[64];
+
+    /**
+     * Indexes right after the last bracket of consecutive entries.
+     */
+    private int[] entryEnds = new int[64];
+
+    /**
+     * Number of entries found by {@link #scan()}.
+     */
+    private int entriesCount = 0;
+
+    /**
+     * Constructor for {@link ParserSession}.
+     *
+     * @param parser      {@link Parser} used for parsing single entries
+     * @param input       BibTeX input
+     * @param diagnostics {@link Diagnostics} to report problems to
+     */
+    ParserSession(Parser parser, CharSequence input, Diagnostics diagnostics) {
+        this(parser, input, 0, new SourceMap(input), diagnostics);
+    }
+
+    /**
+     * Constructor for {@link ParserSession} parsing only part of a document.
+     * <p>
+     * The part has to begin at the beginning of a line.
+     * Positions of entries are computed relative to the whole document.
+     *
+     * @param parser      {@link Parser} used for parsing single entries
+     * @param input       part of the document
+     * @param offset      offset in the document at which the part begins
+     * @param sourceMap   {@link SourceMap} of the whole document
+     * @param diagnostics {@link Diagnostics} to report problems to
+     */
+    ParserSession(Parser parser, CharSequence input, int offset, SourceMap sourceMap, Diagnostics diagnostics) {
+        this.parser = parser;
+        this.input = input;
+        this.offset = offset;
+        this.sourceMap = sourceMap;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Parses {@link #input} into list of {@link Entry entries} on the current thread.
+     *
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parse() {
+        scan();
+
+        Entry[] entries = new Entry[entriesCount];
+        parseRange(entries, 0, entriesCount);
+        return collect(entries);
+    }
+
+    /**
+     * Parses {@link #input} into list of {@link Entry entries} using threads of the given pool.
+     * <p>
+     * Entries are returned in the same order as in the input.
+     *
+     * @param pool {@link ForkJoinPool} to parse entries on
+     * @return list of {@link Entry entries}
+     */
+    List<Entry> parse(ForkJoinPool pool) {
+        scan();
+
+        Entry[] entries = new Entry[entriesCount];
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, entriesCount / (pool.getParallelism() * 8));
+        pool.invoke(new ParseTask(entries, 0, entriesCount, chunkSize));
+        return collect(entries);
+    }
+
+    /**
+     * Find boundaries of all entries in the {@link #input}.
+     * <p>
+     * Entry begins with '@' character at the beginning of a line, followed by its type.
+     * It ends at the bracket matching its first bracket.
+     * Brackets of all entries are matched in a single pass over the input, so it takes linear time
+     * even when many entries have missing brackets.
+     * Entry with missing bracket ends where the next entry begins, so its unmatched brackets are dropped
+     * and stray brackets after it cannot end it later.
+     * Skips entries exceeding {@link Parser#getMaxEntryLength()}.
+     */
+    private void scan() {
+        // Stack of unmatched brackets, holding index of the entry opened by the bracket or -1
+        int[] brackets = new int[64];
+        int depth = 0;
+        boolean entryOpening = false;
+
+        int end = input.length();
+        for (int i = 0; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == '{') {
+                if (depth == brackets.length) {
+                    brackets = Arrays.copyOf(brackets, depth * 2);
+                }
+
+                brackets[depth++] = entryOpening ? entriesCount - 1 : -1;
+                entryOpening = false;
+            } else if (c == '}') {
+                if (depth > 0) {
+                    int entry = brackets[--depth];
+                    if (entry != -1) {
+                        entryEnds[entry] = i + 1;
+                    }
+                }
+            } else if (c == '@' && isEntryBeginning(i)) {
+                depth = 0;
+                addEntry(i, -1);
+                entryOpening = true;
+            }
+        }
+
+        int maxEntryLength = parser.getMaxEntryLength();
+        int count = 0;
+        for (int i = 0; i < entriesCount; i++) {
+            int entryStart = entryStarts[i];
+            int entryEnd = entryEnds[i];
+            if (entryEnd == -1) {
+                entryEnd = i + 1 < entriesCount ? entryStarts[i + 1] : end;
+                report(Diagnostic.Code.UNCLOSED_ENTRY, entryStart,
+                        "entry without closing bracket: line " + sourceMap.line(offset + entryStart));
+            }
+
+            if (maxEntryLength != 0 && entryEnd - entryStart > maxEntryLength) {
+                report(Diagnostic.Code.ENTRY_TOO_LONG, entryStart, "entry exceeds size budget of " + maxEntryLength
+                        + " characters, skipping: line " + sourceMap.line(offset + entryStart));
+                continue;
+            }
+
+            entryStarts[count] = entryStart;
+            entryEnds[count] = entryEnd;
+            count++;
+        }
+
+        entriesCount = count;
+    }
+
+    /**
+     * Report a problem of an entry found by {@link #scan()}.
+     *
+     * @param code       kind of the problem
+     * @param entryStart index in the {@link #input} at which the entry begins
+     * @param message    description of the problem
+     */
+    private void report(Diagnostic.Code code, int entryStart, String message) {
+        int line = sourceMap.line(offset + entryStart);
+        diagnostics.report(code, line, offset + entryStart - sourceMap.lineStart(line) + 1, null, message);
+    }
+
+    /**
+     * Check if '@' character at the given index begins an entry.
+     *
+     * @param index index of the '@' character
+     * @return true if the character is at the beginning of a line and is followed by an entry type
+     */
+    private boolean isEntryBeginning(int index) {
+        boolean lineBeginning = index == 0 || input.charAt(index - 1) == '\n' || input.charAt(index - 1) == '\r';
+        return lineBeginning && index + 1 < input.length() && Lexer.isIdentifierStart(input.charAt(index + 1));
+    }
+
+    /**
+     * Add boundaries of an entry.
+     *
+     * @param entryStart index at which the entry begins
+     * @param entryEnd   index right after the last bracket of the entry or -1 when it is not known yet
+     */
+    private void addEntry(int entryStart, int entryEnd) {
+        if (entriesCount == entryStarts.length) {
+            entryStarts = Arrays.copyOf(entryStarts, entriesCount * 2);
+            entryEnds = Arrays.copyOf(entryEnds, entriesCount * 2);
+        }
+
+        entryStarts[entriesCount] = entryStart;
+        entryEnds[entriesCount] = entryEnd;
+        entriesCount++;
+    }
+
+    /**
+     * Parse range of entries found by {@link #scan()}.
+     *
+     * @param entries array to store parsed entries at their indexes
+     * @param from    index of the first entry to parse
+     * @param to      index right after the last entry to parse
+     */
+    private void parseRange(Entry[] entries, int from, int to) {
+        // Entries are tokenized in place, without cutting them out of the input
+        Lexer lexer = new Lexer(input);
+        for (int i = from; i < to; i++) {
+            lexer.reset(entryStarts[i], entryEnds[i]);
+            entries[i] = parser.parseEntry(lexer, offset, sourceMap, diagnostics);
+        }
+    }
+
+    /**
+     * Collect parsed entries, skipping ignored ones.
+     *
+     * @param entries parsed entries, with null in place of ignored entries
+     * @return list of {@link Entry entries}
+     */
+    private static List<Entry> collect(Entry[] entries) {
+        List<Entry> list = new ArrayList<>(entries.length);
+        for (Entry entry : entries) {
+            if (entry != null) {
+                list.add(entry);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Parses range of entries, splitting it in halves until it is small enough.
+     */
+    private class ParseTask extends RecursiveAction {
+        /**
+         * Version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Array to store parsed entries at their indexes.
+         */
+        private final Entry[] entries;
+
+        /**
+         * Index of the first entry to parse.
+         */
+        private final int from;
+
+        /**
+         * Index right after the last entry to parse.
+         */
+        private final int to;
+
+        /**
+         * Maximal number of entries parsed without splitting.
+         */
+        private final int chunkSize;
+
+        /**
+         * Constructor for {@link ParseTask}.
+         *
+         * @param entries   {@link #entries}
+         * @param from      {@link #from}
+         * @param to        {@link #to}
+         * @param chunkSize {@link #chunkSize}
+         */
+        ParseTask(Entry[] entries, int from, int to, int chunkSize) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Parse the range or split it into two tasks.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                parseRange(entries, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(entries, from, middle, chunkSize),
+                    new ParseTask(entries, middle, to, chunkSize));
+        }
+    }
+}
@@ -93,7 +93,7 @@ class PrettyFormat {
                 for (Entry.Author author : entry.getAuthors()) {
                     if ((fieldKey.equals("author") && author.authorType == Entry.AuthorType.AUTHOR) ||
                             (fieldKey.equals("editor") && author.authorType == Entry.AuthorType.EDITOR)) {
-                        authors.add("• " + author.firstName + " " + author.lastName);
+                        authors.add("• " + author.getFullName());
                     }
                 }
                 str.append(formatMultilineTableValue(authors.toArray(new String[0]), formatValue, keyWidth));
@@ -0,0 +1,762 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Boolean expression selecting {@link Entry entries}, e.g. {@code type=article AND (author=Knuth OR year>=1990)}.
+ * <p>
+ * Terms compare a field with a value using one of the {@link Operator operators}.
+ * Besides fields of entries, terms can use "type" for entry types, "key" for citation keys
+ * and "author" or "editor" for last names of people, authors include editors just like in {@link Filter}.
+ * Term "journal" also matches booktitle of entries without a journal.
+ * Values containing spaces or special characters must be quoted, ranges of numbers are written as "1970..1979".
+ * Terms are combined with AND, OR and NOT operators, adjacent terms are joined with AND.
+ * Queries are executed by a {@link QueryPlanner}.
+ */
+abstract class Query {
+    /**
+     * Parse a query.
+     *
+     * @param str query
+     * @return parsed query
+     * @throws IllegalArgumentException when the query is invalid
+     */
+    static Query parse(String str) {
+        QueryReader reader = new QueryReader(str);
+        Query query = reader.readOr();
+        if (reader.peek() != null) {
+            throw reader.error("unexpected " + reader.peek());
+        }
+
+        return query;
+    }
+
+    /**
+     * Create query matching entries matched by all of the given queries.
+     *
+     * @param queries queries
+     * @return conjunction of the queries, or the only query
+     */
+    static Query and(List<Query> queries) {
+        return queries.size() == 1 ? queries.get(0) : new And(queries);
+    }
+
+    /**
+     * Create query matching entries matched by any of the given queries.
+     *
+     * @param queries queries
+     * @return disjunction of the queries, or the only query
+     */
+    static Query or(List<Query> queries) {
+        return queries.size() == 1 ? queries.get(0) : new Or(queries);
+    }
+
+    /**
+     * Create query matching entries not matched by the given query.
+     *
+     * @param query query
+     * @return negation of the query
+     */
+    static Query not(Query query) {
+        return new Not(query);
+    }
+
+    /**
+     * Create query comparing a field with a value.
+     *
+     * @param field    field key, lowercase
+     * @param operator operator
+     * @param value    value
+     * @return term
+     * @throws IllegalArgumentException when the value cannot be compared using the operator
+     */
+    static Query term(String field, Operator operator, String value) {
+        return new Term(field, operator, value);
+    }
+
+    /**
+     * Operator comparing a field with a value.
+     */
+    enum Operator {
+        /**
+         * Value equal to the given one ignoring case, or a number in the given range.
+         */
+        EQUALS("="),
+
+        /**
+         * Value starting with the given one ignoring case.
+         */
+        PREFIX("^="),
+
+        /**
+         * Value containing a match of the given regular expression ignoring case.
+         */
+        MATCHES("~"),
+
+        /**
+         * Number less than the given one.
+         */
+        LESS("<"),
+
+        /**
+         * Number less than or equal to the given one.
+         */
+        LESS_OR_EQUAL("<="),
+
+        /**
+         * Number greater than the given one.
+         */
+        GREATER(">"),
+
+        /**
+         * Number greater than or equal to the given one.
+         */
+        GREATER_OR_EQUAL(">=");
+
+        /**
+         * Symbol of the operator in queries.
+         */
+        private final String symbol;
+
+        /**
+         * Constructor for {@link Operator}.
+         *
+         * @param symbol {@link #symbol}
+         */
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Get {@link #symbol}.
+         *
+         * @return symbol
+         */
+        String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * Check if the operator compares numbers only.
+         *
+         * @return true for comparisons of numbers
+         */
+        boolean isNumeric() {
+            return this == LESS || this == LESS_OR_EQUAL || this == GREATER || this == GREATER_OR_EQUAL;
+        }
+    }
+
+    /**
+     * Query matching entries matched by all of its queries.
+     */
+    static final class And extends Query {
+        /**
+         * Combined queries.
+         */
+        private final List<Query> queries;
+
+        /**
+         * Constructor for {@link And}.
+         *
+         * @param queries {@link #queries}
+         */
+        And(List<Query> queries) {
+            this.queries = Collections.unmodifiableList(new ArrayList<>(queries));
+        }
+
+        /**
+         * Get {@link #queries}.
+         *
+         * @return combined queries
+         */
+        List<Query> getQueries() {
+            return queries;
+        }
+
+        /**
+         * Convert query into its text.
+         *
+         * @return query
+         */
+        @Override
+        public String toString() {
+            return join(queries, " AND ");
+        }
+    }
+
+    /**
+     * Query matching entries matched by any of its queries.
+     */
+    static final class Or extends Query {
+        /**
+         * Combined queries.
+         */
+        private final List<Query> queries;
+
+        /**
+         * Constructor for {@link Or}.
+         *
+         * @param queries {@link #queries}
+         */
+        Or(List<Query> queries) {
+            this.queries = Collections.unmodifiableList(new ArrayList<>(queries));
+        }
+
+        /**
+         * Get {@link #queries}.
+         *
+         * @return combined queries
+         */
+        List<Query> getQueries() {
+            return queries;
+        }
+
+        /**
+         * Convert query into its text.
+         *
+         * @return query
+         */
+        @Override
+        public String toString() {
+            return join(queries, " OR ");
+        }
+    }
+
+    /**
+     * Query matching entries not matched by its query.
+     */
+    static final class Not extends Query {
+        /**
+         * Negated query.
+         */
+        private final Query query;
+
+        /**
+         * Constructor for {@link Not}.
+         *
+         * @param query {@link #query}
+         */
+        Not(Query query) {
+            this.query = query;
+        }
+
+        /**
+         * Get {@link #query}.
+         *
+         * @return negated query
+         */
+        Query getQuery() {
+            return query;
+        }
+
+        /**
+         * Convert query into its text.
+         *
+         * @return query
+         */
+        @Override
+        public String toString() {
+            return "NOT " + (query instanceof Term ? query.toString() : "(" + query + ")");
+        }
+    }
+
+    /**
+     * Query comparing a field with a value.
+     */
+    static final class Term extends Query {
+        /**
+         * Field key, lowercase.
+         */
+        private final String field;
+
+        /**
+         * Operator.
+         */
+        private final Operator operator;
+
+        /**
+         * Value to compare with.
+         */
+        private final String value;
+
+        /**
+         * Compiled {@link Operator#MATCHES} expression, null for other operators.
+         */
+        private final Pattern pattern;
+
+        /**
+         * Smallest wanted number, for {@link Operator#EQUALS} only when the value is a number or a range.
+         */
+        private final long from;
+
+        /**
+         * Largest wanted number, for {@link Operator#EQUALS} only when the value is a number or a range.
+         */
+        private final long to;
+
+        /**
+         * Whether the value is a number or a range of numbers.
+         */
+        private final boolean numeric;
+
+        /**
+         * Constructor for {@link Term}.
+         *
+         * @param field    {@link #field}
+         * @param operator {@link #operator}
+         * @param value    {@link #value}
+         * @throws IllegalArgumentException when the value cannot be compared using the operator
+         */
+        Term(String field, Operator operator, String value) {
+            this.field = field.toLowerCase(Locale.ROOT);
+            this.operator = operator;
+            this.value = value;
+
+            if (operator == Operator.MATCHES) {
+                try {
+                    pattern = Pattern.compile(value, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("invalid regular expression: " + value, e);
+                }
+            } else {
+                pattern = null;
+            }
+
+            long[] range = operator == Operator.EQUALS || operator.isNumeric() ? parseRange(value) : null;
+            if (operator.isNumeric() && (range == null || range[0] != range[1])) {
+                throw new IllegalArgumentException("not a number: " + value);
+            }
+
+            numeric = range != null;
+            if (!numeric) {
+                from = Long.MIN_VALUE;
+                to = Long.MAX_VALUE;
+            } else if (operator == Operator.LESS) {
+                from = Long.MIN_VALUE;
+                to = range[0] - 1;
+            } else if (operator == Operator.LESS_OR_EQUAL) {
+                from = Long.MIN_VALUE;
+                to = range[0];
+            } else if (operator == Operator.GREATER) {
+                from = range[0] + 1;
+                to = Long.MAX_VALUE;
+            } else if (operator == Operator.GREATER_OR_EQUAL) {
+                from = range[0];
+                to = Long.MAX_VALUE;
+            } else {
+                from = range[0];
+                to = range[1];
+            }
+        }
+
+        /**
+         * Parse a number or a range of numbers, e.g. "1970..1979", "..1979" or "1970..".
+         *
+         * @param value value of the term
+         * @return first and last number of the range or null when the value isn't a number or a range
+         */
+        private static long[] parseRange(String value) {
+            int separator = value.indexOf("..");
+            try {
+                if (separator == -1) {
+                    long number = Long.parseLong(value.strip());
+                    return new long[]{number, number};
+                }
+
+                String first = value.substring(0, separator).strip();
+                String last = value.substring(separator + 2).strip();
+                return new long[]{
+                        first.isEmpty() ? Long.MIN_VALUE : Long.parseLong(first),
+                        last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last)
+                };
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Get {@link #field}.
+         *
+         * @return field key
+         */
+        String getField() {
+            return field;
+        }
+
+        /**
+         * Get {@link #operator}.
+         *
+         * @return operator
+         */
+        Operator getOperator() {
+            return operator;
+        }
+
+        /**
+         * Get {@link #value}.
+         *
+         * @return value
+         */
+        String getValue() {
+            return value;
+        }
+
+        /**
+         * Get {@link #pattern}.
+         *
+         * @return compiled regular expression or null when the operator isn't {@link Operator#MATCHES}
+         */
+        Pattern getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Check if the term compares numbers.
+         *
+         * @return true if the value is a number or a range of numbers
+         */
+        boolean isNumeric() {
+            return numeric;
+        }
+
+        /**
+         * Get {@link #from}.
+         *
+         * @return smallest wanted number
+         */
+        long getFrom() {
+            return from;
+        }
+
+        /**
+         * Get {@link #to}.
+         *
+         * @return largest wanted number
+         */
+        long getTo() {
+            return to;
+        }
+
+        /**
+         * Check if a text matches the term.
+         *
+         * @param text text of a field
+         * @return true if the text matches
+         */
+        boolean matches(String text) {
+            switch (operator) {
+                case EQUALS:
+                    return text.equalsIgnoreCase(value);
+                case PREFIX:
+                    return text.regionMatches(true, 0, value, 0, value.length());
+                case MATCHES:
+                    return pattern.matcher(text).find();
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Check if a number matches the term.
+         *
+         * @param number number of a field
+         * @return true if the number is in the wanted range
+         */
+        boolean matches(long number) {
+            return numeric && number >= from && number <= to;
+        }
+
+        /**
+         * Convert query into its text.
+         *
+         * @return query
+         */
+        @Override
+        public String toString() {
+            return field + operator.getSymbol() + "\"" + value.replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    /**
+     * Join queries, enclosing the ones combined with other operators in parentheses.
+     *
+     * @param queries   queries
+     * @param separator operator joining the queries
+     * @return text of the queries
+     */
+    private static String join(List<Query> queries, String separator) {
+        StringBuilder str = new StringBuilder();
+        for (Query query : queries) {
+            if (str.length() > 0) {
+                str.append(separator);
+            }
+
+            boolean simple = query instanceof Term || query instanceof Not;
+            str.append(simple ? query.toString() : "(" + query + ")");
+        }
+
+        return str.toString();
+    }
+
+    /**
+     * Reads tokens of a query and builds its expression, with NOT binding tighter than AND, and AND than OR.
+     */
+    private static class QueryReader {
+        /**
+         * Text of the query.
+         */
+        private final String str;
+
+        /**
+         * Index of the next character.
+         */
+        private int position;
+
+        /**
+         * Already read token, null when the next token wasn't read yet.
+         */
+        private String token;
+
+        /**
+         * Whether the {@link #token} was quoted, so it is a value and not an operator.
+         */
+        private boolean quoted;
+
+        /**
+         * Index at which the {@link #token} begins.
+         */
+        private int tokenStart;
+
+        /**
+         * Constructor for {@link QueryReader}.
+         *
+         * @param str {@link #str}
+         */
+        QueryReader(String str) {
+            this.str = str;
+        }
+
+        /**
+         * Read terms separated by OR.
+         *
+         * @return query
+         */
+        Query readOr() {
+            List<Query> queries = new ArrayList<>();
+            queries.add(readAnd());
+            while (isKeyword("OR")) {
+                next();
+                queries.add(readAnd());
+            }
+
+            return or(queries);
+        }
+
+        /**
+         * Read terms separated by AND or by nothing.
+         *
+         * @return query
+         */
+        private Query readAnd() {
+            List<Query> queries = new ArrayList<>();
+            queries.add(readNot());
+            while (peek() != null && !isKeyword("OR") && !isSymbol(")")) {
+                if (isKeyword("AND")) {
+                    next();
+                }
+                queries.add(readNot());
+            }
+
+            return and(queries);
+        }
+
+        /**
+         * Read a negated term or a term.
+         *
+         * @return query
+         */
+        private Query readNot() {
+            if (isKeyword("NOT")) {
+                next();
+                return not(readNot());
+            }
+
+            return readPrimary();
+        }
+
+        /**
+         * Read a query in parentheses or a term.
+         *
+         * @return query
+         */
+        private Query readPrimary() {
+            if (isSymbol("(")) {
+                next();
+                Query query = readOr();
+                if (!isSymbol(")")) {
+                    throw error("missing )");
+                }
+                next();
+                return query;
+            }
+
+            String field = peek();
+            if (field == null || quoted || !isField(field)) {
+                throw error(field == null ? "missing term" : "expected field instead of " + field);
+            }
+            next();
+
+            Operator operator = null;
+            for (Operator candidate : Operator.values()) {
+                if (isSymbol(candidate.getSymbol())) {
+                    operator = candidate;
+                }
+            }
+            if (operator == null) {
+                throw error("expected operator after " + field);
+            }
+            next();
+
+            String value = peek();
+            if (value == null || (!quoted && (isSymbol("(") || isSymbol(")")))) {
+                throw error("missing value of " + field);
+            }
+            next();
+
+            try {
+                return term(field, operator, value);
+            } catch (IllegalArgumentException e) {
+                throw error(e.getMessage());
+            }
+        }
+
+        /**
+         * Check if a token is a field key.
+         *
+         * @param token token
+         * @return true for identifiers
+         */
+        private static boolean isField(String token) {
+            if (!Lexer.isIdentifierStart(token.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < token.length(); i++) {
+                if (!Lexer.isIdentifierPart(token.charAt(i))) {
+                    return false;
+                }
+            }
+
+            return !token.equalsIgnoreCase("AND") && !token.equalsIgnoreCase("OR") && !token.equalsIgnoreCase("NOT");
+        }
+
+        /**
+         * Check if the next token is a keyword.
+         *
+         * @param keyword uppercase keyword
+         * @return true if the token is the keyword in any case
+         */
+        private boolean isKeyword(String keyword) {
+            return peek() != null && !quoted && token.equalsIgnoreCase(keyword);
+        }
+
+        /**
+         * Check if the next token is a symbol.
+         *
+         * @param symbol symbol
+         * @return true if the token is the symbol
+         */
+        private boolean isSymbol(String symbol) {
+            return peek() != null && !quoted && token.equals(symbol);
+        }
+
+        /**
+         * Get the next token without consuming it.
+         *
+         * @return token or null at the end of the query
+         */
+        String peek() {
+            if (token == null) {
+                read();
+            }
+
+            return token;
+        }
+
+        /**
+         * Consume the next token.
+         */
+        private void next() {
+            token = null;
+        }
+
+        /**
+         * Read the next token: a parenthesis, an operator, a quoted value or a word.
+         */
+        private void read() {
+            while (position < str.length() && Character.isWhitespace(str.charAt(position))) {
+                position++;
+            }
+
+            tokenStart = position;
+            quoted = false;
+            if (position == str.length()) {
+                return;
+            }
+
+            char c = str.charAt(position);
+            if (c == '"') {
+                StringBuilder value = new StringBuilder();
+                position++;
+                while (position < str.length() && str.charAt(position) != '"') {
+                    if (str.charAt(position) == '\\' && position + 1 < str.length()) {
+                        position++;
+                    }
+                    value.append(str.charAt(position++));
+                }
+                if (position == str.length()) {
+                    throw error("unterminated quote");
+                }
+                position++;
+                token = value.toString();
+                quoted = true;
+            } else if (c == '(' || c == ')' || c == '=' || c == '~') {
+                token = String.valueOf(c);
+                position++;
+            } else if (c == '<' || c == '>' || c == '^') {
+                boolean equals = position + 1 < str.length() && str.charAt(position + 1) == '=';
+                token = str.substring(position, position + (equals ? 2 : 1));
+                position += token.length();
+            } else {
+                while (position < str.length() && !isDelimiter(str.charAt(position))) {
+                    position++;
+                }
+                token = str.substring(tokenStart, position);
+            }
+        }
+
+        /**
+         * Check if a character ends a word.
+         *
+         * @param c character
+         * @return true for whitespace, parentheses, quotes and operators
+         */
+        private static boolean isDelimiter(char c) {
+            return Character.isWhitespace(c) || "()\"=~<>^".indexOf(c) != -1;
+        }
+
+        /**
+         * Create exception describing invalid query.
+         *
+         * @param message description of the problem
+         * @return exception to throw
+         */
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (tokenStart + 1));
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Plan of a {@link Query}, built by a {@link QueryPlanner}.
+ * <p>
+ * Every step takes a {@link Bitmap} of candidate entries and returns the ones it matches.
+ * Index steps intersect candidates with precomputed bitmaps, scan steps check every candidate,
+ * so conjunctions run index steps first and check only entries left by them.
+ */
+abstract class QueryPlan {
+    /**
+     * Get candidates matched by this step.
+     *
+     * @param candidates ordinals of entries to check
+     * @return ordinals of matched entries, a subset of the candidates
+     */
+    abstract Bitmap evaluate(Bitmap candidates);
+
+    /**
+     * Get estimated number of entries matched by this step.
+     *
+     * @return estimated number of entries
+     */
+    abstract long estimate();
+
+    /**
+     * Get cost of checking a single entry by this step, relative to comparing a field.
+     *
+     * @return 0 for steps using only indexes
+     */
+    abstract double cost();
+
+    /**
+     * Append description of this step and its children.
+     *
+     * @param str   description of the plan
+     * @param depth depth of this step
+     */
+    abstract void explain(StringBuilder str, int depth);
+
+    /**
+     * Check if this step uses only indexes.
+     *
+     * @return true if no entry is checked
+     */
+    boolean isIndexed() {
+        return cost() == 0;
+    }
+
+    /**
+     * Describe the plan, one step per line, children indented.
+     *
+     * @return description of the plan
+     */
+    String explain() {
+        StringBuilder str = new StringBuilder();
+        explain(str, 0);
+        return str.toString();
+    }
+
+    /**
+     * Append a line describing a step, only estimates of index steps are exact.
+     *
+     * @param str         description of the plan
+     * @param depth       depth of the step
+     * @param description description of the step
+     */
+    void line(StringBuilder str, int depth, String description) {
+        str.append("  ".repeat(depth)).append(description);
+        str.append(this instanceof IndexStep ? " (" : " (~").append(estimate()).append(" entries)\n");
+    }
+
+    /**
+     * Step intersecting candidates with a bitmap of an index.
+     */
+    static final class IndexStep extends QueryPlan {
+        /**
+         * Description of the step.
+         */
+        private final String description;
+
+        /**
+         * Entries matched by the step.
+         */
+        private final Bitmap bitmap;
+
+        /**
+         * Constructor for {@link IndexStep}.
+         *
+         * @param description {@link #description}
+         * @param bitmap      {@link #bitmap}
+         */
+        IndexStep(String description, Bitmap bitmap) {
+            this.description = description;
+            this.bitmap = bitmap;
+        }
+
+        /**
+         * Get {@link #bitmap}.
+         *
+         * @return entries matched by the step
+         */
+        Bitmap getBitmap() {
+            return bitmap;
+        }
+
+        /**
+         * Intersect candidates with the {@link #bitmap}.
+         *
+         * @param candidates ordinals of entries to check
+         * @return ordinals of matched entries
+         */
+        @Override
+        Bitmap evaluate(Bitmap candidates) {
+            return candidates.and(bitmap);
+        }
+
+        /**
+         * Get exact number of matched entries.
+         *
+         * @return number of entries
+         */
+        @Override
+        long estimate() {
+            return bitmap.cardinality();
+        }
+
+        /**
+         * Get cost of the step.
+         *
+         * @return 0, no entry is checked
+         */
+        @Override
+        double cost() {
+            return 0;
+        }
+
+        /**
+         * Append description of the step.
+         *
+         * @param str   description of the plan
+         * @param depth depth of the step
+         */
+        @Override
+        void explain(StringBuilder str, int depth) {
+            line(str, depth, "INDEX " + description);
+        }
+    }
+
+    /**
+     * Step checking every candidate with a condition.
+     */
+    static final class ScanStep extends QueryPlan {
+        /**
+         * Description of the step.
+         */
+        private final String description;
+
+        /**
+         * Entries, ordinals are indexes in this list.
+         */
+        private final List<Entry> entries;
+
+        /**
+         * Condition of matched entries.
+         */
+        private final Predicate<Entry> condition;
+
+        /**
+         * Estimated fraction of matched entries.
+         */
+        private final double selectivity;
+
+        /**
+         * Cost of checking a single entry.
+         */
+        private final double cost;
+
+        /**
+         * Constructor for {@link ScanStep}.
+         *
+         * @param description {@link #description}
+         * @param entries     {@link #entries}
+         * @param condition   {@link #condition}
+         * @param selectivity {@link #selectivity}
+         * @param cost        {@link #cost}
+         */
+        ScanStep(String description, List<Entry> entries, Predicate<Entry> condition, double selectivity,
+                 double cost) {
+            this.description = description;
+            this.entries = entries;
+            this.condition = condition;
+            this.selectivity = selectivity;
+            this.cost = cost;
+        }
+
+        /**
+         * Check every candidate with the {@link #condition}.
+         *
+         * @param candidates ordinals of entries to check
+         * @return ordinals of matched entries
+         */
+        @Override
+        Bitmap evaluate(Bitmap candidates) {
+            Bitmap.Builder builder = new Bitmap.Builder();
+            for (int ordinal : candidates.toArray()) {
+                if (condition.test(entries.get(ordinal))) {
+                    builder.add(ordinal);
+                }
+            }
+
+            return builder.build();
+        }
+
+        /**
+         * Estimate number of matched entries from the {@link #selectivity}.
+         *
+         * @return estimated number of entries
+         */
+        @Override
+        long estimate() {
+            return Math.round(selectivity * entries.size());
+        }
+
+        /**
+         * Get {@link #cost}.
+         *
+         * @return cost of checking a single entry
+         */
+        @Override
+        double cost() {
+            return cost;
+        }
+
+        /**
+         * Append description of the step.
+         *
+         * @param str   description of the plan
+         * @param depth depth of the step
+         */
+        @Override
+        void explain(StringBuilder str, int depth) {
+            line(str, depth, "SCAN " + description);
+        }
+    }
+
+    /**
+     * Step matching candidates matched by all of its steps.
+     * <p>
+     * Steps are run from the cheapest and most selective one, each checking only candidates left by the previous.
+     */
+    static final class AndStep extends QueryPlan {
+        /**
+         * Steps in the order of running.
+         */
+        private final List<QueryPlan> steps;
+
+        /**
+         * Number of all entries.
+         */
+        private final long total;
+
+        /**
+         * Constructor for {@link AndStep}.
+         * <p>
+         * Index steps are run first, from the most selective one.
+         * Scan steps follow, ordered by the rank of their selectivity and cost.
+         *
+         * @param steps steps in any order
+         * @param total {@link #total}
+         */
+        AndStep(List<QueryPlan> steps, long total) {
+            List<QueryPlan> ordered = new ArrayList<>(steps);
+            ordered.sort(Comparator.comparing(QueryPlan::isIndexed).reversed()
+                    .thenComparingDouble(step -> step.isIndexed() ? step.estimate() : rank(step, total)));
+            this.steps = Collections.unmodifiableList(ordered);
+            this.total = total;
+        }
+
+        /**
+         * Rank a scan step, steps removing many candidates cheaply have lower ranks.
+         *
+         * @param step  step
+         * @param total number of all entries
+         * @return rank of the step
+         */
+        private static double rank(QueryPlan step, long total) {
+            double selectivity = total == 0 ? 0 : (double) step.estimate() / total;
+            return (selectivity - 1) / step.cost();
+        }
+
+        /**
+         * Get {@link #steps}.
+         *
+         * @return steps in the order of running
+         */
+        List<QueryPlan> getSteps() {
+            return steps;
+        }
+
+        /**
+         * Run steps one after another, stopping when no candidates are left.
+         *
+         * @param candidates ordinals of entries to check
+         * @return ordinals of matched entries
+         */
+        @Override
+        Bitmap evaluate(Bitmap candidates) {
+            for (QueryPlan step : steps) {
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                candidates = step.evaluate(candidates);
+            }
+
+            return candidates;
+        }
+
+        /**
+         * Estimate number of matched entries, assuming the steps are independent.
+         *
+         * @return estimated number of entries
+         */
+        @Override
+        long estimate() {
+            double estimate = total;
+            for (QueryPlan step : steps) {
+                estimate = total == 0 ? 0 : estimate * step.estimate() / total;
+            }
+
+            return Math.round(estimate);
+        }
+
+        /**
+         * Get cost of checking a single entry by all steps.
+         *
+         * @return sum of costs of the steps
+         */
+        @Override
+        double cost() {
+            double cost = 0;
+            for (QueryPlan step : steps) {
+                cost += step.cost();
+            }
+
+            return cost;
+        }
+
+        /**
+         * Append description of the step and its steps.
+         *
+         * @param str   description of the plan
+         * @param depth depth of the step
+         */
+        @Override
+        void explain(StringBuilder str, int depth) {
+            line(str, depth, "AND");
+            for (QueryPlan step : steps) {
+                step.explain(str, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Step matching candidates matched by any of its steps.
+     * <p>
+     * Index steps are run first, scan steps check only candidates which weren't matched yet.
+     */
+    static final class OrStep extends QueryPlan {
+        /**
+         * Steps in the order of running.
+         */
+        private final List<QueryPlan> steps;
+
+        /**
+         * Number of all entries.
+         */
+        private final long total;
+
+        /**
+         * Constructor for {@link OrStep}.
+         *
+         * @param steps steps in any order
+         * @param total {@link #total}
+         */
+        OrStep(List<QueryPlan> steps, long total) {
+            List<QueryPlan> ordered = new ArrayList<>(steps);
+            ordered.sort(Comparator.comparingDouble(QueryPlan::cost));
+            this.steps = Collections.unmodifiableList(ordered);
+            this.total = total;
+        }
+
+        /**
+         * Run steps, each one on candidates not matched by the previous ones.
+         *
+         * @param candidates ordinals of entries to check
+         * @return ordinals of matched entries
+         */
+        @Override
+        Bitmap evaluate(Bitmap candidates) {
+            List<Bitmap> matched = new ArrayList<>();
+            Bitmap remaining = candidates;
+            for (QueryPlan step : steps) {
+                if (step.isIndexed()) {
+                    matched.add(step.evaluate(candidates));
+                    continue;
+                }
+
+                // Entries matched by index steps don't need to be checked
+                if (remaining == candidates && !matched.isEmpty()) {
+                    remaining = candidates.andNot(Bitmap.or(matched));
+                }
+                Bitmap stepMatched = step.evaluate(remaining);
+                matched.add(stepMatched);
+                remaining = remaining.andNot(stepMatched);
+            }
+
+            return Bitmap.or(matched);
+        }
+
+        /**
+         * Estimate number of matched entries, assuming the steps are independent.
+         *
+         * @return estimated number of entries
+         */
+        @Override
+        long estimate() {
+            double unmatched = total;
+            for (QueryPlan step : steps) {
+                unmatched = total == 0 ? 0 : unmatched * (total - step.estimate()) / total;
+            }
+
+            return Math.round(total - unmatched);
+        }
+
+        /**
+         * Get cost of checking a single entry by all steps.
+         *
+         * @return sum of costs of the steps
+         */
+        @Override
+        double cost() {
+            double cost = 0;
+            for (QueryPlan step : steps) {
+                cost += step.cost();
+            }
+
+            return cost;
+        }
+
+        /**
+         * Append description of the step and its steps.
+         *
+         * @param str   description of the plan
+         * @param depth depth of the step
+         */
+        @Override
+        void explain(StringBuilder str, int depth) {
+            line(str, depth, "OR");
+            for (QueryPlan step : steps) {
+                step.explain(str, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Step matching candidates not matched by its step.
+     */
+    static final class NotStep extends QueryPlan {
+        /**
+         * Negated step.
+         */
+        private final QueryPlan step;
+
+        /**
+         * Number of all entries.
+         */
+        private final long total;
+
+        /**
+         * Constructor for {@link NotStep}.
+         *
+         * @param step  {@link #step}
+         * @param total {@link #total}
+         */
+        NotStep(QueryPlan step, long total) {
+            this.step = step;
+            this.total = total;
+        }
+
+        /**
+         * Remove candidates matched by the negated step.
+         *
+         * @param candidates ordinals of entries to check
+         * @return ordinals of matched entries
+         */
+        @Override
+        Bitmap evaluate(Bitmap candidates) {
+            return candidates.andNot(step.evaluate(candidates));
+        }
+
+        /**
+         * Estimate number of entries not matched by the negated step.
+         *
+         * @return estimated number of entries
+         */
+        @Override
+        long estimate() {
+            return total - step.estimate();
+        }
+
+        /**
+         * Get cost of the negated step.
+         *
+         * @return cost of checking a single entry
+         */
+        @Override
+        double cost() {
+            return step.cost();
+        }
+
+        /**
+         * Append description of the step and the negated step.
+         *
+         * @param str   description of the plan
+         * @param depth depth of the step
+         */
+        @Override
+        void explain(StringBuilder str, int depth) {
+            line(str, depth, "NOT");
+            step.explain(str, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.szczygiel.bibtex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Plan and execute {@link Query queries} on {@link Entry entries} of a {@link Document}.
+ * <p>
+ * Terms on entry types, years, journals and authors are answered by the {@link BitmapIndex} and {@link AuthorIndex},
+ * other terms scan candidates left by them.
+ * Scan selectivities are rough guesses, index estimates are exact.
+ */
+class QueryPlanner {
+    /**
+     * Guessed fraction of entries matched by an {@link Query.Operator#EQUALS} scan.
+     */
+    private static final double EQUALS_SELECTIVITY = 0.05;
+
+    /**
+     * Guessed fraction of entries matched by a {@link Query.Operator#PREFIX} scan.
+     */
+    private static final double PREFIX_SELECTIVITY = 0.1;
+
+    /**
+     * Guessed fraction of entries matched by a {@link Query.Operator#MATCHES} scan.
+     */
+    private static final double MATCHES_SELECTIVITY = 0.25;
+
+    /**
+     * Guessed fraction of entries matched by a numeric scan.
+     */
+    private static final double NUMERIC_SELECTIVITY = 0.3;
+
+    /**
+     * Cost of comparing a field.
+     */
+    private static final double FIELD_COST = 1;
+
+    /**
+     * Cost of comparing authors, which are parsed on first access.
+     */
+    private static final double AUTHORS_COST = 3;
+
+    /**
+     * Cost of matching a field with a regular expression.
+     */
+    private static final double MATCHES_COST = 5;
+
+    /**
+     * Planned entries.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * {@link BitmapIndex} of the {@link #entries}.
+     */
+    private final BitmapIndex bitmapIndex;
+
+    /**
+     * {@link AuthorIndex} of the {@link #entries}.
+     */
+    private final AuthorIndex authorIndex;
+
+    /**
+     * Constructor for {@link QueryPlanner}.
+     *
+     * @param document parsed {@link Document}, indexes are built if needed
+     */
+    QueryPlanner(Document document) {
+        this.entries = document.getEntries();
+        this.bitmapIndex = document.getBitmapIndex();
+        this.authorIndex = document.getAuthorIndex();
+    }
+
+    /**
+     * Plan a query.
+     *
+     * @param query query
+     * @return plan of the query
+     */
+    QueryPlan plan(Query query) {
+        if (query instanceof Query.And) {
+            return new QueryPlan.AndStep(plan(((Query.And) query).getQueries()), entries.size());
+        } else if (query instanceof Query.Or) {
+            return new QueryPlan.OrStep(plan(((Query.Or) query).getQueries()), entries.size());
+        } else if (query instanceof Query.Not) {
+            return new QueryPlan.NotStep(plan(((Query.Not) query).getQuery()), entries.size());
+        }
+
+        return plan((Query.Term) query);
+    }
+
+    /**
+     * Plan a list of queries.
+     *
+     * @param queries queries
+     * @return plans of the queries
+     */
+    private List<QueryPlan> plan(List<Query> queries) {
+        List<QueryPlan> steps = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            steps.add(plan(query));
+        }
+
+        return steps;
+    }
+
+    /**
+     * Plan a term, using an index when there is one for the field and the operator.
+     *
+     * @param term term
+     * @return plan of the term
+     */
+    private QueryPlan plan(Query.Term term) {
+        String description = term.toString();
+        switch (term.getField()) {
+            case "type":
+                return new QueryPlan.IndexStep(description, bitmapIndex.typesMatching(term::matches));
+            case "journal":
+                return new QueryPlan.IndexStep(description, bitmapIndex.journalsMatching(term::matches));
+            case "publisher":
+                return new QueryPlan.IndexStep(description, bitmapIndex.publishersMatching(term::matches));
+            case "year":
+                if (term.isNumeric()) {
+                    return new QueryPlan.IndexStep(description, bitmapIndex.years(term.getFrom(), term.getTo()));
+                }
+                break;
+            case "author":
+                if (term.getOperator() == Query.Operator.EQUALS) {
+                    int[] ordinals = authorIndex.find(Set.of(term.getValue()));
+                    return new QueryPlan.IndexStep(description, Bitmap.of(ordinals));
+                }
+                return scan(description, term, entry -> matchesAuthors(entry, term, false), AUTHORS_COST);
+            case "editor":
+                return scan(description, term, entry -> matchesAuthors(entry, term, true), AUTHORS_COST);
+            case "key":
+                return scan(description, term, entry -> term.matches(entry.getCitationKey()), FIELD_COST);
+            default:
+                break;
+        }
+
+        return scan(description, term, entry -> matchesField(entry, term), FIELD_COST);
+    }
+
+    /**
+     * Create scan step, guessing its selectivity from the operator.
+     *
+     * @param description description of the step
+     * @param term        term
+     * @param condition   condition of matched entries
+     * @param cost        cost of checking a single entry, without matching a regular expression
+     * @return scan step
+     */
+    private QueryPlan scan(String description, Query.Term term, Predicate<Entry> condition, double cost) {
+        double selectivity;
+        switch (term.getOperator()) {
+            case EQUALS:
+                selectivity = term.isNumeric() && term.getFrom() != term.getTo() ?
+                        NUMERIC_SELECTIVITY : EQUALS_SELECTIVITY;
+                break;
+            case PREFIX:
+                selectivity = PREFIX_SELECTIVITY;
+                break;
+            case MATCHES:
+                selectivity = MATCHES_SELECTIVITY;
+                cost += MATCHES_COST;
+                break;
+            default:
+                selectivity = NUMERIC_SELECTIVITY;
+                break;
+        }
+
+        return new QueryPlan.ScanStep(description, entries, condition, selectivity, cost);
+    }
+
+    /**
+     * Check if a field of an entry matches a term.
+     * <p>
+     * Numeric fields are compared as numbers with numeric terms, other fields are compared as text.
+     *
+     * @param entry entry
+     * @param term  term
+     * @return true if the entry has a matching field
+     */
+    private static boolean matchesField(Entry entry, Query.Term term) {
+        Field field = entry.getField(term.getField());
+        if (field == null) {
+            return false;
+        }
+        if (term.isNumeric() && field.isNumeric()) {
+            return term.matches(field.getLong());
+        }
+
+        return !term.getOperator().isNumeric() && term.matches(String.valueOf(field.getValue()));
+    }
+
+    /**
+     * Check if a last name of any of entry's authors matches a term.
+     *
+     * @param entry       entry
+     * @param term        term
+     * @param editorsOnly whether to check only editors
+     * @return true if any last name matches
+     */
+    private static boolean matchesAuthors(Entry entry, Query.Term term, boolean editorsOnly) {
+        for (Entry.Author author : entry.getAuthors()) {
+            if ((!editorsOnly || author.authorType == Entry.AuthorType.EDITOR) &&
+                    term.matches(AuthorIndex.normalize(author.lastName))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Execute a plan on all entries.
+     *
+     * @param plan plan of a query
+     * @return matched entries in the order of the document
+     */
+    List<Entry> execute(QueryPlan plan) {
+        return bitmapIndex.get(plan.evaluate(bitmapIndex.all()));
+    }
+}
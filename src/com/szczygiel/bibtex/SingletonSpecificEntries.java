@@ -1,5 +1,6 @@
 package com.szczygiel.bibtex;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -105,10 +106,15 @@ class SingletonSpecificEntries {
 
     /**
      * Helper class for populating specific entries.
+     * <p>
+     * Field names are compiled once into bit masks of {@link FieldKeys IDs}, so an entry is checked against them
+     * with a few bitwise operations on its {@link Entry#getKnownFieldIds() field IDs}.
      */
     static class SpecificEntry {
         /**
          * Fields required by specific entry type.
+         * <p>
+         * Required field can be one of two values separated by '|' character, e.g. "author|editor".
          */
         List<String> requiredFields;
 
@@ -119,15 +125,75 @@ class SingletonSpecificEntries {
          */
         List<String> optionalFields;
 
+        /**
+         * Bit mask of IDs of every required field, one bit for every alternative.
+         */
+        final long[] requiredMasks;
+
+        /**
+         * Indexes in {@link #requiredFields} of {@link #requiredMasks}.
+         */
+        private final int[] requiredIndexes;
+
+        /**
+         * IDs of optional fields, in the order of {@link #optionalFields}.
+         * <p>
+         * Names which aren't field keys, like "volume|number", never match any field.
+         */
+        final int[] optionalIds;
+
         /**
          * Constructor for {@link SpecificEntry}
          *
          * @param requiredFields {@link #requiredFields}
          * @param optionalFields {@link #optionalFields}
+         * @throws IllegalArgumentException when a required field isn't well-known to {@link FieldKeys}
          */
         SpecificEntry(List<String> requiredFields, List<String> optionalFields) {
             this.requiredFields = requiredFields;
             this.optionalFields = optionalFields;
+
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < requiredFields.size(); i++) {
+                if (!requiredFields.get(i).isEmpty()) {
+                    indexes.add(i);
+                }
+            }
+
+            requiredMasks = new long[indexes.size()];
+            requiredIndexes = new int[indexes.size()];
+            for (int i = 0; i < indexes.size(); i++) {
+                requiredIndexes[i] = indexes.get(i);
+                for (String alternative : requiredFields.get(indexes.get(i)).split("\\|")) {
+                    int id = FieldKeys.id(alternative);
+                    if (id == FieldKeys.UNKNOWN) {
+                        throw new IllegalArgumentException("required field is not well-known: " + alternative);
+                    }
+
+                    requiredMasks[i] |= 1L << id;
+                }
+            }
+
+            optionalIds = optionalFields.stream()
+                    .mapToInt(FieldKeys::id)
+                    .filter(id -> id != FieldKeys.UNKNOWN)
+                    .toArray();
+        }
+
+        /**
+         * Find a required field missing from an entry.
+         *
+         * @param fieldIds {@link Entry#getKnownFieldIds() IDs of fields} of the entry
+         * @return name of the missing field or null when the entry has all required fields
+         */
+        String findMissingField(long fieldIds) {
+            for (int i = 0; i < requiredMasks.length; i++) {
+                if ((fieldIds & requiredMasks[i]) == 0) {
+                    return requiredFields.get(requiredIndexes[i]);
+                }
+            }
+
+            return null;
         }
     }
 
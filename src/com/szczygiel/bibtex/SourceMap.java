@@ -0,0 +1,318 @@
+package com.szczygiel.bibtex;
+
+import java.util.Arrays;
+
+/**
+ * Maps character offsets of an input into line and column numbers.
+ * <p>
+ * Offsets of line beginnings are collected once, then every lookup is a binary search.
+ * Recognizes '\n', '\r' and "\r\n" line endings.
+ * Offsets are kept in blocks, which maps of edited inputs share with the map of the input before the edit.
+ */
+class SourceMap {
+    /**
+     * Maximal number of line beginnings in a block.
+     */
+    static final int BLOCK_LINES = 1024;
+
+    /**
+     * Blocks of offsets at which consecutive lines begin, never changed after they are created.
+     * <p>
+     * First line always begins at the first offset of the first block.
+     * Offsets of a block are moved by an edit before it only in {@link #blockStarts}.
+     */
+    private final int[][] blocks;
+
+    /**
+     * Offsets at which the first lines of the {@link #blocks} begin.
+     */
+    private final int[] blockStarts;
+
+    /**
+     * Indexes of the first lines of the {@link #blocks}, followed by the number of lines.
+     */
+    private final int[] blockLines;
+
+    /**
+     * Number of the line beginning at the first offset of the first block.
+     */
+    private final int firstLine;
+
+    /**
+     * Block of the last lookup, consecutive lookups are usually close to each other.
+     * <p>
+     * It is only a hint checked before it is used, so the map can be shared between threads.
+     */
+    private int lastBlock;
+
+    /**
+     * Constructor for {@link SourceMap}.
+     * <p>
+     * Scans the input for line beginnings.
+     *
+     * @param input input to map
+     */
+    SourceMap(CharSequence input) {
+        this(input, 0, 1);
+    }
+
+    /**
+     * Constructor for {@link SourceMap} of a part of a bigger input, e.g. a single entry read from a stream.
+     * <p>
+     * The part has to begin at the beginning of a line.
+     * Offsets and line numbers are relative to the bigger input.
+     *
+     * @param input     part of the input to map
+     * @param offset    offset in the bigger input at which the part begins
+     * @param firstLine number of the line at which the part begins
+     */
+    SourceMap(CharSequence input, int offset, int firstLine) {
+        this.firstLine = firstLine;
+        LineStarts lineStarts = new LineStarts();
+        lineStarts.add(offset);
+
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < length && input.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStarts.add(offset + i + 1);
+            } else if (c == '\n') {
+                lineStarts.add(offset + i + 1);
+            }
+        }
+
+        int count = (lineStarts.size + BLOCK_LINES - 1) / BLOCK_LINES;
+        blocks = new int[count][];
+        blockStarts = new int[count];
+        blockLines = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = lineStarts.toArray(i * BLOCK_LINES, Math.min(lineStarts.size, (i + 1) * BLOCK_LINES));
+            blockStarts[i] = blocks[i][0];
+            blockLines[i] = i * BLOCK_LINES;
+        }
+        blockLines[count] = lineStarts.size;
+    }
+
+    /**
+     * Constructor for {@link SourceMap} of an edited input, reusing map of the input before the edit.
+     * <p>
+     * Only the inserted text is scanned, line beginnings after the edit are moved.
+     * Blocks overlapping the edit are created again, blocks after it are shared and moved.
+     *
+     * @param previous       map of the input before the edit
+     * @param input          input after the edit
+     * @param offset         offset at which the edit begins
+     * @param removedLength  number of removed characters
+     * @param insertedLength number of inserted characters
+     */
+    SourceMap(SourceMap previous, CharSequence input, int offset, int removedLength, int insertedLength) {
+        this.firstLine = previous.firstLine;
+        int base = previous.blockStarts[0];
+        int delta = insertedLength - removedLength;
+
+        // Line beginnings before the edit are kept, the first one always
+        int before = Math.max(1, previous.lowerBound(offset));
+        // Line beginnings after the edit are moved, their preceding characters weren't changed
+        int after = previous.lowerBound(offset + removedLength + 1);
+
+        // Blocks containing the last kept and the first moved line beginnings
+        int count = previous.blocks.length;
+        int first = previous.blockOf(before - 1);
+        int last = after == previous.getLineCount() ? count : previous.blockOf(after) + 1;
+
+        LineStarts lineStarts = new LineStarts();
+        for (int i = previous.blockLines[first]; i < before; i++) {
+            lineStarts.add(previous.lineStartAt(i));
+        }
+
+        int length = input.length();
+        int end = Math.min(base + length, offset + insertedLength);
+        for (int i = Math.max(base + 1, offset); i <= end; i++) {
+            char c = input.charAt(i - 1 - base);
+            if (c == '\n' || (c == '\r' && (i - base == length || input.charAt(i - base) != '\n'))) {
+                lineStarts.add(i);
+            }
+        }
+
+        // Short blocks are joined with the following ones, so edits removing lines don't leave many of them
+        while (last < count && lineStarts.size + previous.blockLines[last] - after < BLOCK_LINES / 2) {
+            last++;
+        }
+        for (int i = after; i < previous.blockLines[last]; i++) {
+            lineStarts.add(previous.lineStartAt(i) + delta);
+        }
+
+        int pieces = (lineStarts.size + BLOCK_LINES - 1) / BLOCK_LINES;
+        int editedCount = first + pieces + count - last;
+        blocks = Arrays.copyOf(previous.blocks, editedCount);
+        blockStarts = Arrays.copyOf(previous.blockStarts, editedCount);
+        blockLines = Arrays.copyOf(previous.blockLines, editedCount + 1);
+        for (int i = 0; i < pieces; i++) {
+            int from = (int) ((long) i * lineStarts.size / pieces);
+            int to = (int) ((long) (i + 1) * lineStarts.size / pieces);
+            blocks[first + i] = lineStarts.toArray(from, to);
+            blockStarts[first + i] = blocks[first + i][0];
+            blockLines[first + i] = previous.blockLines[first] + from;
+        }
+
+        // Blocks after the edit are shared, only moved
+        int lineDelta = previous.blockLines[first] + lineStarts.size - previous.blockLines[last];
+        System.arraycopy(previous.blocks, last, blocks, first + pieces, count - last);
+        for (int i = last; i < count; i++) {
+            blockStarts[i - last + first + pieces] = previous.blockStarts[i] + delta;
+        }
+        for (int i = last; i <= count; i++) {
+            blockLines[i - last + first + pieces] = previous.blockLines[i] + lineDelta;
+        }
+    }
+
+    /**
+     * Get line number of an offset.
+     *
+     * @param offset offset in the input
+     * @return line number, counting from 1
+     */
+    int line(int offset) {
+        int block = blockAt(offset);
+        int[] lineStarts = blocks[block];
+        int index = Arrays.binarySearch(lineStarts, offset - blockStarts[block] + lineStarts[0]);
+        if (index < 0) {
+            // Offset lies inside the line preceding the insertion point
+            index = -index - 2;
+        }
+
+        return firstLine + blockLines[block] + index;
+    }
+
+    /**
+     * Get column number of an offset.
+     *
+     * @param offset offset in the input
+     * @return column number, counting from 1
+     */
+    int column(int offset) {
+        return offset - lineStart(line(offset)) + 1;
+    }
+
+    /**
+     * Get offset at which the line begins.
+     *
+     * @param line line number, counting from 1
+     * @return offset of line's first character
+     */
+    int lineStart(int line) {
+        return lineStartAt(line - firstLine);
+    }
+
+    /**
+     * Get number of mapped lines.
+     *
+     * @return number of lines
+     */
+    int getLineCount() {
+        return blockLines[blocks.length];
+    }
+
+    /**
+     * Get offset at which a line begins.
+     *
+     * @param index index of the line, counting from 0
+     * @return offset of line's first character
+     */
+    private int lineStartAt(int index) {
+        int block = blockOf(index);
+        int[] lineStarts = blocks[block];
+        return lineStarts[index - blockLines[block]] - lineStarts[0] + blockStarts[block];
+    }
+
+    /**
+     * Find block containing a line.
+     *
+     * @param index index of the line, counting from 0
+     * @return index of the block
+     */
+    private int blockOf(int index) {
+        int block = lastBlock;
+        if (index >= blockLines[block] && index < blockLines[block + 1]) {
+            return block;
+        }
+
+        block = Arrays.binarySearch(blockLines, 0, blocks.length, index);
+        block = block >= 0 ? block : -block - 2;
+        lastBlock = block;
+        return block;
+    }
+
+    /**
+     * Find block containing an offset.
+     *
+     * @param offset offset in the input
+     * @return index of the last block beginning at or before the offset, or 0 when there is no such block
+     */
+    private int blockAt(int offset) {
+        int block = lastBlock;
+        if (offset >= blockStarts[block] && (block + 1 == blocks.length || offset < blockStarts[block + 1])) {
+            return block;
+        }
+
+        block = Arrays.binarySearch(blockStarts, offset);
+        block = block >= 0 ? block : Math.max(0, -block - 2);
+        lastBlock = block;
+        return block;
+    }
+
+    /**
+     * Find index of the first line beginning at or after the offset.
+     *
+     * @param offset offset in the input
+     * @return index of the line or number of lines when there is no such line
+     */
+    private int lowerBound(int offset) {
+        int block = blockAt(offset);
+        int[] lineStarts = blocks[block];
+        int index = Arrays.binarySearch(lineStarts, offset - blockStarts[block] + lineStarts[0]);
+        return blockLines[block] + (index < 0 ? -index - 1 : index);
+    }
+
+    /**
+     * Growing list of offsets at which lines begin, used while blocks are created.
+     */
+    private static class LineStarts {
+        /**
+         * Offsets in increasing order.
+         */
+        private int[] offsets = new int[64];
+
+        /**
+         * Number of offsets.
+         */
+        private int size;
+
+        /**
+         * Add beginning of the next line.
+         *
+         * @param offset offset at which the line begins
+         */
+        void add(int offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+
+            offsets[size++] = offset;
+        }
+
+        /**
+         * Get a range of added offsets.
+         *
+         * @param from index of the first offset
+         * @param to   index right after the last offset
+         * @return array of the offsets
+         */
+        int[] toArray(int from, int to) {
+            return Arrays.copyOfRange(offsets, from, to);
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.szczygiel.bibtex;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Simple map extension for storing string values.
  * <p>
  * Provides extracting string values from {@link Entry entries}.
+ * Strings can reference and concatenate other strings, also the ones defined after them.
+ * Such strings are evaluated when they are needed for the first time and their values are remembered,
+ * so every string is evaluated once, in time linear in the length of its value.
+ * Strings referencing themselves through other strings are reported and dropped.
  */
 class Strings {
     /**
@@ -15,12 +24,18 @@ class Strings {
      */
     private Map<String, String> strings = new HashMap<>();
 
+    /**
+     * Strings referencing other strings, which weren't evaluated yet, by their names.
+     */
+    private final Map<String, Definition> definitions = new HashMap<>();
+
     /**
      * Extracts strings from list of provided {@link Entry entries}.
      *
-     * @param entries list of {@link Entry entries}
+     * @param entries     list of {@link Entry entries}
+     * @param diagnostics {@link Diagnostics} to report redefined and invalid strings to
      */
-    void extractFrom(List<Entry> entries) {
+    void extractFrom(List<Entry> entries, Diagnostics diagnostics) {
         for (Entry entry : entries) {
             if (!entry.getEntryType().equals("string")) {
                 continue;
@@ -29,29 +44,46 @@ class Strings {
             List<Field> fields = entry.getFields();
             for (Field field : fields) {
                 String key = field.getKey();
-                if (strings.containsKey(key)) {
-                    System.err.println("redefinition in @strings: " + field);
+                if (strings.containsKey(key) || definitions.containsKey(key)) {
+                    diagnostics.report(Diagnostic.Code.STRING_REDEFINITION, field, null,
+                            "redefinition in @strings: " + field);
+                }
+
+                // Computed fields keep their compiled value, so they are evaluated again against these strings
+                Concatenation concatenation = field.getConcatenation();
+                if (concatenation != null) {
+                    definitions.put(key, new Definition(field, concatenation, diagnostics));
+                    strings.remove(key);
+                    continue;
                 }
 
-                if (field.getType() != Field.Type.STRING) {
-                    System.err.println("non string object in @string: " + field);
+                Field.Type type = field.getType();
+                if (type != Field.Type.STRING && type != Field.Type.NUMBER) {
+                    diagnostics.report(Diagnostic.Code.MALFORMED_STRING, field, null,
+                            "non string object in @string: " + field);
                     continue;
                 }
 
-                String value = (String) field.getValue();
-                strings.put(key, value);
+                strings.put(key, String.valueOf(field.getValue()));
+                definitions.remove(key);
             }
         }
     }
 
     /**
-     * Get {@link String} from {@link #strings}.
+     * Get {@link String} from {@link #strings}, evaluating it first when it references other strings.
      *
      * @param key key(name) of the string
-     * @return {@link String} or null if string was not found
+     * @return {@link String} or null if string was not found or cannot be evaluated
      */
     String getString(String key) {
-        return strings.get(key);
+        String value = strings.get(key);
+        if (value == null && definitions.containsKey(key)) {
+            evaluate(key);
+            value = strings.get(key);
+        }
+
+        return value;
     }
 
     /**
@@ -62,6 +94,108 @@ class Strings {
      */
     void setString(String key, String value) {
         strings.put(key, value);
+        definitions.remove(key);
+    }
+
+    /**
+     * Evaluate all strings referencing other strings, reporting cycles.
+     */
+    void resolveAll() {
+        for (String name : new ArrayList<>(definitions.keySet())) {
+            getString(name);
+        }
+    }
+
+    /**
+     * Get names of all defined strings.
+     *
+     * @return names of evaluated and not yet evaluated strings
+     */
+    Set<String> getNames() {
+        Set<String> names = new HashSet<>(strings.keySet());
+        names.addAll(definitions.keySet());
+        return names;
+    }
+
+    /**
+     * Evaluate a string referencing other strings, together with strings it references.
+     * <p>
+     * Referenced strings are evaluated first, using an explicit stack instead of recursion,
+     * so long chains of strings don't overflow the call stack.
+     * Evaluated strings are moved from {@link #definitions} to {@link #strings},
+     * strings which cannot be evaluated are removed.
+     *
+     * @param name name of a string from {@link #definitions}
+     */
+    private void evaluate(String name) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        Set<String> visiting = new HashSet<>();
+        stack.push(new Frame(name, definitions.get(name)));
+        visiting.add(name);
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            Concatenation concatenation = frame.definition.concatenation;
+            Frame next = null;
+            while (!frame.failed && next == null && frame.part < concatenation.size()) {
+                String part = concatenation.getPart(frame.part);
+                if (!concatenation.isReference(frame.part)) {
+                    frame.value.append(part);
+                    frame.part++;
+                    continue;
+                }
+
+                String value = strings.get(part);
+                Definition definition = definitions.get(part);
+                if (value != null) {
+                    frame.value.append(value);
+                    frame.part++;
+                } else if (definition == null) {
+                    // Undefined strings are reported when the @STRING entry itself is computed
+                    frame.failed = true;
+                } else if (!visiting.add(part)) {
+                    reportCycle(stack, part);
+                    frame.failed = true;
+                } else {
+                    // Evaluate the referenced string first, then continue with this part
+                    next = new Frame(part, definition);
+                }
+            }
+
+            if (next != null) {
+                stack.push(next);
+                continue;
+            }
+
+            stack.pop();
+            visiting.remove(frame.name);
+            definitions.remove(frame.name);
+            if (frame.failed) {
+                // Strings referencing this one cannot be evaluated either
+                if (!stack.isEmpty()) {
+                    stack.peek().failed = true;
+                }
+            } else {
+                strings.put(frame.name, frame.value.toString());
+            }
+        }
+    }
+
+    /**
+     * Report strings forming a cycle.
+     *
+     * @param stack strings being evaluated, the most recent first
+     * @param name  name of the string which was reached again
+     */
+    private static void reportCycle(Deque<Frame> stack, String name) {
+        for (Frame frame : stack) {
+            Field field = frame.definition.field;
+            frame.definition.diagnostics.report(Diagnostic.Code.STRING_CYCLE, field, null,
+                    "cycle in @string: " + field.getKey());
+            if (frame.name.equals(name)) {
+                break;
+            }
+        }
     }
 
     /**
@@ -78,4 +212,78 @@ class Strings {
 
         return str.toString();
     }
+
+    /**
+     * String referencing other strings, waiting for evaluation.
+     */
+    private static class Definition {
+        /**
+         * Field of @STRING entry defining the string.
+         */
+        private final Field field;
+
+        /**
+         * Compiled value of the {@link #field}.
+         */
+        private final Concatenation concatenation;
+
+        /**
+         * {@link Diagnostics} to report problems of the string to.
+         */
+        private final Diagnostics diagnostics;
+
+        /**
+         * Constructor for {@link Definition}.
+         *
+         * @param field         {@link #field}
+         * @param concatenation {@link #concatenation}
+         * @param diagnostics   {@link #diagnostics}
+         */
+        Definition(Field field, Concatenation concatenation, Diagnostics diagnostics) {
+            this.field = field;
+            this.concatenation = concatenation;
+            this.diagnostics = diagnostics;
+        }
+    }
+
+    /**
+     * String being evaluated.
+     */
+    private static class Frame {
+        /**
+         * Name of the string.
+         */
+        private final String name;
+
+        /**
+         * Definition of the string.
+         */
+        private final Definition definition;
+
+        /**
+         * Value of the already evaluated parts.
+         */
+        private final StringBuilder value = new StringBuilder();
+
+        /**
+         * Index of the next part to evaluate.
+         */
+        private int part;
+
+        /**
+         * Whether the string cannot be evaluated.
+         */
+        private boolean failed;
+
+        /**
+         * Constructor for {@link Frame}.
+         *
+         * @param name       {@link #name}
+         * @param definition {@link #definition}
+         */
+        Frame(String name, Definition definition) {
+            this.name = name;
+            this.definition = definition;
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.szczygiel.bibtex;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of strings repeated across {@link Entry entries}, e.g. entry types, field names and journal names.
+ * <p>
+ * Equal strings interned in the same table share one instance, so every entry holds only a reference to it.
+ * Table can be scoped to a single document or shared by all documents through {@link #global()}.
+ * It can be used by many threads parsing entries in parallel.
+ */
+class SymbolTable {
+    /**
+     * Table shared by all documents.
+     */
+    private static final SymbolTable GLOBAL = new SymbolTable();
+
+    /**
+     * Interned strings, each mapped to itself.
+     */
+    private final ConcurrentMap<String, String> symbols = new ConcurrentHashMap<>();
+
+    /**
+     * Get table shared by all documents.
+     * <p>
+     * Strings interned in it are never released.
+     *
+     * @return global {@link SymbolTable}
+     */
+    static SymbolTable global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Get the shared instance of a string.
+     *
+     * @param str string to intern
+     * @return equal string interned before or the given one when it wasn't interned yet
+     */
+    String intern(String str) {
+        // Lookup doesn't lock, most strings are already interned
+        String symbol = symbols.get(str);
+        if (symbol != null) {
+            return symbol;
+        }
+
+        symbol = symbols.putIfAbsent(str, str);
+        return symbol == null ? str : symbol;
+    }
+
+    /**
+     * Get number of interned strings.
+     *
+     * @return number of strings
+     */
+    int size() {
+        return symbols.size();
+    }
+}
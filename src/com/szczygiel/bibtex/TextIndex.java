@@ -0,0 +1,554 @@
+package com.szczygiel.bibtex;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Inverted full-text index of {@link Entry entries} by words of their titles, booktitles, abstracts, notes and keywords.
+ * <p>
+ * Every word maps to a list of entries containing it, with number of occurrences in each one.
+ * Entries are ranked by BM25, which favours rare words and short entries, so only entries containing
+ * any of the searched words are scored.
+ * Entries are added and removed one by one, removed entries are dropped from the lists when they make half of them.
+ * Entries must not change while they are indexed.
+ */
+class TextIndex {
+    /**
+     * Keys of indexed fields.
+     */
+    private static final int[] FIELDS = {
+            FieldKeys.TITLE, FieldKeys.BOOKTITLE, FieldKeys.ABSTRACT, FieldKeys.NOTE, FieldKeys.KEYWORDS
+    };
+
+    /**
+     * BM25 parameter limiting the score of repeated words.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * BM25 parameter of the penalty for long entries, 0 for none and 1 for full.
+     */
+    private static final double B = 0.75;
+
+    /**
+     * Smallest number of removed entries worth compacting the lists.
+     */
+    private static final int MIN_COMPACTED = 1024;
+
+    /**
+     * Letters written with LaTeX commands, e.g. {@code \ss}.
+     */
+    private static final Map<String, String> LETTERS = Map.ofEntries(
+            Map.entry("ss", "ss"), Map.entry("o", "o"), Map.entry("O", "o"), Map.entry("ae", "ae"),
+            Map.entry("AE", "ae"), Map.entry("oe", "oe"), Map.entry("OE", "oe"), Map.entry("aa", "a"),
+            Map.entry("AA", "a"), Map.entry("l", "l"), Map.entry("L", "l"), Map.entry("i", "i"), Map.entry("j", "j"));
+
+    /**
+     * Letters which aren't decomposed into plain letters and accents, replaced like their {@link #LETTERS}.
+     */
+    private static final Map<Character, String> FOLDED_LETTERS = Map.ofEntries(
+            Map.entry('ß', "ss"), Map.entry('ẞ', "ss"), Map.entry('ø', "o"), Map.entry('Ø', "o"),
+            Map.entry('æ', "ae"), Map.entry('Æ', "ae"), Map.entry('œ', "oe"), Map.entry('Œ', "oe"),
+            Map.entry('ł', "l"), Map.entry('Ł', "l"), Map.entry('ı', "i"), Map.entry('đ', "d"),
+            Map.entry('Đ', "d"));
+
+    /**
+     * LaTeX commands placing accents over or under letters, e.g. {@code \v{c}}.
+     */
+    private static final Set<String> ACCENTS = Set.of("u", "v", "H", "c", "k", "r", "d", "b", "t");
+
+    /**
+     * Indexed entries by their document numbers, null for removed ones.
+     */
+    private final List<Entry> documents = new ArrayList<>();
+
+    /**
+     * Document numbers of indexed entries, entries are compared by identity.
+     */
+    private final Map<Entry, Integer> numbers = new IdentityHashMap<>();
+
+    /**
+     * Number of words of entries by their document numbers.
+     */
+    private int[] lengths = new int[16];
+
+    /**
+     * Entries containing given words.
+     */
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /**
+     * Number of words of all indexed entries.
+     */
+    private long totalLength;
+
+    /**
+     * Number of removed entries still present in the {@link #postings}.
+     */
+    private int removed;
+
+    /**
+     * Constructor for {@link TextIndex}.
+     * <p>
+     * Index doesn't follow later changes of the list, use {@link #add(Entry)} and {@link #remove(Entry)}.
+     *
+     * @param entries entries to index
+     */
+    TextIndex(List<Entry> entries) {
+        for (Entry entry : entries) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Split text into lowercase words, skipping LaTeX commands, brackets and accents.
+     * <p>
+     * Accented letters are replaced with plain ones, so "Erd\H{o}s" and "Erdős" are both "erdos".
+     * Formatting commands with arguments are skipped, commands without arguments, e.g. "\TeX", are words.
+     *
+     * @param text text
+     * @return words in the order of the text
+     */
+    static List<String> tokenize(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        tokenize(text, words::add);
+        return words;
+    }
+
+    /**
+     * Split text into lowercase words, skipping LaTeX commands, brackets and accents.
+     *
+     * @param text     text
+     * @param consumer consumer of the words
+     */
+    private static void tokenize(CharSequence text, Consumer<String> consumer) {
+        StringBuilder word = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i++);
+            if (c == '{' || c == '}') {
+                // Brackets protect letter case, e.g. "{B}ayesian"
+                continue;
+            }
+            if (Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK) {
+                word.append(c);
+                continue;
+            }
+            if (c != '\\' || i == length) {
+                flush(word, consumer);
+                continue;
+            }
+
+            c = text.charAt(i);
+            if (!isAsciiLetter(c)) {
+                // Accents like \'e are skipped, other symbols like \& separate words
+                i++;
+                if ("'`^\"~=.".indexOf(c) == -1) {
+                    flush(word, consumer);
+                }
+                continue;
+            }
+
+            int start = i;
+            while (i < length && isAsciiLetter(text.charAt(i))) {
+                i++;
+            }
+            String command = text.subSequence(start, i).toString();
+
+            String letter = LETTERS.get(command);
+            if (letter != null || ACCENTS.contains(command)) {
+                word.append(letter == null ? "" : letter);
+                while (i < length && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                continue;
+            }
+
+            flush(word, consumer);
+            boolean argument = i + 1 < length && text.charAt(i) == '{' && text.charAt(i + 1) != '}';
+            if (!argument) {
+                consumer.accept(normalize(command));
+            }
+        }
+
+        flush(word, consumer);
+    }
+
+    /**
+     * Pass a non-empty word to a consumer and clear it.
+     *
+     * @param word     word
+     * @param consumer consumer of words
+     */
+    private static void flush(StringBuilder word, Consumer<String> consumer) {
+        if (word.length() > 0) {
+            consumer.accept(normalize(word));
+            word.setLength(0);
+        }
+    }
+
+    /**
+     * Convert word to lowercase, without accents.
+     * <p>
+     * Letters are replaced like letters written with LaTeX commands, so "Łódź" and "{\L}\'{o}d\'{z}" are both
+     * "lodz".
+     *
+     * @param word word
+     * @return normalized word
+     */
+    private static String normalize(CharSequence word) {
+        String str = word.toString();
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) >= 0x80) {
+                str = fold(Normalizer.normalize(str, Normalizer.Form.NFD).replaceAll("\\p{M}", ""));
+                break;
+            }
+        }
+
+        return str.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Replace {@link #FOLDED_LETTERS} with plain letters.
+     *
+     * @param word word without accents
+     * @return word with replaced letters
+     */
+    private static String fold(String word) {
+        StringBuilder str = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            String letter = FOLDED_LETTERS.get(word.charAt(i));
+            if (letter == null) {
+                str.append(word.charAt(i));
+            } else {
+                str.append(letter);
+            }
+        }
+
+        return str.toString();
+    }
+
+    /**
+     * Check if a character is an ASCII letter, the only characters of LaTeX command names.
+     *
+     * @param c character
+     * @return true for ASCII letters
+     */
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Count words of indexed fields of an entry.
+     *
+     * @param entry entry
+     * @return numbers of occurrences by words
+     */
+    private static Map<String, Integer> countWords(Entry entry) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int key : FIELDS) {
+            Field field = entry.getField(key);
+            if (field != null && (field.getType() == Field.Type.STRING || field.getType() == Field.Type.NUMBER)) {
+                tokenize(String.valueOf(field.getValue()), word -> counts.merge(word, 1, Integer::sum));
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Add entry to the index.
+     *
+     * @param entry entry, ignored when it is already indexed
+     */
+    void add(Entry entry) {
+        if (numbers.containsKey(entry)) {
+            return;
+        }
+
+        int number = documents.size();
+        documents.add(entry);
+        numbers.put(entry, number);
+        if (number == lengths.length) {
+            lengths = Arrays.copyOf(lengths, number * 2);
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> count : countWords(entry).entrySet()) {
+            postings.computeIfAbsent(count.getKey(), word -> new Postings()).add(number, count.getValue());
+            length += count.getValue();
+        }
+        lengths[number] = length;
+        totalLength += length;
+    }
+
+    /**
+     * Remove entry from the index.
+     *
+     * @param entry entry, ignored when it isn't indexed
+     */
+    void remove(Entry entry) {
+        Integer number = numbers.remove(entry);
+        if (number == null) {
+            return;
+        }
+
+        for (String word : countWords(entry).keySet()) {
+            Postings list = postings.get(word);
+            if (list != null && --list.documentFrequency == 0) {
+                postings.remove(word);
+            }
+        }
+        documents.set(number, null);
+        totalLength -= lengths[number];
+        removed++;
+
+        if (removed >= MIN_COMPACTED && removed * 2 >= documents.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Drop removed entries from the {@link #postings} and renumber the rest.
+     */
+    private void compact() {
+        int[] renumbered = new int[documents.size()];
+        int count = 0;
+        for (int number = 0; number < documents.size(); number++) {
+            Entry entry = documents.get(number);
+            renumbered[number] = entry == null ? -1 : count;
+            if (entry != null) {
+                documents.set(count, entry);
+                numbers.put(entry, count);
+                lengths[count++] = lengths[number];
+            }
+        }
+        documents.subList(count, documents.size()).clear();
+
+        for (Postings list : postings.values()) {
+            list.renumber(renumbered);
+        }
+        removed = 0;
+    }
+
+    /**
+     * Find entries best matching the words of a text, ranked by BM25.
+     *
+     * @param text  searched text
+     * @param count maximal number of found entries
+     * @return found entries from the best matching one, entries with the same score in document order
+     */
+    List<Hit> search(String text, int count) {
+        return search(text, count, entry -> true);
+    }
+
+    /**
+     * Find entries best matching the words of a text among entries matching a condition, ranked by BM25.
+     * <p>
+     * Scores don't depend on the condition, only entries not matching it are skipped.
+     *
+     * @param text      searched text
+     * @param count     maximal number of found entries
+     * @param condition condition of found entries
+     * @return found entries from the best matching one, entries with the same score in document order
+     */
+    List<Hit> search(String text, int count, Predicate<Entry> condition) {
+        int size = size();
+        if (count <= 0 || size == 0) {
+            return List.of();
+        }
+
+        double averageLength = Math.max(1, (double) totalLength / size);
+        double[] scores = new double[documents.size()];
+        int[] scored = new int[16];
+        int scoredCount = 0;
+        for (String word : new LinkedHashSet<>(tokenize(text))) {
+            Postings list = postings.get(word);
+            if (list == null) {
+                continue;
+            }
+
+            int frequency = list.documentFrequency;
+            double idf = Math.log(1 + (size - frequency + 0.5) / (frequency + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int number = list.numbers[i];
+                if (documents.get(number) == null) {
+                    continue;
+                }
+
+                int occurrences = list.occurrences[i];
+                double norm = K1 * (1 - B + B * lengths[number] / averageLength);
+                // Every word adds a positive score, so only entries scored for the first time have zero
+                if (scores[number] == 0) {
+                    if (scoredCount == scored.length) {
+                        scored = Arrays.copyOf(scored, scoredCount * 2);
+                    }
+                    scored[scoredCount++] = number;
+                }
+                scores[number] += idf * occurrences * (K1 + 1) / (occurrences + norm);
+            }
+        }
+
+        // Keep the best entries, the worst of them on top
+        Comparator<Hit> ranking = Comparator.comparingDouble(Hit::getScore).reversed()
+                .thenComparingInt(hit -> hit.offset).thenComparingInt(hit -> hit.number);
+        PriorityQueue<Hit> best = new PriorityQueue<>(ranking.reversed());
+        for (int i = 0; i < scoredCount; i++) {
+            int number = scored[i];
+            if (!condition.test(documents.get(number))) {
+                continue;
+            }
+
+            Hit hit = new Hit(documents.get(number), number, scores[number]);
+            if (best.size() < count) {
+                best.add(hit);
+            } else if (ranking.compare(hit, best.peek()) < 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(ranking);
+        return Collections.unmodifiableList(hits);
+    }
+
+    /**
+     * Get number of indexed entries.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return numbers.size();
+    }
+
+    /**
+     * Entry found by {@link #search(String, int)}.
+     */
+    static final class Hit {
+        /**
+         * Found entry.
+         */
+        private final Entry entry;
+
+        /**
+         * Document number of the entry.
+         */
+        private final int number;
+
+        /**
+         * Offset of the entry, so entries with the same score are in the order of the document,
+         * also after edits adding entries again.
+         */
+        private final int offset;
+
+        /**
+         * BM25 score of the entry.
+         */
+        private final double score;
+
+        /**
+         * Constructor for {@link Hit}.
+         *
+         * @param entry  {@link #entry}
+         * @param number {@link #number}
+         * @param score  {@link #score}
+         */
+        private Hit(Entry entry, int number, double score) {
+            this.entry = entry;
+            this.number = number;
+            this.offset = entry.getOffset();
+            this.score = score;
+        }
+
+        /**
+         * Get {@link #entry}.
+         *
+         * @return found entry
+         */
+        Entry getEntry() {
+            return entry;
+        }
+
+        /**
+         * Get {@link #score}.
+         *
+         * @return BM25 score, higher for better matching entries
+         */
+        double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Growable list of document numbers with numbers of occurrences of a word.
+     */
+    private static class Postings {
+        /**
+         * Document numbers in increasing order.
+         */
+        private int[] numbers = new int[4];
+
+        /**
+         * Numbers of occurrences of the word in the documents.
+         */
+        private int[] occurrences = new int[4];
+
+        /**
+         * Number of documents, including removed ones.
+         */
+        private int size;
+
+        /**
+         * Number of indexed documents containing the word.
+         */
+        private int documentFrequency;
+
+        /**
+         * Add document greater than the already added ones.
+         *
+         * @param number      document number
+         * @param occurrences number of occurrences of the word
+         */
+        void add(int number, int occurrences) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                this.occurrences = Arrays.copyOf(this.occurrences, size * 2);
+            }
+            numbers[size] = number;
+            this.occurrences[size++] = occurrences;
+            documentFrequency++;
+        }
+
+        /**
+         * Renumber documents, dropping removed ones.
+         *
+         * @param renumbered new document numbers by old ones, -1 for removed documents
+         */
+        void renumber(int[] renumbered) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int number = renumbered[numbers[i]];
+                if (number != -1) {
+                    numbers[count] = number;
+                    occurrences[count++] = occurrences[i];
+                }
+            }
+            size = count;
+        }
+    }
+}
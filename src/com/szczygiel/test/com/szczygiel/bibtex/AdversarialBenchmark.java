@@ -0,0 +1,169 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Worst-case latency of the {@link Parser} on malformed and pathological inputs.
+ * <p>
+ * Every case is measured at two sizes, time should grow linearly with the size.
+ * Benchmarks build large documents, so they are disabled and don't run with the unit tests.
+ * Enable them and run with: -Dbibtex.benchmark.entries=100000 -groups benchmark
+ */
+public class AdversarialBenchmark {
+    /**
+     * Number of measured runs of each case.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Single entry with huge abstract, parsed without size budget and skipped with the default one.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkHugeAbstract() {
+        int n = BenchmarkCorpus.entries(100000);
+        for (int size : new int[]{n, 2 * n}) {
+            String input = "@ARTICLE{huge, abstract = {" + "lorem ipsum {dolor} sit amet ".repeat(size) + "}}\n";
+
+            report("huge abstract, no budget", input.length(),
+                    measure(() -> new Parser(false, 0, 0).parseDocument(input)));
+            report("huge abstract, default budget", input.length(),
+                    measure(() -> new Parser().parseDocument(input)));
+        }
+    }
+
+    /**
+     * Many entries with missing closing brackets.
+     * <p>
+     * Every entry ends where the next one begins, instead of swallowing the rest of the input.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkUnbalancedBrackets() {
+        int n = BenchmarkCorpus.entries(100000);
+        for (int size : new int[]{n, 2 * n}) {
+            StringBuilder input = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                input.append("@MISC{key").append(i).append(", title = {{unclosed}, note = \"{\"\n");
+            }
+
+            List<Entry> entries = new Parser().parseDocument(input);
+            assertEquals(entries.size(), size);
+            report("unbalanced brackets", input.length(), measure(() -> new Parser().parseDocument(input)));
+        }
+    }
+
+    /**
+     * Deeply nested brackets.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkNestedBrackets() {
+        int n = BenchmarkCorpus.entries(100000);
+        for (int size : new int[]{n, 2 * n}) {
+            String input = "@MISC{nested, note = " + "{".repeat(size) + "}".repeat(size) + "}\n"
+                    + "@MISC{unclosed, note = " + "{".repeat(size) + "\n";
+
+            report("nested brackets", input.length(), measure(() -> new Parser(false, 0, 0).parseDocument(input)));
+        }
+    }
+
+    /**
+     * Single field concatenating thousands of values, compared with the regex used before.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkConcatenation() {
+        Strings strings = new Strings();
+        strings.setString("jan", "January");
+
+        int n = BenchmarkCorpus.entries(100000) / 5;
+        for (int size : new int[]{n, 2 * n}) {
+            String concatenation = "\"a\"" + " # jan # \"-\"".repeat(size);
+            String input = "@MISC{key, note = " + concatenation + "}";
+
+            long lexerNanos = measure(() -> {
+                Entry entry = new Parser().parseDocument(input).get(0);
+                entry.computeConcatenation(strings, new Diagnostics());
+                return entry;
+            });
+            long regexNanos = measure(() -> RegexConcatenation.concatenate(concatenation, strings));
+
+            report("concatenation of " + 2 * size + " values", input.length(), lexerNanos);
+            report("regex concatenation of " + 2 * size + " values", input.length(), regexNanos);
+        }
+    }
+
+    /**
+     * Measure worst time of a task.
+     *
+     * @param task task to measure
+     * @return worst time of all runs in nanoseconds
+     */
+    private static long measure(Supplier<?> task) {
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            task.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        return Arrays.stream(nanos).max().orElse(0);
+    }
+
+    /**
+     * Print worst-case latency of a case.
+     *
+     * @param name  case name
+     * @param chars number of characters of the input
+     * @param nanos worst time of parsing
+     */
+    private static void report(String name, int chars, long nanos) {
+        System.out.printf("%s: %d chars, worst %.1f ms, %.1f MB/s%n", name, chars, nanos / 1e6,
+                chars / (nanos / 1e9) / 1e6);
+    }
+
+    /**
+     * Regex based concatenation used before {@link Lexer} was introduced, kept as a baseline.
+     */
+    private static class RegexConcatenation {
+        /**
+         * Matches string or reference followed by '#' character and the rest of the concatenation.
+         */
+        private static final Pattern FIELD = Pattern.compile("(?s)(\"[^\"]*\"|[a-zA-Z_][\\w-]*)\\s*(#)?(.*)");
+
+        /**
+         * Concatenate values the way the regex based parser did.
+         *
+         * @param concatenation values separated by '#' character
+         * @param strings       {@link Strings} used for resolving references
+         * @return concatenated value
+         */
+        static String concatenate(String concatenation, Strings strings) {
+            StringBuilder finalValue = new StringBuilder();
+            Matcher matcher = FIELD.matcher(concatenation);
+            while (matcher.find()) {
+                String value = matcher.group(1);
+                String hash = matcher.group(2);
+                String rest = matcher.group(3);
+                matcher.reset(rest);
+
+                if (value.startsWith("\"")) {
+                    finalValue.append(value, 1, value.length() - 1);
+                } else {
+                    finalValue.append(strings.getString(value));
+                }
+
+                if (hash == null) {
+                    break;
+                }
+            }
+
+            return finalValue.toString();
+        }
+    }
+}
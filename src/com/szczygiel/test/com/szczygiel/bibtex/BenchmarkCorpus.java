@@ -0,0 +1,67 @@
+package com.szczygiel.bibtex;
+
+/**
+ * Generates synthetic BibTeX documents for benchmarks.
+ */
+class BenchmarkCorpus {
+    /**
+     * Journal names repeated across generated entries.
+     */
+    private static final String[] JOURNALS = {
+            "Communications of the ACM", "Journal of the ACM", "SIAM Journal on Computing",
+            "Theoretical Computer Science", "Information Processing Letters"
+    };
+
+    /**
+     * Last names of generated authors.
+     */
+    private static final String[] LAST_NAMES = {
+            "Knuth", "Dijkstra", "Hoare", "Lamport", "Tarjan", "Karp", "Cook", "Rabin", "Scott", "Wirth"
+    };
+
+    /**
+     * Prevents creating new instance of this class.
+     */
+    private BenchmarkCorpus() {
+
+    }
+
+    /**
+     * Get number of entries to generate, configurable by the 'bibtex.benchmark.entries' system property.
+     *
+     * @param defaultEntries number of entries used when property is not set
+     * @return number of entries
+     */
+    static int entries(int defaultEntries) {
+        return Integer.getInteger("bibtex.benchmark.entries", defaultEntries);
+    }
+
+    /**
+     * Generate document with given number of articles preceded by month strings.
+     *
+     * @param entries number of articles
+     * @return BibTeX document
+     */
+    static String generate(int entries) {
+        StringBuilder str = new StringBuilder();
+        str.append("@STRING{\n   jan = \"January\",\n   feb = \"February\"\n}\n\n");
+
+        for (int i = 0; i < entries; i++) {
+            String firstAuthor = LAST_NAMES[i % LAST_NAMES.length];
+            String secondAuthor = LAST_NAMES[(i / LAST_NAMES.length) % LAST_NAMES.length];
+
+            str.append("@ARTICLE{article-").append(i).append(",\n");
+            str.append("   author = \"A. ").append(firstAuthor).append(" and B. ").append(secondAuthor).append("\",\n");
+            str.append("   title = \"On the Complexity of Problem Number ").append(i).append("\",\n");
+            str.append("   journal = \"").append(JOURNALS[i % JOURNALS.length]).append("\",\n");
+            str.append("   year = ").append(1970 + i % 50).append(",\n");
+            str.append("   volume = ").append(1 + i % 40).append(",\n");
+            str.append("   pages = \"").append(i % 500).append("--").append(i % 500 + 12).append("\",\n");
+            str.append("   month = ").append(i % 2 == 0 ? "jan" : "\"1 \" # feb").append(",\n");
+            str.append("   note = \"Generated entry for benchmarking\"\n");
+            str.append("}\n\n");
+        }
+
+        return str.toString();
+    }
+}
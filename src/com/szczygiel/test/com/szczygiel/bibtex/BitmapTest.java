@@ -0,0 +1,114 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for the {@link Bitmap}.
+ */
+public class BitmapTest {
+    /**
+     * Test operations on bitmaps with sparse, dense and consecutive values against {@link BitSet}.
+     */
+    @Test
+    public void testOperations() {
+        Random random = new Random(42);
+        int limit = 300000;
+        List<BitSet> sets = List.of(
+                randomSet(random, limit, 0.001),
+                randomSet(random, limit, 0.5),
+                rangesSet(limit, 70000, 200000),
+                rangesSet(limit, 10, 20, 65530, 65540, 131072, 131073),
+                new BitSet());
+
+        for (BitSet first : sets) {
+            Bitmap firstBitmap = Bitmap.of(first.stream().toArray());
+            assertEquals(firstBitmap.toArray(), first.stream().toArray());
+            assertEquals(firstBitmap.cardinality(), first.cardinality());
+
+            BitSet not = new BitSet();
+            not.set(0, limit);
+            not.andNot(first);
+            assertEquals(firstBitmap.not(limit).toArray(), not.stream().toArray());
+
+            for (BitSet second : sets) {
+                Bitmap secondBitmap = Bitmap.of(second.stream().toArray());
+
+                BitSet and = (BitSet) first.clone();
+                and.and(second);
+                assertEquals(firstBitmap.and(secondBitmap).toArray(), and.stream().toArray());
+
+                BitSet or = (BitSet) first.clone();
+                or.or(second);
+                assertEquals(firstBitmap.or(secondBitmap).toArray(), or.stream().toArray());
+
+                BitSet andNot = (BitSet) first.clone();
+                andNot.andNot(second);
+                assertEquals(firstBitmap.andNot(secondBitmap).toArray(), andNot.stream().toArray());
+            }
+        }
+    }
+
+    /**
+     * Test that containers are compressed.
+     */
+    @Test
+    public void testCompression() {
+        Bitmap range = Bitmap.range(0, 1000000);
+        assertEquals(range.cardinality(), 1000000);
+        assertTrue(range.contains(999999));
+        assertFalse(range.contains(1000000));
+        assertTrue(range.sizeInBytes() < 100);
+
+        Bitmap sparse = Bitmap.of(1, 100, 100000);
+        assertTrue(sparse.contains(100000));
+        assertFalse(sparse.contains(2));
+        assertTrue(sparse.sizeInBytes() < 20);
+
+        assertTrue(Bitmap.EMPTY.isEmpty());
+        assertTrue(range.and(Bitmap.EMPTY).isEmpty());
+        assertEquals(range.andNot(Bitmap.range(1, 1000000)), Bitmap.of(0));
+    }
+
+    /**
+     * Create set of random values.
+     *
+     * @param random  source of randomness
+     * @param limit   value right after the last possible one
+     * @param density probability of every value
+     * @return set of values
+     */
+    private static BitSet randomSet(Random random, int limit, double density) {
+        BitSet set = new BitSet();
+        for (int i = 0; i < limit; i++) {
+            if (random.nextDouble() < density) {
+                set.set(i);
+            }
+        }
+
+        return set;
+    }
+
+    /**
+     * Create set of ranges of values.
+     *
+     * @param limit  value right after the last possible one
+     * @param bounds pairs of the first value and the value right after the last one of every range
+     * @return set of values
+     */
+    private static BitSet rangesSet(int limit, int... bounds) {
+        BitSet set = new BitSet();
+        for (int i = 0; i < bounds.length; i += 2) {
+            set.set(bounds[i], Math.min(limit, bounds[i + 1]));
+        }
+
+        return set;
+    }
+}
@@ -0,0 +1,64 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for {@link ChunkedCharSequence}.
+ */
+public class ChunkedCharSequenceTest {
+    /**
+     * Test that edited sequence has the same characters as an edited string.
+     */
+    @Test
+    public void testEdit() {
+        Random random = new Random(42);
+
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 5 * ChunkedCharSequence.MAX_CHUNK_LENGTH + 7; i++) {
+            str.append((char) ('a' + i % 26));
+        }
+
+        String expected = str.toString();
+        ChunkedCharSequence sequence = ChunkedCharSequence.of(expected);
+        for (int i = 0; i < 500; i++) {
+            int offset = random.nextInt(expected.length() + 1);
+            int removedLength = random.nextInt(Math.min(i % 2 == 0 ? 16 : 3 * ChunkedCharSequence.MAX_CHUNK_LENGTH,
+                    expected.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            for (int j = random.nextInt(i % 3 == 0 ? 2 * ChunkedCharSequence.MAX_CHUNK_LENGTH : 16); j > 0; j--) {
+                inserted.append((char) ('A' + random.nextInt(26)));
+            }
+
+            expected = expected.substring(0, offset) + inserted + expected.substring(offset + removedLength);
+            sequence = sequence.edit(offset, removedLength, inserted.toString());
+
+            assertEquals(sequence.length(), expected.length());
+            for (int j = 0; j < 100 && expected.length() > 0; j++) {
+                int index = random.nextInt(expected.length());
+                assertEquals(sequence.charAt(index), expected.charAt(index));
+            }
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(expected.length() - start + 1);
+            assertEquals(sequence.subSequence(start, end), expected.substring(start, end));
+        }
+
+        assertEquals(sequence.toString(), expected);
+    }
+
+    /**
+     * Test editing empty sequence and removing all characters.
+     */
+    @Test
+    public void testEditEmpty() {
+        ChunkedCharSequence sequence = ChunkedCharSequence.of("").edit(0, 0, "abc");
+        assertEquals(sequence.toString(), "abc");
+
+        sequence = sequence.edit(0, 3, "");
+        assertEquals(sequence.length(), 0);
+        assertEquals(sequence.edit(0, 0, "").toString(), "");
+    }
+}
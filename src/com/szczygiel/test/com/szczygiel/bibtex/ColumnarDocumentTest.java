@@ -0,0 +1,150 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for the {@link ColumnarDocument}.
+ */
+public class ColumnarDocumentTest {
+    /**
+     * Test that rows contain the same data as entries they were created from.
+     */
+    @Test
+    public void testRows() {
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(100) +
+                "@BOOK{gödel, author = {Kurt G|Gödel}, title = {Über formal unentscheidbare Sätze}, " +
+                "publisher = {Springer}, year = 1931, crossref = {article-1}}\n");
+        document.parse();
+
+        List<Entry> entries = document.getEntries();
+        ColumnarDocument columnar = new ColumnarDocument(entries);
+        assertEquals(columnar.size(), entries.size());
+
+        ColumnarDocument.View view = columnar.view(0);
+        for (int row = 0; row < entries.size(); row++) {
+            Entry entry = entries.get(row);
+            view.moveTo(row);
+            assertEquals(view.getEntryType(), entry.getEntryType());
+            assertEquals(view.getCitationKey(), entry.getCitationKey());
+            assertEquals(view.getAuthorsLastNames(), entry.getAuthorsLastNames());
+            assertEquals(view.toEntry().toString(), entry.toString());
+            assertEquals(PrettyFormat.table(view.toEntry()), PrettyFormat.table(entry));
+        }
+
+        view.moveTo(entries.size() - 1);
+        assertEquals(view.getField("year"), 1931);
+        assertEquals(view.getField("title"), "Über formal unentscheidbare Sätze");
+        assertTrue(view.hasField(FieldKeys.CROSSREF));
+        assertFalse(view.hasField(FieldKeys.PAGES));
+        assertNull(view.getField("pages"));
+        assertNull(view.getField("unknown"));
+        expectThrows(IndexOutOfBoundsException.class, () -> view.moveTo(entries.size()));
+    }
+
+    /**
+     * Test that filtering rows gives the same results as filtering entries.
+     */
+    @Test
+    public void testFilter() {
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(300) + "@BOOK{book, author = {Knuth}, title = {Title}, " +
+                "publisher = {Publisher}, year = 1984}\n");
+        document.parse();
+
+        List<Entry> entries = document.getEntries();
+        ColumnarDocument columnar = new ColumnarDocument(entries);
+        int[] rows = columnar.rows();
+
+        assertRows(columnar, columnar.filterTypes(rows, Set.of("book")),
+                Filter.filterTypes(entries, Set.of("book")));
+        assertRows(columnar, columnar.filterTypes(rows, Set.of("book", "article", "misc")),
+                Filter.filterTypes(entries, Set.of("book", "article", "misc")));
+        assertRows(columnar, columnar.filterAuthors(rows, Set.of("Knuth", "Hoare")),
+                Filter.filterAuthors(entries, Set.of("Knuth", "Hoare")));
+        assertRows(columnar, columnar.filterAuthors(rows, Set.of("Knuth", "Unknown")),
+                Filter.filterAuthors(entries, Set.of("Knuth", "Unknown")));
+
+        assertRows(columnar, columnar.filterAuthors(rows, Set.of("knuth", "{HOARE}")),
+                Filter.filterAuthors(entries, Set.of("knuth", "{HOARE}")));
+        assertRows(columnar, columnar.filterAuthors(rows, Set.of("Knuth", "KNUTH")),
+                Filter.filterAuthors(entries, Set.of("Knuth", "KNUTH")));
+        assertTrue(columnar.filterAuthors(rows, Set.of("knuth")).length > 1);
+
+        int[] books = columnar.filterTypes(rows, Set.of("book"));
+        assertRows(columnar, columnar.filterAuthors(books, Set.of("Knuth")),
+                Filter.filterAuthors(Filter.filterTypes(entries, Set.of("book")), Set.of("Knuth")));
+    }
+
+    /**
+     * Test that all parts of authors' names are kept.
+     */
+    @Test
+    public void testAuthorNameParts() {
+        Document document = new Document();
+        document.loadString("@BOOK{book, author = {Ludwig van Beethoven and Smith, Jr., John}, " +
+                "title = {Title}, publisher = {Publisher}, year = 1984}\n");
+        document.parse();
+
+        Entry entry = document.getEntries().get(0);
+        Entry rowEntry = new ColumnarDocument(document.getEntries()).view(0).toEntry();
+        List<String> fullNames = new ArrayList<>();
+        for (Entry.Author author : rowEntry.getAuthors()) {
+            fullNames.add(author.getFullName());
+        }
+        assertEquals(fullNames, List.of("Ludwig van Beethoven", "John Smith, Jr."));
+        assertEquals(rowEntry.getAuthorsLastNames(), entry.getAuthorsLastNames());
+        assertEquals(PrettyFormat.table(rowEntry), PrettyFormat.table(entry));
+    }
+
+    /**
+     * Test values spanning many text pages.
+     */
+    @Test
+    public void testLongValues() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 700_000; i++) {
+            value.append(i % 2 == 0 ? 'a' : 'ą');
+        }
+
+        ColumnarDocument columnar = new ColumnarDocument();
+        for (int i = 0; i < 3; i++) {
+            Entry entry = new Entry();
+            entry.setEntryType("misc");
+            entry.setCitationKey("key" + i);
+
+            Field field = new Field();
+            field.setKey("note");
+            field.setType(Field.Type.STRING);
+            field.setValue(value.toString());
+            entry.addField(field);
+            columnar.add(entry);
+        }
+
+        for (int row = 0; row < 3; row++) {
+            ColumnarDocument.View view = columnar.view(row);
+            assertEquals(view.getCitationKey(), "key" + row);
+            assertEquals(view.getFieldValue(0), value.toString());
+        }
+    }
+
+    /**
+     * Assert that rows are the given entries.
+     *
+     * @param columnar document containing the rows
+     * @param rows     indexes of rows
+     * @param entries  expected entries
+     */
+    private static void assertRows(ColumnarDocument columnar, int[] rows, List<Entry> entries) {
+        assertEquals(rows.length, entries.size());
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(columnar.view(rows[i]).getCitationKey(), entries.get(i).getCitationKey());
+        }
+    }
+}
@@ -2,7 +2,19 @@ package com.szczygiel.bibtex;
 
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Tests for whole {@link Document} parsing.
@@ -11,9 +23,9 @@ public class DocumentTest {
     /**
      * Field validation test.
      * <p>
-     * This test checks if exception is thrown (as it should).
+     * This test checks if the entry is reported and skipped (as it should).
      */
-    @Test(expectedExceptions = IllegalArgumentException.class)
+    @Test
     public void testValidateMissingYear() {
         // Missing year
         String fileStr = "@BOOK{book-full,\n" +
@@ -28,15 +40,50 @@ public class DocumentTest {
                 "   note = \"This is a full BOOK entry\"\n" +
                 "}";
 
+        assertSkipped(fileStr, Diagnostic.Code.MISSING_FIELD);
+    }
+
+    /**
+     * Test required fields with alternatives and ignored fields.
+     */
+    @Test
+    public void testValidateAlternatives() {
+        String fileStr = "@INBOOK{inbook,\n" +
+                "   editor = \"Donald E. Knuth\",\n" +
+                "   author = \"Piotr Szczygieł\",\n" +
+                "   title = \"Seminumerical Algorithms\",\n" +
+                "   pages = \"12--24\",\n" +
+                "   publisher = \"Addison-Wesley\",\n" +
+                "   year = 1981,\n" +
+                "   number = 2,\n" +
+                "   journal = \"Ignored\"\n" +
+                "}";
+
         Document document = new Document();
         document.loadString(fileStr);
         document.parse();
+
+        assertEquals(document.toString(), "inbook(inbook): \n" +
+                "\teditor(string): Donald E. Knuth\n" +
+                "\ttitle(string): Seminumerical Algorithms\n" +
+                "\tpages(string): 12--24\n" +
+                "\tpublisher(string): Addison-Wesley\n" +
+                "\tyear(number): 1981\n\n");
+
+        assertSkipped(fileStr.replace("   pages = \"12--24\",\n", ""), Diagnostic.Code.MISSING_FIELD);
+
+        SingletonSpecificEntries.SpecificEntry inbook = SingletonSpecificEntries.getInstance().get("inbook");
+        long fieldIds = 1L << FieldKeys.AUTHOR | 1L << FieldKeys.TITLE | 1L << FieldKeys.CHAPTER;
+        assertEquals(inbook.findMissingField(fieldIds), "publisher");
+        fieldIds |= 1L << FieldKeys.PUBLISHER | 1L << FieldKeys.YEAR;
+        assertNull(inbook.findMissingField(fieldIds));
+        assertEquals(inbook.findMissingField(fieldIds & ~(1L << FieldKeys.CHAPTER)), "chapter|pages");
     }
 
     /**
      * Same as {@link #testValidateMissingYear}.
      */
-    @Test(expectedExceptions = IllegalArgumentException.class)
+    @Test
     public void testValidateMissingTitle() {
         // Missing title
         String fileStr = "@MANUAL{manual-full,\n" +
@@ -49,27 +96,77 @@ public class DocumentTest {
                 "   note = \"This is a full MANUAL entry\"\n" +
                 "}";
 
-        Document document = new Document();
-        document.loadString(fileStr);
-        document.parse();
+        assertSkipped(fileStr, Diagnostic.Code.MISSING_FIELD);
     }
 
 
     /**
      * Entry type validation test.
      * <p>
-     * This test checks if exception is thrown (as it should).
+     * This test checks if the entry is reported and skipped (as it should).
      */
-    @Test(expectedExceptions = IllegalArgumentException.class)
+    @Test
     public void testValidateInvalidEntryType() {
         String fileStr = "@INVALID_ENTRY_TYPE{some_citation_key,\n" +
                 "    author = \"Piotr Szczygieł\",\n" +
                 "    note = \"This entry has invalid entry type.\"\n" +
                 "}";
 
+        assertSkipped(fileStr, Diagnostic.Code.UNKNOWN_ENTRY_TYPE);
+    }
+
+    /**
+     * Parse a document with a single invalid entry and check that it was reported and skipped.
+     *
+     * @param fileStr document with invalid entry
+     * @param code    expected kind of the problem
+     */
+    private static void assertSkipped(String fileStr, Diagnostic.Code code) {
+        Document document = new Document();
+        document.loadString(fileStr);
+        document.parse();
+
+        assertTrue(document.getEntries().isEmpty());
+        List<Diagnostic> diagnostics = document.getDiagnostics().getDiagnostics();
+        assertEquals(diagnostics.size(), 1);
+        assertEquals(diagnostics.get(0).getCode(), code);
+        assertEquals(diagnostics.get(0).getSeverity(), Diagnostic.Severity.ERROR);
+        assertEquals(diagnostics.get(0).getLineNumber(), 1);
+    }
+
+    /**
+     * Test if parsing continues after invalid entries, reporting each of them.
+     */
+    @Test
+    public void testRecovery() {
+        String fileStr = "@MISC{first,\n   note = \"valid\"\n}\n" +
+                "@BOOK{book,\n   title = \"No author\"\n}\n" +
+                "@MISC{first,\n   note = \"duplicate\"\n}\n" +
+                "@MISC{crossref,\n   crossref = \"missing\"\n}\n" +
+                "@MISC{unclosed,\n   note = \"unclosed\"\n" +
+                "@MISC{reference,\n   note = undefined,\n   title = \"valid\"\n}\n" +
+                "@MISC{last,\n   note = \"valid\"\n}\n";
+
         Document document = new Document();
         document.loadString(fileStr);
         document.parse();
+
+        assertEquals(document.getEntries().size(), 4);
+        assertEquals(document.getEntries().get(0).getField("note").getValue(), "valid");
+        assertEquals(document.getEntries().get(3).getCitationKey(), "last");
+
+        List<Diagnostic> diagnostics = document.getDiagnostics().getDiagnostics();
+        assertEquals(diagnostics.size(), 5);
+        assertEquals(diagnostics.get(0).getCode(), Diagnostic.Code.MISSING_FIELD);
+        assertEquals(diagnostics.get(0).getCitationKey(), "book");
+        assertEquals(diagnostics.get(1).getCode(), Diagnostic.Code.DUPLICATE_ENTRY);
+        assertEquals(diagnostics.get(1).getLineNumber(), 7);
+        assertEquals(diagnostics.get(2).getCode(), Diagnostic.Code.UNKNOWN_CROSSREFERENCE);
+        assertEquals(diagnostics.get(3).getCode(), Diagnostic.Code.UNCLOSED_ENTRY);
+        assertEquals(diagnostics.get(4).getCode(), Diagnostic.Code.UNDEFINED_STRING);
+        assertEquals(diagnostics.get(4).getLineNumber(), 16);
+        assertEquals(diagnostics.get(4).getColumnNumber(), 4);
+        assertEquals(document.getDiagnostics().count(Diagnostic.Severity.WARNING), 2);
     }
 
     /**
@@ -176,4 +273,502 @@ public class DocumentTest {
 
         assertEquals(document.toString(), correctOutput);
     }
+
+    /**
+     * Test chains of crossreferences defined in any order and crossreference cycles.
+     */
+    @Test
+    public void testCrossreferenceChain() {
+        String text = "@INPROCEEDINGS{paper,\n" +
+                "   author = \"Donald E. Knuth\",\n" +
+                "   title = \"Paper\",\n" +
+                "   crossref = \"proceedings\"\n" +
+                "}\n" +
+                "\n" +
+                "@PROCEEDINGS{proceedings,\n" +
+                "   title = \"Proceedings\",\n" +
+                "   crossref = \"series\"\n" +
+                "}\n" +
+                "\n" +
+                "@CROSSREF{series,\n" +
+                "   booktitle = \"Series\",\n" +
+                "   year = 1984\n" +
+                "}\n" +
+                "\n" +
+                "@MISC{first,\n" +
+                "   crossref = \"second\"\n" +
+                "}\n" +
+                "\n" +
+                "@MISC{second,\n" +
+                "   crossref = \"first\"\n" +
+                "}\n" +
+                "\n" +
+                "@MISC{third,\n" +
+                "   note = \"Third\",\n" +
+                "   crossref = \"first\"\n" +
+                "}\n";
+
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+
+        Entry paper = document.getEntry("paper");
+        assertEquals(paper.getField("booktitle").getValue(), "Series");
+        assertEquals(paper.getField("year").getValue(), 1984);
+        assertEquals(paper.getField("title").getValue(), "Paper");
+        assertEquals(document.getEntry("proceedings").getField("year").getValue(), 1984);
+
+        // Entries of the cycle are skipped, entries crossreferencing it are not
+        assertNull(document.getEntry("first"));
+        assertNull(document.getEntry("second"));
+        assertEquals(document.getEntry("third").getField("note").getValue(), "Third");
+        List<Diagnostic> diagnostics = document.getDiagnostics().getDiagnostics();
+        assertEquals(diagnostics.size(), 2);
+        assertEquals(diagnostics.get(0).getCode(), Diagnostic.Code.CROSSREFERENCE_CYCLE);
+        assertEquals(diagnostics.get(1).getCode(), Diagnostic.Code.CROSSREFERENCE_CYCLE);
+
+        // Edit at the top of the chain changes all entries below it
+        text = assertEdit(document, text, text.indexOf("1984"), 4, "1985");
+        assertEquals(document.getEntry("paper").getField("year").getValue(), 1985);
+
+        // Breaking the cycle makes its entries valid
+        text = assertEdit(document, text, text.indexOf("\"first\"\n}\n\n@MISC{third"), 7, "\"series\"");
+        assertEquals(document.getEntry("first").getField("year").getValue(), 1985);
+        assertTrue(document.getDiagnostics().getDiagnostics().isEmpty());
+    }
+
+    /**
+     * Test looking up entries by citation keys.
+     */
+    @Test
+    public void testGetEntry() {
+        String fileStr = "@BOOK{child,\n" +
+                "   crossref = \"Parent\",\n" +
+                "   year = 1982\n" +
+                "}\n" +
+                "\n" +
+                "@MISC{Parent,\n" +
+                "   author = \"Donald E. Knuth\",\n" +
+                "   title = \"Seminumerical Algorithms\",\n" +
+                "   publisher = \"Addison-Wesley\"\n" +
+                "}\n" +
+                "\n" +
+                "@MISC{parent,\n" +
+                "   note = \"duplicate\"\n" +
+                "}\n";
+
+        Document document = new Document();
+        assertNull(document.getEntry("parent"));
+
+        document.loadString(fileStr);
+        document.parse();
+
+        List<Entry> entries = document.getEntries();
+        assertEquals(entries.size(), 2);
+        assertSame(document.getEntry("child"), entries.get(0));
+        assertSame(document.getEntry("PARENT"), entries.get(1));
+        assertEquals(document.getEntry("child").getField("title").getValue(), "Seminumerical Algorithms");
+        assertNull(document.getEntry("unknown"));
+        assertEquals(document.getDiagnostics().getDiagnostics().get(0).getCode(), Diagnostic.Code.DUPLICATE_ENTRY);
+    }
+
+    /**
+     * Test parsing of a memory-mapped file containing multi-byte UTF-8 characters.
+     *
+     * @throws IOException when the temporary file cannot be written
+     */
+    @Test
+    public void testMapFile() throws IOException {
+        String fileStr = "@STRING{ may = \"maj\" }\n" +
+                "@BOOK{książka,\n" +
+                "   author = \"Piotr Szczygieł\",\n" +
+                "   title = \"Zażółć gęślą jaźń\",\n" +
+                "   publisher = \"Wydawnictwo\",\n" +
+                "   month = \"14 \" # may,\n" +
+                "   year = 2018\n" +
+                "}\n";
+
+        File file = File.createTempFile("bibtex", ".bib");
+        file.deleteOnExit();
+        Files.write(file.toPath(), fileStr.getBytes(StandardCharsets.UTF_8));
+
+        Document document = new Document();
+        assertTrue(document.mapFile(file));
+        document.parse();
+
+        Entry entry = document.getEntries().get(0);
+        assertEquals(entry.getCitationKey(), "książka");
+        assertEquals(entry.getField("title").getValue(), "Zażółć gęślą jaźń");
+        assertEquals(entry.getField("month").getValue(), "14 maj");
+        assertEquals(entry.getAuthorsLastNames(), Set.of("Szczygieł"));
+
+        // Offsets are counted in bytes
+        assertEquals(entry.getOffset(), fileStr.indexOf("@BOOK"));
+        assertEquals(entry.getLineNumber(), 2);
+        assertEquals(entry.getField("publisher").getLineNumber(), 5);
+        assertEquals(entry.getField("publisher").getOffset(),
+                fileStr.substring(0, fileStr.indexOf("publisher")).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Test that incrementally edited document is the same as the edited text parsed from scratch.
+     */
+    @Test
+    public void testApplyEdit() {
+        String text = "@STRING{\n" +
+                "    jan = \"styczeń\"\n" +
+                "}\n" +
+                "\n" +
+                "@BOOK{book-full,\n" +
+                "   author = \"Donald E. Knuth\",\n" +
+                "   title = \"Seminumerical Algorithms\",\n" +
+                "   publisher = \"Addison-Wesley\",\n" +
+                "   month = \"10 \" # jan,\n" +
+                "   year = 1981\n" +
+                "}\n" +
+                "\n" +
+                "@BOOK{book-full-2,\n" +
+                "   crossref = \"book-full\",\n" +
+                "   year = 1982,\n" +
+                "}\n" +
+                "\n" +
+                "@MISC{misc,\n" +
+                "   note = jan\n" +
+                "}\n";
+
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+        List<Entry> entries = document.getEntries();
+
+        // Change string referenced by other entries
+        text = assertEdit(document, text, text.indexOf("styczeń"), "styczeń".length(), "stycznia");
+        assertEquals(entries.get(0).getField("month").getValue(), "10 stycznia");
+        assertEquals(entries.get(2).getField("note").getValue(), "stycznia");
+
+        // Change crossreferenced entry
+        text = assertEdit(document, text, text.indexOf("Seminumerical"), "Seminumerical".length(), "Fundamental");
+        assertEquals(entries.get(1).getField("title").getValue(), "Fundamental Algorithms");
+
+        // Add entry at the beginning, moving all others
+        text = assertEdit(document, text, 0, 0, "@MISC{first,\n   note = \"new\"\n}\n");
+        assertEquals(entries.size(), 4);
+
+        // Remove closing bracket, entry ends where the next one begins
+        int bracket = text.indexOf("}\n\n@MISC{misc");
+        text = assertEdit(document, text, bracket, 1, "");
+        text = assertEdit(document, text, bracket, 0, "}");
+
+        // Remove entry
+        int misc = text.indexOf("@MISC{misc");
+        text = assertEdit(document, text, misc, text.length() - misc, "");
+        assertEquals(entries.size(), 3);
+
+        // Invalid edit skips the entry and its dependents
+        String title = "   title = \"Fundamental Algorithms\",\n";
+        int titleOffset = text.indexOf(title);
+        text = assertEdit(document, text, titleOffset, title.length(), "");
+        assertEquals(entries.size(), 1);
+        assertEquals(document.getDiagnostics().getDiagnostics().get(0).getCode(), Diagnostic.Code.MISSING_FIELD);
+        text = assertEdit(document, text, titleOffset, 0, title);
+        assertEquals(entries.size(), 3);
+        assertTrue(document.getDiagnostics().getDiagnostics().isEmpty());
+
+        // Duplicate is skipped until the first entry with its citation key is removed
+        int book = text.indexOf("@BOOK{book-full-2");
+        text = assertEdit(document, text, book, 0, "@MISC{first,\n   note = \"duplicate\"\n}\n\n");
+        assertEquals(entries.size(), 3);
+        assertEquals(document.getDiagnostics().getDiagnostics().get(0).getCode(), Diagnostic.Code.DUPLICATE_ENTRY);
+        text = assertEdit(document, text, 0, text.indexOf("@STRING"), "");
+        assertEquals(entries.size(), 3);
+        assertEquals(entries.get(1).getField("note").getValue(), "duplicate");
+        assertSame(document.getEntries(), entries);
+    }
+
+    /**
+     * Test edits of a document with many blocks of entries, updating indexes built before the edits.
+     */
+    @Test
+    public void testApplyEditBlocks() {
+        int count = 1200;
+        String text = BenchmarkCorpus.generate(count);
+
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 48; i++) {
+            int entry = text.indexOf("@ARTICLE{article-" + random.nextInt(count) + ",");
+            if (entry == -1) {
+                continue;
+            }
+
+            switch (i % 6) {
+                case 0:
+                    int title = text.indexOf("Number", entry);
+                    text = assertEdit(document, text, title, "Number".length(), "No.");
+                    break;
+                case 1:
+                    text = assertEdit(document, text, text.indexOf("A. ", entry) + 3, 0, "Mc");
+                    break;
+                case 2:
+                    text = assertEdit(document, text, text.indexOf("year = ", entry) + 7, 4, "1999");
+                    break;
+                case 3:
+                    text = assertEdit(document, text, entry, text.indexOf("@", entry + 1) - entry, "");
+                    break;
+                case 4:
+                    text = assertEdit(document, text, entry, 0, "@MISC{added-" + i + ",\n   note = \"added\"\n}\n\n");
+                    break;
+                default:
+                    // Long paste splits the block it is pasted into
+                    String pasted = BenchmarkCorpus.generate(count / 2).replace("article-", "pasted-" + i + "-");
+                    text = assertEdit(document, text, entry, 0, pasted.substring(pasted.indexOf("@ARTICLE")));
+                    break;
+            }
+        }
+
+        // Edit of a string referenced by half of the entries
+        text = assertEdit(document, text, text.indexOf("January"), "January".length(), "Januar");
+        assertEdit(document, text, 0, text.indexOf("@ARTICLE"), "");
+    }
+
+    /**
+     * Test that edit of a string updates entries referencing it through other strings.
+     */
+    @Test
+    public void testApplyEditNestedStrings() {
+        String text = "@STRING{ jan = \"styczeń\" }\n" +
+                "\n" +
+                "@STRING{ date = \"10 \" # jan }\n" +
+                "\n" +
+                "@MISC{misc,\n" +
+                "   note = date\n" +
+                "}\n";
+
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        assertEquals(entries.get(0).getField("note").getValue(), "10 styczeń");
+
+        text = assertEdit(document, text, text.indexOf("styczeń"), "styczeń".length(), "stycznia");
+        assertEquals(entries.get(0).getField("note").getValue(), "10 stycznia");
+
+        // Cycle of strings leaves the reference undefined
+        text = assertEdit(document, text, text.indexOf("\"stycznia\""), "\"stycznia\"".length(), "date");
+        assertTrue(entries.isEmpty() || entries.get(0).getField("note") == null);
+    }
+
+    /**
+     * Test that strings referencing undefined strings are kept, so they are defined again by edits.
+     */
+    @Test
+    public void testApplyEditUndefinedNestedStrings() {
+        String text = "@STRING{jan = \"January\"}\n" +
+                "@STRING{full = jan}\n" +
+                "@MISC{m1, note = full}\n";
+
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+
+        text = assertEdit(document, text, text.indexOf("jan"), 3, "jXn");
+        assertTrue(document.getEntries().get(0).getFields().isEmpty());
+        text = assertEdit(document, text, text.indexOf("jXn"), 3, "jan");
+        assertEquals(document.getEntries().get(0).getField("note").getValue(), "January");
+        text = assertEdit(document, text, text.indexOf("January"), 7, "Jan.");
+        assertEquals(document.getEntries().get(0).getField("note").getValue(), "Jan.");
+
+        text = "@STRING{full = jan # \" 1st\"}\n" +
+                "@MISC{m1, note = full}\n";
+        document = new Document();
+        document.loadString(text);
+        document.parse();
+
+        text = assertEdit(document, text, 0, 0, "@STRING{jan = \"January\"}\n");
+        assertEquals(document.getEntries().get(0).getField("note").getValue(), "January 1st");
+    }
+
+    /**
+     * Test that edit before a crossreferenced entry moves its fields once, though its children share them.
+     */
+    @Test
+    public void testApplyEditCrossreference() {
+        String text = "@MISC{z}\n" +
+                "\n" +
+                "@BOOK{b1,\n" +
+                "   author = \"Donald E. Knuth\",\n" +
+                "   title = \"Book\",\n" +
+                "   publisher = \"Addison-Wesley\",\n" +
+                "   year = 1981\n" +
+                "}\n" +
+                "\n" +
+                "@INBOOK{c1,\n" +
+                "   crossref = \"b1\",\n" +
+                "   chapter = 1\n" +
+                "}\n";
+
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+        int publisherOffset = text.indexOf("publisher");
+        assertEquals(document.getEntry("b1").getField("publisher").getOffset(), publisherOffset);
+
+        String inserted = ",\n   note = \"Moves all entries after it by one edit\",\n  ";
+        text = assertEdit(document, text, text.indexOf("}"), 0, inserted);
+        assertEquals(document.getEntry("b1").getField("publisher").getOffset(), publisherOffset + inserted.length());
+        assertSame(document.getEntry("c1").getField("publisher"), document.getEntry("b1").getField("publisher"));
+    }
+
+    /**
+     * Test that parsed empty document has no entries and gets them by edits.
+     */
+    @Test
+    public void testApplyEditEmpty() {
+        Document document = new Document();
+        document.loadString("@MISC{misc,\n   note = \"old\"\n}\n");
+        document.parse();
+        document.getAuthorIndex();
+        document.loadString("");
+        document.parse();
+        assertTrue(document.getEntries().isEmpty());
+        assertEquals(document.getAuthorIndex().find(Set.of("Knuth")).length, 0);
+        assertNull(document.getEntry("misc"));
+
+        String text = assertEdit(document, "", 0, 0, "@BOOK{book,\n   author = \"Donald E. Knuth\",\n" +
+                "   title = \"Fundamental Algorithms\",\n   publisher = \"Addison-Wesley\",\n   year = 1968\n}\n");
+        assertEquals(document.getEntries().size(), 1);
+        assertEquals(document.getAuthorIndex().find(Set.of("Knuth")).length, 1);
+
+        assertEdit(document, text, 0, text.length(), "");
+        assertTrue(document.getEntries().isEmpty());
+    }
+
+    /**
+     * Reload of a changed file, parsing again only the changed part.
+     */
+    @Test
+    public void testReload() throws IOException {
+        String fileStr = "@MISC{first,\n   note = \"unchanged\"\n}\n\n@MISC{second,\n   note = \"unchanged\"\n}\n\n" +
+                "@MISC{third,\n   note = \"old\"\n}\n";
+        File file = File.createTempFile("bibtex", ".bib");
+        file.deleteOnExit();
+        Files.write(file.toPath(), fileStr.getBytes(StandardCharsets.UTF_8));
+
+        Document document = new Document();
+        assertTrue(document.loadFile(file));
+        document.parse();
+        Entry first = document.getEntries().get(0);
+        assertFalse(document.reload());
+
+        Files.write(file.toPath(), fileStr.replace("old", "new").getBytes(StandardCharsets.UTF_8));
+        assertTrue(document.reload());
+        assertSame(document.getEntries().get(0), first);
+        assertEquals(document.getEntries().get(2).getField("note").getValue(), "new");
+    }
+
+    /**
+     * Reload of an initially empty file, as when watching a new file opened in an editor.
+     */
+    @Test
+    public void testReloadEmpty() throws IOException {
+        File file = File.createTempFile("bibtex", ".bib");
+        file.deleteOnExit();
+
+        for (boolean mmap : new boolean[]{false, true}) {
+            Files.write(file.toPath(), new byte[0]);
+            Document document = new Document();
+            assertTrue(mmap ? document.mapFile(file) : document.loadFile(file));
+            document.parse();
+            assertTrue(document.getEntries().isEmpty());
+            QueryPlanner planner = new QueryPlanner(document);
+            assertTrue(planner.execute(planner.plan(Query.parse("type=misc"))).isEmpty());
+            assertTrue(document.getTextIndex().search("note", 10, entry -> true).isEmpty());
+
+            Files.write(file.toPath(), "@MISC{misc,\n   note = \"new\"\n}\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(document.reload());
+            assertEquals(document.getEntries().size(), 1);
+            planner = new QueryPlanner(document);
+            assertEquals(planner.execute(planner.plan(Query.parse("type=misc"))), document.getEntries());
+            assertEquals(document.getTextIndex().search("new", 10, entry -> true).size(), 1);
+        }
+    }
+
+    /**
+     * Watching a file reloads the document when the file changes.
+     */
+    @Test(timeOut = 10000)
+    public void testWatch() throws IOException, InterruptedException {
+        String fileStr = "@MISC{misc,\n   note = \"old\"\n}\n";
+        File file = File.createTempFile("bibtex", ".bib");
+        file.deleteOnExit();
+        Files.write(file.toPath(), fileStr.getBytes(StandardCharsets.UTF_8));
+
+        Document document = new Document();
+        assertTrue(document.loadFile(file));
+        document.parse();
+
+        try (DocumentWatcher watcher = new DocumentWatcher(document, file)) {
+            Files.write(file.toPath(), fileStr.replace("old", "new").getBytes(StandardCharsets.UTF_8));
+            assertTrue(watcher.awaitChange());
+        }
+        assertEquals(document.getEntries().get(0).getField("note").getValue(), "new");
+    }
+
+    /**
+     * Apply an edit and compare the document with the edited text parsed from scratch.
+     *
+     * @param document      edited document
+     * @param text          text of the document before the edit
+     * @param offset        offset at which the edit begins
+     * @param removedLength number of removed characters
+     * @param insertedText  inserted text
+     * @return text of the document after the edit
+     */
+    private static String assertEdit(Document document, String text, int offset, int removedLength,
+                                     String insertedText) {
+        document.applyEdit(offset, removedLength, insertedText);
+        text = text.substring(0, offset) + insertedText + text.substring(offset + removedLength);
+
+        Document expected = new Document();
+        expected.loadString(text);
+        expected.parse();
+
+        assertEquals(document.toString(), expected.toString());
+        List<Entry> entries = document.getEntries();
+        List<Entry> expectedEntries = expected.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            Entry expectedEntry = expectedEntries.get(i);
+            assertEquals(entry.getOffset(), expectedEntry.getOffset());
+            assertEquals(entry.getLineNumber(), expectedEntry.getLineNumber());
+            assertEquals(entry.getAuthorsLastNames(), expectedEntry.getAuthorsLastNames());
+            assertSame(document.getEntry(entry.getCitationKey()), entry);
+            for (Field field : entry.getFields()) {
+                Field expectedField = expectedEntry.getField(field.getKey());
+                assertEquals(field.getOffset(), expectedField.getOffset(), field.toString());
+                assertEquals(field.getLineNumber(), expectedField.getLineNumber(), field.toString());
+            }
+        }
+
+        // Indexes updated by the edit are the same as indexes built from scratch
+        for (Entry entry : expectedEntries) {
+            for (String lastName : entry.getAuthorsLastNames()) {
+                assertEquals(document.getAuthorIndex().find(Set.of(lastName)),
+                        expected.getAuthorIndex().find(Set.of(lastName)));
+            }
+
+            Set<String> entryType = Set.of(entry.getEntryType());
+            assertEquals(document.getBitmapIndex().types(entryType), expected.getBitmapIndex().types(entryType));
+            Field year = entry.getField("year");
+            if (year != null && year.isNumeric()) {
+                assertEquals(document.getBitmapIndex().years(year.getLong(), year.getLong()),
+                        expected.getBitmapIndex().years(year.getLong(), year.getLong()));
+            }
+        }
+
+        return text;
+    }
 }
@@ -0,0 +1,87 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for streaming {@link Entry entries} with {@link EntryReader}.
+ */
+public class EntryReaderTest {
+    /**
+     * Test that streamed entries match those parsed by {@link Parser} and have strings resolved.
+     * <p>
+     * Buffer is tiny, so entries span many buffer refills.
+     */
+    @Test
+    public void testStreamEntries() {
+        String input = "% header\r\n" +
+                "@STRING{ jan = \"January\" }\r\n" +
+                "@preamble{ \"ignored\" }\r\n" +
+                BenchmarkCorpus.generate(20);
+
+        List<Entry> parsed = new Parser().parseDocument(input);
+        parsed.removeIf(entry -> entry.getEntryType().equals("string"));
+
+        EntryReader reader = new EntryReader(new StringReader(input), new Parser(), 7);
+        List<Entry> streamed = reader.stream().collect(Collectors.toList());
+
+        assertEquals(streamed.size(), parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertEquals(streamed.get(i).getCitationKey(), parsed.get(i).getCitationKey());
+            assertEquals(streamed.get(i).getOffset(), parsed.get(i).getOffset());
+            assertEquals(streamed.get(i).getLineNumber(), parsed.get(i).getLineNumber());
+            assertEquals(streamed.get(i).getField("title").getLineNumber(),
+                    parsed.get(i).getField("title").getLineNumber());
+        }
+
+        Entry first = streamed.get(0);
+        assertEquals(first.getField("month").getValue(), "January");
+        assertTrue(first.getAuthorsLastNames().contains("Knuth"));
+        assertEquals(streamed.get(1).getField("month").getValue(), "1 February");
+    }
+
+    /**
+     * Test that an unterminated entry at the end of input is still read.
+     */
+    @Test
+    public void testUnterminatedEntry() {
+        EntryReader reader = new EntryReader(new StringReader("@MISC{misc, note = \"unterminated\""));
+
+        assertTrue(reader.hasNext());
+        assertEquals(reader.next().getField("note").getValue(), "unterminated");
+        assertFalse(reader.hasNext());
+    }
+
+    /**
+     * Test that entry without closing bracket ends where the next entry begins, also without size budget.
+     */
+    @Test
+    public void testUnclosedEntryBeforeEntries() {
+        String input = "@MISC{broken, note = {oops}\n" +
+                "\n" +
+                "@MISC{ok1, note = {first}}\n" +
+                "@MISC{ok2, note = {second}}\n";
+
+        for (int maxEntryLength : new int[]{0, 1000}) {
+            Parser parser = new Parser(false, maxEntryLength, 0);
+            EntryReader reader = new EntryReader(new StringReader(input), parser, 7);
+            List<Entry> entries = reader.stream().collect(Collectors.toList());
+
+            assertEquals(entries.size(), 3);
+            assertEquals(entries.get(0).getCitationKey(), "broken");
+            assertEquals(entries.get(1).getField("note").getValue(), "first");
+            assertEquals(entries.get(2).getField("note").getValue(), "second");
+            assertEquals(entries.get(2).getLineNumber(), 4);
+
+            List<Diagnostic> diagnostics = reader.getDiagnostics().getDiagnostics();
+            assertEquals(diagnostics.size(), 1);
+            assertEquals(diagnostics.get(0).getCode(), Diagnostic.Code.UNCLOSED_ENTRY);
+            assertEquals(diagnostics.get(0).getLineNumber(), 1);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -64,4 +66,72 @@ public class FilterTest {
         List<Entry> filteredEntries = Filter.filterAuthors(entries, Set.of("Pazura"));
         assertTrue(filteredEntries.containsAll(List.of(entry1, entry2, entry4)));
     }
+
+    /**
+     * Test filtering by author with an {@link AuthorIndex}.
+     */
+    @Test
+    public void testAuthorIndex() {
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(1000) +
+                "@MISC{misc, author = \"Ludwig van {Beethoven} and Ludwig van Beethoven\"}");
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        AuthorIndex index = document.getAuthorIndex();
+
+        for (Set<String> authors : List.<Set<String>>of(Set.of("Knuth"), Set.of("Knuth", "Karp"), Set.of("knuth", "WIRTH"),
+                Set.of("Knuth", "Karp", "Wirth"), Set.of("Knuth", "Unknown"), Set.of())) {
+            assertEquals(Filter.filterAuthors(index, authors), Filter.filterAuthors(entries, authors));
+        }
+        assertEquals(index.find(Set.of("Knuth", "Karp")).length, 20);
+        assertEquals(index.count("beethoven"), 1);
+        assertEquals(Filter.filterAuthors(index, Set.of("Beethoven")), List.of(entries.get(entries.size() - 1)));
+    }
+
+    /**
+     * Test filtering with a {@link BitmapIndex}.
+     */
+    @Test
+    public void testBitmapIndex() {
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(1000) +
+                "@BOOK{book, author = \"Knuth\", title = \"Title\", publisher = \"Addison-Wesley\", year = 1970}");
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        BitmapIndex index = document.getBitmapIndex();
+
+        assertEquals(index.get(index.types(Set.of("book"))), Filter.filterTypes(entries, Set.of("book")));
+        assertEquals(index.get(index.years(1970, 1975)), Filter.filterYears(entries, 1970, 1975));
+        assertEquals(index.journals(Set.of("journal of the acm")).cardinality(), 200);
+        assertEquals(index.publishers(Set.of("Addison-Wesley")).cardinality(), 1);
+
+        // Articles of 1970 and 1971 outside of the Journal of the ACM
+        Bitmap bitmap = index.types(Set.of("article"))
+                .and(index.years(1970, 1971))
+                .and(index.journals(Set.of("Journal of the ACM")).not(index.size()));
+        for (Entry entry : index.get(bitmap)) {
+            assertEquals(entry.getField("year").getValue(), 1970);
+            assertEquals(entry.getField("journal").getValue(), "Communications of the ACM");
+        }
+        assertEquals(bitmap.cardinality(), 20);
+        assertSame(document.getBitmapIndex(), index);
+    }
+
+    /**
+     * Test filtering and sorting by year.
+     */
+    @Test
+    public void testFilterYears() {
+        Parser parser = new Parser();
+        Entry entry1 = parser.parseEntry("@BOOK{first, year = 1984}");
+        Entry entry2 = parser.parseEntry("@BOOK{second, year = {1970}}");
+        Entry entry3 = parser.parseEntry("@BOOK{third, year = \"19??\"}");
+        Entry entry4 = parser.parseEntry("@BOOK{fourth}");
+        Entry entry5 = parser.parseEntry("@BOOK{fifth, year = 1970}");
+
+        List<Entry> entries = List.of(entry1, entry2, entry3, entry4, entry5);
+        assertEquals(Filter.filterYears(entries, 1970, 1970), List.of(entry2, entry5));
+        assertEquals(Filter.filterYears(entries, 1971, 2000), List.of(entry1));
+        assertEquals(Filter.sortYears(entries), List.of(entry2, entry5, entry1, entry3, entry4));
+    }
 }
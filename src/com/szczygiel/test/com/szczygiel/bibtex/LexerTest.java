@@ -0,0 +1,56 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for the {@link Lexer}.
+ */
+public class LexerTest {
+    /**
+     * Test tokenizing whole entry.
+     */
+    @Test
+    public void testTokens() {
+        Lexer lexer = new Lexer("@book{knuth:1984, year = 1984, month = \"10 \" # jan}");
+
+        assertEquals(lexer.next(), Lexer.Token.AT);
+        assertEquals(lexer.next(), Lexer.Token.IDENTIFIER);
+        assertEquals(lexer.text(), "book");
+        assertEquals(lexer.next(), Lexer.Token.LEFT_BRACE);
+        assertEquals(lexer.key(), Lexer.Token.KEY);
+        assertEquals(lexer.text(), "knuth:1984");
+        assertEquals(lexer.next(), Lexer.Token.COMMA);
+        assertEquals(lexer.next(), Lexer.Token.IDENTIFIER);
+        assertEquals(lexer.next(), Lexer.Token.EQUALS);
+        assertEquals(lexer.next(), Lexer.Token.NUMBER);
+        assertEquals(lexer.text(), "1984");
+        assertEquals(lexer.next(), Lexer.Token.COMMA);
+        assertEquals(lexer.next(), Lexer.Token.IDENTIFIER);
+        assertEquals(lexer.next(), Lexer.Token.EQUALS);
+        assertEquals(lexer.next(), Lexer.Token.QUOTED);
+        assertEquals(lexer.contents(), "10 ");
+        assertEquals(lexer.next(), Lexer.Token.HASH);
+        assertEquals(lexer.next(), Lexer.Token.IDENTIFIER);
+        assertEquals(lexer.text(), "jan");
+        assertEquals(lexer.next(), Lexer.Token.RIGHT_BRACE);
+        assertEquals(lexer.next(), Lexer.Token.EOF);
+    }
+
+    /**
+     * Test nested brackets and quotes inside values.
+     */
+    @Test
+    public void testDelimitedValues() {
+        Lexer lexer = new Lexer("{On {VLSI} \"Circuits\"} \"G{\\\"o}del, Kurt\" \"unterminated");
+
+        assertEquals(lexer.next(), Lexer.Token.LEFT_BRACE);
+        assertEquals(lexer.braced(), Lexer.Token.BRACED);
+        assertEquals(lexer.contents(), "On {VLSI} \"Circuits\"");
+        assertEquals(lexer.next(), Lexer.Token.QUOTED);
+        assertEquals(lexer.contents(), "G{\\\"o}del, Kurt");
+        assertEquals(lexer.next(), Lexer.Token.UNTERMINATED);
+        assertEquals(lexer.next(), Lexer.Token.EOF);
+    }
+}
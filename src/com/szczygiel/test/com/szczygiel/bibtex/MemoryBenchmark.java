@@ -0,0 +1,146 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Heap usage benchmarks of parsed {@link Entry entries}.
+ * <p>
+ * Benchmarks build large documents, so they are disabled and don't run with the unit tests.
+ * Enable them and run with: -Dbibtex.benchmark.entries=1000000 -groups benchmark
+ */
+public class MemoryBenchmark {
+    /**
+     * Compare heap retained by entries with eagerly and lazily decoded values.
+     *
+     * @throws IOException when the temporary file cannot be written
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkLazyValues() throws IOException {
+        File file = createCorpusFile(BenchmarkCorpus.entries(200000));
+
+        long eagerBytes = retainedBytes(file, new Parser(false));
+        long lazyBytes = retainedBytes(file, new Parser(true));
+
+        System.out.printf("eager values: %.1f MB%n", eagerBytes / 1e6);
+        System.out.printf("lazy values: %.1f MB%n", lazyBytes / 1e6);
+        System.out.printf("saving: %.2fx%n", (double) eagerBytes / lazyBytes);
+    }
+
+    /**
+     * Compare heap retained by entries parsed with and without a {@link SymbolTable}.
+     *
+     * @throws IOException when the temporary file cannot be written
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkSymbolTable() throws IOException {
+        File file = createCorpusFile(BenchmarkCorpus.entries(200000));
+
+        long plainBytes = retainedBytes(file, new Parser(false, Parser.DEFAULT_MAX_ENTRY_LENGTH, 0, null));
+        SymbolTable symbols = new SymbolTable();
+        long internedBytes = retainedBytes(file, new Parser(false, Parser.DEFAULT_MAX_ENTRY_LENGTH, 0, symbols));
+
+        System.out.printf("without symbol table: %.1f MB%n", plainBytes / 1e6);
+        System.out.printf("with symbol table: %.1f MB, %d symbols%n", internedBytes / 1e6, symbols.size());
+        System.out.printf("saving: %.2fx%n", (double) plainBytes / internedBytes);
+    }
+
+    /**
+     * Compare heap retained by validated entries and by a {@link ColumnarDocument} of them,
+     * and time of filtering both.
+     *
+     * @throws IOException when the temporary file cannot be written
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkColumnar() throws IOException {
+        File file = createCorpusFile(BenchmarkCorpus.entries(200000));
+        Set<String> authors = Set.of("Knuth", "Hoare");
+
+        long before = usedHeap();
+        Document document = new Document();
+        document.setParser(new Parser(false));
+        document.mapFile(file);
+        document.parse();
+        List<Entry> entries = new ArrayList<>(document.getEntries());
+        document = null;
+        long entriesBytes = usedHeap() - before;
+
+        long start = System.nanoTime();
+        int filtered = Filter.filterAuthors(entries, authors).size();
+        long entriesNanos = System.nanoTime() - start;
+
+        ColumnarDocument columnar = new ColumnarDocument(entries);
+        entries = null;
+        long columnarBytes = usedHeap() - before;
+
+        start = System.nanoTime();
+        int filteredRows = columnar.filterAuthors(columnar.rows(), authors).length;
+        long columnarNanos = System.nanoTime() - start;
+
+        System.out.printf("entries: %.1f MB, filtered %d in %.1f ms%n", entriesBytes / 1e6, filtered,
+                entriesNanos / 1e6);
+        System.out.printf("columnar: %.1f MB (%.1f MB of columns), filtered %d in %.1f ms%n", columnarBytes / 1e6,
+                columnar.usedBytes() / 1e6, filteredRows, columnarNanos / 1e6);
+        System.out.printf("saving: %.2fx%n", (double) entriesBytes / columnarBytes);
+    }
+
+    /**
+     * Write generated corpus into a temporary file.
+     *
+     * @param entries number of entries
+     * @return temporary file
+     * @throws IOException when the file cannot be written
+     */
+    static File createCorpusFile(int entries) throws IOException {
+        File file = File.createTempFile("bibtex-benchmark", ".bib");
+        file.deleteOnExit();
+        Files.write(file.toPath(), BenchmarkCorpus.generate(entries).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Measure heap retained by entries of a memory-mapped file parsed with the given parser.
+     *
+     * @param file   BibTeX file
+     * @param parser parser to use
+     * @return retained bytes
+     * @throws IOException when the file cannot be mapped
+     */
+    private static long retainedBytes(File file, Parser parser) throws IOException {
+        long before = usedHeap();
+
+        List<Entry> entries;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            entries = parser.parseDocument(new MappedCharSequence(buffer));
+        }
+
+        long after = usedHeap();
+        System.out.println("parsed entries: " + entries.size());
+        return after - before;
+    }
+
+    /**
+     * Get heap used after garbage collection.
+     *
+     * @return used bytes
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,88 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Tests for the {@link NameParser}.
+ */
+public class NameParserTest {
+    /**
+     * Test splitting value into names.
+     */
+    @Test
+    public void testSplit() {
+        NameParser parser = new NameParser();
+
+        // Words containing "and" don't separate names
+        List<NameParser.Name> names = parser.parse("Alexander Sandberg AND Sandra Anderson and {Barnes and Noble}");
+        assertEquals(names.size(), 3);
+        assertName(names.get(0), "Alexander", "", "Sandberg", "");
+        assertName(names.get(1), "Sandra", "", "Anderson", "");
+        assertName(names.get(2), "", "", "{Barnes and Noble}", "");
+
+        assertEquals(parser.parse(" and Knuth and ").size(), 1);
+    }
+
+    /**
+     * Test forms of a single name.
+     */
+    @Test
+    public void testForms() {
+        NameParser parser = new NameParser();
+
+        assertName(parser.parse("Donald E. Knuth").get(0), "Donald E.", "", "Knuth", "");
+        assertName(parser.parse("Knuth").get(0), "", "", "Knuth", "");
+        assertName(parser.parse("Ludwig van Beethoven").get(0), "Ludwig", "van", "Beethoven", "");
+        assertName(parser.parse("Jean de la Fontaine").get(0), "Jean", "de la", "Fontaine", "");
+        assertName(parser.parse("Jean~de~la~Fontaine").get(0), "Jean", "de la", "Fontaine", "");
+        assertName(parser.parse("van Beethoven, Ludwig").get(0), "Ludwig", "van", "Beethoven", "");
+        assertName(parser.parse("Ford, Jr., Henry").get(0), "Henry", "", "Ford", "Jr.");
+        assertName(parser.parse("{Brinch Hansen}, Per").get(0), "Per", "", "{Brinch Hansen}", "");
+        assertName(parser.parse("Szczygieł|Piotr").get(0), "Piotr", "", "Szczygieł", "");
+    }
+
+    /**
+     * Test that repeated values are parsed once.
+     */
+    @Test
+    public void testCache() {
+        NameParser parser = new NameParser();
+        List<NameParser.Name> names = parser.parse("Donald E. Knuth and Leslie Lamport");
+        assertSame(parser.parse("Donald E. Knuth and Leslie Lamport"), names);
+        assertEquals(parser.size(), 1);
+
+        // Authors of entries are parsed on the first access
+        Parser entryParser = new Parser();
+        Entry first = entryParser.parseEntry("@BOOK{first, author = \"Donald E. Knuth and Leslie Lamport\"}");
+        Entry second = entryParser.parseEntry("@BOOK{second, editor = \"Donald E. Knuth and Leslie Lamport\"}");
+        parser = new NameParser();
+        first.fillAuthors(parser);
+        second.fillAuthors(parser);
+        assertEquals(parser.size(), 0);
+        assertEquals(first.getAuthorsLastNames(), Set.of("Knuth", "Lamport"));
+        assertEquals(second.getAuthors().iterator().next().authorType, Entry.AuthorType.EDITOR);
+        assertEquals(parser.size(), 1);
+    }
+
+    /**
+     * Assert parts of a name.
+     *
+     * @param name  parsed name
+     * @param first expected first names
+     * @param von   expected von part
+     * @param last  expected last name
+     * @param jr    expected suffix
+     */
+    private static void assertName(NameParser.Name name, String first, String von, String last, String jr) {
+        assertEquals(name.getFirst(), first);
+        assertEquals(name.getVon(), von);
+        assertEquals(name.getLast(), last);
+        assertEquals(name.getJr(), jr);
+    }
+}
@@ -0,0 +1,530 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Throughput benchmarks of the {@link Parser}.
+ * <p>
+ * Benchmarks build large documents, so they are disabled and don't run with the unit tests.
+ * Enable them and run with: -Dbibtex.benchmark.entries=400000 -groups benchmark
+ */
+public class ParserBenchmark {
+    /**
+     * Number of measured runs of each parser.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Compare throughput of both parsers on the same entries.
+     * <p>
+     * Entries are cut beforehand, so only the parsing of entries into fields is measured.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkParseEntry() {
+        int entriesCount = BenchmarkCorpus.entries(100000);
+        String input = BenchmarkCorpus.generate(entriesCount);
+        List<String> entryStrings = RegexCascade.cutEntries(input);
+
+        // Both parsers have to see the same fields
+        assertEquals(RegexCascade.parseEntries(entryStrings), parseEntries(entryStrings));
+
+        long regexNanos = Long.MAX_VALUE;
+        long lexerNanos = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            RegexCascade.parseEntries(entryStrings);
+            regexNanos = Math.min(regexNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            parseEntries(entryStrings);
+            lexerNanos = Math.min(lexerNanos, System.nanoTime() - start);
+        }
+
+        report("regex", entryStrings.size(), input.length(), regexNanos);
+        report("lexer", entryStrings.size(), input.length(), lexerNanos);
+        System.out.printf("speedup: %.2fx%n", (double) regexNanos / lexerNanos);
+    }
+
+    /**
+     * Compare wall-clock time of sequential and parallel parsing of a whole document.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkParallelParseDocument() {
+        int entriesCount = BenchmarkCorpus.entries(400000);
+        String input = BenchmarkCorpus.generate(entriesCount);
+        Parser parser = new Parser();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        long sequentialNanos = Long.MAX_VALUE;
+        long parallelNanos = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            parser.parseDocument(input);
+            sequentialNanos = Math.min(sequentialNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            parser.parseDocument(input, pool);
+            parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+        }
+
+        report("sequential", entriesCount, input.length(), sequentialNanos);
+        report("parallel(" + pool.getParallelism() + ")", entriesCount, input.length(), parallelNanos);
+        System.out.printf("speedup: %.2fx%n", (double) sequentialNanos / parallelNanos);
+    }
+
+    /**
+     * Measure latency of single character edits of a big document, compared with parsing it again.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkApplyEdit() {
+        int entriesCount = BenchmarkCorpus.entries(50000);
+        String input = BenchmarkCorpus.generate(entriesCount);
+        Document document = new Document();
+        document.loadString(input);
+
+        long start = System.nanoTime();
+        document.parse();
+        long parseNanos = System.nanoTime() - start;
+
+        // Type and remove a character in titles spread over the document
+        int edits = 200;
+        long[] editNanos = new long[2 * edits];
+        for (int i = 0; i < edits; i++) {
+            int offset = input.indexOf("Problem Number " + (long) i * entriesCount / edits + "\"");
+            start = System.nanoTime();
+            document.applyEdit(offset, 0, "x");
+            editNanos[2 * i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            document.applyEdit(offset, 1, "");
+            editNanos[2 * i + 1] = System.nanoTime() - start;
+        }
+        assertEquals(document.getEntries().size(), entriesCount);
+
+        Arrays.sort(editNanos);
+        System.out.printf("full parse of %d entries: %.1f ms%n", entriesCount, parseNanos / 1e6);
+        System.out.printf("edit: median %.2f ms, worst %.2f ms%n", editNanos[editNanos.length / 2] / 1e6,
+                editNanos[editNanos.length - 1] / 1e6);
+
+        // Edit of a string referenced by half of the entries
+        int offset = input.indexOf("February");
+        start = System.nanoTime();
+        document.applyEdit(offset, "February".length(), "Feb.");
+        System.out.printf("string edit: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Measure processing of documents in which entries crossreference entries defined after them.
+     * <p>
+     * Crossreferenced entries are looked up by their citation keys and every entry is resolved once,
+     * so the time should grow linearly, also for a single long chain.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkCrossreferences() {
+        int entriesCount = BenchmarkCorpus.entries(200000);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < entriesCount; i++) {
+            input.append("@INBOOK{chapter-").append(i).append(", crossref = \"book-").append(i)
+                    .append("\", chapter = ").append(i % 20 + 1).append("}\n");
+        }
+        for (int i = 0; i < entriesCount; i++) {
+            input.append("@BOOK{book-").append(i).append(", author = \"Knuth\", title = \"Volume ").append(i)
+                    .append("\", publisher = \"Addison-Wesley\", year = 1968}\n");
+        }
+
+        Document document = new Document();
+        document.loadString(input.toString());
+        long start = System.nanoTime();
+        document.parse();
+        long nanos = System.nanoTime() - start;
+
+        assertEquals(document.getEntries().size(), 2 * entriesCount);
+        System.out.printf("%d entries with crossreferences: %.1f ms%n", 2 * entriesCount, nanos / 1e6);
+
+        // Single chain through all entries, each one inheriting the note of the last one
+        input.setLength(0);
+        for (int i = 0; i < entriesCount; i++) {
+            input.append("@MISC{link-").append(i).append(", crossref = \"link-").append(i + 1).append("\"}\n");
+        }
+        input.append("@MISC{link-").append(entriesCount).append(", note = \"End of the chain\"}\n");
+
+        document.loadString(input.toString());
+        start = System.nanoTime();
+        document.parse();
+        nanos = System.nanoTime() - start;
+
+        assertEquals(document.getEntry("link-0").getField("note").getValue(), "End of the chain");
+        System.out.printf("chain of %d crossreferences: %.1f ms%n", entriesCount, nanos / 1e6);
+    }
+
+    /**
+     * Compare filtering by authors which checks every entry with filtering by an {@link AuthorIndex}.
+     * <p>
+     * Index intersects lists of entries of the given authors, so its queries shouldn't depend on the number of
+     * entries which don't match.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkFilterAuthors() {
+        int entriesCount = BenchmarkCorpus.entries(200000);
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(entriesCount));
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        Set<String> authors = Set.of("Knuth", "Karp");
+        int queries = 100;
+
+        long start = System.nanoTime();
+        AuthorIndex index = document.getAuthorIndex();
+        long buildNanos = System.nanoTime() - start;
+
+        List<Entry> scanned = null;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            scanned = Filter.filterAuthors(entries, authors);
+        }
+        long scanNanos = (System.nanoTime() - start) / queries;
+
+        int[] found = null;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            found = index.find(authors);
+        }
+        long indexNanos = (System.nanoTime() - start) / queries;
+
+        assertEquals(found.length, scanned.size());
+        System.out.printf("%d entries, index built in %.1f ms, query by scan: %.1f us, by index: %.1f us%n",
+                entriesCount, buildNanos / 1e6, scanNanos / 1e3, indexNanos / 1e3);
+    }
+
+    /**
+     * Compare filtering by type and year which checks every entry with combining bitmaps of a {@link BitmapIndex}.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkFilterBitmaps() {
+        int entriesCount = BenchmarkCorpus.entries(200000);
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(entriesCount) +
+                "@BOOK{book, author = \"Knuth\", title = \"Title\", publisher = \"Addison-Wesley\", year = 1970}");
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        Set<String> types = Set.of("book");
+        int queries = 100;
+
+        long start = System.nanoTime();
+        BitmapIndex index = document.getBitmapIndex();
+        long buildNanos = System.nanoTime() - start;
+
+        List<Entry> scanned = null;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            scanned = Filter.filterYears(Filter.filterTypes(entries, types), 1970, 1979);
+        }
+        long scanNanos = (System.nanoTime() - start) / queries;
+
+        Bitmap found = null;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            found = index.types(types).and(index.years(1970, 1979));
+        }
+        long bitmapNanos = (System.nanoTime() - start) / queries;
+
+        assertEquals(found.cardinality(), scanned.size());
+        System.out.printf("%d entries, bitmaps built in %.1f ms, query by scan: %.1f us, by bitmaps: %.1f us%n",
+                entriesCount, buildNanos / 1e6, scanNanos / 1e3, bitmapNanos / 1e3);
+    }
+
+    /**
+     * Compare finding entries with a word in the title by tokenizing every title with searching a {@link TextIndex}.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkTextSearch() {
+        int entriesCount = BenchmarkCorpus.entries(200000);
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(entriesCount));
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        int queries = 100;
+
+        long start = System.nanoTime();
+        TextIndex index = document.getTextIndex();
+        long buildNanos = System.nanoTime() - start;
+
+        int scanned = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            scanned = 0;
+            for (Entry entry : entries) {
+                if (TextIndex.tokenize((String) entry.getField(FieldKeys.TITLE).getValue()).contains("1234")) {
+                    scanned++;
+                }
+            }
+        }
+        long scanNanos = (System.nanoTime() - start) / queries;
+
+        List<TextIndex.Hit> found = null;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            found = index.search("1234", 10);
+        }
+        long searchNanos = (System.nanoTime() - start) / queries;
+
+        assertEquals(found.size(), Math.min(scanned, 10));
+        System.out.printf("%d entries, text index built in %.1f ms, query by scan: %.1f us, by index: %.1f us%n",
+                entriesCount, buildNanos / 1e6, scanNanos / 1e3, searchNanos / 1e3);
+    }
+
+    /**
+     * Compare bytes allocated per entry by copying entries out of the input and by finding their bounds in place.
+     * <p>
+     * Finding bounds only scans for the last bracket, so it should allocate nothing.
+     * Whole parse of a document is reported too, for reference.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void benchmarkEntryAllocation() {
+        int entriesCount = BenchmarkCorpus.entries(100000);
+        String input = BenchmarkCorpus.generate(entriesCount);
+        Parser parser = new Parser();
+        int[] starts = RegexCascade.entryStarts(input);
+
+        long copyBytes = Long.MAX_VALUE;
+        long boundsBytes = Long.MAX_VALUE;
+        long parseBytes = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long before = allocatedBytes();
+            long checksum = 0;
+            for (int start : starts) {
+                checksum += RegexCascade.copyEntry(input, start).length();
+            }
+            copyBytes = Math.min(copyBytes, allocatedBytes() - before);
+
+            before = allocatedBytes();
+            long boundsChecksum = 0;
+            for (int start : starts) {
+                boundsChecksum += parser.findEntryEnd(input, start) - start;
+            }
+            boundsBytes = Math.min(boundsBytes, allocatedBytes() - before);
+            assertEquals(boundsChecksum, checksum);
+
+            before = allocatedBytes();
+            parser.parseDocument(input);
+            parseBytes = Math.min(parseBytes, allocatedBytes() - before);
+        }
+
+        System.out.printf("copy: %.1f bytes/entry%n", (double) copyBytes / starts.length);
+        System.out.printf("bounds in place: %.1f bytes/entry%n", (double) boundsBytes / starts.length);
+        System.out.printf("parse document: %.1f bytes/entry%n", (double) parseBytes / starts.length);
+    }
+
+    /**
+     * Get number of bytes allocated by the current thread so far.
+     *
+     * @return allocated bytes
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Parse entries using {@link Parser}.
+     *
+     * @param entryStrings entries to parse
+     * @return number of parsed fields
+     */
+    private static int parseEntries(List<String> entryStrings) {
+        Parser parser = new Parser();
+
+        int fields = 0;
+        for (String entryStr : entryStrings) {
+            Entry entry = parser.parseEntry(entryStr);
+            if (entry != null) {
+                fields += entry.getFields().size();
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * Print throughput of a single parser.
+     *
+     * @param name    parser name
+     * @param entries number of parsed entries
+     * @param chars   number of parsed characters
+     * @param nanos   best time of parsing
+     */
+    private static void report(String name, int entries, int chars, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%s: %d entries in %.1f ms, %.0f entries/s, %.1f MB/s%n", name, entries,
+                nanos / 1e6, entries / seconds, chars / seconds / 1e6);
+    }
+
+    /**
+     * Regex cascade used by the parser before {@link Lexer} was introduced, kept as a baseline.
+     */
+    private static class RegexCascade {
+        /**
+         * Matches beginning of an entry.
+         */
+        private static final Pattern ENTRY_BEGINNING = Pattern.compile("(?m)^@([a-zA-Z_][\\w-]*)");
+
+        /**
+         * Matches whole entry, catching entry type, citation key and its body.
+         */
+        private static final Pattern ENTRY = Pattern.compile("(?s)(?m)^@([a-zA-Z_][\\w-]*)\\s*"
+                + "\\{(?:\\s*([a-zA-Z_][\\w-]*)\\s*,\\s*)?((.)*)\\s*}");
+
+        /**
+         * Matches a field separated by comma.
+         */
+        private static final Pattern FIELD = Pattern.compile("(?m)([^,]*),?");
+
+        /**
+         * Matches assignment of a string to a key.
+         */
+        private static final Pattern STRING = Pattern.compile("(?s)^([a-zA-Z_][\\w-]*)\\s*=\\s*\"(([^\"])*)\"\\s*$");
+
+        /**
+         * Matches assignment of a number to a key.
+         */
+        private static final Pattern NUMBER = Pattern.compile("^([a-zA-Z_][\\w-]*)\\s*=\\s*(\\d+)\\s*$");
+
+        /**
+         * Matches assignment of a reference to a key.
+         */
+        private static final Pattern REFERENCE = Pattern.compile("^([a-zA-Z_][\\w-]*)\\s*=\\s*([a-zA-Z_][\\w-]*)\\s*$");
+
+        /**
+         * Matches concatenation.
+         */
+        private static final Pattern CONCATENATION = Pattern.compile("(?s)^([a-zA-Z_][\\w-]*)\\s*=\\s*((.)*#(.)*)\\s*$");
+
+        /**
+         * Cut entries the way the regex based parser did.
+         *
+         * @param input BibTeX input
+         * @return entries as strings
+         */
+        static List<String> cutEntries(String input) {
+            List<String> entryStrings = new ArrayList<>();
+            int lastEndingIndex = 0;
+
+            Matcher beginning = ENTRY_BEGINNING.matcher(input);
+            while (beginning.find()) {
+                int index = beginning.start();
+                if (index < lastEndingIndex) {
+                    continue;
+                }
+
+                StringBuilder entryStr = new StringBuilder();
+                int bracketLevel = 0;
+                for (int i = index; i < input.length(); i++) {
+                    char c = input.charAt(i);
+                    entryStr.append(c);
+                    if (c == '{') {
+                        bracketLevel++;
+                    } else if (c == '}') {
+                        bracketLevel--;
+                        if (bracketLevel == 0) {
+                            lastEndingIndex = i;
+                            break;
+                        }
+                    }
+                }
+
+                entryStrings.add(entryStr.toString());
+            }
+
+            return entryStrings;
+        }
+
+        /**
+         * Find beginnings of entries the way the regex based parser did.
+         *
+         * @param input BibTeX input
+         * @return indexes at which entries begin
+         */
+        static int[] entryStarts(String input) {
+            List<Integer> starts = new ArrayList<>();
+            Matcher beginning = ENTRY_BEGINNING.matcher(input);
+            while (beginning.find()) {
+                starts.add(beginning.start());
+            }
+
+            return starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Copy an entry out of the input the way the regex based parser did.
+         *
+         * @param input BibTeX input
+         * @param index index at which the entry begins
+         * @return entry as string
+         */
+        static String copyEntry(String input, int index) {
+            StringBuilder entryStr = new StringBuilder();
+            int bracketLevel = 0;
+            for (int i = index; i < input.length(); i++) {
+                char c = input.charAt(i);
+                entryStr.append(c);
+                if (c == '{') {
+                    bracketLevel++;
+                } else if (c == '}') {
+                    bracketLevel--;
+                    if (bracketLevel == 0) {
+                        break;
+                    }
+                }
+            }
+
+            return entryStr.toString();
+        }
+
+        /**
+         * Parse entries the way the regex cascade did.
+         *
+         * @param entryStrings entries to parse
+         * @return number of recognized fields
+         */
+        static int parseEntries(List<String> entryStrings) {
+            int fields = 0;
+            for (String entryStr : entryStrings) {
+                Matcher entry = ENTRY.matcher(entryStr.strip());
+                if (!entry.find() || entry.group(3) == null) {
+                    continue;
+                }
+
+                String entryType = entry.group(1).toLowerCase();
+                if (entryType.equals("preamble") || entryType.equals("comment")) {
+                    continue;
+                }
+
+                Matcher field = FIELD.matcher(entry.group(3));
+                while (field.find()) {
+                    String fieldStr = field.group(1).strip();
+                    if (fieldStr.equals("")) {
+                        continue;
+                    }
+
+                    if (STRING.matcher(fieldStr).find() || NUMBER.matcher(fieldStr).find()
+                            || REFERENCE.matcher(fieldStr).find() || CONCATENATION.matcher(fieldStr).find()) {
+                        fields++;
+                    }
+                }
+            }
+
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Stress tests of parsing concurrently.
+ */
+public class ParserConcurrencyTest {
+    /**
+     * Number of different documents parsed at the same time.
+     */
+    private static final int DOCUMENTS = 8;
+
+    /**
+     * Number of times every document is parsed.
+     */
+    private static final int ITERATIONS = 50;
+
+    /**
+     * Test that documents parsed concurrently with a shared {@link Parser} are identical to those parsed sequentially.
+     *
+     * @throws Exception when a parsing thread fails
+     */
+    @Test
+    public void testConcurrentParsing() throws Exception {
+        Parser parser = new Parser();
+
+        List<String> inputs = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            // Documents of different sizes, so parses interleave at different points
+            String input = BenchmarkCorpus.generate(20 + i * 15);
+            inputs.add(input);
+            expected.add(parse(parser, input));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            List<Integer> documentIndexes = new ArrayList<>();
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                for (int i = 0; i < DOCUMENTS; i++) {
+                    String input = inputs.get(i);
+                    Callable<String> task = () -> parse(parser, input);
+                    results.add(executor.submit(task));
+                    documentIndexes.add(i);
+                }
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(results.get(i).get(), expected.get(documentIndexes.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that parallel parsing of a single document gives the same entries as sequential parsing.
+     */
+    @Test
+    public void testParallelParsing() {
+        Parser parser = new Parser();
+        String input = "@STRING{ jan = \"January\" }\n" + BenchmarkCorpus.generate(5000)
+                + "@COMMENT{ ignored }\n" + BenchmarkCorpus.generate(300);
+
+        List<Entry> sequential = parser.parseDocument(input);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Entry> parallel = parser.parseDocument(input, pool);
+
+            assertEquals(parallel.size(), sequential.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                Entry expected = sequential.get(i);
+                Entry actual = parallel.get(i);
+
+                assertEquals(actual.toString(), expected.toString());
+                assertEquals(actual.getOffset(), expected.getOffset());
+                assertEquals(actual.getLineNumber(), expected.getLineNumber());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Parse document and convert it into a string together with line numbers.
+     *
+     * @param parser {@link Parser} to use
+     * @param input  BibTeX input
+     * @return parsed document as string
+     */
+    private static String parse(Parser parser, String input) {
+        Document document = new Document();
+        document.setParser(parser);
+        document.loadString(input);
+        document.parse();
+
+        StringBuilder str = new StringBuilder();
+        for (Entry entry : document.getEntries()) {
+            str.append(entry.getLineNumber()).append(' ').append(entry).append('\n');
+        }
+
+        return str.toString();
+    }
+}
@@ -0,0 +1,327 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for the BibTeX parser.
+ */
+public class ParserTest {
+    /**
+     * {@link Parser} used in tests.
+     */
+    private Parser parser;
+
+    /**
+     * Setup before tests.
+     */
+    @BeforeClass
+    void setup() {
+        parser = new Parser();
+    }
+
+    /**
+     * Entry parsing test.
+     */
+    @Test
+    public void testParseEntry() {
+        String entryStr =
+                "@TEST{citation_key," +
+                        "key1 = 123," +
+                        "key2 = \"123\"," +
+                        "key3 = a # b," +
+                        "author = \"author\"" +
+                        "}";
+
+        Entry entry = parser.parseEntry(entryStr);
+        assertNotNull(entry);
+
+        // Test simple values
+        assertEquals(entry.getEntryType(), "test");
+        assertEquals(entry.getCitationKey(), "citation_key");
+        assertEquals(entry.getField("key1").getValue(), 123);
+        assertEquals(entry.getField("key2").getValue(), "123");
+        assertEquals(entry.getFields().size(), 4);
+
+        Strings strings = new Strings();
+        strings.setString("a", "a_value ");
+        strings.setString("b", "b_value");
+
+        Diagnostics diagnostics = new Diagnostics();
+        entry.computeStrings(strings, diagnostics);
+        entry.computeConcatenation(strings, diagnostics);
+        entry.fillAuthors();
+
+        // Test references + concatenations
+        assertEquals(entry.getField("key3").getValue(), "a_value b_value");
+
+        // Test author parsing
+        assertTrue(entry.getAuthorsLastNames().contains("author"));
+    }
+
+    /**
+     * Invalid entry parsing test.
+     */
+    @Test
+    public void testParseInvalidEntry() {
+        String entryStr =
+                "@TEST{citation_key," +
+                        "key1 = 123" +
+                        "key2 = \"123\"," +
+                        "key3 = c # d," +
+                        "author = \"author\"" +
+                        "}";
+
+        Entry entry = parser.parseEntry(entryStr);
+        assertNotNull(entry);
+
+        Field key3 = new Field();
+        key3.setType(Field.Type.CONCATENATION);
+        key3.setKey("key3");
+        key3.setValue("c # d");
+
+        Field author = new Field();
+        author.setType(Field.Type.STRING);
+        author.setKey("author");
+        author.setValue("author");
+
+        assertEquals(entry.getFields(), List.of(key3, author));
+    }
+
+    /**
+     * Test values which can't be split by commas, like braced values or quoted values containing commas.
+     */
+    @Test
+    public void testParseDelimitedValues() {
+        String entryStr =
+                "@ARTICLE{knuth:1984,\n" +
+                        "   author = \"Knuth, Donald E.\",\n" +
+                        "   title = {Literate {Programming}},\n" +
+                        "   year = 1984,\n" +
+                        "}";
+
+        Entry entry = parser.parseEntry(entryStr);
+        assertNotNull(entry);
+
+        assertEquals(entry.getCitationKey(), "knuth:1984");
+        assertEquals(entry.getField("author").getValue(), "Knuth, Donald E.");
+        assertEquals(entry.getField("title").getValue(), "Literate {Programming}");
+        assertEquals(entry.getField("year").getValue(), 1984);
+        assertEquals(entry.getFields().size(), 3);
+    }
+
+    /**
+     * Test positions of entries and fields in the document.
+     */
+    @Test
+    public void testPositions() {
+        String input = "% comment\n" +
+                "@BOOK{first,\n" +
+                "   title = \"First\"}\n" +
+                "\r\n" +
+                "@BOOK{second, year = 1999,\n" +
+                "      title = \"Second\"}";
+
+        List<Entry> entries = parser.parseDocument(input);
+        assertEquals(entries.size(), 2);
+
+        Entry first = entries.get(0);
+        assertEquals(first.getOffset(), 10);
+        assertEquals(first.getLineNumber(), 2);
+        assertEquals(first.getColumnNumber(), 1);
+
+        Field title = first.getField("title");
+        assertEquals(title.getOffset(), input.indexOf("title"));
+        assertEquals(title.getLineNumber(), 3);
+        assertEquals(title.getColumnNumber(), 4);
+
+        Entry second = entries.get(1);
+        assertEquals(second.getLineNumber(), 5);
+        assertEquals(second.getField("year").getLineNumber(), 5);
+        assertEquals(second.getField("year").getColumnNumber(), 15);
+        assertEquals(second.getField("title").getLineNumber(), 6);
+        assertEquals(second.getField("title").getColumnNumber(), 7);
+    }
+
+    /**
+     * Test that lazily decoded values are the same as eagerly decoded ones.
+     */
+    @Test
+    public void testLazyValues() {
+        String entryStr = "@TEST{citation_key, key1 = 123, key2 = {braced}, key3 = a # \"b\", key4 = ref, bad = \"x\" y}";
+
+        Entry eager = parser.parseEntry(entryStr);
+        Entry lazy = new Parser(true).parseEntry(entryStr);
+
+        assertEquals(lazy.getFields(), eager.getFields());
+        assertEquals(lazy.getField("key1").getValue(), 123);
+        assertEquals(lazy.getField("key2").getValue(), "braced");
+        assertEquals(lazy.getField("key3").getValue(), "a # \"b\"");
+        assertEquals(lazy.getField("key4").getRaw(), "key4 = ref");
+        assertNull(lazy.getField("bad"));
+    }
+
+    /**
+     * Test that repeated strings of different entries share one instance.
+     */
+    @Test
+    public void testSymbols() {
+        String input = "@ARTICLE{first, Journal = {Journal of the ACM}, title = {First}}\n" +
+                "@article{second, journal = {Journal of the ACM}, title = {First}}\n";
+
+        List<Entry> entries = new Parser().parseDocument(input);
+        Entry first = entries.get(0);
+        Entry second = entries.get(1);
+
+        assertSame(first.getEntryType(), second.getEntryType());
+        assertSame(first.getFields().get(0).getKey(), second.getFields().get(0).getKey());
+        assertSame(first.getField("journal").getValue(), second.getField("journal").getValue());
+        assertNotSame(first.getField("title").getValue(), second.getField("title").getValue());
+
+        // Parsers sharing a table share strings of different documents
+        Entry other = new Parser(false, 0, 0, SymbolTable.global()).parseEntry("@ARTICLE{third, journal = {X}}");
+        Entry another = new Parser(false, 0, 0, SymbolTable.global()).parseEntry("@ARTICLE{fourth, journal = {X}}");
+        assertSame(other.getField("journal").getValue(), another.getField("journal").getValue());
+    }
+
+    /**
+     * Test looking up fields by well-known IDs and by names.
+     */
+    @Test
+    public void testFieldLookup() {
+        Entry entry = parser.parseEntry("@BOOK{key, Year = 1984, title = {First}, isbn2 = {X}, " +
+                "author = {Knuth}, title = {Second}, unknown = undefined}");
+
+        Field year = entry.getFields().get(0);
+        assertEquals(year.getKeyId(), FieldKeys.YEAR);
+        assertSame(entry.getField(FieldKeys.YEAR), year);
+        assertSame(entry.getField("year"), year);
+        assertEquals(entry.getField(FieldKeys.AUTHOR).getValue(), "Knuth");
+        assertNull(entry.getField(FieldKeys.EDITOR));
+
+        // First of duplicated fields is found
+        assertEquals(entry.getField(FieldKeys.TITLE).getValue(), "First");
+
+        // Fields which aren't well-known are found by name
+        assertEquals(entry.getFields().get(2).getKeyId(), FieldKeys.UNKNOWN);
+        assertEquals(entry.getField("isbn2").getValue(), "X");
+        assertNull(entry.getField("isbn3"));
+
+        entry.computeStrings(new Strings(), new Diagnostics());
+        entry.removeUnknownFields();
+        assertNull(entry.getField("unknown"));
+        assertSame(entry.getField(FieldKeys.YEAR), year);
+        assertEquals(entry.getField(FieldKeys.AUTHOR).getValue(), "Knuth");
+    }
+
+    /**
+     * Test primitive accessors of numeric fields.
+     */
+    @Test
+    public void testNumericFields() {
+        Entry entry = parser.parseEntry("@ARTICLE{key, year = 1984, volume = { 12 }, number = \"-3\", " +
+                "pages = {12--24}, title = {Title}, issn = 99999999999, note = \"123456789012\"}");
+
+        Field year = entry.getField(FieldKeys.YEAR);
+        assertEquals(year.getType(), Field.Type.NUMBER);
+        assertEquals(year.getInt(), 1984);
+        assertEquals(year.getValue(), 1984);
+        assertEquals(entry.getField(FieldKeys.VOLUME).getInt(), 12);
+        assertEquals(entry.getField(FieldKeys.NUMBER).getInt(), -3);
+        assertEquals(entry.getField(FieldKeys.NOTE).getLong(), 123456789012L);
+        assertTrue(entry.getField(FieldKeys.NOTE).isNumeric());
+        expectThrows(NumberFormatException.class, () -> entry.getField(FieldKeys.NOTE).getInt());
+
+        Field title = entry.getField(FieldKeys.TITLE);
+        assertFalse(title.isNumeric());
+        expectThrows(NumberFormatException.class, title::getInt);
+        assertNull(title.getPageRange());
+
+        // Number too big for an int is skipped
+        assertNull(entry.getField(FieldKeys.ISSN));
+
+        PageRange pages = entry.getField(FieldKeys.PAGES).getPageRange();
+        assertEquals(pages, new PageRange(12, 24));
+        assertEquals(pages.getPageCount(), 13);
+        assertTrue(pages.contains(20));
+        assertFalse(pages.contains(25));
+        assertEquals(year.getPageRange(), new PageRange(1984, 1984));
+        assertEquals(PageRange.parse(" 7 - 9 "), new PageRange(7, 9));
+        assertEquals(PageRange.parse("7").toString(), "7");
+        assertNull(PageRange.parse("7--"));
+        assertNull(PageRange.parse("e123--e130"));
+    }
+
+    /**
+     * Field parsing test.
+     */
+    @Test
+    public void testParseField() {
+        String field1Str = "key = \"string\"";
+        String field2Str = "year = 1987";
+        String field3Str = "month = sep";
+        String field4Str = "note = \"Hello \" # \"world!\"";
+        String field5Str = "month = sep # \"-\" # oct";
+
+        Field field1 = parser.parseField(field1Str);
+        Field field2 = parser.parseField(field2Str);
+        Field field3 = parser.parseField(field3Str);
+        Field field4 = parser.parseField(field4Str);
+        Field field5 = parser.parseField(field5Str);
+
+        assertEquals(field1.toString(), "key(string): string");
+        assertEquals(field2.toString(), "year(number): 1987");
+        assertEquals(field3.toString(), "month(reference): sep");
+        assertEquals(field4.toString(), "note(concatenation): \"Hello \" # \"world!\"");
+        assertEquals(field5.toString(), "month(concatenation): sep # \"-\" # oct");
+    }
+
+    /**
+     * Entries exceeding size budget are skipped without affecting other entries.
+     */
+    @Test
+    public void testEntryBudget() {
+        String hugeAbstract = "x".repeat(500);
+        String input = "@MISC{first, note = \"small\"}\n" +
+                "@MISC{huge, abstract = {" + hugeAbstract + "}}\n" +
+                "@MISC{unbalanced, abstract = {{{" + hugeAbstract + "}\n" +
+                "@MISC{last, note = \"small\"}\n";
+
+        List<Entry> entries = new Parser(false, 200, 0).parseDocument(input);
+        assertEquals(entries.size(), 2);
+        assertEquals(entries.get(0).getCitationKey(), "first");
+        assertEquals(entries.get(1).getCitationKey(), "last");
+
+        // Without the budget huge entry is parsed and unbalanced one ends where the next entry begins
+        entries = new Parser(false, 0, 0).parseDocument(input);
+        assertEquals(entries.size(), 4);
+        assertEquals(entries.get(1).getField("abstract").getValue(), hugeAbstract);
+        assertEquals(entries.get(2).getCitationKey(), "unbalanced");
+        assertEquals(entries.get(3).getCitationKey(), "last");
+    }
+
+    /**
+     * Stray brackets after an unclosed entry don't swallow entries following it.
+     */
+    @Test
+    public void testStrayBracketAfterUnclosedEntry() {
+        String input = "@misc{a, note = {x}\n" +
+                "@misc{b, note = \"b\"}\n" +
+                "@misc{c, note = \"c\"}\n" +
+                "@misc{d, note = {x}}}\n";
+
+        Diagnostics diagnostics = new Diagnostics();
+        List<Entry> entries = parser.parseDocument(input, diagnostics);
+        assertEquals(entries.size(), 4);
+        assertEquals(entries.get(1).getCitationKey(), "b");
+        assertEquals(entries.get(2).getCitationKey(), "c");
+        assertEquals(entries.get(3).getCitationKey(), "d");
+        assertEquals(entries.get(3).getField("note").getValue(), "x");
+        assertEquals(diagnostics.getDiagnostics().size(), 1);
+        assertEquals(diagnostics.getDiagnostics().get(0).getCode(), Diagnostic.Code.UNCLOSED_ENTRY);
+    }
+}
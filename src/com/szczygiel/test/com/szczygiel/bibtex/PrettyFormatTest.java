@@ -10,16 +10,16 @@ import static org.testng.Assert.assertEquals;
  */
 public class PrettyFormatTest {
     /**
-     * {@link SingletonParser} instance.
+     * {@link Parser} used in tests.
      */
-    private SingletonParser parser;
+    private Parser parser;
 
     /**
      * Setup before tests.
      */
     @BeforeClass
     void setup() {
-        parser = SingletonParser.getInstance();
+        parser = new Parser();
     }
 
     /**
@@ -0,0 +1,142 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Tests for the {@link Query} and the {@link QueryPlanner}.
+ */
+public class QueryTest {
+    /**
+     * Test parsing queries.
+     */
+    @Test
+    public void testParse() {
+        assertEquals(Query.parse("type=article author=Knuth OR NOT (year>=1990)").toString(),
+                "(type=\"article\" AND author=\"Knuth\") OR NOT year>=\"1990\"");
+        assertEquals(Query.parse("Journal ~ \"ACM$\" and title^=\"On \\\"the\\\"\"").toString(),
+                "journal~\"ACM$\" AND title^=\"On \\\"the\\\"\"");
+
+        Query.Term range = (Query.Term) Query.parse("year=1970..1979");
+        assertTrue(range.isNumeric());
+        assertEquals(range.getFrom(), 1970);
+        assertEquals(range.getTo(), 1979);
+        assertTrue(range.matches(1975));
+        assertFalse(range.matches(1980));
+
+        Query.Term less = (Query.Term) Query.parse("year<1970");
+        assertEquals(less.getFrom(), Long.MIN_VALUE);
+        assertEquals(less.getTo(), 1969);
+
+        Query.Term prefix = (Query.Term) Query.parse("title^=on");
+        assertFalse(prefix.isNumeric());
+        assertTrue(prefix.matches("On the Complexity"));
+        assertFalse(prefix.matches("Complexity"));
+    }
+
+    /**
+     * Test that invalid queries are rejected with positions of the problems.
+     */
+    @Test
+    public void testParseErrors() {
+        assertParseError("", "missing term at position 1");
+        assertParseError("type=article AND", "missing term at position 17");
+        assertParseError("(type=article", "missing ) at position 14");
+        assertParseError("type article", "expected operator after type at position 6");
+        assertParseError("year>=soon", "not a number: soon at position 7");
+        assertParseError("title~\"(\"", "invalid regular expression: ( at position 7");
+        assertParseError("title=\"open", "unterminated quote at position 7");
+        assertParseError("type=book)", "unexpected ) at position 10");
+        assertParseError("1970=year", "expected field instead of 1970 at position 1");
+    }
+
+    /**
+     * Check that a query is invalid.
+     *
+     * @param query   query
+     * @param message expected message
+     */
+    private static void assertParseError(String query, String message) {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> Query.parse(query));
+        assertEquals(e.getMessage(), message);
+    }
+
+    /**
+     * Test that planned queries match the same entries as scanning filters.
+     */
+    @Test
+    public void testExecute() {
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(1000) +
+                "@BOOK{book, editor = \"Knuth\", title = \"Title\", publisher = \"Addison-Wesley\", year = 1970}");
+        document.parse();
+        List<Entry> entries = document.getEntries();
+        QueryPlanner planner = new QueryPlanner(document);
+
+        List<Entry> expected = Filter.filterYears(
+                Filter.filterAuthors(Filter.filterTypes(entries, Set.of("article")), Set.of("Knuth", "Hoare")),
+                1970, 1979);
+        assertEquals(execute(planner, "type=article author=knuth author=HOARE year=1970..1979"), expected);
+
+        expected = new ArrayList<>();
+        for (Entry entry : entries) {
+            long volume = entry.getField("volume") == null ? 0 : entry.getField("volume").getLong();
+            if (volume > 35 || entry.getEntryType().equals("book")) {
+                expected.add(entry);
+            }
+        }
+        assertEquals(execute(planner, "volume>35 OR type=book"), expected);
+
+        assertEquals(execute(planner, "editor=knuth"), List.of(entries.get(1000)));
+        assertEquals(execute(planner, "author~\"^knu\" NOT type=article"), List.of(entries.get(1000)));
+        assertEquals(execute(planner, "publisher=\"addison-wesley\" year<1971"), List.of(entries.get(1000)));
+        assertEquals(execute(planner, "key=article-7 OR key=article-8"), entries.subList(7, 9));
+        assertEquals(execute(planner, "journal=\"Journal of the ACM\" title~\"Number 1.$\"").size(), 2);
+        assertEquals(execute(planner, "NOT title^=on").size(), 1);
+        assertEquals(execute(planner, "year>=2020").size(), 0);
+    }
+
+    /**
+     * Plan and execute a query.
+     *
+     * @param planner planner
+     * @param query   query
+     * @return matched entries
+     */
+    private static List<Entry> execute(QueryPlanner planner, String query) {
+        return planner.execute(planner.plan(Query.parse(query)));
+    }
+
+    /**
+     * Test that indexes are used first, then the most selective and cheapest scans.
+     */
+    @Test
+    public void testPlan() {
+        Document document = new Document();
+        document.loadString(BenchmarkCorpus.generate(1000));
+        document.parse();
+        QueryPlanner planner = new QueryPlanner(document);
+
+        QueryPlan plan = planner.plan(Query.parse("title~Number volume=1 year=1970..1974 author=Knuth"));
+        List<QueryPlan> steps = ((QueryPlan.AndStep) plan).getSteps();
+        assertTrue(steps.get(0).isIndexed());
+        assertEquals(steps.get(0).estimate(), 100);
+        assertTrue(steps.get(1).isIndexed());
+        assertEquals(steps.get(1).estimate(), 190);
+        assertFalse(steps.get(2).isIndexed());
+        assertEquals(plan.explain(), "AND (~0 entries)\n" +
+                "  INDEX year=\"1970..1974\" (100 entries)\n" +
+                "  INDEX author=\"Knuth\" (190 entries)\n" +
+                "  SCAN volume=\"1\" (~50 entries)\n" +
+                "  SCAN title~\"Number\" (~250 entries)\n");
+        assertEquals(planner.execute(plan).size(), 5);
+    }
+}
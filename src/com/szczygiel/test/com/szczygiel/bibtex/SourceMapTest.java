@@ -0,0 +1,101 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for {@link SourceMap}.
+ */
+public class SourceMapTest {
+    /**
+     * Test line and column lookup with mixed line endings.
+     */
+    @Test
+    public void testLineAndColumn() {
+        SourceMap sourceMap = new SourceMap("ab\ncd\r\nef\rgh");
+
+        assertEquals(sourceMap.getLineCount(), 4);
+
+        assertEquals(sourceMap.line(0), 1);
+        assertEquals(sourceMap.column(0), 1);
+        assertEquals(sourceMap.line(2), 1);
+        assertEquals(sourceMap.column(2), 3);
+
+        assertEquals(sourceMap.line(3), 2);
+        assertEquals(sourceMap.column(4), 2);
+
+        assertEquals(sourceMap.line(7), 3);
+        assertEquals(sourceMap.line(10), 4);
+        assertEquals(sourceMap.column(11), 2);
+        assertEquals(sourceMap.lineStart(4), 10);
+    }
+
+    /**
+     * Test that map of an edited input is the same as map created from scratch.
+     */
+    @Test
+    public void testEdit() {
+        Random random = new Random(42);
+        String alphabet = "ab\r\n";
+
+        String input = "ab\ncd\r\nef\rgh";
+        SourceMap sourceMap = new SourceMap(input);
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(input.length() + 1);
+            int removedLength = random.nextInt(Math.min(4, input.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            input = input.substring(0, offset) + inserted + input.substring(offset + removedLength);
+            sourceMap = new SourceMap(sourceMap, input, offset, removedLength, inserted.length());
+
+            SourceMap expected = new SourceMap(input);
+            assertEquals(sourceMap.getLineCount(), expected.getLineCount(), input);
+            for (int o = 0; o <= input.length(); o++) {
+                assertEquals(sourceMap.line(o), expected.line(o), input);
+            }
+        }
+    }
+
+    /**
+     * Test that map of an edited input spanning many blocks is the same as map created from scratch.
+     */
+    @Test
+    public void testEditBlocks() {
+        Random random = new Random(42);
+
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 5 * SourceMap.BLOCK_LINES; i++) {
+            str.append(i % 3 == 0 ? "ab\r\n" : "a\n");
+        }
+
+        String input = str.toString();
+        SourceMap sourceMap = new SourceMap(input, 100, 7);
+        for (int i = 0; i < 200; i++) {
+            int offset = random.nextInt(input.length() + 1);
+            int removedLength = random.nextInt(Math.min(3 * SourceMap.BLOCK_LINES, input.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            for (int j = random.nextInt(2 * SourceMap.BLOCK_LINES); j > 0; j--) {
+                inserted.append(random.nextBoolean() ? "a" : "\n");
+            }
+
+            input = input.substring(0, offset) + inserted + input.substring(offset + removedLength);
+            sourceMap = new SourceMap(sourceMap, input, offset + 100, removedLength, inserted.length());
+
+            SourceMap expected = new SourceMap(input, 100, 7);
+            assertEquals(sourceMap.getLineCount(), expected.getLineCount());
+            for (int o = 100; o <= input.length() + 100; o += random.nextInt(8) + 1) {
+                assertEquals(sourceMap.line(o), expected.line(o));
+                assertEquals(sourceMap.column(o), expected.column(o));
+            }
+            for (int line = 7; line < expected.getLineCount() + 7; line++) {
+                assertEquals(sourceMap.lineStart(line), expected.lineStart(line));
+            }
+        }
+    }
+}
@@ -6,22 +6,23 @@ import org.testng.annotations.Test;
 import java.util.List;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 /**
  * Tests for {@link Strings}.
  */
 public class StringsTest {
     /**
-     * {@link SingletonParser} instance.
+     * {@link Parser} used in tests.
      */
-    private SingletonParser parser;
+    private Parser parser;
 
     /**
      * Setup before tests.
      */
     @BeforeClass
     public void setUp() {
-        parser = SingletonParser.getInstance();
+        parser = new Parser();
     }
 
     /**
@@ -37,11 +38,93 @@ public class StringsTest {
         Entry entry = parser.parseEntry(entryStr);
 
         Strings strings = new Strings();
-        strings.extractFrom(List.of(entry));
+        Diagnostics diagnostics = new Diagnostics();
+        strings.extractFrom(List.of(entry), diagnostics);
 
+        assertEquals(diagnostics.getDiagnostics().size(), 1);
+        assertEquals(diagnostics.getDiagnostics().get(0).getCode(), Diagnostic.Code.STRING_REDEFINITION);
+        assertEquals(diagnostics.getDiagnostics().get(0).getLineNumber(), 4);
         assertEquals(strings.getString("str1"), "redefinition");
         assertEquals(strings.getString("str2"), "world");
 
         assertEquals(strings.toString(), "str1 = redefinition\nstr2 = world\n");
     }
+
+    /**
+     * Test concatenation of strings, numbers and references.
+     */
+    @Test
+    public void testConcatenation() {
+        Strings strings = new Strings();
+        Diagnostics diagnostics = new Diagnostics();
+        strings.extractFrom(List.of(parser.parseEntry("@STRING{ jan = \"January\" }")), diagnostics);
+
+        Entry entry = parser.parseEntry("@MISC{key,\n" +
+                "    month = \"1 \" # jan # { \"quoted\" } # 2018,\n" +
+                "    note = \"missing \" # feb\n" +
+                "}");
+        entry.computeConcatenation(strings, diagnostics);
+
+        Field month = entry.getField("month");
+        assertEquals(month.getType(), Field.Type.STRING);
+        assertEquals(month.getValue(), "1 January \"quoted\" 2018");
+        assertEquals(entry.getField("note").getType(), Field.Type.UNKNOWN);
+        assertEquals(diagnostics.getDiagnostics().size(), 1);
+        assertEquals(diagnostics.getDiagnostics().get(0).getCode(), Diagnostic.Code.UNDEFINED_STRING);
+        assertEquals(diagnostics.getDiagnostics().get(0).getCitationKey(), "key");
+
+        // Long concatenation takes linear time
+        StringBuilder concatenation = new StringBuilder("\"a\"");
+        for (int i = 0; i < 20000; i++) {
+            concatenation.append(" # jan");
+        }
+        entry = parser.parseEntry("@MISC{key, note = " + concatenation + "}");
+        entry.computeConcatenation(strings, diagnostics);
+        assertEquals(((String) entry.getField("note").getValue()).length(), 1 + 20000 * "January".length());
+    }
+
+    /**
+     * Test strings referencing other strings.
+     */
+    @Test
+    public void testNestedStrings() {
+        Entry entry = parser.parseEntry("@STRING{\n" +
+                "    date = day # \" \" # month,\n" +
+                "    day = 10,\n" +
+                "    month = jan,\n" +
+                "    jan = \"January\",\n" +
+                "    loop1 = \"a\" # loop2,\n" +
+                "    loop2 = loop1,\n" +
+                "    broken = loop2 # \"b\",\n" +
+                "    missing = \"c\" # feb\n" +
+                "}");
+
+        Strings strings = new Strings();
+        Diagnostics diagnostics = new Diagnostics();
+        strings.extractFrom(List.of(entry), diagnostics);
+        strings.resolveAll();
+
+        assertEquals(strings.getString("date"), "10 January");
+        assertEquals(strings.getString("month"), "January");
+        assertNull(strings.getString("loop1"));
+        assertNull(strings.getString("loop2"));
+        assertNull(strings.getString("broken"));
+        assertNull(strings.getString("missing"));
+
+        // Only strings forming the cycle are reported
+        assertEquals(diagnostics.getDiagnostics().size(), 2);
+        for (Diagnostic diagnostic : diagnostics.getDiagnostics()) {
+            assertEquals(diagnostic.getCode(), Diagnostic.Code.STRING_CYCLE);
+        }
+
+        // Long chain of strings is evaluated without recursion
+        StringBuilder chain = new StringBuilder("@STRING{\n    s0 = \"x\"");
+        for (int i = 1; i <= 100000; i++) {
+            chain.append(",\n    s").append(i).append(" = s").append(i - 1);
+        }
+        chain.append("\n}");
+        strings = new Strings();
+        strings.extractFrom(List.of(parser.parseEntry(chain.toString())), diagnostics);
+        assertEquals(strings.getString("s100000"), "x");
+    }
 }
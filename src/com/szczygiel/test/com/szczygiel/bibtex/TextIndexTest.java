@@ -0,0 +1,160 @@
+package com.szczygiel.bibtex;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for the {@link TextIndex}.
+ */
+public class TextIndexTest {
+    /**
+     * Test splitting LaTeX text into words.
+     */
+    @Test
+    public void testTokenize() {
+        assertEquals(TextIndex.tokenize("On {B}ayesian Networks--a \\emph{Survey}"),
+                List.of("on", "bayesian", "networks", "a", "survey"));
+        assertEquals(TextIndex.tokenize("Erd\\H{o}s, Erdős and G\\\"odel, Stra\\ss e \\& \\v{C}ech"),
+                List.of("erdos", "erdos", "and", "godel", "strasse", "cech"));
+        assertEquals(TextIndex.tokenize("The \\TeX{}book, $O(n \\log n)$ in 1984"),
+                List.of("the", "tex", "book", "o", "n", "log", "n", "in", "1984"));
+        assertEquals(TextIndex.tokenize(" \\ "), List.of());
+    }
+
+    /**
+     * Test that letters written with LaTeX commands and in Unicode are the same words.
+     */
+    @Test
+    public void testTokenizeLetters() {
+        assertEquals(TextIndex.tokenize("{\\L}\\'{o}d\\'{z} Stra{\\ss}e {\\O}rsted \\OE uvre {\\AE}sop Ma{\\l}y \\i"),
+                List.of("lodz", "strasse", "orsted", "oeuvre", "aesop", "maly", "i"));
+        assertEquals(TextIndex.tokenize("Łódź Straße Ørsted Œuvre Æsop Mały ı"),
+                List.of("lodz", "strasse", "orsted", "oeuvre", "aesop", "maly", "i"));
+        assertEquals(TextIndex.tokenize("ŁÓDŹ STRASSE ẞ øæœ Đakovo đ"),
+                List.of("lodz", "strasse", "ss", "oaeoe", "dakovo", "d"));
+    }
+
+    /**
+     * Test ranking entries by BM25.
+     */
+    @Test
+    public void testSearch() {
+        Document document = new Document();
+        document.loadString("@MISC{common, title = \"Sorting and searching\"}\n" +
+                "@MISC{rare, title = \"Sorting networks\"}\n" +
+                "@MISC{long, title = \"Sorting networks, sorting algorithms and other sorting problems\"}\n" +
+                "@MISC{book, title = \"Searching\", note = \"Sorting\", abstract = \"Sorting\"}\n" +
+                "@MISC{other, title = \"Graphs\"}");
+        document.parse();
+
+        List<String> keys = new ArrayList<>();
+        for (TextIndex.Hit hit : document.search("SORTING networks", 10)) {
+            keys.add(hit.getEntry().getCitationKey());
+        }
+        assertEquals(keys, List.of("rare", "long", "book", "common"));
+
+        List<TextIndex.Hit> hits = document.search("networks", 1);
+        assertEquals(hits.size(), 1);
+        assertEquals(hits.get(0).getEntry().getCitationKey(), "rare");
+        assertTrue(hits.get(0).getScore() > 0);
+
+        hits = document.getTextIndex().search("sorting", 10, entry -> entry.getCitationKey().startsWith("b"));
+        assertEquals(hits.size(), 1);
+        assertEquals(hits.get(0).getEntry().getCitationKey(), "book");
+
+        assertEquals(document.search("trees", 10), List.of());
+        assertEquals(document.search("", 10), List.of());
+    }
+
+    /**
+     * Test that edits update the index like indexing the edited document from scratch.
+     */
+    @Test
+    public void testEdit() {
+        String text = BenchmarkCorpus.generate(100);
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+        TextIndex index = document.getTextIndex();
+        assertEquals(document.search("number 42", 1).get(0).getEntry().getCitationKey(), "article-42");
+
+        String title = "On the Complexity of Problem Number 42";
+        int offset = text.indexOf(title + "\"");
+        document.applyEdit(offset, title.length(), "Quicksort");
+        text = text.substring(0, offset) + "Quicksort" + text.substring(offset + title.length());
+        assertEquals(document.getTextIndex(), index);
+
+        Document parsed = new Document();
+        parsed.loadString(text);
+        parsed.parse();
+        for (String query : List.of("quicksort", "number 42", "complexity problem", "generated")) {
+            assertEquals(scores(document.search(query, 200)), scores(parsed.search(query, 200)), query);
+        }
+        assertEquals(document.search("quicksort", 10).get(0).getEntry().getCitationKey(), "article-42");
+    }
+
+    /**
+     * Test that entries with the same score are in document order, also after edits adding them to the index again.
+     */
+    @Test
+    public void testEditTies() {
+        String text = "@MISC{first, title = \"Sorting\", note = \"old\"}\n" +
+                "@MISC{second, title = \"Sorting\", note = \"old\"}\n" +
+                "@MISC{third, title = \"Sorting\", note = \"old\"}\n";
+        Document document = new Document();
+        document.loadString(text);
+        document.parse();
+        document.getTextIndex();
+
+        document.applyEdit(text.indexOf("old"), "old".length(), "new");
+        List<TextIndex.Hit> hits = document.search("sorting", 2);
+        assertEquals(hits.get(0).getEntry().getCitationKey(), "first");
+        assertEquals(hits.get(1).getEntry().getCitationKey(), "second");
+    }
+
+    /**
+     * Test that removed entries are dropped after many removals.
+     */
+    @Test
+    public void testRemove() {
+        Parser parser = new Parser();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            entries.add(parser.parseEntry("@MISC{misc-" + i + ", title = \"Word" + i % 3 + " common\"}"));
+        }
+
+        TextIndex index = new TextIndex(entries);
+        for (int i = 0; i < 2000; i++) {
+            index.remove(entries.get(i));
+        }
+        index.remove(entries.get(0));
+        index.add(entries.get(0));
+        assertEquals(index.size(), 1001);
+
+        List<TextIndex.Hit> hits = index.search("word0", 2000);
+        assertEquals(hits.size(), 334);
+        assertEquals(hits.get(0).getEntry(), entries.get(2001));
+        assertEquals(hits.get(333).getEntry(), entries.get(0));
+        assertEquals(index.search("common", 2000).size(), 1001);
+    }
+
+    /**
+     * Get scores of found entries by their citation keys.
+     *
+     * @param hits found entries
+     * @return citation keys with scores, rounded to avoid differences of summing order
+     */
+    private static List<String> scores(List<TextIndex.Hit> hits) {
+        List<String> scores = new ArrayList<>();
+        for (TextIndex.Hit hit : hits) {
+            scores.add(hit.getEntry().getCitationKey() + String.format(" %.6f", hit.getScore()));
+        }
+        scores.sort(null);
+        return scores;
+    }
+}